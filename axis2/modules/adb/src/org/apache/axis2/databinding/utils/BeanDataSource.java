@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.databinding.utils;
+
+import org.apache.axiom.om.OMDataSourceExt;
+import org.apache.axiom.om.ds.AbstractPushOMDataSource;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.description.java2wsdl.TypeTable;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * OMDataSource backed by a Java bean. Serializing the owning element writes the bean straight to
+ * the writer with {@link BeanUtil#serialize(Object, QName, TypeTable, boolean, boolean,
+ * XMLStreamWriter)}; if the element gets expanded, e.g. by a handler looking into the message
+ * body, the tree is built from the same events.
+ * <p/>
+ * The bean is serialized with the message context which was current when the data source was
+ * created, so that the exclude information and the time zone of the service apply.
+ */
+public class BeanDataSource extends AbstractPushOMDataSource {
+
+    private final Object bean;
+    private final QName beanName;
+    private final TypeTable typeTable;
+    private final boolean qualified;
+    private final boolean processingDocLitBare;
+    private final MessageContext messageContext;
+
+    public BeanDataSource(Object bean, QName beanName, TypeTable typeTable, boolean qualified,
+                          boolean processingDocLitBare) {
+        this(bean, beanName, typeTable, qualified, processingDocLitBare,
+                MessageContext.getCurrentMessageContext());
+    }
+
+    private BeanDataSource(Object bean, QName beanName, TypeTable typeTable, boolean qualified,
+                           boolean processingDocLitBare, MessageContext messageContext) {
+        this.bean = bean;
+        this.beanName = beanName;
+        this.typeTable = typeTable;
+        this.qualified = qualified;
+        this.processingDocLitBare = processingDocLitBare;
+        this.messageContext = messageContext;
+    }
+
+    public void serialize(XMLStreamWriter xmlWriter) throws XMLStreamException {
+        MessageContext current = MessageContext.getCurrentMessageContext();
+        if (current != messageContext) {
+            MessageContext.setCurrentMessageContext(messageContext);
+        }
+        try {
+            BeanUtil.serialize(bean, beanName, typeTable, qualified, processingDocLitBare,
+                    xmlWriter);
+        } finally {
+            if (current != messageContext) {
+                MessageContext.setCurrentMessageContext(current);
+            }
+        }
+    }
+
+    public Object getObject() {
+        return bean;
+    }
+
+    public boolean isDestructiveWrite() {
+        return false;
+    }
+
+    public OMDataSourceExt copy() {
+        return new BeanDataSource(bean, beanName, typeTable, qualified, processingDocLitBare,
+                messageContext);
+    }
+
+    public void close() {
+    }
+}
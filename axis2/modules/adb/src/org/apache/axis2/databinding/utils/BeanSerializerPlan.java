@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.databinding.utils;
+
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.classloader.BeanInfoCache;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.databinding.typemapping.SimpleTypeMapper;
+import org.apache.axis2.deployment.util.BeanExcludeInfo;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.java2wsdl.TypeTable;
+
+import javax.xml.namespace.QName;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The serialization of a bean class, worked out once from its {@link java.beans.BeanInfo}: the
+ * readable properties of the class and its super classes in the order they are written, each
+ * with its read method, element name and the way its value is serialized. Excluded properties
+ * are not part of the plan.
+ * <p/>
+ * The plans are kept on the {@link AxisService} of the current message context, so that the
+ * exclude information of the service applies, or in a shared cache for classes loaded by the
+ * class loader of this class. Classes from other class loaders get a new plan on every call to
+ * avoid class loader leaks.
+ */
+final class BeanSerializerPlan {
+
+    /**
+     * Name of the service parameter holding the plans of the service
+     */
+    private static final String PLANS = "beanSerializerPlans";
+
+    private static final ConcurrentMap<Key, BeanSerializerPlan> localPlans =
+            new ConcurrentHashMap<Key, BeanSerializerPlan>();
+
+    static final int SIMPLE = 0;
+    static final int DOM_DOCUMENT = 1;
+    static final int BASE64_ARRAY = 2;
+    static final int SIMPLE_ARRAY = 3;
+    static final int OBJECT_ARRAY = 4;
+    static final int COLLECTION = 5;
+    static final int MAP = 6;
+    static final int ENUM = 7;
+    static final int OBJECT = 8;
+    static final int BEAN = 9;
+
+    /**
+     * A property of the bean, the fields hold everything which does not depend on the value.
+     */
+    static final class Property {
+        final String name;
+        final Class<?> type;
+        final Method readMethod;
+        final int kind;
+        /** the name of the property element */
+        final QName elementName;
+        /** true if {@link Object#toString()} gives the schema value of the simple type */
+        final boolean plainString;
+        /** the name of the items of an object array or of the element of an Object value */
+        final QName itemName;
+        /** the name of the inner array elements of an object array */
+        final QName innerArrayName;
+        /** the schema type of the declaring class, for collections, maps and Object values */
+        final QName declaringTypeName;
+        final Type genericType;
+
+        Property(String name, Class<?> type, Method readMethod, int kind, QName elementName,
+                 QName itemName, QName innerArrayName, QName declaringTypeName) {
+            this.name = name;
+            this.type = type;
+            this.readMethod = readMethod;
+            this.kind = kind;
+            this.elementName = elementName;
+            this.itemName = itemName;
+            this.innerArrayName = innerArrayName;
+            this.declaringTypeName = declaringTypeName;
+            plainString = isPlainString(kind == SIMPLE_ARRAY ? type.getComponentType() : type);
+            genericType = readMethod.getGenericReturnType();
+        }
+
+        Object getValue(Object bean) {
+            try {
+                return readMethod.invoke(bean);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Converts a value of a simple type to its schema representation.
+         */
+        String toString(Object value) {
+            if (value == null) {
+                return null;
+            }
+            return plainString ? value.toString() : SimpleTypeMapper.getStringValue(value);
+        }
+    }
+
+    private final Property[] properties;
+
+    private BeanSerializerPlan(Property[] properties) {
+        this.properties = properties;
+    }
+
+    Property[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the plan of the given bean class for the given serialization settings.
+     */
+    static BeanSerializerPlan getPlan(Class<?> beanClass, QName beanName, TypeTable typeTable,
+                                      boolean qualified, boolean processingDocLitBare) {
+        AxisService axisService = null;
+        MessageContext messageContext = MessageContext.getCurrentMessageContext();
+        if (messageContext != null) {
+            axisService = messageContext.getAxisService();
+        }
+        Key key = new Key(beanClass, beanName, typeTable, qualified, processingDocLitBare);
+        ConcurrentMap<Key, BeanSerializerPlan> plans;
+        if (axisService != null) {
+            plans = getPlans(axisService);
+        } else if (beanClass.getClassLoader() == BeanSerializerPlan.class.getClassLoader()) {
+            plans = localPlans;
+        } else {
+            plans = null;
+        }
+        BeanSerializerPlan plan = plans == null ? null : plans.get(key);
+        if (plan == null) {
+            List<Property> properties = new ArrayList<Property>();
+            addProperties(properties, beanClass, beanClass, beanName, typeTable, qualified,
+                    processingDocLitBare, axisService);
+            plan = new BeanSerializerPlan(properties.toArray(new Property[properties.size()]));
+            if (plans != null) {
+                plans.putIfAbsent(key, plan);
+            }
+        }
+        return plan;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Key, BeanSerializerPlan> getPlans(AxisService axisService) {
+        Object plans = axisService.getParameterValue(PLANS);
+        if (plans == null) {
+            synchronized (axisService) {
+                plans = axisService.getParameterValue(PLANS);
+                if (plans == null) {
+                    plans = new ConcurrentHashMap<Key, BeanSerializerPlan>();
+                    try {
+                        axisService.addParameter(PLANS, plans);
+                    } catch (AxisFault e) {
+                        // a locked parameter, do not cache the plans of this service
+                        return new ConcurrentHashMap<Key, BeanSerializerPlan>();
+                    }
+                }
+            }
+        }
+        return (ConcurrentMap<Key, BeanSerializerPlan>) plans;
+    }
+
+    /**
+     * Adds the properties of the given class, the ones of its super classes first.
+     */
+    private static void addProperties(List<Property> properties, Class<?> rootClass,
+                                      Class<?> beanClass, QName beanName, TypeTable typeTable,
+                                      boolean qualified, boolean processingDocLitBare,
+                                      AxisService axisService) {
+        Class<?> supperClass = beanClass.getSuperclass();
+        if (!BeanUtil.getQualifiedName(supperClass.getPackage()).startsWith("java.")) {
+            addProperties(properties, rootClass, supperClass, beanName, typeTable, qualified,
+                    processingDocLitBare, axisService);
+        }
+
+        try {
+            QName elemntNameSpace = null;
+            if (typeTable != null && qualified) {
+                QName qNamefortheType = typeTable.getQNamefortheType(beanClass.getName());
+                if (qNamefortheType == null) {
+                    qNamefortheType = typeTable.getQNamefortheType(beanClass.getPackage().getName());
+                }
+                if (qNamefortheType == null) {
+                    throw new AxisFault("Mapping qname not fond for the package: " +
+                                        rootClass.getPackage().getName());
+                }
+
+                elemntNameSpace = new QName(qNamefortheType.getNamespaceURI(), "elementName",
+                        qNamefortheType.getPrefix());
+            }
+            QName declaringTypeName = null;
+            if (typeTable != null) {
+                declaringTypeName = typeTable.getComplexSchemaMap().get(
+                        BeanUtil.getClassName(beanClass));
+            }
+
+            BeanExcludeInfo beanExcludeInfo = null;
+            if (axisService != null && axisService.getExcludeInfo() != null) {
+                beanExcludeInfo = axisService.getExcludeInfo().getBeanExcludeInfoForClass(
+                        beanClass.getName());
+            }
+            PropertyDescriptor[] descriptors = BeanInfoCache.getCachedBeanInfo(beanClass,
+                    beanClass.getSuperclass()).getPropertyDescriptors();
+            for (PropertyDescriptor property : descriptors) {
+                String propertyName = property.getName();
+                Class<?> ptype = property.getPropertyType();
+                if (propertyName.equals("class") ||
+                    beanExcludeInfo != null && beanExcludeInfo.isExcludedProperty(propertyName) || ptype == null) {
+                    continue;
+                }
+
+                Method readMethod = property.getReadMethod();
+                if (readMethod == null && ptype == Boolean.class) {
+                    Method writeMethod = property.getWriteMethod();
+                    if (writeMethod != null) {
+                        String tmpWriteMethodName = writeMethod.getName();
+                        PropertyDescriptor tmpPropDesc =
+                                new PropertyDescriptor(propertyName, rootClass,
+                                        "is" + tmpWriteMethodName.substring(3),
+                                        tmpWriteMethodName);
+                        readMethod = tmpPropDesc.getReadMethod();
+                    }
+                }
+                if (readMethod == null) {
+                    throw new AxisFault("Property '" + propertyName + "' in bean class '"
+                                        + beanClass.getName() + "'is not readable.");
+                }
+                try {
+                    readMethod.setAccessible(true);
+                } catch (SecurityException e) {
+                    // the access checks are done on every read then
+                }
+
+                QName elementName;
+                if (elemntNameSpace != null) {
+                    elementName = new QName(elemntNameSpace.getNamespaceURI(), propertyName,
+                            elemntNameSpace.getPrefix());
+                } else if (processingDocLitBare) {
+                    elementName = new QName(propertyName);
+                } else {
+                    elementName = new QName(beanName.getNamespaceURI(), propertyName,
+                            beanName.getPrefix());
+                }
+
+                int kind;
+                QName itemName = null;
+                QName innerArrayName = null;
+                if (SimpleTypeMapper.isSimpleType(ptype)) {
+                    kind = SIMPLE;
+                } else if (SimpleTypeMapper.isDomDocument(ptype)) {
+                    kind = DOM_DOCUMENT;
+                } else if (ptype.isArray()) {
+                    if (SimpleTypeMapper.isSimpleType(ptype.getComponentType())) {
+                        kind = Byte.TYPE.equals(ptype.getComponentType()) ? BASE64_ARRAY : SIMPLE_ARRAY;
+                    } else {
+                        kind = OBJECT_ARRAY;
+                        if (elemntNameSpace != null) {
+                            itemName = new QName(elemntNameSpace.getNamespaceURI(), propertyName,
+                                    elemntNameSpace.getPrefix());
+                            innerArrayName = new QName(elemntNameSpace.getNamespaceURI(),
+                                    Constants.INNER_ARRAY_COMPLEX_TYPE_NAME,
+                                    elemntNameSpace.getPrefix());
+                        } else {
+                            itemName = new QName(propertyName);
+                            innerArrayName = new QName(Constants.INNER_ARRAY_COMPLEX_TYPE_NAME);
+                        }
+                    }
+                } else if (SimpleTypeMapper.isCollection(ptype)) {
+                    kind = COLLECTION;
+                } else if (SimpleTypeMapper.isMap(ptype)) {
+                    kind = MAP;
+                } else if (SimpleTypeMapper.isEnum(ptype)) {
+                    kind = ENUM;
+                } else if (Object.class.equals(ptype)) {
+                    kind = OBJECT;
+                    if (elemntNameSpace != null) {
+                        // this is required to match this element prefix as root element's prefix
+                        itemName = new QName(elemntNameSpace.getNamespaceURI(), propertyName,
+                                declaringTypeName.getPrefix());
+                    } else {
+                        itemName = new QName(propertyName);
+                    }
+                } else {
+                    kind = BEAN;
+                }
+                properties.add(new Property(propertyName, ptype, readMethod, kind, elementName,
+                        itemName, innerArrayName, declaringTypeName));
+            }
+        } catch (AxisFault e) {
+            throw new RuntimeException(e);
+        } catch (IntrospectionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isPlainString(Class<?> type) {
+        return type == String.class || type.isPrimitive() && type != Float.TYPE && type != Double.TYPE
+                || type == Integer.class || type == Long.class || type == Short.class
+                || type == Byte.class || type == Boolean.class || type == Character.class
+                || type == BigInteger.class || type == BigDecimal.class;
+    }
+
+    private static final class Key {
+        private final Class<?> beanClass;
+        private final String namespaceURI;
+        private final String prefix;
+        private final TypeTable typeTable;
+        private final boolean qualified;
+        private final boolean processingDocLitBare;
+
+        Key(Class<?> beanClass, QName beanName, TypeTable typeTable, boolean qualified,
+            boolean processingDocLitBare) {
+            this.beanClass = beanClass;
+            namespaceURI = beanName.getNamespaceURI();
+            prefix = beanName.getPrefix();
+            this.typeTable = typeTable;
+            this.qualified = qualified;
+            this.processingDocLitBare = processingDocLitBare;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * beanClass.hashCode() + namespaceURI.hashCode()) * 31 + prefix.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return beanClass == other.beanClass && typeTable == other.typeTable
+                        && qualified == other.qualified
+                        && processingDocLitBare == other.processingDocLitBare
+                        && namespaceURI.equals(other.namespaceURI) && prefix.equals(other.prefix);
+            } else {
+                return false;
+            }
+        }
+    }
+}
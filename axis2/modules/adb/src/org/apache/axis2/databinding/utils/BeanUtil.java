@@ -52,17 +52,19 @@ import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.axiom.om.*;
 import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.axiom.om.util.Base64;
+import org.apache.axiom.util.stax.XMLStreamWriterUtils;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.classloader.BeanInfoCache;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.databinding.typemapping.SimpleTypeMapper;
 import org.apache.axis2.databinding.utils.reader.ADBXMLStreamReaderImpl;
-import org.apache.axis2.deployment.util.BeanExcludeInfo;
 import org.apache.axis2.description.AxisService;
 import org.apache.axis2.description.java2wsdl.TypeTable;
 import org.apache.axis2.engine.ObjectSupplier;
@@ -112,7 +114,7 @@ public class BeanUtil {
 
     }
 
-    private static String getClassName(Class type) {
+    static String getClassName(Class type) {
         String name = type.getName();
         if (name.indexOf("$") > 0) {
             name = name.replace('$', '_');
@@ -135,306 +137,355 @@ public class BeanUtil {
                                                      TypeTable typeTable,
                                                      boolean qualified,
                                                      boolean processingDocLitBare) {
-        List<Object> propertyQnameValueList;
-        Class<?> supperClass = beanClass.getSuperclass();
-
-        if (!getQualifiedName(supperClass.getPackage()).startsWith("java.")) {
-            propertyQnameValueList = getPropertyQnameList(beanObject,
-                                                          supperClass, beanName, typeTable, qualified, processingDocLitBare);
-        } else {
-            propertyQnameValueList = new ArrayList<Object>();
+        BeanSerializerPlan plan = BeanSerializerPlan.getPlan(beanClass, beanName, typeTable,
+                qualified, processingDocLitBare);
+        List<Object> propertyQnameValueList = new ArrayList<Object>();
+        for (BeanSerializerPlan.Property property : plan.getProperties()) {
+            addPropertyValues(propertyQnameValueList, property, property.getValue(beanObject),
+                    typeTable, qualified);
         }
+        return propertyQnameValueList;
+    }
 
-        try {
-            QName elemntNameSpace = null;
-            if (typeTable != null && qualified) {
-                QName qNamefortheType = typeTable.getQNamefortheType(beanClass.getName());
-                if (qNamefortheType == null) {
-                    qNamefortheType = typeTable.getQNamefortheType(beanClass.getPackage().getName());
-                }
-                if (qNamefortheType == null) {
-                    throw new AxisFault("Mapping qname not fond for the package: " +
-                                        beanObject.getClass().getPackage().getName());
+    /**
+     * Adds the element names and values of a property to the given list.
+     */
+    private static void addPropertyValues(List<Object> propertyQnameValueList,
+                                          BeanSerializerPlan.Property property,
+                                          Object value,
+                                          TypeTable typeTable,
+                                          boolean qualified) {
+        QName elementName = property.elementName;
+        switch (property.kind) {
+            case BeanSerializerPlan.SIMPLE:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(property.toString(value));
+                break;
+            case BeanSerializerPlan.DOM_DOCUMENT:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(
+                        convertDOMtoOM(OMAbstractFactory.getOMFactory(), value));
+                break;
+            case BeanSerializerPlan.BASE64_ARRAY:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(value == null ? null : Base64.encode((byte[]) value));
+                break;
+            case BeanSerializerPlan.SIMPLE_ARRAY:
+                if (value != null) {
+                    int i1 = Array.getLength(value);
+                    for (int j = 0; j < i1; j++) {
+                        propertyQnameValueList.add(elementName);
+                        propertyQnameValueList.add(property.toString(Array.get(value, j)));
+                    }
+                } else {
+                    propertyQnameValueList.add(elementName);
+                    propertyQnameValueList.add(null);
                 }
-
-                elemntNameSpace = new QName(qNamefortheType.getNamespaceURI(), "elementName", qNamefortheType.getPrefix());
-            }
-            AxisService axisService = null;
-            if (MessageContext.getCurrentMessageContext() != null) {
-                axisService = MessageContext.getCurrentMessageContext().getAxisService();
-            }
-
-            BeanExcludeInfo beanExcludeInfo = null;
-            if (axisService != null && axisService.getExcludeInfo() != null) {
-                beanExcludeInfo = axisService.getExcludeInfo().getBeanExcludeInfoForClass(beanClass.getName());
-            }
-            BeanInfo beanInfo = getBeanInfo(beanClass, beanClass.getSuperclass());
-            PropertyDescriptor[] properties = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor property : properties) {
-                String propertyName = property.getName();
-                Class<?> ptype = property.getPropertyType();
-                if (propertyName.equals("class") ||
-                    beanExcludeInfo != null && beanExcludeInfo.isExcludedProperty(propertyName) || ptype == null) {
-                    continue;
+                break;
+            case BeanSerializerPlan.OBJECT_ARRAY:
+                if (value != null) {
+                    for (Object o : (Object[]) value) {
+                        propertyQnameValueList.add(elementName);
+                        if (SimpleTypeMapper.isObjectArray(o.getClass())
+                                || SimpleTypeMapper.isMultidimensionalObjectArray(o.getClass())) {
+                            /**
+                             * If it is a Object[] we need to add instance type
+                             * attributes to the response message.
+                             * Copied from ADBXMLStreamReaderImpl.
+                             * For inner Arrary Complex types we use the special local name array - "array"
+                             */
+                            propertyQnameValueList.add(getOMElement(property.itemName,
+                                    (Object[]) o, property.innerArrayName, qualified, typeTable));
+                        } else if (SimpleTypeMapper.isObjectArray(value.getClass())) {
+                            OMFactory fac = OMAbstractFactory.getOMFactory();
+                            OMElement element = fac.createOMElement(property.itemName);
+                            element.addChild(fac.createOMText(SimpleTypeMapper.getStringValue(o)));
+                            addInstanceTypeAttribute(fac, element, o, typeTable);
+                            propertyQnameValueList.add(element);
+                        } else {
+                            propertyQnameValueList.add(o);
+                        }
+                    }
+                } else {
+                    propertyQnameValueList.add(elementName);
+                    propertyQnameValueList.add(null);
                 }
-
-                Method readMethod = property.getReadMethod();
-                if (readMethod == null) {
-                    Class propertyType = property.getPropertyType();
-                    if (propertyType == java.lang.Boolean.class) {
-                        Method writeMethod = property.getWriteMethod();
-                        if (writeMethod != null) {
-                            String tmpWriteMethodName = writeMethod.getName();
-                            PropertyDescriptor tmpPropDesc =
-                                    new PropertyDescriptor(property.getName(),
-                                            beanObject.getClass(),
-                                            "is" + tmpWriteMethodName.substring(3),
-                                            tmpWriteMethodName);
-                            readMethod = tmpPropDesc.getReadMethod();
+                break;
+            case BeanSerializerPlan.COLLECTION:
+                if (value == null) {
+                    propertyQnameValueList.add(elementName);
+                    propertyQnameValueList.add(null);
+                } else if (typeTable != null) {
+                    OMElement collection = BeanUtil.getCollectionElement(
+                            OMAbstractFactory.getOMFactory(), property.genericType,
+                            (Collection) value, property.name, null,
+                            property.declaringTypeName, typeTable, qualified);
+                    Iterator childItr = collection.getChildren();
+                    while (childItr.hasNext()) {
+                        propertyQnameValueList.add(elementName);
+                        propertyQnameValueList.add(childItr.next());
+                    }
+                } else {
+                    Collection<?> objList = (Collection<?>) value;
+                    if (objList.size() > 0) {
+                        //this was given error , when the array.size = 0
+                        // and if the array contain simple type , then the ADBPullParser asked
+                        // PullParser from That simpel type
+                        for (Object o : objList) {
+                            propertyQnameValueList.add(elementName);
+                            propertyQnameValueList.add(o);
                         }
+                    } else {
+                        propertyQnameValueList.add(elementName);
+                        propertyQnameValueList.add(value);
                     }
                 }
-                Object value;
-                if (readMethod != null) {
-                    readMethod.setAccessible(true);
-                    value = readMethod.invoke(beanObject);
+                break;
+            case BeanSerializerPlan.MAP:
+                propertyQnameValueList.add(elementName);
+                if (value != null) {
+                    OMFactory fac = OMAbstractFactory.getOMFactory();
+                    QName qNamefortheType = property.declaringTypeName;
+                    List<OMElement> mapEntries = getMapElement(fac,
+                            property.type, (Map) value, typeTable, qualified);
+                    OMElement map = fac.createOMElement(property.name,
+                            qNamefortheType.getNamespaceURI(),
+                            qNamefortheType.getPrefix());
+                    for (OMElement ele : mapEntries) {
+                        map.addChild(ele);
+                    }
+                    propertyQnameValueList.add(map);
                 } else {
-                    throw new AxisFault("Property '" + propertyName + "' in bean class '"
-                                        + beanClass.getName() + "'is not readable.");
+                    propertyQnameValueList.add(null);
                 }
+                break;
+            case BeanSerializerPlan.ENUM:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(
+                        value == null ? null : SimpleTypeMapper.getStringValue(value.toString()));
+                break;
+            case BeanSerializerPlan.OBJECT:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(getObjectElement(value, property.itemName,
+                        typeTable, qualified));
+                break;
+            default:
+                propertyQnameValueList.add(elementName);
+                propertyQnameValueList.add(value);
+        }
+    }
 
-                if (SimpleTypeMapper.isSimpleType(ptype)) {
-                    addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                 beanName, processingDocLitBare);
-                    propertyQnameValueList.add(
-                            value == null ? null : SimpleTypeMapper.getStringValue(value));
-                } else if(SimpleTypeMapper.isDomDocument(ptype)){
-                	addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                            beanName, processingDocLitBare);
-                	OMFactory fac = OMAbstractFactory.getOMFactory();
-                    propertyQnameValueList.add(convertDOMtoOM(fac, value));            	
-                	
-                } else if (ptype.isArray()) {
-                    if (SimpleTypeMapper.isSimpleType(ptype.getComponentType())) {
-                        if (value != null) {
-                            if (Byte.TYPE.equals(ptype.getComponentType())) {
-                                addTypeQname(elemntNameSpace, propertyQnameValueList,
-                                             property, beanName, processingDocLitBare);
-                                propertyQnameValueList.add(Base64.encode((byte[]) value));
-                            } else {
-                                int i1 = Array.getLength(value);
-                                for (int j = 0; j < i1; j++) {
-                                    Object o = Array.get(value, j);
-                                    addTypeQname(elemntNameSpace, propertyQnameValueList,
-                                                 property, beanName, processingDocLitBare);
-                                    propertyQnameValueList.add(o == null ? null :
-                                                               SimpleTypeMapper.getStringValue(o));
-                                }
-                            }
-                        } else {
-                            addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                         beanName, processingDocLitBare);
-                            propertyQnameValueList.add(value);
+    /**
+     * Creates the element of a property declared as {@link Object}, with the instance type of
+     * the value.
+     */
+    private static OMElement getObjectElement(Object value, QName elementName,
+                                              TypeTable typeTable, boolean qualified) {
+        OMFactory fac = OMAbstractFactory.getOMFactory();
+        OMElement element;
+        if (SimpleTypeMapper.isSimpleType(value)) {
+            element = fac.createOMElement(elementName);
+            element.addChild(fac.createOMText(SimpleTypeMapper.getStringValue(value)));
+        } else {
+            XMLStreamReader xr = BeanUtil.getPullParser(value,
+                    elementName, typeTable, qualified, false);
+            OMXMLParserWrapper stAXOMBuilder =
+                    OMXMLBuilderFactory.createStAXOMBuilder(
+                            OMAbstractFactory.getOMFactory(), new StreamWrapper(xr));
+            element = stAXOMBuilder.getDocumentElement();
+        }
+        addInstanceTypeAttribute(fac, element, value, typeTable);
+        return element;
+    }
+
+    /**
+     * Writes a bean to the given writer. This is the push counterpart of
+     * {@link #getPullParser(Object, QName, TypeTable, boolean, boolean)} and produces the same
+     * infoset, but writes the simple properties straight from the bean without building the list
+     * of property names and values first.
+     */
+    public static void serialize(Object beanObject,
+                                 QName beanName,
+                                 TypeTable typeTable,
+                                 boolean qualified,
+                                 boolean processingDocLitBare,
+                                 XMLStreamWriter writer) throws XMLStreamException {
+        Class<?> beanClass = beanObject.getClass();
+        writeStartElement(writer, beanName);
+        if (typeTable != null) {
+            QName qNamefortheType = typeTable.getQNamefortheType(getClassName(beanClass));
+            if (qNamefortheType != null) {
+                String xsiPrefix = getAttributePrefix(writer, Constants.XSI_NAMESPACE, "xsi");
+                String typePrefix = getAttributePrefix(writer, qNamefortheType.getNamespaceURI(),
+                        qNamefortheType.getPrefix());
+                writer.writeAttribute(xsiPrefix, Constants.XSI_NAMESPACE, "type",
+                        typePrefix.length() == 0 ? qNamefortheType.getLocalPart()
+                                : typePrefix + ":" + qNamefortheType.getLocalPart());
+            }
+        }
+        BeanSerializerPlan plan = BeanSerializerPlan.getPlan(beanClass, beanName, typeTable,
+                qualified, processingDocLitBare);
+        List<Object> propertyQnameValueList = null;
+        for (BeanSerializerPlan.Property property : plan.getProperties()) {
+            Object value = property.getValue(beanObject);
+            switch (property.kind) {
+                case BeanSerializerPlan.SIMPLE:
+                    writeElement(writer, property.elementName, property.toString(value));
+                    break;
+                case BeanSerializerPlan.ENUM:
+                    writeElement(writer, property.elementName,
+                            value == null ? null : value.toString());
+                    break;
+                case BeanSerializerPlan.BASE64_ARRAY:
+                    writeElement(writer, property.elementName,
+                            value == null ? null : Base64.encode((byte[]) value));
+                    break;
+                case BeanSerializerPlan.SIMPLE_ARRAY:
+                    if (value != null) {
+                        int length = Array.getLength(value);
+                        for (int j = 0; j < length; j++) {
+                            writeElement(writer, property.elementName,
+                                    property.toString(Array.get(value, j)));
                         }
                     } else {
-                        if (value != null) {
-                            for (Object o : (Object[]) value) {
-                                addTypeQname(elemntNameSpace, propertyQnameValueList,
-                                             property, beanName, processingDocLitBare);   
-                                QName propertyQName = null;
-                                if (elemntNameSpace != null) {
-                                    propertyQName = new QName(
-                                            elemntNameSpace.getNamespaceURI(),
-                                            propertyName,
-                                            elemntNameSpace.getPrefix());
-                                } else {
-                                    propertyQName = new QName(propertyName);
-
-                                }                                                    
-                                
-								if (SimpleTypeMapper
-										.isObjectArray(o.getClass())
-										|| SimpleTypeMapper
-												.isMultidimensionalObjectArray(o
-														.getClass())) {
-									/**
-            						 * If it is a Object[] we need to add instance type
-            						 * attributes to the response message.
-            						 * Copied from ADBXMLStreamReaderImpl. 
-            						 * For inner Arrary Complex types we use the special local name array - "array"
-            						 */
-								    QName itemName;
-								    if (qualified) {
-								        itemName = new QName(elemntNameSpace.getNamespaceURI(),
-	                                            Constants.INNER_ARRAY_COMPLEX_TYPE_NAME,
-	                                            elemntNameSpace.getPrefix()); 								        
-								    } else {
-								        itemName = new QName(Constants.INNER_ARRAY_COMPLEX_TYPE_NAME); 								        
-								    }            						           						
-    								propertyQnameValueList.add(getOMElement(propertyQName , (Object[]) o,
-            								itemName, qualified, typeTable));                                	
-                                } else {
-                                	if(SimpleTypeMapper.isObjectArray(value.getClass())){
-                                		OMFactory fac = OMAbstractFactory.getOMFactory();
-                                    	OMElement element = fac.createOMElement(propertyQName);
-                                    	element.addChild(fac.createOMText(SimpleTypeMapper.getStringValue(o)));  
-                                    	addInstanceTypeAttribute(fac, element, o, typeTable);
-                                    	propertyQnameValueList.add(element);
-                                	} else {
-                                		propertyQnameValueList.add(o);                                 		
-                                	}                                	
-                                }
-                               
-                            }
-                        } else {
-                            addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                         beanName, processingDocLitBare);
-                            propertyQnameValueList.add(value);
-                        }
+                        writeElement(writer, property.elementName, null);
                     }
-                } else  if (SimpleTypeMapper.isCollection(ptype) && value != null) { 
-                    if (typeTable != null) {
-                	OMFactory fac = OMAbstractFactory.getOMFactory();					
-			QName qNamefortheType = null;					
-			qNamefortheType = (QName) typeTable
-				.getComplexSchemaMap().get(getClassName(beanClass));					
-			Type genericType = property.getReadMethod().getGenericReturnType();
-			OMElement collection = BeanUtil.getCollectionElement(
-					fac, genericType,
-					(Collection) value, propertyName,null,
-					qNamefortheType,typeTable,
-					qualified);					
-//			addTypeQname(elemntNameSpace, propertyQnameValueList,
-//					property, beanName, processingDocLitBare);
-			Iterator childItr = collection.getChildren();
-			while(childItr.hasNext()){						
-				addTypeQname(elemntNameSpace, propertyQnameValueList,
-						property, beanName, processingDocLitBare);
-				propertyQnameValueList.add(childItr.next());						
-			}	
-                	
+                    break;
+                case BeanSerializerPlan.BEAN:
+                    writeValue(writer, property.elementName, value, typeTable, qualified);
+                    break;
+                default:
+                    // collections, maps and the like are converted as for the pull parser
+                    if (propertyQnameValueList == null) {
+                        propertyQnameValueList = new ArrayList<Object>();
                     } else {
-                	 Collection<?> objList = (Collection<?>) value;
-                         if (objList != null && objList.size() > 0) {
-                             //this was given error , when the array.size = 0
-                             // and if the array contain simple type , then the ADBPullParser asked
-                             // PullParser from That simpel type
-                             for (Object o : objList) {
-                                 if (SimpleTypeMapper.isSimpleType(o)) {
-                                     addTypeQname(elemntNameSpace, propertyQnameValueList,
-                                                  property, beanName, processingDocLitBare);
-                                     propertyQnameValueList.add(o);
-                                 } else {
-                                     addTypeQname(elemntNameSpace, propertyQnameValueList,
-                                                  property, beanName, processingDocLitBare);
-                                     propertyQnameValueList.add(o);
-                                 }
-                             }
-
-                         } else {
-                             addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                          beanName, processingDocLitBare);
-                             propertyQnameValueList.add(value);
-                         }
+                        propertyQnameValueList.clear();
                     }
-                          
-									
-                } else if (SimpleTypeMapper.isMap(ptype) && value != null) {
-					OMFactory fac = OMAbstractFactory.getOMFactory();
-					QName qNamefortheType = (QName) typeTable
-							.getComplexSchemaMap().get(getClassName(beanClass));
-					OMNamespace ns = fac.createOMNamespace(
-										qNamefortheType.getNamespaceURI(),
-										qNamefortheType.getPrefix());
-					List<OMElement> mapEntries = getMapElement(fac,
-							ptype, (Map) value, typeTable, qualified);
-					OMElement map = fac.createOMElement(propertyName,
-										qNamefortheType.getNamespaceURI(),
-										qNamefortheType.getPrefix());
-					for (OMElement ele : mapEntries) {
-						map.addChild(ele);
-					}
-					addTypeQname(elemntNameSpace, propertyQnameValueList,
-							property, beanName, processingDocLitBare);
-					propertyQnameValueList.add(map);
-				} else if (SimpleTypeMapper.isEnum(ptype)){
-                    addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                 beanName, processingDocLitBare);
-                    propertyQnameValueList.add(
-                            value == null ? null : SimpleTypeMapper.getStringValue(value.toString()));
-                }else {
-                    addTypeQname(elemntNameSpace, propertyQnameValueList, property,
-                                 beanName, processingDocLitBare);
-					if (Object.class.equals(ptype)) {
-						//this is required to match this element prefix as
-						//root element's prefix.
-						QName qNamefortheType = (QName) typeTable
-								.getComplexSchemaMap().get(
-										getClassName(beanClass));
-						OMFactory fac = OMAbstractFactory.getOMFactory();
-                        QName elementName;
-                        OMElement element;
-                        if (elemntNameSpace != null) {
-                            elementName = new QName(
-                                    elemntNameSpace.getNamespaceURI(),
-                                    property.getName(),
-                                    qNamefortheType.getPrefix());
-                        } else {
-                            elementName = new QName(property.getName());
-                        }					
-						
-						if(SimpleTypeMapper.isSimpleType(value)){
-							element = fac.createOMElement(elementName);
-							element.addChild(fac.createOMText(SimpleTypeMapper
-									.getStringValue(value)));            
-		            	}else{    
-		            		 XMLStreamReader xr = BeanUtil.getPullParser(value,
-		            				 elementName, typeTable, qualified, false);
-		                     OMXMLParserWrapper stAXOMBuilder =
-		                             OMXMLBuilderFactory.createStAXOMBuilder(
-		                                     OMAbstractFactory.getOMFactory(), new StreamWrapper(xr));
-		                     element = stAXOMBuilder.getDocumentElement();
-		                     
-		            		
-		            	}	      
-						addInstanceTypeAttribute(fac, element, value, typeTable);
-						propertyQnameValueList.add(element);
-						continue;
-					}
+                    addPropertyValues(propertyQnameValueList, property, value, typeTable,
+                            qualified);
+                    for (int i = 0; i < propertyQnameValueList.size(); i += 2) {
+                        writeValue(writer, (QName) propertyQnameValueList.get(i),
+                                propertyQnameValueList.get(i + 1), typeTable, qualified);
+                    }
+            }
+        }
+        writer.writeEndElement();
+    }
 
-                    propertyQnameValueList.add(value);
+    /**
+     * Writes a property value the way {@link ADBXMLStreamReaderImpl} presents it.
+     */
+    private static void writeValue(XMLStreamWriter writer,
+                                   QName name,
+                                   Object value,
+                                   TypeTable typeTable,
+                                   boolean qualified) throws XMLStreamException {
+        if (value == null || value instanceof String) {
+            writeElement(writer, name, (String) value);
+        } else if (value instanceof DataHandler) {
+            writeStartElement(writer, name);
+            try {
+                XMLStreamWriterUtils.writeDataHandler(writer, (DataHandler) value, null, true);
+            } catch (java.io.IOException e) {
+                throw new XMLStreamException(e);
+            }
+            writer.writeEndElement();
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (length > 0) {
+                writeStartElement(writer, name);
+                //for innter Arrary Complex types we use the special local name array
+                QName itemName = new QName(name.getNamespaceURI(),
+                        Constants.INNER_ARRAY_COMPLEX_TYPE_NAME);
+                for (int i = 0; i < length; i++) {
+                    Object item = Array.get(value, i);
+                    if (item != null && SimpleTypeMapper.isSimpleType(item)) {
+                        item = SimpleTypeMapper.getStringValue(item);
+                    }
+                    writeValue(writer, itemName, item, typeTable, qualified);
                 }
+                writer.writeEndElement();
             }
+        } else if (value instanceof OMElement) {
+            ((OMElement) value).serialize(writer);
+        } else {
+            serialize(value, name, typeTable, qualified, false, writer);
+        }
+    }
 
-            return propertyQnameValueList;
-
-        } catch (java.io.IOException e) {
-            throw new RuntimeException(e);
-        } catch (java.beans.IntrospectionException e) {
-            throw new RuntimeException(e);
-        } catch (java.lang.reflect.InvocationTargetException e) {
-            throw new RuntimeException(e);
-        } catch (java.lang.IllegalAccessException e) {
-            throw new RuntimeException(e);
+    /**
+     * Writes an element with the given text, or a nil element if the text is null.
+     */
+    private static void writeElement(XMLStreamWriter writer, QName name, String text)
+            throws XMLStreamException {
+        writeStartElement(writer, name);
+        if (text == null) {
+            String xsiPrefix = getAttributePrefix(writer, Constants.XSI_NAMESPACE, "xsi");
+            writer.writeAttribute(xsiPrefix, Constants.XSI_NAMESPACE, "nil", "true");
+        } else {
+            writer.writeCharacters(text);
         }
+        writer.writeEndElement();
     }
 
-    private static void addTypeQname(QName elemntNameSpace,
-                                     List<Object> propertyQnameValueList,
-                                     PropertyDescriptor propDesc,
-                                     QName beanName,
-                                     boolean processingDocLitBare) {
-        if (elemntNameSpace != null) {
-            propertyQnameValueList.add(new QName(elemntNameSpace.getNamespaceURI(),
-                                                 propDesc.getName(), elemntNameSpace.getPrefix()));
+    private static void writeStartElement(XMLStreamWriter writer, QName name)
+            throws XMLStreamException {
+        String namespace = name.getNamespaceURI();
+        String localName = name.getLocalPart();
+        if (namespace.length() == 0) {
+            String defaultNamespace = writer.getNamespaceContext().getNamespaceURI("");
+            writer.writeStartElement(localName);
+            if (defaultNamespace != null && defaultNamespace.length() > 0) {
+                writer.writeDefaultNamespace("");
+                writer.setDefaultNamespace("");
+            }
         } else {
-            if (processingDocLitBare) {
-                propertyQnameValueList.add(new QName(propDesc.getName()));
+            String prefix = writer.getPrefix(namespace);
+            if (prefix == null) {
+                prefix = getFreePrefix(writer, name.getPrefix());
+                writer.writeStartElement(prefix, localName, namespace);
+                if (prefix.length() == 0) {
+                    writer.writeDefaultNamespace(namespace);
+                    writer.setDefaultNamespace(namespace);
+                } else {
+                    writer.writeNamespace(prefix, namespace);
+                    writer.setPrefix(prefix, namespace);
+                }
             } else {
-                propertyQnameValueList.add(new QName(beanName.getNamespaceURI(), propDesc.getName(), beanName.getPrefix()));
+                writer.writeStartElement(prefix, localName, namespace);
             }
+        }
+    }
 
+    /**
+     * Returns a non empty prefix bound to the given namespace, declaring it on the current element
+     * if needed.
+     */
+    private static String getAttributePrefix(XMLStreamWriter writer, String namespace,
+                                             String preferredPrefix) throws XMLStreamException {
+        if (namespace.length() == 0) {
+            return "";
+        }
+        String prefix = writer.getPrefix(namespace);
+        if (prefix == null || prefix.length() == 0) {
+            prefix = getFreePrefix(writer, preferredPrefix);
+            if (prefix.length() == 0) {
+                prefix = getUniquePrefix();
+            }
+            writer.writeNamespace(prefix, namespace);
+            writer.setPrefix(prefix, namespace);
         }
+        return prefix;
+    }
+
+    private static String getFreePrefix(XMLStreamWriter writer, String prefix) {
+        if (prefix != null) {
+            String boundNamespace = writer.getNamespaceContext().getNamespaceURI(prefix);
+            if (boundNamespace == null || boundNamespace.length() == 0) {
+                return prefix;
+            }
+        }
+        return getUniquePrefix();
     }
 
     /**
@@ -750,6 +801,20 @@ public class BeanUtil {
                                        ObjectSupplier objectSupplier,
                                        String[] parameterNames,
                                        Method method) throws AxisFault {
+        return deserializeParameters(response, javaTypes, objectSupplier, parameterNames,
+                method == null ? null : method.getGenericParameterTypes());
+    }
+
+    /**
+     * Deserializes the parameters of a method whose generic parameter types are already known.
+     *
+     * @param genericParameterTypes the generic parameter types of the method, may be null
+     */
+    public static Object[] deserializeParameters(OMElement response,
+                                       Object[] javaTypes,
+                                       ObjectSupplier objectSupplier,
+                                       String[] parameterNames,
+                                       Type[] genericParameterTypes) throws AxisFault {
         /*
          * Take the number of parameters in the method and , only take that much of child elements
          * from the OMElement , other are ignore , as an example
@@ -789,10 +854,6 @@ public class BeanUtil {
         // has to  get and add to the list
         Class classType;
         String currentLocalName;
-        Type[] genericParameterTypes = null;
-        if (method != null) {
-            genericParameterTypes = method.getGenericParameterTypes();
-        }
         Type genericType = null;
         while (parts.hasNext() && count < length) {
             Object objValue = parts.next();
@@ -1271,7 +1332,7 @@ public class BeanUtil {
     }
 
 
-    private static String getQualifiedName(Package packagez) {
+    static String getQualifiedName(Package packagez) {
         if (packagez != null) {
             return packagez.getName();
         } else {
@@ -50,25 +50,10 @@ public class RPCInOnlyMessageReceiver extends AbstractMessageReceiver {
                     .getFirstElement();
 
             AxisMessage inAxisMessage = op.getMessage(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
-            String messageNameSpace = null;
-            String methodName = op.getName().getLocalPart();
-            Method[] methods = ImplClass.getMethods();
-            for (int i = 0; i < methods.length; i++) {
-                if (methods[i].isBridge()) {
-                    continue;
-                }
-                if (methods[i].getName().equals(methodName)) {
-                    method = methods[i];
-                    break;
-                }
-            }
+            RPCInvoker invoker = RPCInvoker.getInvoker(op, ImplClass);
+            method = invoker.getMethod();
             if (inAxisMessage != null) {
-                RPCUtil.invokeServiceClass(inAxisMessage,
-                        method,
-                        obj,
-                        messageNameSpace,
-                        methodElement,inMessage);
-
+                invoker.invoke(obj, inAxisMessage, methodElement, inMessage);
             }
             replicateState(inMessage);
         } catch (InvocationTargetException e) {
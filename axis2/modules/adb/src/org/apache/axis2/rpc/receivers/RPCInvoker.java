@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.rpc.receivers;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.databinding.utils.BeanUtil;
+import org.apache.axis2.description.AxisMessage;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.engine.ObjectSupplier;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Invokes the Java method of an RPC operation on a given implementation class. Everything which
+ * only depends on the operation and the class is worked out once: the method lookup, its
+ * parameter types and their generic form, and the parameter names of wrapped messages. The
+ * method is made accessible so that the invocations skip the access checks.
+ * <p/>
+ * The invokers are cached per operation and implementation class, see
+ * {@link #getInvoker(AxisOperation, Class)}.
+ */
+public class RPCInvoker {
+
+    /**
+     * Name of the operation parameter holding the invokers of the operation
+     */
+    private static final String INVOKERS = "rpcInvokers";
+
+    private final Method method;
+    private final Class<?>[] parameterTypes;
+    private final Type[] genericParameterTypes;
+    private final String[] parameterNames;
+
+    public RPCInvoker(Method method, AxisService service) {
+        this.method = method;
+        parameterTypes = method.getParameterTypes();
+        genericParameterTypes = method.getGenericParameterTypes();
+        Parameter namesParameter = service == null ? null : service.getParameter(method.getName());
+        Object names = namesParameter == null ? null : namesParameter.getValue();
+        parameterNames = names instanceof String[] ? (String[]) names : null;
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // the access checks are done on every invocation then
+        }
+    }
+
+    /**
+     * Returns the invoker of the given operation for the given implementation class, the public
+     * method named after the operation.
+     *
+     * @throws AxisFault if the class has no such method
+     */
+    public static RPCInvoker getInvoker(AxisOperation op, Class<?> implClass) throws AxisFault {
+        ConcurrentMap<Class<?>, RPCInvoker> invokers = getInvokers(op);
+        RPCInvoker invoker = invokers.get(implClass);
+        if (invoker == null) {
+            String methodName = op.getName().getLocalPart();
+            Method method = null;
+            for (Method candidate : implClass.getMethods()) {
+                if (!candidate.isBridge() && candidate.getName().equals(methodName)) {
+                    method = candidate;
+                    break;
+                }
+            }
+            if (method == null) {
+                throw new AxisFault("No such method '" + methodName +
+                        "' in class " + implClass.getName());
+            }
+            // a racing thread builds the same invoker, keep the first one
+            RPCInvoker existing = invokers.putIfAbsent(implClass,
+                    new RPCInvoker(method, op.getAxisService()));
+            invoker = existing == null ? invokers.get(implClass) : existing;
+        }
+        return invoker;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Class<?>, RPCInvoker> getInvokers(AxisOperation op)
+            throws AxisFault {
+        Object invokers = op.getParameterValue(INVOKERS);
+        if (invokers == null) {
+            synchronized (op) {
+                invokers = op.getParameterValue(INVOKERS);
+                if (invokers == null) {
+                    invokers = new ConcurrentHashMap<Class<?>, RPCInvoker>();
+                    op.addParameter(INVOKERS, invokers);
+                }
+            }
+        }
+        return (ConcurrentMap<Class<?>, RPCInvoker>) invokers;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Deserializes the arguments from the request and invokes the method.
+     *
+     * @param implObject    the service implementation
+     * @param inAxisMessage the request message description
+     * @param methodElement the first child of the SOAP body, may be null
+     * @param inMessage     the request
+     * @return the result of the method
+     */
+    public Object invoke(Object implObject, AxisMessage inAxisMessage, OMElement methodElement,
+                         MessageContext inMessage) throws AxisFault,
+            IllegalAccessException, InvocationTargetException {
+        if ((inAxisMessage.getElementQName() == null) || (methodElement == null)) {
+            // method accept empty SOAPbody
+            return method.invoke(implObject);
+        }
+        RPCUtil.checkNamespace(inAxisMessage.getElementQName(), methodElement);
+        ObjectSupplier objectSupplier = inMessage.getAxisService().getObjectSupplier();
+        Object[] objectArray;
+        if (inAxisMessage.isWrapped()) {
+            objectArray = BeanUtil.deserializeParameters(methodElement, parameterTypes, objectSupplier,
+                    parameterNames, genericParameterTypes);
+        } else {
+            objectArray = BeanUtil.deserializeParameters((OMElement) methodElement.getParent(),
+                    parameterTypes, objectSupplier, null, genericParameterTypes);
+        }
+        return method.invoke(implObject, objectArray);
+    }
+}
@@ -31,12 +31,12 @@ import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.databinding.typemapping.SimpleTypeMapper;
+import org.apache.axis2.databinding.utils.BeanDataSource;
 import org.apache.axis2.databinding.utils.BeanUtil;
 import org.apache.axis2.databinding.utils.Constants;
 import org.apache.axis2.databinding.utils.reader.NullXMLStreamReader;
 import org.apache.axis2.description.AxisMessage;
 import org.apache.axis2.description.AxisService;
-import org.apache.axis2.description.Parameter;
 import org.apache.axis2.description.java2wsdl.TypeTable;
 import org.apache.axis2.engine.ObjectSupplier;
 import org.apache.axis2.util.StreamWrapper;
@@ -124,15 +124,9 @@ public class RPCUtil {
                 } else {
                     returnWrapper = new QName(Constants.RETURN_WRAPPER);
                 }
-                XMLStreamReader xr = BeanUtil.getPullParser(resObject,
-                        returnWrapper, typeTable, qualified, false);
-                OMXMLParserWrapper stAXOMBuilder =
-                        OMXMLBuilderFactory.createStAXOMBuilder(
-                                OMAbstractFactory.getOMFactory(), new StreamWrapper(xr));
-                OMElement documentElement = stAXOMBuilder.getDocumentElement();
-                if (documentElement != null) {
-                    bodyContent.addChild(documentElement);
-                }
+                // the bean is written straight to the transport unless a handler expands it
+                bodyContent.addChild(fac.createOMElement(new BeanDataSource(resObject,
+                        returnWrapper, typeTable, qualified, false), returnWrapper));
             }
         }
         if (bodyContent != null) {
@@ -203,6 +197,9 @@ public class RPCUtil {
         return processRequest(methodElement, method, objectSupplier, null);
     }
 
+    /**
+     * Invokes the method of an RPC operation, see {@link RPCInvoker#invoke}.
+     */
     public static Object invokeServiceClass(AxisMessage inAxisMessage,
                                             Method method,
                                             Object implObject,
@@ -210,51 +207,31 @@ public class RPCUtil {
                                             OMElement methodElement,
                                             MessageContext inMessage) throws AxisFault,
             IllegalAccessException, InvocationTargetException {
-        
-        //POJO was not WS-I complient since it does generate an empty soap message for in comming
-        //soap envelope when no input parameters are set. But now we have fixed this to include the
-        // the operation name wrapper.
-        // this causes problems with the clients generated with the earlier wsdls. in order to
-        // keep the back word compatibility we need to add this check.
+        return new RPCInvoker(method, inMessage.getAxisService()).invoke(implObject,
+                inAxisMessage, methodElement, inMessage);
+    }
 
-        if ((inAxisMessage.getElementQName() == null) || (methodElement == null)) {
-            // method accept empty SOAPbody
-            return method.invoke(implObject);
-        } else {
-            QName elementQName = inAxisMessage.getElementQName();
-            messageNameSpace = elementQName.getNamespaceURI();
-            OMNamespace namespace = methodElement.getNamespace();
-            if (messageNameSpace != null) {
-                if (namespace == null) {
-                    throw new AxisFault("namespace mismatch require " +
-                            messageNameSpace +
-                            " found none");
-                }
-                if (!messageNameSpace.equals(namespace.getNamespaceURI())) {
-                    throw new AxisFault("namespace mismatch require " +
-                            messageNameSpace +
-                            " found " + methodElement.getNamespace().getNamespaceURI());
-                }
-            } else if (namespace != null) {
-                throw new AxisFault(
-                        "namespace mismatch. Axis Operation expects non-namespace " +
-                                "qualified element. But received a namespace qualified element");
+    /**
+     * Checks that the namespace of the method element is the one of the message element.
+     */
+    static void checkNamespace(QName elementQName, OMElement methodElement) throws AxisFault {
+        String messageNameSpace = elementQName.getNamespaceURI();
+        OMNamespace namespace = methodElement.getNamespace();
+        if (messageNameSpace != null) {
+            if (namespace == null) {
+                throw new AxisFault("namespace mismatch require " +
+                        messageNameSpace +
+                        " found none");
             }
-            Object[] objectArray;
-            if (inAxisMessage.isWrapped()) {
-                Parameter namesParameter = inMessage.getAxisService().getParameter(method.getName());
-                String[] parameterNames = null;
-                if (namesParameter != null){
-                    parameterNames = (String[]) namesParameter.getValue();
-                }
-                objectArray = RPCUtil.processRequest(methodElement,
-                        method, inMessage.getAxisService().getObjectSupplier(), parameterNames);
-            } else {
-                objectArray = RPCUtil.processRequest((OMElement) methodElement.getParent(),
-                        method, inMessage.getAxisService().getObjectSupplier());
+            if (!messageNameSpace.equals(namespace.getNamespaceURI())) {
+                throw new AxisFault("namespace mismatch require " +
+                        messageNameSpace +
+                        " found " + methodElement.getNamespace().getNamespaceURI());
             }
-            return method.invoke(implObject, objectArray);
-
+        } else if (namespace != null) {
+            throw new AxisFault(
+                    "namespace mismatch. Axis Operation expects non-namespace " +
+                            "qualified element. But received a namespace qualified element");
         }
     }
 
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.databinding.utils;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMSourcedElement;
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axis2.description.java2wsdl.TypeTable;
+import org.apache.axis2.util.StreamWrapper;
+
+import junit.framework.TestCase;
+
+import javax.xml.namespace.QName;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+public class BeanDataSourceTest extends TestCase {
+
+    public static class Item {
+        private String name = "item";
+        private Integer count;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+    }
+
+    public static class Order extends Item {
+        private int quantity = 1;
+        private double price = 1.5;
+        private String[] tags = { "p", null };
+        private byte[] data = { 1, 2, 3 };
+        private Calendar shipped;
+        private Item item = new Item();
+        private Item[] items = { new Item(), new Item() };
+        private List<String> notes = Arrays.asList("n1", "n2");
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public String[] getTags() {
+            return tags;
+        }
+
+        public void setTags(String[] tags) {
+            this.tags = tags;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public void setData(byte[] data) {
+            this.data = data;
+        }
+
+        public Calendar getShipped() {
+            return shipped;
+        }
+
+        public void setShipped(Calendar shipped) {
+            this.shipped = shipped;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public void setItem(Item item) {
+            this.item = item;
+        }
+
+        public Item[] getItems() {
+            return items;
+        }
+
+        public void setItems(Item[] items) {
+            this.items = items;
+        }
+
+        public List<String> getNotes() {
+            return notes;
+        }
+
+        public void setNotes(List<String> notes) {
+            this.notes = notes;
+        }
+    }
+
+    private static final QName RETURN = new QName("http://test", "return", "ns");
+
+    private final OMFactory factory = OMAbstractFactory.getOMFactory();
+
+    private String serializePull(Object bean, TypeTable typeTable) throws Exception {
+        OMElement element = OMXMLBuilderFactory.createStAXOMBuilder(factory, new StreamWrapper(
+                BeanUtil.getPullParser(bean, RETURN, typeTable, false, false))).getDocumentElement();
+        OMElement parent = factory.createOMElement("response", "http://test", "ns");
+        parent.addChild(element);
+        return parent.toString();
+    }
+
+    private OMSourcedElement createSourcedElement(Object bean, TypeTable typeTable) {
+        return factory.createOMElement(
+                new BeanDataSource(bean, RETURN, typeTable, false, false), RETURN);
+    }
+
+    public void testPushMatchesPull() throws Exception {
+        OMSourcedElement element = createSourcedElement(new Order(), null);
+        OMElement parent = factory.createOMElement("response", "http://test", "ns");
+        parent.addChild(element);
+        StringWriter writer = new StringWriter();
+        parent.serializeAndConsume(writer);
+        // the bean was written without building the tree
+        assertFalse(element.isExpanded());
+        assertEquals(serializePull(new Order(), null), writer.toString());
+    }
+
+    public void testInstanceType() throws Exception {
+        TypeTable typeTable = new TypeTable();
+        typeTable.addComplexSchema(Order.class.getName().replace('$', '_'),
+                new QName("http://test/xsd", "Order", "ax"));
+        OMSourcedElement element = createSourcedElement(new Order(), typeTable);
+        OMElement parent = factory.createOMElement("response", "http://test", "ns");
+        parent.addChild(element);
+        StringWriter writer = new StringWriter();
+        parent.serializeAndConsume(writer);
+        String xml = writer.toString();
+        assertTrue(xml, xml.indexOf("xmlns:ax=\"http://test/xsd\"") > 0);
+        assertTrue(xml, xml.indexOf("xsi:type=\"ax:Order\"") > 0);
+    }
+
+    public void testExpansion() throws Exception {
+        OMSourcedElement element = createSourcedElement(new Order(), null);
+        // a handler looking into the body
+        OMElement quantity = element.getFirstChildWithName(new QName("http://test", "quantity"));
+        assertTrue(element.isExpanded());
+        assertEquals("1", quantity.getText());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.databinding.utils;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.deployment.util.BeanExcludeInfo;
+import org.apache.axis2.deployment.util.ExcludeInfo;
+import org.apache.axis2.description.AxisService;
+
+import junit.framework.TestCase;
+
+import javax.xml.namespace.QName;
+
+public class BeanSerializerPlanTest extends TestCase {
+
+    public static class Base {
+        private String id = "b1";
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+
+    public static class Order extends Base {
+        private int quantity = 3;
+        private Boolean shipped = Boolean.TRUE;
+        private double price = Double.POSITIVE_INFINITY;
+        private String[] tags = { "a", "b" };
+        private String secret = "s";
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        // no getter, only the is method
+        public Boolean isShipped() {
+            return shipped;
+        }
+
+        public void setShipped(Boolean shipped) {
+            this.shipped = shipped;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public String[] getTags() {
+            return tags;
+        }
+
+        public void setTags(String[] tags) {
+            this.tags = tags;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+    }
+
+    private static final QName ORDER = new QName("http://test", "order", "t");
+
+    protected void tearDown() throws Exception {
+        MessageContext.setCurrentMessageContext(null);
+    }
+
+    private OMElement serialize(Object bean) {
+        return OMXMLBuilderFactory.createStAXOMBuilder(OMAbstractFactory.getOMFactory(),
+                BeanUtil.getPullParser(bean, ORDER, null, false, false)).getDocumentElement();
+    }
+
+    public void testPlanIsCached() throws Exception {
+        BeanSerializerPlan plan = BeanSerializerPlan.getPlan(Order.class, ORDER, null, false, false);
+        assertSame(plan, BeanSerializerPlan.getPlan(Order.class, ORDER, null, false, false));
+        assertNotSame(plan, BeanSerializerPlan.getPlan(Order.class, ORDER, null, false, true));
+
+        BeanSerializerPlan.Property[] properties = plan.getProperties();
+        // the properties of the super class come first
+        assertEquals("id", properties[0].name);
+        assertEquals(new QName("http://test", "id", "t"), properties[0].elementName);
+    }
+
+    public void testSerialize() throws Exception {
+        OMElement element = serialize(new Order());
+        assertEquals("b1", element.getFirstChildWithName(new QName("http://test", "id")).getText());
+        assertEquals("3",
+                element.getFirstChildWithName(new QName("http://test", "quantity")).getText());
+        assertEquals("true",
+                element.getFirstChildWithName(new QName("http://test", "shipped")).getText());
+        assertEquals("INF",
+                element.getFirstChildWithName(new QName("http://test", "price")).getText());
+        assertEquals("s",
+                element.getFirstChildWithName(new QName("http://test", "secret")).getText());
+        int tags = 0;
+        for (java.util.Iterator<?> it = element.getChildrenWithName(
+                new QName("http://test", "tags")); it.hasNext(); it.next()) {
+            tags++;
+        }
+        assertEquals(2, tags);
+    }
+
+    public void testExcludedProperty() throws Exception {
+        AxisService service = new AxisService("OrderService");
+        ExcludeInfo excludeInfo = new ExcludeInfo();
+        excludeInfo.putBeanInfo(Order.class.getName().replace("$", "\\$"),
+                new BeanExcludeInfo("secret", null));
+        service.setExcludeInfo(excludeInfo);
+        MessageContext msgContext = new MessageContext();
+        msgContext.setAxisService(service);
+        MessageContext.setCurrentMessageContext(msgContext);
+
+        OMElement element = serialize(new Order());
+        assertNull(element.getFirstChildWithName(new QName("http://test", "secret")));
+        assertNotNull(element.getFirstChildWithName(new QName("http://test", "quantity")));
+        // the plan is kept on the service
+        assertNotNull(service.getParameterValue("beanSerializerPlans"));
+    }
+}
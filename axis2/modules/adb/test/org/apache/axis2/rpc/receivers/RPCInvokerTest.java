@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.rpc.receivers;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.description.AxisMessage;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.wsdl.WSDLConstants;
+
+import junit.framework.TestCase;
+
+import javax.xml.namespace.QName;
+
+public class RPCInvokerTest extends TestCase {
+
+    private static final String NS = "http://test.rpc";
+
+    public static class Calculator {
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+
+    public static class OtherCalculator {
+        public int add(int a, int b) {
+            return a * b;
+        }
+    }
+
+    private AxisOperation op;
+    private MessageContext msgContext;
+
+    protected void setUp() throws Exception {
+        AxisService service = new AxisService("Calculator");
+        service.addParameter("add", new String[] { "a", "b" });
+        op = new InOutAxisOperation(new QName("add"));
+        service.addOperation(op);
+        AxisMessage inMessage = op.getMessage(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+        inMessage.setElementQName(new QName(NS, "add"));
+        inMessage.setWrapped(true);
+        msgContext = new MessageContext();
+        msgContext.setAxisService(service);
+    }
+
+    private OMElement createRequest(String ns) throws Exception {
+        SOAPEnvelope envelope = OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope();
+        envelope.getBody().addChild(AXIOMUtil.stringToOM(
+                "<add xmlns='" + ns + "'><a>3</a><b>4</b></add>"));
+        msgContext.setEnvelope(envelope);
+        return envelope.getBody().getFirstElement();
+    }
+
+    public void testInvokerCachedPerClass() throws Exception {
+        RPCInvoker invoker = RPCInvoker.getInvoker(op, Calculator.class);
+        assertSame(invoker, RPCInvoker.getInvoker(op, Calculator.class));
+        assertEquals(Calculator.class, invoker.getMethod().getDeclaringClass());
+
+        RPCInvoker other = RPCInvoker.getInvoker(op, OtherCalculator.class);
+        assertNotSame(invoker, other);
+        assertEquals(OtherCalculator.class, other.getMethod().getDeclaringClass());
+    }
+
+    public void testInvoke() throws Exception {
+        AxisMessage inMessage = op.getMessage(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+        OMElement request = createRequest(NS);
+        assertEquals(7, RPCInvoker.getInvoker(op, Calculator.class).invoke(
+                new Calculator(), inMessage, request, msgContext));
+        assertEquals(12, RPCInvoker.getInvoker(op, OtherCalculator.class).invoke(
+                new OtherCalculator(), inMessage, request, msgContext));
+    }
+
+    public void testNamespaceMismatch() throws Exception {
+        AxisMessage inMessage = op.getMessage(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+        try {
+            RPCInvoker.getInvoker(op, Calculator.class).invoke(new Calculator(), inMessage,
+                    createRequest("http://other"), msgContext);
+            fail("expected a namespace mismatch");
+        } catch (AxisFault e) {
+            // expected
+        }
+    }
+
+    public void testNoSuchMethod() throws Exception {
+        try {
+            RPCInvoker.getInvoker(op, Object.class);
+            fail("expected a fault for the missing method");
+        } catch (AxisFault e) {
+            // expected
+        }
+    }
+}
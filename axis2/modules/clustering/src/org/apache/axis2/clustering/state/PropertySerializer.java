@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.state;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides whether a property value can be replicated, serializing it at most once.
+ * <p/>
+ * Values of the immutable JDK types the senders write natively are accepted without being
+ * serialized. Other values are serialized once and the bytes are kept on the update command. Only
+ * the {@link org.apache.axis2.clustering.zookeeper.ZkBinarySerializer} reuses these bytes; the
+ * default Java serialization of the command, as well as the Tribes channel, serializes such
+ * values a second time. The verdict of the classes which are always or never serializable is
+ * cached per class.
+ */
+public final class PropertySerializer {
+
+    private static final ConcurrentMap<Class<?>, Boolean> verdicts =
+            new ConcurrentHashMap<Class<?>, Boolean>();
+
+    static {
+        Class<?>[] nativeTypes = {String.class, Integer.class, Long.class, Boolean.class,
+                               Double.class, Float.class, Short.class, Byte.class,
+                               Character.class, byte[].class};
+        for (Class<?> type : nativeTypes) {
+            verdicts.put(type, Boolean.TRUE);
+        }
+    }
+
+    private PropertySerializer() {
+    }
+
+    /**
+     * @param value the property value
+     * @return true if the value is null or of a type which is serializable whatever its content
+     */
+    public static boolean isKnownSerializable(Object value) {
+        if (value == null) {
+            return true;
+        }
+        Class<?> type = value.getClass();
+        return verdicts.get(type) == Boolean.TRUE || type.isEnum();
+    }
+
+    /**
+     * Serializes the given value with Java serialization
+     *
+     * @param value the property value, not null
+     * @return the serialized value, null if the value is not serializable
+     */
+    public static byte[] serialize(Object value) {
+        Class<?> type = value.getClass();
+        if (verdicts.get(type) == Boolean.FALSE) {
+            return null;
+        }
+        if (!(value instanceof Serializable)) {
+            verdicts.put(type, Boolean.FALSE);
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            // the content of this value is not serializable, other instances may be; a custom
+            // writeObject may fail with any exception
+            return null;
+        }
+    }
+}
@@ -35,8 +35,6 @@ import org.apache.axis2.deployment.DeploymentConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -146,17 +144,14 @@ public final class StateClusteringCommandFactory {
                 for (Object o : diffs.keySet()) {
                     String key = (String) o;
                     PropertyDifference diff = (PropertyDifference) diffs.get(key);
-                    Object value = diff.getValue();
-                    if (isSerializable(value)) {
 
-                        // Next check whether it matches an excluded pattern
-                        if (!isExcluded(key,
-                                        context.getClass().getName(),
-                                        excludedPropertyPatterns)) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("sending property =" + key + "-" + value);
-                            }
-                            updateCmd.addProperty(diff);
+                    // Check the excluded patterns first, excluded values are never serialized
+                    if (!isExcluded(key,
+                                    context.getClass().getName(),
+                                    excludedPropertyPatterns)) {
+                        if (addSerializableProperty(updateCmd, diff)
+                            && log.isDebugEnabled()) {
+                            log.debug("sending property =" + key + "-" + diff.getValue());
                         }
                     }
                 }
@@ -165,16 +160,14 @@ public final class StateClusteringCommandFactory {
             synchronized (context) {
                 for (Iterator iter = context.getPropertyNames(); iter.hasNext();) {
                     String key = (String) iter.next();
-                    Object value = context.getPropertyNonReplicable(key);
-                    if (isSerializable(value)) {
 
-                        // Next check whether it matches an excluded pattern
-                        if (!isExcluded(key, context.getClass().getName(), excludedPropertyPatterns)) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("sending property =" + key + "-" + value);
-                            }
-                            PropertyDifference diff = new PropertyDifference(key, value, false);
-                            updateCmd.addProperty(diff);
+                    // Check the excluded patterns first, excluded values are never serialized
+                    if (!isExcluded(key, context.getClass().getName(), excludedPropertyPatterns)) {
+                        Object value = context.getPropertyNonReplicable(key);
+                        PropertyDifference diff = new PropertyDifference(key, value, false);
+                        if (addSerializableProperty(updateCmd, diff)
+                            && log.isDebugEnabled()) {
+                            log.debug("sending property =" + key + "-" + value);
                         }
                     }
                 }
@@ -190,14 +183,20 @@ public final class StateClusteringCommandFactory {
             Object prop = context.getPropertyNonReplicable(key);
 
             // First check whether it is serializable
-            if (isSerializable(prop)) {
+            byte[] serializedProp = null;
+            if (PropertySerializer.isKnownSerializable(prop)
+                || (serializedProp = PropertySerializer.serialize(prop)) != null) {
                 if (log.isDebugEnabled()) {
                     log.debug("sending property =" + key + "-" + prop);
                 }
                 PropertyDifference diff = (PropertyDifference) diffs.get(key);
                 if (diff != null) {
                     diff.setValue(prop);
-                    updateCmd.addProperty(diff);
+                    if (serializedProp != null) {
+                        updateCmd.addProperty(diff, serializedProp);
+                    } else {
+                        updateCmd.addProperty(diff);
+                    }
 
                     // Remove the diff?
                     diffs.remove(key);
@@ -264,15 +263,26 @@ public final class StateClusteringCommandFactory {
         return null;
     }
 
-    private static boolean isSerializable(Object obj) {
-        try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(out);
-            oos.writeObject(obj);
-            oos.close();
-            return out.toByteArray().length > 0;
-        } catch (Exception e) {
+    /**
+     * Adds the given property to the command if its value is serializable. The value is
+     * serialized at most once, the bytes are kept on the command for the sender.
+     *
+     * @param updateCmd The command
+     * @param diff      The property
+     * @return true if the property was added
+     */
+    private static boolean addSerializableProperty(UpdateStateCommand updateCmd,
+                                                   PropertyDifference diff) {
+        Object value = diff.getValue();
+        if (PropertySerializer.isKnownSerializable(value)) {
+            updateCmd.addProperty(diff);
+            return true;
+        }
+        byte[] serializedValue = PropertySerializer.serialize(value);
+        if (serializedValue == null) {
             return false;
         }
+        updateCmd.addProperty(diff, serializedValue);
+        return true;
     }
 }
@@ -29,6 +29,10 @@ import org.apache.axis2.context.ConfigurationContext;
 public class DeleteServiceGroupStateCommand extends StateClusteringCommand {
     private String serviceGroupContextId;
 
+    public String getServiceGroupContextId() {
+        return serviceGroupContextId;
+    }
+
     public void setServiceGroupContextId(String serviceGroupContextId) {
         this.serviceGroupContextId = serviceGroupContextId;
     }
@@ -24,6 +24,7 @@ import org.apache.axis2.clustering.state.StateClusteringCommand;
 import org.apache.axis2.context.PropertyDifference;
 
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 
@@ -32,6 +33,9 @@ public abstract class UpdateStateCommand extends StateClusteringCommand {
 
     protected PropertyUpdater propertyUpdater = new PropertyUpdater();
 
+    // the Java serialized values of the properties, reused by the ZkBinarySerializer only
+    private transient Map<String, byte[]> serializedValues;
+
     public boolean isPropertiesEmpty() {
         if (propertyUpdater.getProperties() == null) {
             propertyUpdater.setProperties(new HashMap());
@@ -45,5 +49,39 @@ public abstract class UpdateStateCommand extends StateClusteringCommand {
             propertyUpdater.setProperties(new HashMap());
         }                                        
         propertyUpdater.addContextProperty(diff);
+        if (serializedValues != null) {
+            serializedValues.remove(diff.getKey());
+        }
+    }
+
+    /**
+     * Adds a property along with its value serialized with Java serialization
+     *
+     * @param diff            the property
+     * @param serializedValue the serialized value of the property
+     */
+    public void addProperty(PropertyDifference diff, byte[] serializedValue) {
+        addProperty(diff);
+        if (serializedValues == null) {
+            serializedValues = new HashMap<String, byte[]>();
+        }
+        serializedValues.put(diff.getKey(), serializedValue);
+    }
+
+    /**
+     * @param key the name of the property
+     * @return the value of the property serialized with Java serialization, null if it has not
+     *         been serialized when the property was added
+     */
+    public byte[] getSerializedValue(String key) {
+        return serializedValues == null ? null : serializedValues.get(key);
+    }
+
+    public Map getProperties() {
+        return propertyUpdater.getProperties();
+    }
+
+    public void setProperties(Map properties) {
+        propertyUpdater.setProperties(properties);
     }
 }
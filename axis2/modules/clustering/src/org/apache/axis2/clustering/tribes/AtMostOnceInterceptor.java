@@ -24,82 +24,57 @@ import org.apache.catalina.tribes.group.ChannelInterceptorBase;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Message interceptor for handling at-most-once message processing semantics
+ * <p/>
+ * The ids of the received messages are kept in a {@link ReceivedMessageWindow}, so receiving
+ * threads do not contend on a lock and expired ids are dropped a generation at a time instead
+ * of by a periodic scan.
  */
 public final class AtMostOnceInterceptor extends ChannelInterceptorBase {
 
     private static Log log = LogFactory.getLog(AtMostOnceInterceptor.class);
-    private static final Map<MessageId, Long> receivedMessages =
-            new HashMap<MessageId, Long>();
 
     /**
-     * The time a message lives in the receivedMessages Map
+     * The time a message lives in the receivedMessages window
      */
     private static final int TIMEOUT = 5 * 60 * 1000;
 
-    public AtMostOnceInterceptor() {
-        Thread cleanupThread = new Thread(new MessageCleanupTask());
-        cleanupThread.setPriority(Thread.MIN_PRIORITY);
-        cleanupThread.start();
-    }
+    /**
+     * The number of generations the window is split into
+     */
+    private static final int GENERATIONS = 5;
+
+    private static final ReceivedMessageWindow<MessageId> receivedMessages =
+            new ReceivedMessageWindow<MessageId>(TIMEOUT, GENERATIONS);
 
     public void messageReceived(ChannelMessage msg) {
         if (okToProcess(msg.getOptions())) {
-            synchronized (receivedMessages) {
-                MessageId msgId = new MessageId(msg.getUniqueId());
-                if (receivedMessages.get(msgId) == null) {  // If it is a new message, keep track of it
-                    receivedMessages.put(msgId, System.currentTimeMillis());
-                    super.messageReceived(msg);
-                } else {  // If it is a duplicate message, discard it. i.e. dont call super.messageReceived
-                    log.info("Duplicate message received from " + TribesUtil.getName(msg.getAddress()));
-                }
+            MessageId msgId = new MessageId(msg.getUniqueId());
+            if (receivedMessages.add(msgId, System.currentTimeMillis())) {  // If it is a new message, keep track of it
+                super.messageReceived(msg);
+            } else {  // If it is a duplicate message, discard it. i.e. dont call super.messageReceived
+                log.info("Duplicate message received from " + TribesUtil.getName(msg.getAddress()));
             }
         } else {
             super.messageReceived(msg);
         }
     }
 
-    private static class MessageCleanupTask implements Runnable {
-
-        public void run() {
-            while (true) { // This task should never terminate
-                try {
-                    Thread.sleep(TIMEOUT);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                try {
-                    List<MessageId> toBeRemoved = new ArrayList<MessageId>();
-                    Thread.yield();
-                    synchronized (receivedMessages) {
-                        for (MessageId msgId : receivedMessages.keySet()) {
-                            long arrivalTime = receivedMessages.get(msgId);
-                            if (System.currentTimeMillis() - arrivalTime >= TIMEOUT) {
-                                toBeRemoved.add(msgId);
-                                if (toBeRemoved.size() > 10000) { // Do not allow this thread to run for too long
-                                    break;
-                                }
-                            }
-                        }
-                        for (MessageId msgId : toBeRemoved) {
-                            receivedMessages.remove(msgId);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Cleaned up message ");
-                            }
-                        }
-                    }
-                } catch (Throwable e) {
-                    log.error("Exception occurred while trying to cleanup messages", e);
-                }
-            }
-        }
+    /**
+     * @return the number of duplicate messages discarded so far
+     */
+    public long getDuplicateCount() {
+        return receivedMessages.getDuplicateCount();
+    }
+
+    /**
+     * @return the number of message ids currently kept to detect duplicates
+     */
+    public int getReceivedMessageCount() {
+        return receivedMessages.size();
     }
 
     /**
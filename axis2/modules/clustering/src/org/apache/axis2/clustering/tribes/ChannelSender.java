@@ -22,6 +22,8 @@ package org.apache.axis2.clustering.tribes;
 import org.apache.axis2.clustering.ClusteringCommand;
 import org.apache.axis2.clustering.ClusteringFault;
 import org.apache.axis2.clustering.MessageSender;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
 import org.apache.catalina.tribes.ByteMessage;
 import org.apache.catalina.tribes.Channel;
 import org.apache.catalina.tribes.ChannelException;
@@ -33,7 +35,28 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Sends the clustering commands of this member to the group.
+ * <p/>
+ * By default every command is sent on the calling thread. When a send queue size is set, the
+ * commands are put on a bounded queue instead and a single sender thread takes them off the
+ * queue. The commands found on the queue at a time are sent in the order they were queued, state
+ * commands which follow each other are sent as one {@link StateClusteringCommandCollection}. The
+ * caller waits for its command to be sent if all members have to be kept in sync, otherwise it
+ * returns as soon as the command is queued. A full queue blocks the callers until the sender
+ * thread catches up.
+ */
 public class ChannelSender implements MessageSender {
 
     private static Log log = LogFactory.getLog(ChannelSender.class);
@@ -41,6 +64,13 @@ public class ChannelSender implements MessageSender {
     private boolean synchronizeAllMembers;
     private MembershipManager membershipManager;
 
+    private BlockingQueue<SendRequest> sendQueue;
+    private int maxBatchSize = TribesConstants.DEFAULT_SEND_BATCH_SIZE;
+    private Thread senderThread;
+    private volatile boolean running;
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong coalescedCommands = new AtomicLong();
+
     public ChannelSender(Channel channel,
                          MembershipManager membershipManager,
                          boolean synchronizeAllMembers) {
@@ -49,9 +79,231 @@ public class ChannelSender implements MessageSender {
         this.synchronizeAllMembers = synchronizeAllMembers;
     }
 
-    public synchronized void sendToGroup(ClusteringCommand msg,
+    /**
+     * Starts the sender thread. Commands are sent on the calling thread if this method is never
+     * called.
+     *
+     * @param queueSize    the maximum number of commands waiting to be sent
+     * @param maxBatchSize the maximum number of queued commands handled in one go
+     */
+    public synchronized void start(int queueSize, int maxBatchSize) {
+        if (running) {
+            return;
+        }
+        this.sendQueue = new LinkedBlockingQueue<SendRequest>(queueSize);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        running = true;
+        senderThread = new Thread(new Runnable() {
+            public void run() {
+                processQueue();
+            }
+        }, "Axis2ClusteringSender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    /**
+     * Sends the commands which are still queued and stops the sender thread. Commands are sent on
+     * the calling thread afterwards.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = senderThread;
+            senderThread = null;
+        }
+        try {
+            thread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<SendRequest> dropped = new ArrayList<SendRequest>();
+        sendQueue.drainTo(dropped);
+        for (SendRequest request : dropped) {
+            request.done(new ClusteringFault("Could not send " + request.command +
+                                             " since the sender has been stopped"));
+        }
+    }
+
+    public boolean isQueueing() {
+        return running;
+    }
+
+    /**
+     * @return the number of messages the sender thread sent to the group
+     */
+    public long getSentMessageCount() {
+        return sentMessages.get();
+    }
+
+    /**
+     * @return the number of commands the sender thread sent as part of a collection
+     */
+    public long getCoalescedCommandCount() {
+        return coalescedCommands.get();
+    }
+
+    public void sendToGroup(ClusteringCommand msg,
                             MembershipManager membershipManager,
                             int additionalOptions) throws ClusteringFault {
+        if (!running) {
+            send(msg, membershipManager, additionalOptions);
+            return;
+        }
+        Future<Void> result = sendToGroupAsync(msg, membershipManager, additionalOptions);
+        if (synchronizeAllMembers) {
+            waitFor(result);
+        }
+    }
+
+    public void sendToGroup(ClusteringCommand msg) throws ClusteringFault {
+         sendToGroup(msg, this.membershipManager, 0);
+    }
+
+    /**
+     * Queues a command to be sent to the group, see {@link #sendToGroup(ClusteringCommand)}
+     *
+     * @return a Future which completes once the command has been sent, and which fails with a
+     *         ClusteringFault if the command could not be sent
+     */
+    public Future<Void> sendToGroupAsync(ClusteringCommand msg) throws ClusteringFault {
+        return sendToGroupAsync(msg, this.membershipManager, 0);
+    }
+
+    public Future<Void> sendToGroupAsync(ClusteringCommand msg,
+                                         MembershipManager membershipManager,
+                                         int additionalOptions) throws ClusteringFault {
+        SendRequest request = new SendRequest(msg, membershipManager, additionalOptions);
+        if (!running) {
+            return sendNow(request);
+        }
+        BlockingQueue<SendRequest> queue = sendQueue;
+        try {
+            // the sender thread may be stopped while the queue is full
+            while (!queue.offer(request, 500, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return sendNow(request);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusteringFault("Interrupted while queueing " + msg, e);
+        }
+        // stop() may have drained the queue before the request was put, whoever removes the
+        // request from the queue completes it
+        if (!running && queue.remove(request)) {
+            return sendNow(request);
+        }
+        return request;
+    }
+
+    private SendRequest sendNow(SendRequest request) {
+        try {
+            send(request.command, request.membershipManager, request.options);
+            request.done(null);
+        } catch (ClusteringFault e) {
+            request.done(e);
+        }
+        return request;
+    }
+
+    private void waitFor(Future<Void> result) throws ClusteringFault {
+        try {
+            result.get(TribesConstants.SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusteringFault("Interrupted while sending a command to the group", e);
+        } catch (ExecutionException e) {
+            throw (ClusteringFault) e.getCause();
+        } catch (TimeoutException e) {
+            throw new ClusteringFault("Timed out while sending a command to the group", e);
+        }
+    }
+
+    private void processQueue() {
+        List<SendRequest> batch = new ArrayList<SendRequest>();
+        while (running || !sendQueue.isEmpty()) {
+            try {
+                SendRequest first = sendQueue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                sendQueue.drainTo(batch, maxBatchSize - 1);
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                log.error("Unexpected error while sending the queued commands", e);
+                for (SendRequest request : batch) {
+                    request.done(new ClusteringFault(e.getMessage()));
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends the given requests in order. Consecutive state commands with the same destination and
+     * options are sent as a single collection.
+     */
+    private void sendBatch(List<SendRequest> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            SendRequest first = batch.get(start);
+            int end = start + 1;
+            if (first.command instanceof StateClusteringCommand) {
+                while (end < batch.size() && batch.get(end).canJoin(first)) {
+                    end++;
+                }
+            }
+            List<SendRequest> run = batch.subList(start, end);
+            if (run.size() == 1) {
+                sendRequest(first);
+            } else {
+                List<StateClusteringCommand> commands =
+                        new ArrayList<StateClusteringCommand>(run.size());
+                for (SendRequest request : run) {
+                    commands.add((StateClusteringCommand) request.command);
+                }
+                try {
+                    send(new StateClusteringCommandCollection(commands),
+                         first.membershipManager, first.options);
+                    sentMessages.incrementAndGet();
+                    coalescedCommands.addAndGet(run.size());
+                    for (SendRequest request : run) {
+                        request.done(null);
+                    }
+                } catch (ClusteringFault e) {
+                    // one of the commands may not be serializable, do not let it fail the others
+                    for (SendRequest request : run) {
+                        sendRequest(request);
+                    }
+                }
+            }
+            start = end;
+        }
+    }
+
+    private void sendRequest(SendRequest request) {
+        try {
+            send(request.command, request.membershipManager, request.options);
+            sentMessages.incrementAndGet();
+            request.done(null);
+        } catch (ClusteringFault e) {
+            request.done(e);
+        }
+    }
+
+    private void send(ClusteringCommand msg,
+                      MembershipManager membershipManager,
+                      int additionalOptions) throws ClusteringFault {
         if (channel == null) {
             return;
         }
@@ -101,10 +353,6 @@ public class ChannelSender implements MessageSender {
         }
     }
 
-    public void sendToGroup(ClusteringCommand msg) throws ClusteringFault {
-         sendToGroup(msg, this.membershipManager, 0);
-    }
-
     private ByteMessage toByteMessage(ClusteringCommand msg) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         ObjectOutputStream out = new ObjectOutputStream(bos);
@@ -160,4 +408,64 @@ public class ChannelSender implements MessageSender {
             log.warn(message, e);
         }
     }
+
+    /**
+     * A command waiting on the send queue, completed by the sender thread
+     */
+    private static class SendRequest implements Future<Void> {
+
+        private final ClusteringCommand command;
+        private final MembershipManager membershipManager;
+        private final int options;
+        private final CountDownLatch sent = new CountDownLatch(1);
+        private volatile ClusteringFault fault;
+
+        SendRequest(ClusteringCommand command, MembershipManager membershipManager, int options) {
+            this.command = command;
+            this.membershipManager = membershipManager;
+            this.options = options;
+        }
+
+        boolean canJoin(SendRequest other) {
+            return command instanceof StateClusteringCommand &&
+                   membershipManager == other.membershipManager && options == other.options;
+        }
+
+        void done(ClusteringFault fault) {
+            this.fault = fault;
+            sent.countDown();
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return sent.getCount() == 0;
+        }
+
+        public Void get() throws InterruptedException, ExecutionException {
+            sent.await();
+            return result();
+        }
+
+        public Void get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!sent.await(timeout, unit)) {
+                throw new TimeoutException("Timed out while sending " + command);
+            }
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if (fault != null) {
+                throw new ExecutionException(fault);
+            }
+            return null;
+        }
+    }
 }
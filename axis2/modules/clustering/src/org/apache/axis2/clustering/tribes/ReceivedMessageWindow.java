@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.tribes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers the keys seen within a time window without locking and without a cleanup scan.
+ * <p/>
+ * The window is split into a ring of generations. A key is recorded in the generation of its
+ * arrival time and is known while that generation is in the ring. A generation which falls out
+ * of the window is dropped as a whole when its slot is reused, so expiring keys costs nothing per
+ * key and the number of remembered keys is bounded by the arrival rate times the window.
+ * <p/>
+ * A duplicate which arrives concurrently with the first copy, at the moment a new generation
+ * starts, may be missed.
+ */
+final class ReceivedMessageWindow<K> {
+
+    private final long generationSpan;
+    private final AtomicReferenceArray<Generation<K>> generations;
+
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * @param window          time in milliseconds a key is remembered for, at least
+     * @param generationCount number of generations the window is split into
+     */
+    ReceivedMessageWindow(long window, int generationCount) {
+        this.generationSpan = Math.max(1, window / generationCount);
+        // one more slot, so the oldest generation still covers the whole window
+        this.generations = new AtomicReferenceArray<Generation<K>>(generationCount + 1);
+    }
+
+    /**
+     * Records the given key
+     *
+     * @param key the key
+     * @param now the current time in milliseconds
+     * @return true if the key was not seen within the window
+     */
+    boolean add(K key, long now) {
+        long number = now / generationSpan;
+        Generation<K> current = getGeneration(number);
+        int count = generations.length();
+        for (int i = 1; i < count && i <= number; i++) {
+            Generation<K> older = generations.get((int) ((number - i) % count));
+            if (older != null && older.number == number - i && older.keys.containsKey(key)) {
+                duplicates.incrementAndGet();
+                return false;
+            }
+        }
+        if (current.keys.putIfAbsent(key, Boolean.TRUE) != null) {
+            duplicates.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the generation with the given number, replacing the expired generation in its slot
+     */
+    private Generation<K> getGeneration(long number) {
+        int slot = (int) (number % generations.length());
+        while (true) {
+            Generation<K> generation = generations.get(slot);
+            if (generation != null && generation.number == number) {
+                return generation;
+            }
+            if (generation != null && generation.number > number) {
+                // the clock of this thread is behind, the key goes into the newer generation
+                return generation;
+            }
+            Generation<K> created = new Generation<K>(number);
+            if (generations.compareAndSet(slot, generation, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * @return the number of duplicates detected so far
+     */
+    long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return the number of keys currently remembered, including the ones of generations which
+     *         expired but have not been replaced yet
+     */
+    int size() {
+        int size = 0;
+        for (int i = 0; i < generations.length(); i++) {
+            Generation<K> generation = generations.get(i);
+            if (generation != null) {
+                size += generation.keys.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Generation<K> {
+        private final long number;
+        private final ConcurrentMap<K, Boolean> keys = new ConcurrentHashMap<K, Boolean>();
+
+        private Generation(long number) {
+            this.number = number;
+        }
+    }
+}
@@ -202,6 +202,7 @@ public class TribesClusteringAgent implements ClusteringAgent {
         }
 
         setMaximumRetries();
+        startSender();
         configureMode(domain);
         configureMembershipScheme(domain, mode.getMembershipManagers());
         setMemberInfo();
@@ -441,6 +442,28 @@ public class TribesClusteringAgent implements ClusteringAgent {
         multiPointSender.setMaxRetryAttempts(maxRetries);
     }
 
+    /**
+     * Starts the sender thread of the ChannelSender if a send queue size has been configured
+     */
+    private void startSender() {
+        int queueSize = getIntParameter(TribesConstants.SEND_QUEUE_SIZE,
+                                        TribesConstants.DEFAULT_SEND_QUEUE_SIZE);
+        if (queueSize > 0) {
+            int batchSize = getIntParameter(TribesConstants.SEND_BATCH_SIZE,
+                                            TribesConstants.DEFAULT_SEND_BATCH_SIZE);
+            channelSender.start(queueSize, batchSize);
+            log.info("Sending clustering commands through a queue of size " + queueSize);
+        }
+    }
+
+    private int getIntParameter(String name, int defaultValue) {
+        Parameter param = getParameter(name);
+        if (param == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(((String) param.getValue()).trim());
+    }
+
     /**
      * A RequestBlockingHandler, which is an implementation of
      * {@link org.apache.axis2.engine.Handler} is added to the InFlow & InFaultFlow. This handler
@@ -787,6 +810,9 @@ public class TribesClusteringAgent implements ClusteringAgent {
      */
     public void shutdown() throws ClusteringFault {
         log.debug("Enter: TribesClusteringAgent::shutdown");
+        if (channelSender != null) {
+            channelSender.stop();
+        }
         if (channel != null) {
             try {
                 channel.removeChannelListener(rpcInitChannel);
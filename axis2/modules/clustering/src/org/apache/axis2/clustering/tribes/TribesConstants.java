@@ -63,4 +63,15 @@ public final class TribesConstants {
     public static final String BIND_ADDRESS = "bindAddress";
     public static final String TCP_LISTEN_PORT = "tcpListenPort";
     public static final String MAX_RETRIES = "maxRetries";
+
+    // Size of the queue of commands waiting for the sender thread, 0 sends on the calling thread
+    public static final String SEND_QUEUE_SIZE = "sendQueueSize";
+    public static final int DEFAULT_SEND_QUEUE_SIZE = 0;
+
+    // Maximum number of queued commands the sender thread takes off the queue at once
+    public static final String SEND_BATCH_SIZE = "sendBatchSize";
+    public static final int DEFAULT_SEND_BATCH_SIZE = 100;
+
+    // Time in milliseconds a caller keeping all members in sync waits for its queued command
+    public static final long SEND_TIMEOUT = 60000;
 }
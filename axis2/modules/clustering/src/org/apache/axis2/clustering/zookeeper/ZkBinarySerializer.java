@@ -0,0 +1,445 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.exception.ZkMarshallingError;
+import org.I0Itec.zkclient.serialize.SerializableSerializer;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.DeleteServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.DeleteServiceStateCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.axis2.clustering.state.commands.UpdateConfigurationStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateServiceStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateStateCommand;
+import org.apache.axis2.context.PropertyDifference;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A {@link ZkSerializer} with a compact, versioned binary encoding for the state commands and
+ * the {@link ZkMember}s stored in the ZooKeeper Quorum.
+ * <p/>
+ * Every record starts with a magic byte, the format version and a flags byte, followed by a type
+ * tag and the fields of the object. Property values of the common simple types are written
+ * directly, other values and objects without a binary encoding fall back to Java serialization.
+ * Records larger than the compression threshold are deflated. Data written with Java
+ * serialization, e.g. by members which do not use this serializer, is still read.
+ */
+public class ZkBinarySerializer implements ZkSerializer {
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 4096;
+
+    private static final byte MAGIC = (byte) 0xA2;
+    private static final byte VERSION = 1;
+
+    private static final byte FLAG_DEFLATED = 0x01;
+
+    // record types
+    private static final byte TYPE_SERIALIZED = 0;
+    private static final byte TYPE_UPDATE_CONFIGURATION = 1;
+    private static final byte TYPE_UPDATE_SERVICE_GROUP = 2;
+    private static final byte TYPE_UPDATE_SERVICE = 3;
+    private static final byte TYPE_DELETE_SERVICE_GROUP = 4;
+    private static final byte TYPE_DELETE_SERVICE = 5;
+    private static final byte TYPE_COMMAND_COLLECTION = 6;
+    private static final byte TYPE_MEMBER = 7;
+
+    // property value types
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INTEGER = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_FLOAT = 6;
+    private static final byte VALUE_SHORT = 7;
+    private static final byte VALUE_BYTE = 8;
+    private static final byte VALUE_BYTES = 9;
+    private static final byte VALUE_SERIALIZED = 10;
+    private static final byte VALUE_CHARACTER = 11;
+
+    private final SerializableSerializer javaSerializer = new SerializableSerializer();
+    private int compressionThreshold;
+
+    public ZkBinarySerializer() {
+        this(DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * @param compressionThreshold size in bytes above which records are deflated,
+     *                             a negative value disables compression
+     */
+    public ZkBinarySerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public byte[] serialize(Object data) throws ZkMarshallingError {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeObject(new DataOutputStream(body), data);
+
+            byte flags = 0;
+            byte[] bodyBytes = body.toByteArray();
+            if (compressionThreshold >= 0 && bodyBytes.length > compressionThreshold) {
+                ByteArrayOutputStream deflated = new ByteArrayOutputStream(bodyBytes.length / 2);
+                DeflaterOutputStream out = new DeflaterOutputStream(deflated);
+                out.write(bodyBytes);
+                out.close();
+                if (deflated.size() < bodyBytes.length) {
+                    bodyBytes = deflated.toByteArray();
+                    flags |= FLAG_DEFLATED;
+                }
+            }
+
+            byte[] record = new byte[bodyBytes.length + 3];
+            record[0] = MAGIC;
+            record[1] = VERSION;
+            record[2] = flags;
+            System.arraycopy(bodyBytes, 0, record, 3, bodyBytes.length);
+            return record;
+        } catch (IOException e) {
+            throw new ZkMarshallingError(e);
+        }
+    }
+
+    public Object deserialize(byte[] bytes) throws ZkMarshallingError {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length < 3 || bytes[0] != MAGIC) {
+            // written with Java serialization
+            return javaSerializer.deserialize(bytes);
+        }
+        if (bytes[1] > VERSION) {
+            throw new ZkMarshallingError("Unsupported record version " + bytes[1]);
+        }
+        try {
+            InputStream body = new ByteArrayInputStream(bytes, 3, bytes.length - 3);
+            if ((bytes[2] & FLAG_DEFLATED) != 0) {
+                body = new InflaterInputStream(body);
+            }
+            return readObject(new DataInputStream(body));
+        } catch (IOException e) {
+            throw new ZkMarshallingError(e);
+        }
+    }
+
+    private void writeObject(DataOutputStream out, Object data) throws IOException {
+        // subclasses of the known types may carry more state, keep them in Java serialization
+        Class<?> type = data == null ? null : data.getClass();
+        if (type == UpdateConfigurationStateCommand.class) {
+            out.writeByte(TYPE_UPDATE_CONFIGURATION);
+            writeProperties(out, (UpdateStateCommand) data);
+        } else if (type == UpdateServiceGroupStateCommand.class) {
+            UpdateServiceGroupStateCommand command = (UpdateServiceGroupStateCommand) data;
+            out.writeByte(TYPE_UPDATE_SERVICE_GROUP);
+            writeString(out, command.getServiceGroupName());
+            writeString(out, command.getServiceGroupContextId());
+            writeProperties(out, command);
+        } else if (type == UpdateServiceStateCommand.class) {
+            UpdateServiceStateCommand command = (UpdateServiceStateCommand) data;
+            out.writeByte(TYPE_UPDATE_SERVICE);
+            writeString(out, command.getServiceGroupName());
+            writeString(out, command.getServiceGroupContextId());
+            writeString(out, command.getServiceName());
+            writeProperties(out, command);
+        } else if (type == DeleteServiceGroupStateCommand.class) {
+            out.writeByte(TYPE_DELETE_SERVICE_GROUP);
+            writeString(out, ((DeleteServiceGroupStateCommand) data).getServiceGroupContextId());
+        } else if (type == DeleteServiceStateCommand.class) {
+            DeleteServiceStateCommand command = (DeleteServiceStateCommand) data;
+            out.writeByte(TYPE_DELETE_SERVICE);
+            writeString(out, command.getServiceGroupName());
+            writeString(out, command.getServiceGroupContextId());
+            writeString(out, command.getServiceName());
+        } else if (type == StateClusteringCommandCollection.class) {
+            List<StateClusteringCommand> commands =
+                    ((StateClusteringCommandCollection) data).getCommands();
+            out.writeByte(TYPE_COMMAND_COLLECTION);
+            writeLength(out, commands == null ? -1 : commands.size());
+            if (commands != null) {
+                for (StateClusteringCommand command : commands) {
+                    writeObject(out, command);
+                }
+            }
+        } else if (type == ZkMemberImpl.class) {
+            ZkMember member = (ZkMember) data;
+            out.writeByte(TYPE_MEMBER);
+            writeBytes(out, member.getZkHost());
+            writeString(out, member.getZkHostName());
+            UUID id = member.getZkNodeID();
+            out.writeBoolean(id != null);
+            if (id != null) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+            out.writeInt(member.getPort());
+            writeBytes(out, member.getDomain());
+            writeBytes(out, member.getPayLoad());
+        } else {
+            out.writeByte(TYPE_SERIALIZED);
+            writeBytes(out, javaSerializer.serialize(data));
+        }
+    }
+
+    private Object readObject(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_UPDATE_CONFIGURATION: {
+                UpdateConfigurationStateCommand command = new UpdateConfigurationStateCommand();
+                readProperties(in, command);
+                return command;
+            }
+            case TYPE_UPDATE_SERVICE_GROUP: {
+                UpdateServiceGroupStateCommand command = new UpdateServiceGroupStateCommand();
+                command.setServiceGroupName(readString(in));
+                command.setServiceGroupContextId(readString(in));
+                readProperties(in, command);
+                return command;
+            }
+            case TYPE_UPDATE_SERVICE: {
+                UpdateServiceStateCommand command = new UpdateServiceStateCommand();
+                command.setServiceGroupName(readString(in));
+                command.setServiceGroupContextId(readString(in));
+                command.setServiceName(readString(in));
+                readProperties(in, command);
+                return command;
+            }
+            case TYPE_DELETE_SERVICE_GROUP: {
+                DeleteServiceGroupStateCommand command = new DeleteServiceGroupStateCommand();
+                command.setServiceGroupContextId(readString(in));
+                return command;
+            }
+            case TYPE_DELETE_SERVICE: {
+                DeleteServiceStateCommand command = new DeleteServiceStateCommand();
+                command.setServiceGroupName(readString(in));
+                command.setServiceGroupContextId(readString(in));
+                command.setServiceName(readString(in));
+                return command;
+            }
+            case TYPE_COMMAND_COLLECTION: {
+                int size = readLength(in);
+                List<StateClusteringCommand> commands = null;
+                if (size >= 0) {
+                    commands = new ArrayList<StateClusteringCommand>(size);
+                    for (int i = 0; i < size; i++) {
+                        commands.add((StateClusteringCommand) readObject(in));
+                    }
+                }
+                return new StateClusteringCommandCollection(commands);
+            }
+            case TYPE_MEMBER: {
+                ZkMember member = new ZkMemberImpl();
+                member.setZkHost(readBytes(in));
+                member.setZkHostName(readString(in));
+                if (in.readBoolean()) {
+                    member.setZkNodeId(new UUID(in.readLong(), in.readLong()));
+                }
+                member.setPort(in.readInt());
+                member.setDomain(readBytes(in));
+                member.setPayLoad(readBytes(in));
+                return member;
+            }
+            case TYPE_SERIALIZED:
+                return javaSerializer.deserialize(readBytes(in));
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private void writeProperties(DataOutputStream out, UpdateStateCommand command)
+            throws IOException {
+        Map properties = command.getProperties();
+        writeLength(out, properties == null ? -1 : properties.size());
+        if (properties != null) {
+            for (Iterator iter = properties.values().iterator(); iter.hasNext();) {
+                PropertyDifference diff = (PropertyDifference) iter.next();
+                writeString(out, diff.getKey());
+                out.writeBoolean(diff.isRemoved());
+                writeValue(out, diff.getValue(), command.getSerializedValue(diff.getKey()));
+            }
+        }
+    }
+
+    private void readProperties(DataInputStream in, UpdateStateCommand command)
+            throws IOException {
+        int size = readLength(in);
+        if (size < 0) {
+            return;
+        }
+        Map<String, PropertyDifference> properties = new HashMap<String, PropertyDifference>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            boolean removed = in.readBoolean();
+            properties.put(key, new PropertyDifference(key, readValue(in), removed));
+        }
+        command.setProperties(properties);
+    }
+
+    /**
+     * @param serializedValue the value serialized with Java serialization when the command was
+     *                        built, null if it has to be serialized here
+     */
+    private void writeValue(DataOutputStream out, Object value, byte[] serializedValue)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(VALUE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(VALUE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(VALUE_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(VALUE_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else {
+            out.writeByte(VALUE_SERIALIZED);
+            writeBytes(out, serializedValue != null ? serializedValue : javaSerializer.serialize(value));
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_FLOAT:
+                return in.readFloat();
+            case VALUE_SHORT:
+                return in.readShort();
+            case VALUE_BYTE:
+                return in.readByte();
+            case VALUE_CHARACTER:
+                return in.readChar();
+            case VALUE_BYTES:
+                return readBytes(in);
+            case VALUE_SERIALIZED:
+                return javaSerializer.deserialize(readBytes(in));
+            default:
+                throw new IOException("Unknown property value type " + type);
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes("UTF-8"));
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, "UTF-8");
+    }
+
+    private void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            writeLength(out, -1);
+        } else {
+            writeLength(out, value.length);
+            out.write(value);
+        }
+    }
+
+    private byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readLength(in);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes a length, or -1 for null, as a variable length integer of 7 bits per byte
+     */
+    private void writeLength(DataOutputStream out, int length) throws IOException {
+        int value = length + 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private int readLength(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value - 1;
+            }
+        }
+        throw new IOException("Malformed length");
+    }
+}
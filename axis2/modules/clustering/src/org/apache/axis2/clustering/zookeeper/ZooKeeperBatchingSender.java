@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.exception.ZkMarshallingError;
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ZooKeeperSender} which accumulates state commands for a short window and publishes
+ * them as a single {@link StateClusteringCommandCollection} command node.
+ * <p/>
+ * A batch is published when the window expires, when it holds the maximum number of commands,
+ * or when {@link #flush()} is called. A batch whose serialized form is larger than the maximum
+ * number of bytes is split, so a command node never grows past the ZooKeeper node size limit.
+ * Commands other than state commands flush the pending batch and are sent immediately, so the
+ * order of the commands sent through this sender is preserved.
+ * With command shards, a batch is published as one command node per shard it touches.
+ */
+public class ZooKeeperBatchingSender extends ZooKeeperSender {
+
+    private static final Log log = LogFactory.getLog(ZooKeeperBatchingSender.class);
+
+    private final long batchWindow;
+    private final int maxBatchCommands;
+    private final int maxBatchBytes;
+
+    private final Object batchLock = new Object();
+    private List<StateClusteringCommand> batch = new ArrayList<StateClusteringCommand>();
+    private ScheduledFuture<?> scheduledFlush;
+    private final ScheduledExecutorService flushScheduler;
+    private volatile boolean shutdown;
+
+    /**
+     * @param membershipManager ZooKeeperMembershipManager instance of the member
+     * @param batchWindow       time in milliseconds a command may wait before it is published
+     * @param maxBatchCommands  number of commands which triggers an immediate publish
+     * @param maxBatchBytes     maximum size of a published command node
+     */
+    public ZooKeeperBatchingSender(ZooKeeperMembershipManager membershipManager,
+                                   long batchWindow, int maxBatchCommands, int maxBatchBytes) {
+        super(membershipManager);
+        this.batchWindow = batchWindow;
+        this.maxBatchCommands = maxBatchCommands;
+        this.maxBatchBytes = maxBatchBytes;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ZooKeeperBatchingSender");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds state commands to the current batch, any other command is sent after the
+     * pending batch has been published
+     *
+     * @param msg - command object
+     */
+    public void sendToGroup(ClusteringCommand msg) throws ClusteringFault {
+        synchronized (batchLock) {
+            if (shutdown || !(msg instanceof StateClusteringCommand)) {
+                publish(takeBatch());
+                super.sendToGroup(msg);
+                return;
+            }
+            batch.add((StateClusteringCommand) msg);
+            if (batch.size() >= maxBatchCommands) {
+                publish(takeBatch());
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flushScheduler.schedule(new Runnable() {
+                    public void run() {
+                        try {
+                            flush();
+                        } catch (ClusteringFault e) {
+                            log.error("Could not publish the command batch", e);
+                        }
+                    }
+                }, batchWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Publishes the pending batch
+     *
+     * @throws ClusteringFault if the batch could not be published
+     */
+    public void flush() throws ClusteringFault {
+        synchronized (batchLock) {
+            publish(takeBatch());
+        }
+    }
+
+    /**
+     * Publishes the pending batch and stops the flush timer. Commands sent after the
+     * shutdown are published immediately.
+     *
+     * @throws ClusteringFault if the batch could not be published
+     */
+    public void shutdown() throws ClusteringFault {
+        synchronized (batchLock) {
+            shutdown = true;
+            publish(takeBatch());
+        }
+        flushScheduler.shutdownNow();
+    }
+
+    private List<StateClusteringCommand> takeBatch() {
+        List<StateClusteringCommand> commands = batch;
+        batch = new ArrayList<StateClusteringCommand>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return commands;
+    }
+
+    /**
+     * Publishes the given commands as one command node per command log
+     *
+     * @param commands commands in the order they were sent
+     * @throws ClusteringFault if the commands could not be serialized
+     */
+    private void publish(List<StateClusteringCommand> commands) throws ClusteringFault {
+        if (commands.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, List<StateClusteringCommand>> entry : routeCommands(commands).entrySet()) {
+            publish(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Publishes the given commands as one command node, splitting them when the serialized
+     * collection is larger than the maximum batch size
+     *
+     * @param logName  name of the command log the commands are published to
+     * @param commands commands in the order they were sent
+     * @throws ClusteringFault if the commands could not be serialized
+     */
+    private void publish(String logName, List<StateClusteringCommand> commands)
+            throws ClusteringFault {
+        ClusteringCommand command = commands.size() == 1 ? commands.get(0)
+                : new StateClusteringCommandCollection(commands);
+        byte[] data;
+        try {
+            data = ZooKeeperUtils.getSerializer().serialize(command);
+        } catch (ZkMarshallingError e) {
+            throw new ClusteringFault("Error occurred while serializing " + command, e);
+        }
+        if (data.length > maxBatchBytes && commands.size() > 1) {
+            int half = commands.size() / 2;
+            publish(logName, new ArrayList<StateClusteringCommand>(commands.subList(0, half)));
+            publish(logName, new ArrayList<StateClusteringCommand>(commands.subList(half, commands.size())));
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Publishing " + commands.size() + " commands in " + data.length + " bytes");
+        }
+        ZooKeeperUtils.createCommandZNode(data, logName);
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.axis2.clustering.zookeeper;
 
 import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
 import org.apache.axiom.om.OMAttribute;
 import org.apache.axiom.om.OMElement;
 import org.apache.axis2.AxisFault;
@@ -64,6 +65,18 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 	private final HashMap<String, Parameter> parameters;
 	private int commandDeleteThreshold;
 	private int commandUpdateThreshold;
+	private int commandQueueSize = ZooKeeperConstants.DEFAULT_COMMAND_QUEUE_SIZE;
+	private long commandSweepInterval = ZooKeeperConstants.DEFAULT_COMMAND_SWEEP_INTERVAL;
+	private int commandFetchWindow = ZooKeeperConstants.DEFAULT_COMMAND_FETCH_WINDOW;
+	private long commandBatchWindow = ZooKeeperConstants.DEFAULT_COMMAND_BATCH_WINDOW;
+	private int commandBatchMaxCommands = ZooKeeperConstants.DEFAULT_COMMAND_BATCH_MAX_COMMANDS;
+	private int commandBatchMaxBytes = ZooKeeperConstants.DEFAULT_COMMAND_BATCH_MAX_BYTES;
+	private ZooKeeperSender stateSender;
+	private int snapshotInterval = ZooKeeperConstants.DEFAULT_SNAPSHOT_INTERVAL;
+	private ZooKeeperSnapshotManager snapshotManager;
+	private long stateFlushInterval = ZooKeeperConstants.DEFAULT_STATE_FLUSH_INTERVAL;
+	private int commandShards = ZooKeeperConstants.DEFAULT_COMMAND_SHARDS;
+	private List<ZooKeeperCommandListener> shardListeners = new ArrayList<ZooKeeperCommandListener>();
 
 	private ConfigurationContext configurationContext;
 
@@ -145,6 +158,7 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 
 		// blocks until initialization completes
 		addRequestBlockingHandlerToInFlows();
+		setZkSerializer();
 		setZkConnection();
 
 		// get context and domain name
@@ -157,6 +171,14 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		setCommandThresholdParams();
 		log.info("command Delete Threshold : " + commandDeleteThreshold);
 		log.info("command Update Threshold : " + commandUpdateThreshold);
+		setCommandProcessorParams();
+		log.info("command Queue Size : " + commandQueueSize);
+		log.info("command Sweep Interval : " + commandSweepInterval);
+		log.info("command Fetch Window : " + commandFetchWindow);
+		log.info("command Batch Window : " + commandBatchWindow);
+		log.info("snapshot Interval : " + snapshotInterval);
+		log.info("state Flush Interval : " + stateFlushInterval);
+		log.info("command Shards : " + commandShards);
 
 		// Initialize ZooKeeper nodes
 		ZkMember zkm = new ZkMemberImpl();
@@ -164,12 +186,36 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		InitializeZooKeeperNodes(new String(domain));
 		primaryMembershipManager.setLocalMember(zkm);
 
+		// snapshots are only taken of the replicated context state, they record the position
+		// in the command node of the domain only and cannot cover the command shards
+		if (commandShards > 0 && snapshotInterval > 0) {
+			log.warn("Snapshots are disabled, they are not supported with command shards");
+		} else if (contextManager != null && snapshotInterval > 0) {
+			snapshotManager = new ZooKeeperSnapshotManager(primaryMembershipManager,
+					configurationContext, snapshotInterval);
+		}
+
 		// initialize command subscribers
 		ZooKeeperCommandSubscriber zooKeeperCommandSubscriber = new ZooKeeperCommandSubscriber(contextManager,
 				configurationContext, configurationManager, primaryMembershipManager);
-		zooKeeperCommandSubscriber.startRecieve(commandDeleteThreshold, commandUpdateThreshold);
-		final ZooKeeperSender sender = new ZooKeeperSender(primaryMembershipManager);
-		contextManager.setSender(sender);
+		axis2CommandChildListener = zooKeeperCommandSubscriber.startRecieve(commandDeleteThreshold,
+				commandUpdateThreshold, commandQueueSize, commandSweepInterval, commandFetchWindow,
+				snapshotManager);
+		if (commandShards > 0) {
+			shardListeners = zooKeeperCommandSubscriber.startRecieveShards(commandShards,
+					commandDeleteThreshold, commandUpdateThreshold, commandQueueSize,
+					commandSweepInterval, commandFetchWindow);
+		}
+		if (commandBatchWindow > 0) {
+			stateSender = new ZooKeeperBatchingSender(primaryMembershipManager, commandBatchWindow,
+					commandBatchMaxCommands, commandBatchMaxBytes);
+		} else {
+			stateSender = new ZooKeeperSender(primaryMembershipManager);
+		}
+		stateSender.setCommandShards(commandShards);
+		contextManager.setSender(stateSender);
+		contextManager.setFlushInterval(stateFlushInterval);
+		contextManager.setConfigurationContext(configurationContext);
 
 		// initialize command receiver
 		axis2CommandReceiver = new ZooKeeperCommandSubscriber(primaryMembershipManager);
@@ -196,9 +242,9 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		}
 
 		// If context replication is enabled, get the latest state from a
-		// neighbour
+		// neighbour, unless it has been restored from a snapshot
 
-		if (contextManager != null) {
+		if (contextManager != null && (snapshotManager == null || !snapshotManager.isRestored())) {
 			try {
 				initializeSystem(new GetStateCommand());
 			} catch (ClusteringFault e) {
@@ -224,8 +270,22 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 	}
 
 	public void shutdown() throws ClusteringFault {
-		// TODO Auto-generated method stub
-
+		if (contextManager != null) {
+			contextManager.shutdown();
+		}
+		if (stateSender instanceof ZooKeeperBatchingSender) {
+			((ZooKeeperBatchingSender) stateSender).shutdown();
+		}
+		if (axis2CommandChildListener != null) {
+			axis2CommandChildListener.stop();
+		}
+		for (ZooKeeperCommandListener shardListener : shardListeners) {
+			shardListener.stop();
+		}
+		if (snapshotManager != null) {
+			snapshotManager.stop();
+		}
+		ZooKeeperUtils.closeAsyncConnection();
 	}
 
 	public void setConfigurationContext(ConfigurationContext configurationContext) {
@@ -236,7 +296,16 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		this.members = members;
 	}
 
+	/**
+	 * Returns the members of the domain as seen through the ZooKeeper member watch, or the
+	 * members which were set if the agent has not been initialized yet
+	 *
+	 * @return the members, the list is not modifiable once the agent is initialized
+	 */
 	public List<Member> getMembers() {
+		if (primaryMembershipManager != null) {
+			return primaryMembershipManager.getAxis2Members();
+		}
 		return this.members;
 	}
 
@@ -422,6 +491,37 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		}
 	}
 
+	/**
+	 * Sets the serializer used for the command and member nodes. The
+	 * "zkSerializer" parameter holds the class name of a ZkSerializer, Java
+	 * serialization is used if it is not given.
+	 *
+	 * @throws ClusteringFault if the serializer cannot be instantiated
+	 */
+	private void setZkSerializer() throws ClusteringFault {
+		Parameter serializerParam = parameters.get(ZooKeeperConstants.ZK_SERIALIZER);
+		if (serializerParam == null) {
+			return;
+		}
+		String clazz = ((String) serializerParam.getValue()).trim();
+		ZkSerializer serializer;
+		try {
+			serializer = (ZkSerializer) Class.forName(clazz).newInstance();
+		} catch (Exception e) {
+			String msg = "Cannot instantiate ZkSerializer " + clazz;
+			log.error(msg, e);
+			throw new ClusteringFault(msg, e);
+		}
+
+		Parameter thresholdParam = parameters.get(ZooKeeperConstants.COMPRESSION_THRESHOLD);
+		if (thresholdParam != null && serializer instanceof ZkBinarySerializer) {
+			((ZkBinarySerializer) serializer).setCompressionThreshold(
+					Integer.parseInt(((String) thresholdParam.getValue()).trim()));
+		}
+		log.info("ZooKeeper serializer : " + clazz);
+		ZooKeeperUtils.setSerializer(serializer);
+	}
+
 	// Sets ZooKeeper connection to connect to ZooKeeper server
 	private void setZkConnection() {
 		Parameter paramZkServers = parameters.get("zookeeperServers");
@@ -500,9 +600,8 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 	public void addGroupManagementAgent(GroupManagementAgent arg0, String arg1, String arg2) {
 	}
 
-	// Not used in ZooKeeper based implementation
 	public int getAliveMemberCount() {
-		return 0;
+		return primaryMembershipManager == null ? 0 : primaryMembershipManager.getAliveMemberCount();
 	}
 
 	// Not used in ZooKeeper based implementation
@@ -536,6 +635,57 @@ public class ZooKeeperClusteringAgent implements ClusteringAgent {
 		}
 	}
 	
+	/**
+	 * Sets the command processing queue size, catch-up sweep interval, fetch window,
+	 * command batching limits and snapshot interval
+	 */
+	private void setCommandProcessorParams() {
+		Parameter queueSize = parameters.get(ZooKeeperConstants.COMMAND_QUEUE_SIZE);
+		if (queueSize != null) {
+			commandQueueSize = Integer.parseInt(((String) queueSize.getValue()).trim());
+		}
+
+		Parameter sweepInterval = parameters.get(ZooKeeperConstants.COMMAND_SWEEP_INTERVAL);
+		if (sweepInterval != null) {
+			commandSweepInterval = Long.parseLong(((String) sweepInterval.getValue()).trim());
+		}
+
+		Parameter fetchWindow = parameters.get(ZooKeeperConstants.COMMAND_FETCH_WINDOW);
+		if (fetchWindow != null) {
+			commandFetchWindow = Integer.parseInt(((String) fetchWindow.getValue()).trim());
+		}
+
+		Parameter batchWindow = parameters.get(ZooKeeperConstants.COMMAND_BATCH_WINDOW);
+		if (batchWindow != null) {
+			commandBatchWindow = Long.parseLong(((String) batchWindow.getValue()).trim());
+		}
+
+		Parameter batchMaxCommands = parameters.get(ZooKeeperConstants.COMMAND_BATCH_MAX_COMMANDS);
+		if (batchMaxCommands != null) {
+			commandBatchMaxCommands = Integer.parseInt(((String) batchMaxCommands.getValue()).trim());
+		}
+
+		Parameter batchMaxBytes = parameters.get(ZooKeeperConstants.COMMAND_BATCH_MAX_BYTES);
+		if (batchMaxBytes != null) {
+			commandBatchMaxBytes = Integer.parseInt(((String) batchMaxBytes.getValue()).trim());
+		}
+
+		Parameter snapshotIntervalParam = parameters.get(ZooKeeperConstants.SNAPSHOT_INTERVAL);
+		if (snapshotIntervalParam != null) {
+			snapshotInterval = Integer.parseInt(((String) snapshotIntervalParam.getValue()).trim());
+		}
+
+		Parameter flushIntervalParam = parameters.get(ZooKeeperConstants.STATE_FLUSH_INTERVAL);
+		if (flushIntervalParam != null) {
+			stateFlushInterval = Long.parseLong(((String) flushIntervalParam.getValue()).trim());
+		}
+
+		Parameter shardsParam = parameters.get(ZooKeeperConstants.COMMAND_SHARDS);
+		if (shardsParam != null) {
+			commandShards = Integer.parseInt(((String) shardsParam.getValue()).trim());
+		}
+	}
+
 	/**
 	 * initializes the system by getting the current state of the existing members of the cluster
 	 * @param command the command to be executed
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.exception.ZkException;
+import org.I0Itec.zkclient.exception.ZkInterruptedException;
+import org.I0Itec.zkclient.serialize.ZkSerializer;
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.zookeeper.KeeperException;
+import org.pokura.zkclient.async.IZkAsyncConnection;
+import org.pokura.zkclient.async.ZkFuture;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads a sequence of command nodes with asynchronous getData calls, keeping a bounded window
+ * of reads in flight, and hands the commands out strictly in sequence order.
+ * <p/>
+ * A node which has been deleted in the meantime is skipped instead of being probed with
+ * exists() first. Any other failure is thrown from {@link #next()}, the commands handed out
+ * before the failure have already been returned and the remaining ones are picked up by the
+ * next pass of the command listener.
+ */
+class ZooKeeperCommandFetcher {
+
+    private final IZkAsyncConnection connection;
+    private final ZkSerializer serializer;
+    private final String parentPath;
+    private final List<String> commandNames;
+    private final long timeout;
+    private final ZkFuture<byte[]>[] window;
+
+    // index of the next command to hand out and the next command to request
+    private int current = -1;
+    private int requested;
+    private byte[] data;
+
+    /**
+     * @param connection   ZooKeeper connection used for the asynchronous reads
+     * @param serializer   serializer the command nodes were written with
+     * @param parentPath   path of the command node
+     * @param commandNames names of the commands to read, in sequence order
+     * @param windowSize   maximum number of reads in flight
+     * @param timeout      time in milliseconds to wait for a single read
+     */
+    @SuppressWarnings("unchecked")
+    ZooKeeperCommandFetcher(IZkAsyncConnection connection, ZkSerializer serializer,
+                            String parentPath, List<String> commandNames, int windowSize,
+                            long timeout) {
+        this.connection = connection;
+        this.serializer = serializer;
+        this.parentPath = parentPath;
+        this.commandNames = commandNames;
+        this.timeout = timeout;
+        this.window = new ZkFuture[Math.max(1, windowSize)];
+    }
+
+    /**
+     * Moves to the next command which still exists in the Quorum
+     *
+     * @return false if there are no more commands
+     * @throws ZkException if a command could not be read
+     */
+    boolean next() {
+        while (++current < commandNames.size()) {
+            // keep the window full before waiting for the oldest read
+            try {
+                while (requested < commandNames.size() && requested - current < window.length) {
+                    window[requested % window.length] = connection.readData(
+                            parentPath + "/" + commandNames.get(requested), false);
+                    requested++;
+                }
+
+                ZkFuture<byte[]> result = window[current % window.length];
+                window[current % window.length] = null;
+                data = result.get(timeout, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (InterruptedException e) {
+                throw new ZkInterruptedException(e);
+            } catch (TimeoutException e) {
+                throw new ZkException("Timed out reading " + getCommandName());
+            } catch (ExecutionException e) {
+                // a command which has been compacted in the meantime is skipped
+                if (!(e.getCause() instanceof KeeperException)
+                        || ((KeeperException) e.getCause()).code() != KeeperException.Code.NONODE) {
+                    throw ZooKeeperUtils.toZkException(e);
+                }
+            } catch (IllegalStateException e) {
+                // the asynchronous connection is not connected
+                throw new ZkException(e);
+            }
+        }
+        data = null;
+        return false;
+    }
+
+    /**
+     * @return the name of the current command
+     */
+    String getCommandName() {
+        return commandNames.get(current);
+    }
+
+    /**
+     * @return the current command
+     * @throws org.I0Itec.zkclient.exception.ZkMarshallingError if the command cannot be read
+     */
+    ClusteringCommand getCommand() {
+        return (ClusteringCommand) serializer.deserialize(data);
+    }
+}
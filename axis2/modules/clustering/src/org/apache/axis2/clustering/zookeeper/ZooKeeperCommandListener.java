@@ -19,7 +19,8 @@
 package org.apache.axis2.clustering.zookeeper;
 
 import org.I0Itec.zkclient.IZkChildListener;
-import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.exception.ZkException;
+import org.I0Itec.zkclient.exception.ZkMarshallingError;
 import org.apache.axis2.clustering.ClusteringCommand;
 import org.apache.axis2.clustering.ClusteringFault;
 import org.apache.axis2.clustering.control.ControlCommand;
@@ -30,11 +31,36 @@ import org.apache.axis2.clustering.state.StateClusteringCommand;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pokura.zkclient.ZkChildTracker;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Listens to the command node of the domain, or of one of its shards, and applies the commands
+ * in sequence order.
+ * <p/>
+ * Child change notifications are not processed on the ZooKeeper event thread. They are handed
+ * to a single command processing thread with a bounded queue, so the commands are always applied
+ * in order and the number of threads does not depend on the rate of incoming commands. When a
+ * notification arrives while an earlier one is still waiting in the queue, only the latest child
+ * list is kept. A periodic catch-up sweep re-reads the command node once the listener has been
+ * idle for the sweep interval, so commands missed between two notifications are applied too.
+ * <p/>
+ * As both the notifications and the sweeps are coalesced, the queue holds at most one task of
+ * each kind. The queue size only matters when it is set to 1, in which case a notification
+ * arriving while a sweep is queued, or the other way round, is left to the next sweep.
+ */
 public class ZooKeeperCommandListener implements IZkChildListener {
 
     private static Log log = LogFactory.getLog(ZooKeeperCommandListener.class);
@@ -43,16 +69,29 @@ public class ZooKeeperCommandListener implements IZkChildListener {
     private ZooKeeperNodeManager nodeManager;
     private ZooKeeperMembershipManager zooKeeperMembershipManager;
     private Object syncObject = new Object();
-    private static Object deleteUpdateSync = new Object();
     private int commandDeleteThreshold;
     private int commandUpdateThreshold;
+    private long sweepInterval;
+    private int commandFetchWindow;
 
     String lastCommandName;
 
-    static long startTimeStatic;
+    // the latest child list which has not been picked up by the command processor yet
+    private final AtomicReference<ChildChange> pendingChange = new AtomicReference<ChildChange>();
+    // true while a catch-up sweep is waiting for the command processor
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+    private final ThreadPoolExecutor commandProcessor;
+    private final ScheduledExecutorService sweepScheduler;
+    private final ZooKeeperCommandHandler commandHandler;
+    // the command names seen so far, kept in sequence order between notifications
+    private final ZkChildTracker commandTracker = new ZkChildTracker();
+    private volatile long lastEventTime;
+    private ZooKeeperSnapshotManager snapshotManager;
+    // name of the command log this listener applies, the domain or one of its shards
+    private String commandLogName;
 
     /**
-     * Initializes the Command listener
+     * Initializes the Command listener with the default queue size and sweep interval
      *
      * @param lastCommandName      Last command in the command list
      * @param stateManager         ZooKeeperStateManager instance of the member
@@ -67,6 +106,36 @@ public class ZooKeeperCommandListener implements IZkChildListener {
                                     ZooKeeperMembershipManager membershipManager,
                                     int commandDeleteThreshold,
                                     int commandUpdateThreshold) {
+        this(lastCommandName, stateManager, configurationContext, nodeManager, membershipManager,
+                commandDeleteThreshold, commandUpdateThreshold,
+                ZooKeeperConstants.DEFAULT_COMMAND_QUEUE_SIZE,
+                ZooKeeperConstants.DEFAULT_COMMAND_SWEEP_INTERVAL,
+                ZooKeeperConstants.DEFAULT_COMMAND_FETCH_WINDOW);
+    }
+
+    /**
+     * Initializes the Command listener
+     *
+     * @param lastCommandName      Last command in the command list
+     * @param stateManager         ZooKeeperStateManager instance of the member
+     * @param configurationContext ConfigurationContext instance of the member
+     * @param nodeManager          ZooKeeperNodeManager instance of the member
+     * @param membershipManager    ZooKeeperMembershipManager instance of the member
+     * @param commandQueueSize     maximum number of tasks waiting for the command processor, at
+     *                             most two are ever queued, see the class documentation
+     * @param sweepInterval        idle time in milliseconds before the catch-up sweep runs
+     * @param commandFetchWindow   maximum number of command reads in flight
+     */
+    public ZooKeeperCommandListener(String lastCommandName,
+                                    ZooKeeperStateManager stateManager,
+                                    ConfigurationContext configurationContext,
+                                    ZooKeeperNodeManager nodeManager,
+                                    ZooKeeperMembershipManager membershipManager,
+                                    int commandDeleteThreshold,
+                                    int commandUpdateThreshold,
+                                    int commandQueueSize,
+                                    long sweepInterval,
+                                    int commandFetchWindow) {
         this.lastCommandName = lastCommandName;
         this.stateManager = stateManager;
         this.configurationContext = configurationContext;
@@ -74,187 +143,237 @@ public class ZooKeeperCommandListener implements IZkChildListener {
         this.zooKeeperMembershipManager = membershipManager;
         this.commandDeleteThreshold = commandDeleteThreshold;
         this.commandUpdateThreshold = commandUpdateThreshold;
-
+        this.sweepInterval = sweepInterval;
+        this.commandFetchWindow = commandFetchWindow;
+        this.commandHandler = new ZooKeeperCommandHandler();
+
+        // a single thread keeps the commands in order, the coalescing bounds the backlog
+        commandProcessor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(commandQueueSize),
+                new CommandThreadFactory("ZooKeeperCommandProcessor"),
+                new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        // the catch-up sweep picks up whatever this task would have applied, the
+                        // next notification or sweep has to be able to queue a task again
+                        if (r instanceof ChildChangeTask) {
+                            pendingChange.set(null);
+                        } else if (r instanceof SweepTask) {
+                            sweepPending.set(false);
+                        }
+                        if (!executor.isShutdown()) {
+                            log.warn("Command processing queue is full, deferring to the catch-up sweep");
+                        }
+                    }
+                });
+        sweepScheduler = Executors.newSingleThreadScheduledExecutor(
+                new CommandThreadFactory("ZooKeeperCommandSweeper"));
+        sweepScheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                // a sweep which is still waiting in the queue does the job
+                if (sweepPending.compareAndSet(false, true)) {
+                    commandProcessor.execute(new SweepTask());
+                }
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
     }
 
     /**
      * This method is called when a event id fired from the ZooKeeper Quorum
      */
     public void handleChildChange(String parentPath, List<String> currentChilds) {
-        // each event is handled by separate threads
-        new ZooKeeperCommandHandler(stateManager, configurationContext, nodeManager, zooKeeperMembershipManager,
-                parentPath, currentChilds, commandDeleteThreshold, commandUpdateThreshold).start();
+        lastEventTime = System.currentTimeMillis();
+        // coalesce with a notification which is still waiting to be processed
+        if (pendingChange.getAndSet(new ChildChange(parentPath, currentChilds)) == null) {
+            commandProcessor.execute(new ChildChangeTask());
+        }
     }
 
     /**
-     * Use a new thread to process each command
+     * Sets the snapshot manager which records the cursor of this member, takes the snapshots
+     * and compacts the command log. Has to be set before the listener is subscribed.
+     *
+     * @param snapshotManager the snapshot manager, null to keep the lastcommand entries
      */
-    class ZooKeeperCommandHandler extends Thread {
-
-        private ZooKeeperStateManager stateManager;
-        private ConfigurationContext configurationContext;
-        private ZooKeeperNodeManager nodeManager;
-        private ZooKeeperMembershipManager zooKeeperMembershipManager;
-        private String parentPath;
-        private List<String> currentChilds;
-        private int commandDeleteThreshold;
-        private int commandUpdateThreshold;
-
-        public ZooKeeperCommandHandler(ZooKeeperStateManager stateManager,
-                                       ConfigurationContext configurationContext,
-                                       ZooKeeperNodeManager nodeManager,
-                                       ZooKeeperMembershipManager membershipManager,
-                                       String parentPath, List<String> currentChilds,
-                                       int commandDeleteThreshold,
-                                       int commandUpdateThreshold) {
-            this.stateManager = stateManager;
-            this.configurationContext = configurationContext;
-            this.nodeManager = nodeManager;
-            this.zooKeeperMembershipManager = membershipManager;
-            this.parentPath = parentPath;
-            this.currentChilds = currentChilds;
-            this.commandDeleteThreshold = commandDeleteThreshold;
-            this.commandUpdateThreshold = commandUpdateThreshold;
-        }
+    public void setSnapshotManager(ZooKeeperSnapshotManager snapshotManager) {
+        this.snapshotManager = snapshotManager;
+    }
 
-        @Override
-        public void run() {
+    /**
+     * Sets the name of the command log this listener applies, see
+     * {@link ZooKeeperUtils#getShardName(String, int)}. Has to be set before the listener is
+     * subscribed.
+     *
+     * @param commandLogName the name of the command log, null for the command log of the domain
+     */
+    public void setCommandLogName(String commandLogName) {
+        this.commandLogName = commandLogName;
+    }
 
-            // call command processing method for each new command
-            long startTime = System.nanoTime();
-            startTimeStatic = startTime;
+    /**
+     * @return the name of the command log this listener applies
+     */
+    public String getCommandLogName() {
+        return commandLogName != null ? commandLogName : zooKeeperMembershipManager.getDomainName();
+    }
 
-            synchronized (syncObject) {
-                Collections.sort(currentChilds);
+    /**
+     * Stops the command processor and the catch-up sweep. Commands which are already queued are
+     * applied before the processor stops.
+     */
+    public void stop() {
+        sweepScheduler.shutdownNow();
+        commandProcessor.shutdown();
+        try {
+            if (!commandProcessor.awaitTermination(sweepInterval, TimeUnit.MILLISECONDS)) {
+                commandProcessor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            commandProcessor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                //ind the starting position of the unprocessed commands in the list
-                int id;
-                if (lastCommandName == null) {
-                    id = 0;
-                } else {
-                    id = currentChilds.indexOf(ZooKeeperUtils.commandNameofIndex(ZooKeeperUtils.getCommandID(lastCommandName))) + 1;
+    /**
+     * A child list received from the ZooKeeper Quorum
+     */
+    private static class ChildChange {
+        private final String parentPath;
+        private final List<String> currentChilds;
 
-                    if (id < currentChilds.size() && id > -1) {
+        private ChildChange(String parentPath, List<String> currentChilds) {
+            this.parentPath = parentPath;
+            this.currentChilds = currentChilds;
+        }
+    }
 
-                        if (ZooKeeperUtils.getCommandID(currentChilds.get(id)) <= ZooKeeperUtils.getCommandID(lastCommandName)) {
-                            id = -1;
-                        }
-                    }
+    /**
+     * Applies the latest pending child list
+     */
+    private class ChildChangeTask implements Runnable {
+        public void run() {
+            ChildChange change = pendingChange.getAndSet(null);
+            if (change != null) {
+                synchronized (syncObject) {
+                    commandHandler.processChildChange(change.parentPath, change.currentChilds);
                 }
+            }
+        }
+    }
 
-                //delete processed commands to reduce the size of the command list
-                if (currentChilds.size() > commandDeleteThreshold && id > -1) {
+    /**
+     * Applies the commands which were missed between notifications
+     */
+    private class SweepTask implements Runnable {
+        public void run() {
+            sweepPending.set(false);
+            if (System.currentTimeMillis() - lastEventTime < sweepInterval
+                    || pendingChange.get() != null) {
+                return;
+            }
+            synchronized (syncObject) {
+                try {
+                    commandHandler.timeoutCommandProcess();
+                } catch (Exception e) {
+                    log.error("Zkserver offline");
+                }
+            }
+        }
+    }
 
+    /**
+     * Creates the daemon threads used by the listener
+     */
+    private static class CommandThreadFactory implements ThreadFactory {
+        private final String name;
 
-                    String lastCommandPath = "/" + zooKeeperMembershipManager.getDomainName() + ZooKeeperConstants.LAST_COMMAND_BASE_NAME;
-                    String commandPath = "/" + zooKeeperMembershipManager.getDomainName() + ZooKeeperConstants.COMMANDS_BASE_NAME;
-                    if (ZooKeeperUtils.getZookeeper().exists(lastCommandPath)) {
+        private CommandThreadFactory(String name) {
+            this.name = name;
+        }
 
-                        ArrayList<String> lastCommandList = (ArrayList) ZooKeeperUtils.getZookeeper().getChildren(lastCommandPath);
-                        if (lastCommandList.size() > zooKeeperMembershipManager.getMembers().size()) {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 
+    /**
+     * Processes the commands on the command processor thread
+     */
+    class ZooKeeperCommandHandler {
 
-                            String deleteUpto = ZooKeeperUtils.getLastCommand(zooKeeperMembershipManager.getDomainName());
+        /**
+         * Applies the unprocessed commands of the given child list
+         *
+         * @param parentPath    path of the command node
+         * @param currentChilds the child list received with the event
+         */
+        public void processChildChange(String parentPath, List<String> currentChilds) {
 
-                            if (deleteUpto != null) {
-                                if (ZooKeeperUtils.getZookeeper().exists(commandPath + "/" + deleteUpto)) {
-                                    ArrayList<String> commandList = (ArrayList) ZooKeeperUtils.getZookeeper().getChildren(commandPath);
+            commandTracker.update(parentPath, currentChilds);
+            int commandCount = commandTracker.size(parentPath);
 
-                                    Collections.sort(lastCommandList);
-                                    Collections.sort(commandList);
+            //the unprocessed commands are the ones after the last processed command
+            List<String> newCommands = commandTracker.getChildrenAfter(parentPath, lastCommandName);
 
-                                    //delete the processed commands
-                                    for (int i = 0; i <= commandList.indexOf(deleteUpto); i++) {
-                                        try {
-                                            ZooKeeperUtils.getDirectZookeeper().delete(commandPath + "/" + commandList.get(i), -1, null, null);
-                                        } catch (Exception e) {
-                                            log.error(e.getMessage());
-                                        }
-                                    }
+            //delete processed commands to reduce the size of the command list, with snapshots
+            //the command log is compacted once a snapshot is stored instead
+            if (snapshotManager == null && commandCount > commandDeleteThreshold) {
 
-                                    //delete the already processed entry form the lastcommand list
-                                    try {
-                                        ZooKeeperUtils.getZookeeper().delete(lastCommandPath + "/" + lastCommandList.get(0));
-                                    } catch (Exception e) {
-                                        log.error(e.getMessage());
-                                    }
-                                    log.info("Commands deleted upto : " + deleteUpto);
-                                }
-                            }
-                        }
-                    }
-                }
 
-                if (id < currentChilds.size() && id > -1) {
+                String lastCommandPath = "/" + getCommandLogName() + ZooKeeperConstants.LAST_COMMAND_BASE_NAME;
+                String commandPath = "/" + getCommandLogName() + ZooKeeperConstants.COMMANDS_BASE_NAME;
+                if (ZooKeeperUtils.getZookeeper().exists(lastCommandPath)) {
 
-                    for (int i = id; i < currentChilds.size(); i++) {
+                    ArrayList<String> lastCommandList = (ArrayList) ZooKeeperUtils.getZookeeper().getChildren(lastCommandPath);
+                    if (lastCommandList.size() > zooKeeperMembershipManager.getMembers().size()) {
 
-                        String cmName = currentChilds.get(i);
 
-                        if (ZooKeeperUtils.getZookeeper().exists(parentPath + "/" + cmName)) {
-                            try {
-                                //read the data field byte array and create the command object
-                                ClusteringCommand cm = (ClusteringCommand) ZooKeeperUtils.getZookeeper()
-                                        .readData(parentPath + "/" + cmName);
+                        String deleteUpto = ZooKeeperUtils.getLastCommand(getCommandLogName());
 
-                                try {
-                                    //call process message method, set the last processed command
-                                    processMessage(cm);
-                                    lastCommandName = cmName;
-                                    log.info(cmName + " " + cm.toString() + " processed successfully by member : "
-                                            + zooKeeperMembershipManager.getLocalMember());
-                                } catch (ClusteringFault e) {
-                                    log.error(cmName + " " + cm.toString() + " processing failed : " + e.toString());
+                        if (deleteUpto != null) {
+                            if (ZooKeeperUtils.getZookeeper().exists(commandPath + "/" + deleteUpto)) {
+                                Collections.sort(lastCommandList);
 
+                                //delete the processed commands
+                                for (String processed : commandTracker.getChildrenUpTo(commandPath, deleteUpto)) {
+                                    ZooKeeperUtils.deleteZNode(commandPath + "/" + processed);
                                 }
-                            } catch (Exception e) {
-                                log.error(e.getMessage());
-                            }
-
-                        }
 
-                    }
-                    //update the lastCommand entry
-                    if (currentChilds.size() > commandUpdateThreshold) {
-                        String parentPath = "/" + zooKeeperMembershipManager.getDomainName() + ZooKeeperConstants.COMMANDS_BASE_NAME;
-                        String lastCommandParentPath = "/" + zooKeeperMembershipManager.getDomainName() + ZooKeeperConstants.LAST_COMMAND_BASE_NAME;
-
-                        if (ZooKeeperUtils.getZookeeper().exists(parentPath + "/" + lastCommandName) && !(ZooKeeperUtils.getZookeeper().exists(lastCommandParentPath + "/" + lastCommandName))) {
-                            try {
-                                //update the lastcommand node with the last processed command name
-                                ZooKeeperUtils.createLastCommandEntry(lastCommandName, zooKeeperMembershipManager.getDomainName());
-                                log.info("lastcommand entry updated with " + lastCommandName);
-                            } catch (Exception e) {
-                                log.info("lastcommand entry enrty " + lastCommandName + " exists");
+                                //delete the already processed entry form the lastcommand list
+                                try {
+                                    ZooKeeperUtils.getZookeeper().delete(lastCommandPath + "/" + lastCommandList.get(0));
+                                } catch (Exception e) {
+                                    log.error(e.getMessage());
+                                }
+                                log.info("Commands deleted upto : " + deleteUpto);
                             }
                         }
-
-
                     }
                 }
-
-
             }
 
+            if (!newCommands.isEmpty()) {
 
-            // wait specified time and check whether another command executed during that time
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                log.error(e.toString());
-            }
-
+                applyCommands(parentPath, newCommands);
+                //update the lastCommand entry
+                if (snapshotManager == null && commandCount > commandUpdateThreshold) {
+                    String commandParentPath = "/" + getCommandLogName() + ZooKeeperConstants.COMMANDS_BASE_NAME;
+                    String lastCommandParentPath = "/" + getCommandLogName() + ZooKeeperConstants.LAST_COMMAND_BASE_NAME;
 
-            synchronized (syncObject) {
-                if (startTime == startTimeStatic) {
-                    try {
-                        timeoutCommandProcess();
-                    } catch (Exception e) {
-                        log.error("Zkserver offline");
+                    if (ZooKeeperUtils.getZookeeper().exists(commandParentPath + "/" + lastCommandName) && !(ZooKeeperUtils.getZookeeper().exists(lastCommandParentPath + "/" + lastCommandName))) {
+                        try {
+                            //update the lastcommand node with the last processed command name
+                            ZooKeeperUtils.createLastCommandEntry(lastCommandName, getCommandLogName());
+                            log.info("lastcommand entry updated with " + lastCommandName);
+                        } catch (Exception e) {
+                            log.info("lastcommand entry enrty " + lastCommandName + " exists");
+                        }
                     }
+
+
                 }
             }
-
         }
 
 
@@ -262,57 +381,90 @@ public class ZooKeeperCommandListener implements IZkChildListener {
          * After the timeout if no other command events triggered executed the remaining commands
          */
         public void timeoutCommandProcess() {
-            String domainName = new String(zooKeeperMembershipManager.getDomain());
-            String commandPath = "/" + domainName
+            String commandPath = "/" + getCommandLogName()
                     + ZooKeeperConstants.COMMANDS_BASE_NAME;
 
             //fetch the current children list form Zookeeper
             List<String> currentChilds = ZooKeeperUtils.getZookeeper().getChildren(
                     commandPath);
-            Collections.sort(currentChilds);
+            commandTracker.update(commandPath, currentChilds);
 
-            int id;
-            if (lastCommandName == null) {
-                id = 0;
-            } else {
-                //find the starting index of the unprocessed commands in currentChilds list
-                id = currentChilds.indexOf(ZooKeeperUtils.commandNameofIndex(ZooKeeperUtils.getCommandID(lastCommandName))) + 1;
+            List<String> newCommands = commandTracker.getChildrenAfter(commandPath, lastCommandName);
+            if (!newCommands.isEmpty()) {
 
-                if (id < currentChilds.size() && id > -1) {
+                applyCommands(commandPath, newCommands);
+            }
+        }
 
-                    if (ZooKeeperUtils.getCommandID(currentChilds.get(id)) <= ZooKeeperUtils.getCommandID(lastCommandName)) {
-                        id = -1;
+        /**
+         * Reads the given commands with a window of asynchronous reads and applies them in
+         * sequence order
+         *
+         * @param commandPath  path of the command node
+         * @param commandNames names of the unprocessed commands in sequence order
+         */
+        private void applyCommands(String commandPath, List<String> commandNames) {
+            ZooKeeperCommandFetcher fetcher = new ZooKeeperCommandFetcher(
+                    ZooKeeperUtils.getAsyncConnection(), ZooKeeperUtils.getSerializer(),
+                    commandPath, commandNames, commandFetchWindow,
+                    ZooKeeperConstants.COMMAND_FETCH_TIMEOUT);
+            try {
+                while (fetcher.next()) {
+                    String cmName = fetcher.getCommandName();
+                    ClusteringCommand cm;
+                    try {
+                        cm = fetcher.getCommand();
+                    } catch (ZkMarshallingError e) {
+                        log.error(cmName + " could not be read : " + e.getMessage());
+                        continue;
+                    }
+                    try {
+                        //call process message method, set the last processed command
+                        processMessage(cm);
+                        lastCommandName = cmName;
+                        log.info(cmName + " " + cm.toString() + " processed successfully by member : "
+                                + zooKeeperMembershipManager.getLocalMember());
+                    } catch (ClusteringFault e) {
+                        log.error(cmName + " " + cm.toString() + " processing failed : " + e.toString());
+                    } catch (Exception e) {
+                        log.error(cmName + " " + cm.toString() + " processing failed : " + e.toString());
+                    }
+                    if (snapshotManager != null && snapshotManager.isSnapshotDue(cmName)) {
+                        takeSnapshot(commandPath);
                     }
                 }
+            } catch (ZkException e) {
+                // the remaining commands are applied by the next pass
+                log.error("Reading commands from " + commandPath + " failed : " + e.getMessage());
             }
+            if (snapshotManager != null) {
+                snapshotManager.updateCursor(lastCommandName);
+            }
+        }
 
-            if (id < currentChilds.size() && id > -1) {
-
-                for (int i = id; i < currentChilds.size(); i++) {
-
-                    ZkClient zk = ZooKeeperUtils.getZookeeper();
-                    String cmName = currentChilds.get(i);
-
-                    if (zk.exists(commandPath + "/" + cmName)) {
-                        try {
-                            ClusteringCommand cm = (ClusteringCommand) zk
-                                    .readData(commandPath + "/" + cmName);
-                            try {
-                                //call the message processing method, set the last processed command name
-                                processMessage(cm);
-                                lastCommandName = cmName;
-                                log.info(cmName + " " + cm.toString() + " processed successfully by member : "
-                                        + zooKeeperMembershipManager.getLocalMember());
-                            } catch (ClusteringFault e) {
-                                log.error(cmName + " " + cm.toString() + " processing failed : " + e.toString());
-                            }
-                        } catch (Exception e) {
-                            log.error(e.getMessage());
-                        }
-                    }
-
-
+        /**
+         * Stores a snapshot of the state up to the last processed command and deletes the
+         * commands which no live member needs anymore
+         *
+         * @param commandPath path of the command node
+         */
+        private void takeSnapshot(String commandPath) {
+            snapshotManager.updateCursor(lastCommandName);
+            long compactUpto;
+            try {
+                compactUpto = snapshotManager.takeSnapshot(lastCommandName);
+            } catch (ZkException e) {
+                log.error("Taking a snapshot at " + lastCommandName + " failed : " + e.getMessage());
+                return;
+            }
+            if (compactUpto >= 0) {
+                List<String> compacted = commandTracker.getChildrenUpTo(commandPath,
+                        ZooKeeperUtils.commandNameofIndex((int) compactUpto));
+                for (String processed : compacted) {
+                    ZooKeeperUtils.deleteZNode(commandPath + "/" + processed);
                 }
+                log.info(compacted.size() + " commands compacted upto : "
+                        + ZooKeeperUtils.commandNameofIndex((int) compactUpto));
             }
         }
 
@@ -334,8 +486,12 @@ public class ZooKeeperCommandListener implements IZkChildListener {
             }else if (command instanceof ControlCommand){
                 command.execute(configurationContext);
                 if(command instanceof GetStateCommand){
+                	// the state sender routes the state to the command shards of the contexts
+                	ZooKeeperSender sender = stateManager != null ? stateManager.getSender() : null;
+                	if (sender == null) {
+                		sender = new ZooKeeperSender(zooKeeperMembershipManager);
+                	}
                 	for (StateClusteringCommand cmd : ((GetStateCommand) command).getCommands()) {
-						ZooKeeperSender sender= new ZooKeeperSender(zooKeeperMembershipManager);
 						sender.sendToGroup(cmd);
 					}
                 }
@@ -22,6 +22,7 @@ import org.apache.axis2.context.ConfigurationContext;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 public class ZooKeeperCommandSubscriber {
 	private ZooKeeperStateManager stateManager;
@@ -55,22 +56,51 @@ public class ZooKeeperCommandSubscriber {
 		this.membershipManager = membershipManager;
 	}
 
+	/**
+	 * Sets the Command listeners with the default command queue size and sweep interval
+	 * @param cmdDelThreshold the command delete threshold
+	 * @param cmdUpdateThreshold the command update threshold
+	 * @return the listener subscribed to the command node
+	 */
+	public ZooKeeperCommandListener startRecieve(int cmdDelThreshold,int cmdUpdateThreshold) {
+		return startRecieve(cmdDelThreshold, cmdUpdateThreshold,
+				ZooKeeperConstants.DEFAULT_COMMAND_QUEUE_SIZE,
+				ZooKeeperConstants.DEFAULT_COMMAND_SWEEP_INTERVAL,
+				ZooKeeperConstants.DEFAULT_COMMAND_FETCH_WINDOW, null);
+	}
+
 	/**
 	 * Sets the Command listeners
 	 * @param cmdDelThreshold the command delete threshold
 	 * @param cmdUpdateThreshold the command update threshold
+	 * @param cmdQueueSize the maximum number of tasks waiting for the command processor, the
+	 *                     listener never queues more than two
+	 * @param cmdSweepInterval the idle time in milliseconds before the catch-up sweep runs
+	 * @param cmdFetchWindow the maximum number of command reads in flight
+	 * @param snapshotManager the snapshot manager to restore the state from and compact the
+	 *                        command log with, null to use the lastcommand entries
+	 * @return the listener subscribed to the command node
 	 */
-	public void startRecieve(int cmdDelThreshold,int cmdUpdateThreshold) {
+	public ZooKeeperCommandListener startRecieve(int cmdDelThreshold,int cmdUpdateThreshold,
+			int cmdQueueSize,long cmdSweepInterval,int cmdFetchWindow,
+			ZooKeeperSnapshotManager snapshotManager) {
 		String domainName = new String(membershipManager.getDomain());
 		String commandPath = "/" + domainName
 		+ ZooKeeperConstants.COMMANDS_BASE_NAME;
 
-        //get tha last executed command
-		String lastCommandName = getLastCommandName(commandPath);
-		ZooKeeperUtils.getZookeeper().subscribeChildChanges(
-				commandPath,
-				new ZooKeeperCommandListener(lastCommandName, stateManager,
-						configurationContext, nodeManager, membershipManager,cmdDelThreshold,cmdUpdateThreshold));
+        //restore the latest snapshot and continue after it, or skip to the last command
+		String lastCommandName = null;
+		if (snapshotManager != null) {
+			lastCommandName = snapshotManager.restore();
+		}
+		if (lastCommandName == null) {
+			lastCommandName = getLastCommandName(commandPath);
+		}
+		ZooKeeperCommandListener listener = new ZooKeeperCommandListener(lastCommandName, stateManager,
+				configurationContext, nodeManager, membershipManager,cmdDelThreshold,cmdUpdateThreshold,
+				cmdQueueSize,cmdSweepInterval,cmdFetchWindow);
+		listener.setSnapshotManager(snapshotManager);
+		ZooKeeperUtils.getZookeeper().subscribeChildChanges(commandPath, listener);
         //create a command node under the domain name if node not exist
 		if (!ZooKeeperUtils.getZookeeper().exists("/" + domainName
 				+ ZooKeeperConstants.LAST_COMMAND_BASE_NAME)) {
@@ -79,6 +109,40 @@ public class ZooKeeperCommandSubscriber {
 					+ ZooKeeperConstants.LAST_COMMAND_BASE_NAME);
 
 		}
+		return listener;
+	}
+
+	/**
+	 * Sets a Command listener on each command shard of the domain. The shards start at their
+	 * last command, their state is taken over with the rest of the state of the member.
+	 * @param shards the number of command shards
+	 * @param cmdDelThreshold the command delete threshold
+	 * @param cmdUpdateThreshold the command update threshold
+	 * @param cmdQueueSize the maximum number of tasks waiting for a command processor
+	 * @param cmdSweepInterval the idle time in milliseconds before the catch-up sweep runs
+	 * @param cmdFetchWindow the maximum number of command reads in flight per shard
+	 * @return the listeners subscribed to the shards, in shard order
+	 */
+	public List<ZooKeeperCommandListener> startRecieveShards(int shards, int cmdDelThreshold,
+			int cmdUpdateThreshold, int cmdQueueSize, long cmdSweepInterval, int cmdFetchWindow) {
+		String domainName = new String(membershipManager.getDomain());
+		List<ZooKeeperCommandListener> listeners = new ArrayList<ZooKeeperCommandListener>(shards);
+		for (int i = 0; i < shards; i++) {
+			String shardName = ZooKeeperUtils.getShardName(domainName, i);
+			String commandPath = "/" + shardName + ZooKeeperConstants.COMMANDS_BASE_NAME;
+			String lastCommandPath = "/" + shardName + ZooKeeperConstants.LAST_COMMAND_BASE_NAME;
+			// creating the parents tolerates nodes created by other members
+			ZooKeeperUtils.getZookeeper().createPersistent(commandPath, true);
+			ZooKeeperUtils.getZookeeper().createPersistent(lastCommandPath, true);
+			ZooKeeperCommandListener listener = new ZooKeeperCommandListener(
+					getLastCommandName(commandPath), stateManager, configurationContext,
+					nodeManager, membershipManager, cmdDelThreshold, cmdUpdateThreshold,
+					cmdQueueSize, cmdSweepInterval, cmdFetchWindow);
+			listener.setCommandLogName(shardName);
+			ZooKeeperUtils.getZookeeper().subscribeChildChanges(commandPath, listener);
+			listeners.add(listener);
+		}
+		return listeners;
 	}
 
 	/**
@@ -30,7 +30,46 @@ public class ZooKeeperConstants {
     public static final String COMMANDS_BASE_NAME = "/command";
     public static final String LAST_COMMAND_BASE_NAME = "/lastcommand";
     public static final String MEMBER_BASE_NAME = "/members";
+    public static final String SNAPSHOTS_BASE_NAME = "/snapshot";
+    public static final String SNAPSHOT_NAME = "snapshot";
+    public static final String CURSORS_BASE_NAME = "/cursors";
+    public static final String SHARDS_BASE_NAME = "/shards";
 
     public static final String LOCAL_MEMBER_HOST = "localMemberHost";
     public static final String LOCAL_MEMBER_PORT = "localMemberPort";
+
+    // the command listener coalesces its tasks and never queues more than two of them
+    public static final String COMMAND_QUEUE_SIZE = "commandQueueSize";
+    public static final String COMMAND_SWEEP_INTERVAL = "commandSweepInterval";
+
+    public static final String COMMAND_FETCH_WINDOW = "commandFetchWindow";
+
+    public static final String COMMAND_BATCH_WINDOW = "commandBatchWindow";
+    public static final String COMMAND_BATCH_MAX_COMMANDS = "commandBatchMaxCommands";
+    public static final String COMMAND_BATCH_MAX_BYTES = "commandBatchMaxBytes";
+
+    public static final String ZK_SERIALIZER = "zkSerializer";
+    public static final String COMPRESSION_THRESHOLD = "compressionThreshold";
+
+    public static final String SNAPSHOT_INTERVAL = "snapshotInterval";
+
+    public static final String STATE_FLUSH_INTERVAL = "stateFlushInterval";
+
+    public static final String COMMAND_SHARDS = "commandShards";
+
+    public static final int DEFAULT_COMMAND_QUEUE_SIZE = 1000;
+    public static final long DEFAULT_COMMAND_SWEEP_INTERVAL = 2000;
+    public static final int DEFAULT_COMMAND_FETCH_WINDOW = 64;
+    public static final long COMMAND_FETCH_TIMEOUT = 30000;
+    // commands are not batched unless a batch window is configured
+    public static final long DEFAULT_COMMAND_BATCH_WINDOW = 0;
+    public static final int DEFAULT_COMMAND_BATCH_MAX_COMMANDS = 100;
+    // stays below the default 1 MB jute.maxbuffer limit of a znode
+    public static final int DEFAULT_COMMAND_BATCH_MAX_BYTES = 512 * 1024;
+    // no snapshots are taken unless a snapshot interval is configured
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 0;
+    // context updates are sent immediately unless a flush interval is configured
+    public static final long DEFAULT_STATE_FLUSH_INTERVAL = 0;
+    // all commands go through the command node of the domain unless shards are configured
+    public static final int DEFAULT_COMMAND_SHARDS = 0;
 }
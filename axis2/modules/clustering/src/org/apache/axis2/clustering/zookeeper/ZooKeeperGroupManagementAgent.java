@@ -30,8 +30,8 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class used to initialize Group of different members and send commands
@@ -40,7 +40,8 @@ import java.util.List;
 public class ZooKeeperGroupManagementAgent implements GroupManagementAgent{
 
     private static final Log log = LogFactory.getLog(ZooKeeperGroupManagementAgent.class);
-    private final List<Member> members = new ArrayList<Member>();
+    // read by the load balancers on every request, changed only when members join or leave
+    private final CopyOnWriteArrayList<Member> members = new CopyOnWriteArrayList<Member>();
     private ZooKeeperMembershipManager membershipManager;
     private ZooKeeperSender zookeeperSender;
     private String description;
@@ -115,9 +116,7 @@ public class ZooKeeperGroupManagementAgent implements GroupManagementAgent{
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
-                if (!members.contains(member)) {
-                    members.add(member);
-                }
+                members.addIfAbsent(member);
                 log.info("Application member " + member + " joined application cluster");
             } else {
                 log.error("Could not add application member " + member);
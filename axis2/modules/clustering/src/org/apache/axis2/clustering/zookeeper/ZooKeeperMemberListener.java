@@ -18,43 +18,64 @@
  */
 package org.apache.axis2.clustering.zookeeper;
 
-import org.I0Itec.zkclient.IZkChildListener;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pokura.zkclient.IZkChildDeltaListener;
+import org.pokura.zkclient.ZkChildDelta;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
-public class ZooKeeperMemberListener implements IZkChildListener {
+/**
+ * Applies the members which joined or left the domain. It is subscribed through a
+ * {@link org.pokura.zkclient.ZkChildTracker}, so only the member nodes added since the last
+ * event are read from the Quorum.
+ */
+public class ZooKeeperMemberListener implements IZkChildDeltaListener {
 
 	private static Log log = LogFactory.getLog(ZooKeeperMemberListener.class);
 	private final ZooKeeperMembershipManager membershipManager;
+	// members read by this listener, by the name of their node
+	private final Map<String, ZkMember> knownMembers = new HashMap<String, ZkMember>();
 
 	public ZooKeeperMemberListener(ZooKeeperMembershipManager membershipManager) {
 		this.membershipManager = membershipManager;
 	}
 
-	public void handleChildChange(String parentPath, List<String> currentChilds)
-	throws Exception {
-		//TODO improve performance by making sure unwanted member objects are not retrieved
-		List<ZkMember> oldmembers = membershipManager.getMembers();
-		List<ZkMember> newmembers = ZooKeeperUtils.getZkMembers(currentChilds, parentPath);
-		if (newmembers.size()>oldmembers.size() ){
-			List<ZkMember> addedmembers = ZooKeeperUtils.getNewMembers(oldmembers, newmembers);
-			for (ZkMember zkMember : addedmembers) {
+	public void handleChildDelta(String parentPath, ZkChildDelta delta) throws Exception {
+		if (!delta.getAdded().isEmpty()) {
+			List<ZkMember> addedmembers = ZooKeeperUtils.getZkMembers(delta.getAdded(), parentPath);
+			for (int i = 0; i < addedmembers.size(); i++) {
+				ZkMember zkMember = addedmembers.get(i);
+				knownMembers.put(delta.getAdded().get(i), zkMember);
 				if (membershipManager.addMember(zkMember)) {
 					log.info("New member " + ZooKeeperUtils.getName(zkMember) + " joined cluster.");
 				}
 			}
-		}else if(newmembers.size()<oldmembers.size() ){
-			List<ZkMember> removemembers = ZooKeeperUtils.getNewMembers(newmembers,oldmembers);
-			for (ZkMember zkMember : removemembers) {
-				if (membershipManager.memberRemoved(zkMember)) {
-					log.info("Old member " + ZooKeeperUtils.getName(zkMember) + " left cluster.");
-				}
+		}
+		for (String nodeName : delta.getRemoved()) {
+			ZkMember zkMember = knownMembers.remove(nodeName);
+			if (zkMember == null) {
+				zkMember = findMember(nodeName);
+			}
+			if (zkMember != null && membershipManager.memberRemoved(zkMember)) {
+				log.info("Old member " + ZooKeeperUtils.getName(zkMember) + " left cluster.");
 			}
 		}
+	}
 
-
+	/**
+	 * Looks up a member which was known before this listener was subscribed, the member
+	 * nodes are named after the node id of the member
+	 */
+	private ZkMember findMember(String nodeName) {
+		try {
+			return membershipManager.getMember(UUID.fromString(nodeName));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
 	}
 
 }
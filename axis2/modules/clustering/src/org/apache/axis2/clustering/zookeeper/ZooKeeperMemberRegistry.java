@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import org.apache.axis2.clustering.Member;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local view of the members of a domain, keyed by the node id of the member.
+ * <p/>
+ * The Axis2 {@link Member} of a ZooKeeper member is decoded once, when the member is added.
+ * The registry is only changed from the member watch deltas, every change publishes new
+ * immutable member lists, so readers never lock and never copy.
+ */
+public class ZooKeeperMemberRegistry {
+
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<UUID, Entry>();
+
+    private volatile List<ZkMember> zkMembers = Collections.emptyList();
+    private volatile List<Member> members = Collections.emptyList();
+
+    /**
+     * Adds a member unless a member with the same node id is known
+     *
+     * @param zkMember the member
+     * @return the entry of the member, null if the member was already known
+     */
+    public Entry add(ZkMember zkMember) {
+        Entry entry = new Entry(zkMember);
+        if (entries.putIfAbsent(zkMember.getZkNodeID(), entry) != null) {
+            return null;
+        }
+        publish();
+        return entry;
+    }
+
+    /**
+     * @param nodeId node id of the member
+     * @return the entry of the removed member, null if the member was not known
+     */
+    public Entry remove(UUID nodeId) {
+        Entry entry = entries.remove(nodeId);
+        if (entry != null) {
+            publish();
+        }
+        return entry;
+    }
+
+    public Entry get(UUID nodeId) {
+        return entries.get(nodeId);
+    }
+
+    public boolean contains(UUID nodeId) {
+        return entries.containsKey(nodeId);
+    }
+
+    /**
+     * @return the known members, the list is not modifiable
+     */
+    public List<ZkMember> getZkMembers() {
+        return zkMembers;
+    }
+
+    /**
+     * @return the decoded Axis2 members, the list is not modifiable
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    // publishing is rare compared to reads, members only join or leave on watch events
+    private synchronized void publish() {
+        List<ZkMember> newZkMembers = new ArrayList<ZkMember>(entries.size());
+        List<Member> newMembers = new ArrayList<Member>(entries.size());
+        for (Entry entry : entries.values()) {
+            newZkMembers.add(entry.getZkMember());
+            newMembers.add(entry.getMember());
+        }
+        zkMembers = Collections.unmodifiableList(newZkMembers);
+        members = Collections.unmodifiableList(newMembers);
+    }
+
+    /**
+     * A member along with its decoded Axis2 member and display name
+     */
+    public static class Entry {
+
+        private final ZkMember zkMember;
+        private final Member member;
+        private final String name;
+
+        Entry(ZkMember zkMember) {
+            this.zkMember = zkMember;
+            this.member = ZooKeeperUtils.toAxis2Member(zkMember);
+            this.name = member.getHostName() + ":" + zkMember.getPort() + "("
+                        + member.getDomain() + ")";
+        }
+
+        public ZkMember getZkMember() {
+            return zkMember;
+        }
+
+        public Member getMember() {
+            return member;
+        }
+
+        /**
+         * @return the name of the member, see {@link ZooKeeperUtils#getName(ZkMember)}
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
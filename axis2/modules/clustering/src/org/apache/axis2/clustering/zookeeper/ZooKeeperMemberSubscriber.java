@@ -22,6 +22,7 @@ import org.I0Itec.zkclient.exception.ZkException;
 import org.I0Itec.zkclient.exception.ZkInterruptedException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pokura.zkclient.ZkChildTracker;
 
 public class ZooKeeperMemberSubscriber {
 	private static final Log log = LogFactory.getLog(ZooKeeperUtils.class);
@@ -61,7 +62,7 @@ public class ZooKeeperMemberSubscriber {
 
 		ZooKeeperUtils.getZookeeper().subscribeChildChanges(
 				memberPath,
-				new ZooKeeperMemberListener(membershipManager));
+				new ZkChildTracker(new ZooKeeperMemberListener(membershipManager)));
 	}
 
 	public void stopReceive() {
@@ -24,8 +24,10 @@ import org.apache.axis2.context.ConfigurationContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.ArrayList;
+import org.apache.axis2.clustering.Member;
+
 import java.util.List;
+import java.util.UUID;
 
 public class ZooKeeperMembershipManager {
 
@@ -35,7 +37,7 @@ public class ZooKeeperMembershipManager {
     private ConfigurationContext configContext;
     private GroupManagementAgent groupManagementAgent;
 
-    private final List<ZkMember> members = new ArrayList<ZkMember>();
+    private final ZooKeeperMemberRegistry registry = new ZooKeeperMemberRegistry();
     //Member represents this node
     private ZkMember localMember;
 
@@ -104,10 +106,36 @@ public class ZooKeeperMembershipManager {
     
     /**
      * Returns the list of current members in this manager
-     * @return list of members
+     * @return list of members, the list is not modifiable
      */
     public List<ZkMember> getMembers() {
-        return members;
+        return registry.getZkMembers();
+    }
+
+    /**
+     * Returns the current members in this manager as Axis2 members
+     * @return list of members, the list is not modifiable
+     */
+    public List<Member> getAxis2Members() {
+        return registry.getMembers();
+    }
+
+    /**
+     * Returns the number of current members in this manager
+     * @return number of members
+     */
+    public int getAliveMemberCount() {
+        return registry.size();
+    }
+
+    /**
+     * Returns the member with the given node id
+     * @param nodeId the node id of the member
+     * @return the member, null if it is not a current member
+     */
+    public ZkMember getMember(UUID nodeId) {
+        ZooKeeperMemberRegistry.Entry entry = registry.get(nodeId);
+        return entry == null ? null : entry.getZkMember();
     }
 
     /** 
@@ -115,7 +143,9 @@ public class ZooKeeperMembershipManager {
      * @param members the list of members to be added
      */
     public void setMembers(List<ZkMember> members) {
-        members.addAll(members);
+        for (ZkMember member : members) {
+            registry.add(member);
+        }
     }
 
     /**
@@ -125,7 +155,7 @@ public class ZooKeeperMembershipManager {
 
     public boolean addMember(ZkMember member) {
 
-        boolean memberExists = members.contains(member);
+        boolean memberExists = registry.contains(member.getZkNodeID());
         boolean belongsToSameDomain = ZooKeeperUtils.areInSameDomain(member, domain);
 
         if (log.isDebugEnabled()) {
@@ -143,17 +173,26 @@ public class ZooKeeperMembershipManager {
         boolean shouldAddMember = (localMember == null) || ZooKeeperUtils.areInSameDomain(member,
                 localMember.getDomain());
 
+        ZooKeeperMemberRegistry.Entry entry = null;
+        if (shouldAddMember) {
+            entry = registry.add(member);
+            if (entry == null) {
+                // added concurrently
+                return false;
+            }
+        }
+
         //If Member handles the service requests, i.e. Memeber is an application member
         if (groupManagementAgent != null) {
+            Member axis2Member = entry != null ? entry.getMember() : ZooKeeperUtils.toAxis2Member(member);
             log.info("Application member " + ZooKeeperUtils.getName(member) + " joined the group"
                     + new String(member.getDomain()));
-            groupManagementAgent.applicationMemberAdded(ZooKeeperUtils.toAxis2Member(member));
+            groupManagementAgent.applicationMemberAdded(axis2Member);
         }
 
-        if (shouldAddMember) {
-            members.add(member);
+        if (entry != null) {
             if (log.isDebugEnabled()) {
-                log.debug("Added member" + ZooKeeperUtils.getName(member) + "to domain" + new String(member.getDomain()));
+                log.debug("Added member" + entry.getName() + "to domain" + new String(member.getDomain()));
             }
             return true;
         }
@@ -171,11 +210,13 @@ public class ZooKeeperMembershipManager {
             log.debug("Member disappeared" + ZooKeeperUtils.getName(member) + "from domain" + new String(member.getDomain()));
            
         }
+        ZooKeeperMemberRegistry.Entry entry = registry.remove(member.getZkNodeID());
         // If this an application domain member
         if (groupManagementAgent != null) {
-            groupManagementAgent.applicationMemberRemoved(ZooKeeperUtils.toAxis2Member(member));
+            groupManagementAgent.applicationMemberRemoved(
+                    entry != null ? entry.getMember() : ZooKeeperUtils.toAxis2Member(member));
         }
-        return members.remove(member);
+        return entry != null;
     }
     
     /**
@@ -21,30 +21,136 @@ package org.apache.axis2.clustering.zookeeper;
 import org.apache.axis2.clustering.ClusteringCommand;
 import org.apache.axis2.clustering.ClusteringFault;
 import org.apache.axis2.clustering.MessageSender;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.DeleteServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.DeleteServiceStateCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.axis2.clustering.state.commands.UpdateServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateServiceStateCommand;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class is used to send messages to Zookeeper cluster
+ * <p/>
+ * When command shards are configured, the state commands of a service group context are sent
+ * to the command node of the shard the context id hashes to, so the commands of a context stay
+ * in order while the shards are applied in parallel. All the other commands go to the command
+ * node of the domain.
  */
 
 public class ZooKeeperSender implements MessageSender {
 
     private ZooKeeperMembershipManager membershipManager;
     private byte[] domain;
+    private int commandShards;
 
     public ZooKeeperSender(ZooKeeperMembershipManager membershipManager) {
         this.membershipManager = membershipManager;
     }
 
+    /**
+     * @param commandShards number of command shards, 0 to send all commands to the command
+     *                      node of the domain
+     */
+    public void setCommandShards(int commandShards) {
+        this.commandShards = commandShards;
+    }
+
+    public int getCommandShards() {
+        return commandShards;
+    }
+
     /**
      * send command objects to the group
      *
      * @param msg - command object
      */
     public void sendToGroup(ClusteringCommand msg) throws ClusteringFault {
-        domain = membershipManager.getDomain();
-        String domainName = new String(domain);
+        if (commandShards <= 0 || !(msg instanceof StateClusteringCommand)) {
+            ZooKeeperUtils.createCommandZNode(msg, getDomainName());
+            return;
+        }
+        List<StateClusteringCommand> commands = new ArrayList<StateClusteringCommand>();
+        commands.add((StateClusteringCommand) msg);
+        for (Map.Entry<String, List<StateClusteringCommand>> entry : routeCommands(commands).entrySet()) {
+            List<StateClusteringCommand> routed = entry.getValue();
+            ZooKeeperUtils.createCommandZNode(routed.size() == 1 ? routed.get(0)
+                    : new StateClusteringCommandCollection(routed), entry.getKey());
+        }
+    }
+
+    /**
+     * Groups the given state commands by the command log they are sent to, collections are
+     * split so each of their commands goes to its own log. The order of the commands is kept
+     * within each log.
+     *
+     * @param commands state commands in the order they were sent
+     * @return the commands of each command log, keyed by the name of the log
+     */
+    protected Map<String, List<StateClusteringCommand>> routeCommands(
+            List<StateClusteringCommand> commands) {
+        Map<String, List<StateClusteringCommand>> routed =
+                new LinkedHashMap<String, List<StateClusteringCommand>>();
+        if (commandShards <= 0) {
+            routed.put(getDomainName(), commands);
+            return routed;
+        }
+        String domainName = getDomainName();
+        for (StateClusteringCommand command : commands) {
+            if (command instanceof StateClusteringCommandCollection) {
+                for (Map.Entry<String, List<StateClusteringCommand>> entry : routeCommands(
+                        ((StateClusteringCommandCollection) command).getCommands()).entrySet()) {
+                    getLog(routed, entry.getKey()).addAll(entry.getValue());
+                }
+                continue;
+            }
+            String contextId = getServiceGroupContextId(command);
+            String logName = contextId == null ? domainName : ZooKeeperUtils.getShardName(
+                    domainName, (contextId.hashCode() & Integer.MAX_VALUE) % commandShards);
+            getLog(routed, logName).add(command);
+        }
+        return routed;
+    }
+
+    private static List<StateClusteringCommand> getLog(
+            Map<String, List<StateClusteringCommand>> routed, String logName) {
+        List<StateClusteringCommand> logCommands = routed.get(logName);
+        if (logCommands == null) {
+            logCommands = new ArrayList<StateClusteringCommand>();
+            routed.put(logName, logCommands);
+        }
+        return logCommands;
+    }
+
+    /**
+     * @return the id of the service group context the command belongs to, null for commands
+     *         which are not bound to a service group context
+     */
+    private static String getServiceGroupContextId(StateClusteringCommand command) {
+        if (command instanceof UpdateServiceGroupStateCommand) {
+            return ((UpdateServiceGroupStateCommand) command).getServiceGroupContextId();
+        } else if (command instanceof UpdateServiceStateCommand) {
+            return ((UpdateServiceStateCommand) command).getServiceGroupContextId();
+        } else if (command instanceof DeleteServiceGroupStateCommand) {
+            return ((DeleteServiceGroupStateCommand) command).getServiceGroupContextId();
+        } else if (command instanceof DeleteServiceStateCommand) {
+            return ((DeleteServiceStateCommand) command).getServiceGroupContextId();
+        }
+        return null;
+    }
 
-        ZooKeeperUtils.createCommandZNode(msg, domainName);
+    /**
+     * Returns the name of the domain the commands are sent to
+     *
+     * @return domain name as a String
+     */
+    protected String getDomainName() {
+        domain = membershipManager.getDomain();
+        return new String(domain);
     }
 
     public void sendToSelf(ClusteringCommand msg) throws ClusteringFault {
@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.exception.ZkException;
+import org.I0Itec.zkclient.exception.ZkInterruptedException;
+import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.I0Itec.zkclient.exception.ZkNodeExistsException;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.control.GetStateCommand;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.zookeeper.CreateMode;
+import org.pokura.zkclient.async.IZkAsyncConnection;
+import org.pokura.zkclient.async.ZkFuture;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Takes periodic snapshots of the replicated context state and compacts the command log.
+ * <p/>
+ * A snapshot is the state of all the replicated contexts, stored as a serialized
+ * {@link StateClusteringCommandCollection} in the node
+ * <code>/domain/snapshot/snapshotNNNNNNNNNN</code>, where the number is the sequence number of
+ * the last command the state includes. A snapshot is taken by the members which apply a command
+ * crossing a multiple of the snapshot interval; they all name it after the same command, so only
+ * the first one is stored.
+ * <p/>
+ * Every member keeps the name of its last applied command in an ephemeral cursor node under
+ * <code>/domain/cursors</code>. Once a snapshot is stored, the member which stored it deletes
+ * the commands up to the snapshot and up to the oldest cursor of a live member, together with the
+ * older snapshots. A new member restores the latest snapshot and applies the commands after it,
+ * instead of asking the other members for their state.
+ */
+public class ZooKeeperSnapshotManager {
+
+    private static final Log log = LogFactory.getLog(ZooKeeperSnapshotManager.class);
+
+    private static final String ENCODING = "UTF-8";
+    private static final int RESTORE_ATTEMPTS = 3;
+
+    private final ConfigurationContext configurationContext;
+    private final String domainName;
+    private final int snapshotInterval;
+    private final String cursorPath;
+
+    private long lastSnapshotId = -1;
+    private String lastCursor;
+    private boolean restored;
+
+    /**
+     * @param membershipManager    ZooKeeperMembershipManager instance of the member
+     * @param configurationContext ConfigurationContext instance of the member
+     * @param snapshotInterval     number of commands between two snapshots
+     */
+    public ZooKeeperSnapshotManager(ZooKeeperMembershipManager membershipManager,
+                                    ConfigurationContext configurationContext,
+                                    int snapshotInterval) {
+        this.configurationContext = configurationContext;
+        this.domainName = membershipManager.getDomainName();
+        this.snapshotInterval = snapshotInterval;
+        this.cursorPath = "/" + domainName + ZooKeeperConstants.CURSORS_BASE_NAME + "/"
+                + UUID.randomUUID().toString();
+    }
+
+    /**
+     * Creates the snapshot and cursor nodes of the domain and the cursor of this member, then
+     * restores the latest snapshot if there is one.
+     *
+     * @return the name of the last command included in the restored snapshot, null if no
+     *         snapshot was restored
+     */
+    public String restore() {
+        createPersistent("/" + domainName + ZooKeeperConstants.SNAPSHOTS_BASE_NAME);
+        createPersistent("/" + domainName + ZooKeeperConstants.CURSORS_BASE_NAME);
+
+        // an empty cursor keeps the commands from being compacted while the snapshot is read
+        create(cursorPath, new byte[0], CreateMode.EPHEMERAL);
+
+        for (int attempt = 0; attempt < RESTORE_ATTEMPTS; attempt++) {
+            List<String> snapshots = getSnapshots();
+            if (snapshots.isEmpty()) {
+                return null;
+            }
+            String snapshotName = snapshots.get(snapshots.size() - 1);
+            long snapshotId = getSnapshotId(snapshotName);
+            byte[] data;
+            try {
+                data = readData(getSnapshotPath(snapshotName));
+            } catch (ZkNoNodeException e) {
+                // replaced by a newer snapshot in the meantime
+                log.debug(snapshotName + " could not be read : " + e.getMessage());
+                continue;
+            }
+
+            StateClusteringCommandCollection state =
+                    (StateClusteringCommandCollection) ZooKeeperUtils.getSerializer().deserialize(data);
+            try {
+                state.execute(configurationContext);
+            } catch (ClusteringFault e) {
+                throw new ZkException("Restoring " + snapshotName + " failed", e);
+            }
+
+            lastSnapshotId = snapshotId;
+            restored = true;
+            String lastCommandName = ZooKeeperUtils.commandNameofIndex((int) snapshotId);
+            updateCursor(lastCommandName);
+            log.info("State restored from " + snapshotName);
+            return lastCommandName;
+        }
+        log.warn("No snapshot could be restored after " + RESTORE_ATTEMPTS + " attempts");
+        return null;
+    }
+
+    /**
+     * @return true if the state of this member has been restored from a snapshot
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Records the last applied command of this member in its cursor. The cursor is ephemeral, it
+     * is gone once the session of the asynchronous connection has expired and is created again
+     * on the new session.
+     *
+     * @param lastCommandName name of the last applied command
+     */
+    public void updateCursor(String lastCommandName) {
+        if (lastCommandName == null || lastCommandName.equals(lastCursor)) {
+            return;
+        }
+        byte[] data = toBytes(lastCommandName);
+        try {
+            try {
+                await(ZooKeeperUtils.getAsyncConnection().writeData(cursorPath, data, -1));
+            } catch (ZkNoNodeException e) {
+                log.warn("The cursor " + cursorPath + " was lost with an expired session, "
+                        + "creating it again at " + lastCommandName);
+                create(cursorPath, data, CreateMode.EPHEMERAL);
+            }
+            lastCursor = lastCommandName;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            log.error("Updating the cursor failed : " + e.getMessage());
+        } catch (ZkException e) {
+            // retried with the next applied command
+            log.error("Updating the cursor failed : " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param lastCommandName name of the last applied command
+     * @return true if the given command crossed a snapshot boundary since the last snapshot
+     */
+    public boolean isSnapshotDue(String lastCommandName) {
+        if (lastCommandName == null || snapshotInterval <= 0) {
+            return false;
+        }
+        long commandId = ZooKeeperUtils.getCommandID(lastCommandName);
+        if (lastSnapshotId < 0) {
+            // the snapshots of the domain have not been looked at yet, none is taken as 0 so they
+            // are only looked up once
+            List<String> snapshots = getSnapshots();
+            lastSnapshotId = snapshots.isEmpty()
+                    ? 0 : getSnapshotId(snapshots.get(snapshots.size() - 1));
+        }
+        return commandId / snapshotInterval > lastSnapshotId / snapshotInterval;
+    }
+
+    /**
+     * Stores a snapshot of the current state and deletes the snapshots it replaces. Has to be
+     * called on the command processor, so the state matches the last applied command. Only the
+     * member which stored the snapshot compacts the command log, the other members leave it
+     * alone.
+     *
+     * @param lastCommandName name of the last applied command
+     * @return the sequence number up to which the commands can be deleted, -1 if none
+     */
+    public long takeSnapshot(String lastCommandName) {
+        long snapshotId = ZooKeeperUtils.getCommandID(lastCommandName);
+        String snapshotName = getSnapshotName(snapshotId);
+        // a failed snapshot is not retried before the next interval
+        lastSnapshotId = snapshotId;
+
+        if (exists(getSnapshotPath(snapshotName))) {
+            // stored by another member, which compacts the command log
+            return -1;
+        }
+        GetStateCommand getStateCommand = new GetStateCommand();
+        try {
+            getStateCommand.execute(configurationContext);
+        } catch (ClusteringFault e) {
+            log.error("Collecting the state for " + snapshotName + " failed : " + e.getMessage());
+            return -1;
+        }
+        StateClusteringCommand[] commands = getStateCommand.getCommands();
+        List<StateClusteringCommand> state = commands == null
+                ? new ArrayList<StateClusteringCommand>()
+                : new ArrayList<StateClusteringCommand>(Arrays.asList(commands));
+        byte[] data = ZooKeeperUtils.getSerializer().serialize(
+                new StateClusteringCommandCollection(state));
+        try {
+            create(getSnapshotPath(snapshotName), data, CreateMode.PERSISTENT);
+            log.info(snapshotName + " stored, " + data.length + " bytes");
+        } catch (ZkNodeExistsException e) {
+            // stored by another member in the meantime
+            return -1;
+        } catch (ZkException e) {
+            log.error("Storing " + snapshotName + " failed : " + e.getMessage());
+            return -1;
+        }
+
+        // the older snapshots are replaced by this one
+        for (String olderSnapshot : getSnapshots()) {
+            if (getSnapshotId(olderSnapshot) < snapshotId) {
+                ZooKeeperUtils.deleteZNode(getSnapshotPath(olderSnapshot));
+            }
+        }
+        return Math.min(snapshotId, getOldestCursor());
+    }
+
+    /**
+     * @return the sequence number of the oldest command applied by all the live members, -1 if
+     *         a member has not recorded its cursor yet
+     */
+    private long getOldestCursor() {
+        String cursorsPath = "/" + domainName + ZooKeeperConstants.CURSORS_BASE_NAME;
+        IZkAsyncConnection connection = ZooKeeperUtils.getAsyncConnection();
+        List<String> cursors = getChildren(cursorsPath);
+
+        // read all the cursors before waiting for the first one
+        List<ZkFuture<byte[]>> reads = new ArrayList<ZkFuture<byte[]>>(cursors.size());
+        try {
+            for (String cursor : cursors) {
+                reads.add(connection.readData(cursorsPath + "/" + cursor, false));
+            }
+        } catch (InterruptedException e) {
+            throw new ZkInterruptedException(e);
+        } catch (IllegalStateException e) {
+            // the asynchronous connection is not connected
+            throw new ZkException(e);
+        }
+        long oldest = Long.MAX_VALUE;
+        for (ZkFuture<byte[]> read : reads) {
+            byte[] data;
+            try {
+                data = await(read);
+            } catch (InterruptedException e) {
+                throw new ZkInterruptedException(e);
+            } catch (ZkNoNodeException e) {
+                // the member has left
+                continue;
+            }
+            if (data == null || data.length == 0) {
+                return -1;
+            }
+            oldest = Math.min(oldest, ZooKeeperUtils.getCommandID(fromBytes(data)));
+        }
+        return oldest == Long.MAX_VALUE ? -1 : oldest;
+    }
+
+    /**
+     * Removes the cursor of this member
+     */
+    public void stop() {
+        ZooKeeperUtils.deleteZNode(cursorPath);
+    }
+
+    private List<String> getSnapshots() {
+        List<String> snapshots = getChildren("/" + domainName + ZooKeeperConstants.SNAPSHOTS_BASE_NAME);
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    private String getSnapshotPath(String snapshotName) {
+        return "/" + domainName + ZooKeeperConstants.SNAPSHOTS_BASE_NAME + "/" + snapshotName;
+    }
+
+    private static String getSnapshotName(long snapshotId) {
+        return ZooKeeperConstants.SNAPSHOT_NAME + String.format("%010d", snapshotId);
+    }
+
+    private static long getSnapshotId(String snapshotName) {
+        return Long.parseLong(snapshotName.substring(ZooKeeperConstants.SNAPSHOT_NAME.length()));
+    }
+
+    private void createPersistent(String path) {
+        if (!ZooKeeperUtils.getZookeeper().exists(path)) {
+            try {
+                ZooKeeperUtils.getZookeeper().createPersistent(path);
+            } catch (ZkNodeExistsException e) {
+                // created by another member in the meantime
+                log.debug(e.getMessage());
+            }
+        }
+    }
+
+    private static boolean exists(String path) {
+        try {
+            return await(ZooKeeperUtils.getAsyncConnection().exists(path, false)) != null;
+        } catch (InterruptedException e) {
+            throw new ZkInterruptedException(e);
+        } catch (IllegalStateException e) {
+            throw new ZkException(e);
+        }
+    }
+
+    private static void create(String path, byte[] data, CreateMode mode) {
+        try {
+            await(ZooKeeperUtils.getAsyncConnection().create(path, data, mode));
+        } catch (InterruptedException e) {
+            throw new ZkInterruptedException(e);
+        } catch (IllegalStateException e) {
+            throw new ZkException(e);
+        }
+    }
+
+    private static byte[] readData(String path) {
+        try {
+            return await(ZooKeeperUtils.getAsyncConnection().readData(path, false));
+        } catch (InterruptedException e) {
+            throw new ZkInterruptedException(e);
+        } catch (IllegalStateException e) {
+            throw new ZkException(e);
+        }
+    }
+
+    private static List<String> getChildren(String path) {
+        try {
+            return await(ZooKeeperUtils.getAsyncConnection().getChildren(path, false));
+        } catch (InterruptedException e) {
+            throw new ZkInterruptedException(e);
+        } catch (IllegalStateException e) {
+            throw new ZkException(e);
+        }
+    }
+
+    /**
+     * Waits for an asynchronous operation, the snapshot work is never done on request threads.
+     * Callers turn the IllegalStateException of a connection which is not connected into a
+     * ZkException, so the command listener handles both alike.
+     */
+    private static <T> T await(ZkFuture<T> future) throws InterruptedException {
+        try {
+            return future.get(ZooKeeperConstants.COMMAND_FETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw ZooKeeperUtils.toZkException(e);
+        } catch (TimeoutException e) {
+            throw new ZkException("Timed out waiting for ZooKeeper");
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        try {
+            return value.getBytes(ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fromBytes(byte[] data) {
+        try {
+            return new String(data, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
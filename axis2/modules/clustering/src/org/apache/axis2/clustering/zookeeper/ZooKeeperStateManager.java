@@ -27,17 +27,39 @@ import org.apache.axis2.clustering.state.StateManager;
 import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
 import org.apache.axis2.context.AbstractContext;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ContextListener;
 import org.apache.axis2.context.ServiceContext;
 import org.apache.axis2.context.ServiceGroupContext;
 import org.apache.axis2.description.Parameter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * State manager which replicates the context state through ZooKeeper command nodes.
+ * <p/>
+ * When a flush interval is set, {@link #updateContext(AbstractContext)} only marks the context
+ * as dirty. The property differences of a context are kept by name, so repeated updates and
+ * removes of a property collapse into the last one, and a dirty context is sent once when the
+ * message is done ({@link #updateContexts(AbstractContext[])}), when the flush interval expires,
+ * or when {@link #flush()} is called.
+ */
 public class ZooKeeperStateManager implements StateManager {
 
+    private static final Log log = LogFactory.getLog(ZooKeeperStateManager.class);
+
     private final Map<String, Parameter> parameters = new HashMap<String, Parameter>();
 
     @SuppressWarnings("rawtypes")
@@ -45,6 +67,15 @@ public class ZooKeeperStateManager implements StateManager {
 
     private ZooKeeperSender sender;
 
+    private long flushInterval;
+    private final Object pendingLock = new Object();
+    private Set<AbstractContext> pendingContexts = new LinkedHashSet<AbstractContext>();
+    private ScheduledFuture<?> scheduledFlush;
+    private ScheduledExecutorService flushScheduler;
+
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong sentUpdates = new AtomicLong();
+
     public ZooKeeperStateManager() {
     }
 
@@ -52,6 +83,47 @@ public class ZooKeeperStateManager implements StateManager {
         this.sender = sender;
     }
 
+    public ZooKeeperSender getSender() {
+        return sender;
+    }
+
+    /**
+     * @param flushInterval time in milliseconds a dirty context may wait before it is sent,
+     *                      0 sends every update immediately
+     */
+    public void setFlushInterval(long flushInterval) {
+        synchronized (pendingLock) {
+            this.flushInterval = flushInterval;
+            if (flushInterval > 0 && flushScheduler == null) {
+                flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ZooKeeperStateManager");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @return number of context updates which were merged into an update already pending
+     */
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    /**
+     * @return number of context update commands sent to the group
+     */
+    public long getSentUpdates() {
+        return sentUpdates.get();
+    }
+
 
     public void addParameter(Parameter param) throws AxisFault {
         parameters.put(param.getName(), param);
@@ -84,10 +156,29 @@ public class ZooKeeperStateManager implements StateManager {
     }
     
     public void updateContext(AbstractContext context) throws ClusteringFault {
+        synchronized (pendingLock) {
+            if (flushInterval > 0) {
+                if (!pendingContexts.add(context)) {
+                    coalescedUpdates.incrementAndGet();
+                } else if (scheduledFlush == null) {
+                    scheduledFlush = flushScheduler.schedule(new Runnable() {
+                        public void run() {
+                            try {
+                                flush();
+                            } catch (ClusteringFault e) {
+                                log.error("Could not flush the pending context updates", e);
+                            }
+                        }
+                    }, flushInterval, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
         StateClusteringCommand cmd = StateClusteringCommandFactory
                 .getUpdateCommand(context, excludedReplicationPatterns, false);
         if (cmd != null) {
             sender.sendToGroup(cmd);
+            sentUpdates.incrementAndGet();
         }
 
     }
@@ -103,21 +194,98 @@ public class ZooKeeperStateManager implements StateManager {
     
     public void updateContexts(AbstractContext[] contexts)
             throws ClusteringFault {
+        if (flushInterval > 0) {
+            // the message is done, send its contexts along with the ones still pending
+            synchronized (pendingLock) {
+                for (AbstractContext context : contexts) {
+                    if (!pendingContexts.add(context)) {
+                        coalescedUpdates.incrementAndGet();
+                    }
+                }
+            }
+            flush();
+            return;
+        }
         StateClusteringCommandCollection cmd =
                 StateClusteringCommandFactory.getCommandCollection(contexts,
                         excludedReplicationPatterns);
         if (!cmd.isEmpty()) {
             sender.sendToGroup(cmd);
+            sentUpdates.addAndGet(cmd.getCommands().size());
         }
 
     }
 
+    /**
+     * Sends the property differences of the pending contexts as one command. The differences
+     * of a context are cleared once they are taken, so the next flush only carries what changed
+     * after this one.
+     *
+     * @throws ClusteringFault if the command could not be sent
+     */
+    public void flush() throws ClusteringFault {
+        Set<AbstractContext> contexts;
+        synchronized (pendingLock) {
+            contexts = pendingContexts;
+            pendingContexts = new LinkedHashSet<AbstractContext>();
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        if (contexts.isEmpty()) {
+            return;
+        }
+        List<StateClusteringCommand> commands = new ArrayList<StateClusteringCommand>(contexts.size());
+        for (AbstractContext context : contexts) {
+            StateClusteringCommand cmd;
+            synchronized (context) {
+                cmd = StateClusteringCommandFactory
+                        .getUpdateCommand(context, excludedReplicationPatterns, false);
+                context.clearPropertyDifferences();
+            }
+            if (cmd != null) {
+                commands.add(cmd);
+            }
+        }
+        if (commands.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Flushing " + commands.size() + " context updates, "
+                      + coalescedUpdates.get() + " updates coalesced so far");
+        }
+        sender.sendToGroup(commands.size() == 1 ? commands.get(0)
+                : new StateClusteringCommandCollection(commands));
+        sentUpdates.addAndGet(commands.size());
+    }
+
+    /**
+     * Sends the pending context updates and stops the flush timer. Updates made after the
+     * shutdown are sent immediately.
+     *
+     * @throws ClusteringFault if the pending updates could not be sent
+     */
+    public void shutdown() throws ClusteringFault {
+        ScheduledExecutorService scheduler;
+        synchronized (pendingLock) {
+            flushInterval = 0;
+            scheduler = flushScheduler;
+            flushScheduler = null;
+        }
+        flush();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
     public void replicateState(StateClusteringCommand command)
             throws ClusteringFault {
         sender.sendToGroup(command);
     }
 
     public void removeContext(AbstractContext context) throws ClusteringFault {
+        discardPendingUpdate(context);
         StateClusteringCommand cmd = StateClusteringCommandFactory.getRemoveCommand(context);
         sender.sendToGroup(cmd);
     }
@@ -130,8 +298,21 @@ public class ZooKeeperStateManager implements StateManager {
 
     public void setConfigurationContext(
             ConfigurationContext configurationContext) {
-        // nothing to do here
+        // updates pending for a context which is gone must not hold on to it
+        configurationContext.addContextListener(new ContextListener() {
+            public void contextCreated(AbstractContext context) {
+            }
 
+            public void contextRemoved(AbstractContext context) {
+                discardPendingUpdate(context);
+            }
+        });
+    }
+
+    private void discardPendingUpdate(AbstractContext context) {
+        synchronized (pendingLock) {
+            pendingContexts.remove(context);
+        }
     }
 
     public void setReplicationExcludePatterns(String contextType, ArrayList<?> patterns) {
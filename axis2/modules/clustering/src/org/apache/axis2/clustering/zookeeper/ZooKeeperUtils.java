@@ -33,19 +33,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
-import org.apache.zookeeper.ZooKeeper;
-import org.apache.zookeeper.ZooDefs.Ids;
+import org.pokura.zkclient.async.IZkAsyncConnection;
+import org.pokura.zkclient.async.ZkAsyncConnection;
+import org.pokura.zkclient.async.ZkFuture;
+import org.pokura.zkclient.async.ZkFutureListener;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 public class ZooKeeperUtils {
 
 	private static final Log log = LogFactory.getLog(ZooKeeperUtils.class);
 	private static ZkClient zookeeper;
-	private static ZooKeeper directZookeeper;
+	private static IZkAsyncConnection asyncConnection;
+	private static ZkSerializer serializer = new SerializableSerializer();
 
 	/**
 	 * This method allows the user to get the zookeeper client instance
@@ -65,6 +69,28 @@ public class ZooKeeperUtils {
 		setZookeeper(zkclient,serverList);
 	}
 
+	/**
+	 * Returns the serializer used for the command and member nodes
+	 *
+	 * @return the serializer
+	 */
+	public static ZkSerializer getSerializer() {
+		return serializer;
+	}
+
+	/**
+	 * Sets the serializer used for the command and member nodes. All the members of a
+	 * domain must be able to read the data written with this serializer.
+	 *
+	 * @param serializer the serializer
+	 */
+	public static void setSerializer(ZkSerializer serializer) {
+		ZooKeeperUtils.serializer = serializer;
+		if (zookeeper != null) {
+			zookeeper.setZkSerializer(serializer);
+		}
+	}
+
 	/**
 	 * This method is used to serialize and save a command object into the group
 	 * command node
@@ -77,28 +103,97 @@ public class ZooKeeperUtils {
 
 		try{
 
-			getZookeeper().setZkSerializer(new SerializableSerializer());
-			byte data[] = new SerializableSerializer().serialize(command);
-			directZookeeper.create("/" + domain + ZooKeeperConstants.COMMAND_BASE_NAME, data, Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL, null, null);
+			getZookeeper().setZkSerializer(serializer);
+			byte data[] = serializer.serialize(command);
+			createCommandZNode(data, domain);
 
 		}catch (ZkMarshallingError e) {
 			log.error("Error occurred while serialization "+e.getMessage());
 		}
 
 	}
+
+	/**
+	 * This method is used to save an already serialized command object into the group
+	 * command node
+	 *
+	 * @param data   the serialized command object
+	 * @param domain the domain that the command should be sent to
+	 */
+	public static void createCommandZNode(byte[] data, String domain) {
+		String path = "/" + domain + ZooKeeperConstants.COMMAND_BASE_NAME;
+		try {
+			asyncConnection.create(path, data, CreateMode.PERSISTENT_SEQUENTIAL)
+					.addListener(new FailureLogger<String>("Creating command node " + path));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.error("Interrupted while creating command node " + path);
+		} catch (IllegalStateException e) {
+			log.error("Creating command node " + path + " failed : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Deletes the given node without waiting for the result
+	 *
+	 * @param path the path of the node to be deleted
+	 */
+	public static void deleteZNode(String path) {
+		try {
+			asyncConnection.delete(path, -1)
+					.addListener(new FailureLogger<Void>("Deleting " + path));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.error("Interrupted while deleting " + path);
+		} catch (IllegalStateException e) {
+			log.error("Deleting " + path + " failed : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the exception the synchronous ZkClient call would have thrown for the failure of an
+	 * asynchronous operation
+	 *
+	 * @param e the failure of the operation
+	 * @return the exception to throw
+	 */
+	public static ZkException toZkException(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof KeeperException) {
+			return ZkException.create((KeeperException) cause);
+		} else if (cause instanceof ZkException) {
+			return (ZkException) cause;
+		}
+		return new ZkException(cause);
+	}
+
+	/**
+	 * Returns the ZooKeeper connection used for asynchronous communications
+	 * @return the asynchronous ZooKeeper connection
+	 */
+	public static IZkAsyncConnection getAsyncConnection() {
+		return asyncConnection;
+	}
+
 	/**
-	 * Returns the ZooKeeper client object for asynchronous communications
-	 * @return ZooKeeper client object
+	 * Sets the ZooKeeper connection used for asynchronous communications
+	 * @param asyncConnection the asynchronous ZooKeeper connection
 	 */
-	public static ZooKeeper getDirectZookeeper() {
-		return directZookeeper;
+	public static void setAsyncConnection(IZkAsyncConnection asyncConnection) {
+		ZooKeeperUtils.asyncConnection = asyncConnection;
 	}
+
 	/**
-	 * Sets the ZooKeeper client object for asynchronous communications
-	 * @param directZookeeper ZooKeeper client object
+	 * Closes the ZooKeeper connection used for asynchronous communications
 	 */
-	public static void setDirectZookeeper(ZooKeeper directZookeeper) {
-		ZooKeeperUtils.directZookeeper = directZookeeper;
+	public static void closeAsyncConnection() {
+		if (asyncConnection != null) {
+			try {
+				asyncConnection.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 	/**
 	 * Creates the Last command entry in the ZooKeeper Quorum
@@ -137,7 +232,6 @@ public class ZooKeeperUtils {
 	public static void setZkMember(ZkMember member) {
 		String domain = new String(member.getDomain());
 		String id = member.getZkNodeID().toString();
-		ZkSerializer serializer = new SerializableSerializer();
 		getZookeeper().setZkSerializer(serializer);
 
 		try{
@@ -162,11 +256,22 @@ public class ZooKeeperUtils {
 	public static List<ZkMember> getZkMembers(List<String> childList,
 			String parentPath) {
 		List<ZkMember> members = new ArrayList<ZkMember>();
-		for (String childPath : childList) {
-			getZookeeper().setZkSerializer(new SerializableSerializer());
-
-			Object m = getZookeeper().readData(parentPath + "/" + childPath);
-			members.add((ZkMember) m);
+		List<ZkFuture<byte[]>> reads = new ArrayList<ZkFuture<byte[]>>(childList.size());
+		try {
+			// issue all the reads before waiting for the first one
+			for (String childPath : childList) {
+				reads.add(asyncConnection.readData(parentPath + "/" + childPath, false));
+			}
+			for (ZkFuture<byte[]> read : reads) {
+				members.add((ZkMember) serializer.deserialize(read.get()));
+			}
+		} catch (InterruptedException e) {
+			throw new ZkInterruptedException(e);
+		} catch (ExecutionException e) {
+			throw toZkException(e);
+		} catch (IllegalStateException e) {
+			// the asynchronous connection is not connected
+			throw new ZkException(e);
 		}
 
 		return members;
@@ -286,6 +391,19 @@ public class ZooKeeperUtils {
 		return "command"+ String.format("%010d", index);
 	}
 
+	/**
+	 * Returns the name of the command log of a shard of the given domain. A shard node has the
+	 * same layout as a domain node, so the name can be used wherever the command and lastcommand
+	 * nodes of a domain are addressed by the domain name.
+	 *
+	 * @param domain the domain name
+	 * @param shard  the index of the shard
+	 * @return the name of the shard
+	 */
+	public static String getShardName(String domain, int shard) {
+		return domain + ZooKeeperConstants.SHARDS_BASE_NAME + "/" + shard;
+	}
+
 
 	/**
 	 * This method gets the zookeeper members under the given parent path
@@ -406,9 +524,12 @@ public class ZooKeeperUtils {
 	 */
 	public static void setZookeeper(ZkClient zookeeper,String serverList) {
 		ZooKeeperUtils.zookeeper = zookeeper;
+		zookeeper.setZkSerializer(serializer);
 		try {
-			directZookeeper = new ZooKeeper(serverList, 5000, zookeeper);
-		} catch (IOException e) {
+			ZkAsyncConnection connection = new ZkAsyncConnection(serverList, 5000);
+			connection.connect(null);
+			asyncConnection = connection;
+		} catch (ZkException e) {
 			log.error(e.getMessage());
 		}
 	}
@@ -432,4 +553,21 @@ public class ZooKeeperUtils {
 	}
 
 
+	/**
+	 * Logs the failure of an asynchronous operation which nobody waits for
+	 */
+	private static class FailureLogger<T> implements ZkFutureListener<T> {
+		private final String operation;
+
+		FailureLogger(String operation) {
+			this.operation = operation;
+		}
+
+		public void operationComplete(ZkFuture<T> future) {
+			if (!future.isSuccess()) {
+				log.error(operation + " failed : " + future.getFailure().getMessage());
+			}
+		}
+	}
+
 }
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.clustering.tribes;
+
+import junit.framework.TestCase;
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.catalina.tribes.ByteMessage;
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.UniqueId;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the queued sending of the ChannelSender against a channel which only records the
+ * messages
+ */
+public class ChannelSenderTest extends TestCase {
+
+    private RecordingChannel channel;
+    private MembershipManager membershipManager;
+    private ChannelSender sender;
+
+    protected void setUp() throws Exception {
+        channel = new RecordingChannel();
+        final Member[] members = new Member[]{new MemberImpl("127.0.0.1", 4000, 0)};
+        membershipManager = new MembershipManager() {
+            public Member[] getMembers() {
+                return members;
+            }
+        };
+    }
+
+    public void testSendsOnCallingThreadByDefault() throws Exception {
+        sender = new ChannelSender(channel, membershipManager, true);
+        sender.sendToGroup(new TestStateCommand(1));
+        assertEquals(1, channel.getCommands().size());
+        assertFalse(sender.isQueueing());
+    }
+
+    public void testQueuedStateCommandsAreCoalescedInOrder() throws Exception {
+        sender = new ChannelSender(channel, membershipManager, false);
+        channel.block();
+        sender.start(100, 100);
+        sender.sendToGroup(new TestStateCommand(0));
+        // wait until the sender thread is stuck sending the first command
+        Thread.sleep(200);
+        for (int i = 1; i <= 3; i++) {
+            sender.sendToGroup(new TestStateCommand(i));
+        }
+        sender.sendToGroup(new TestCommand());
+        sender.sendToGroup(new TestStateCommand(4));
+        Future<Void> last = sender.sendToGroupAsync(new TestStateCommand(5));
+        channel.unblock();
+        last.get(5, TimeUnit.SECONDS);
+
+        List<ClusteringCommand> sent = channel.getCommands();
+        assertEquals(4, sent.size());
+        assertEquals(0, ((TestStateCommand) sent.get(0)).id);
+        assertIds(sent.get(1), 1, 2, 3);
+        assertTrue(sent.get(2) instanceof TestCommand);
+        assertIds(sent.get(3), 4, 5);
+        assertEquals(5, sender.getCoalescedCommandCount());
+        assertEquals(4, sender.getSentMessageCount());
+    }
+
+    public void testSynchronousCallerSeesFailure() throws Exception {
+        sender = new ChannelSender(channel, membershipManager, true);
+        sender.start(10, 10);
+        try {
+            sender.sendToGroup(new NotSerializableCommand());
+            fail("The command is not serializable");
+        } catch (ClusteringFault expected) {
+        }
+        // and the sender keeps working
+        sender.sendToGroup(new TestStateCommand(1));
+        assertEquals(1, channel.getCommands().size());
+    }
+
+    public void testStopSendsQueuedCommands() throws Exception {
+        sender = new ChannelSender(channel, membershipManager, false);
+        sender.start(100, 10);
+        for (int i = 0; i < 50; i++) {
+            sender.sendToGroup(new TestStateCommand(i));
+        }
+        sender.stop();
+        int count = 0;
+        for (ClusteringCommand command : channel.getCommands()) {
+            if (command instanceof StateClusteringCommandCollection) {
+                for (StateClusteringCommand c :
+                        ((StateClusteringCommandCollection) command).getCommands()) {
+                    assertEquals(count++, ((TestStateCommand) c).id);
+                }
+            } else {
+                assertEquals(count++, ((TestStateCommand) command).id);
+            }
+        }
+        assertEquals(50, count);
+    }
+
+    public void testCallerWaitingForSpaceWhileStopping() throws Exception {
+        sender = new ChannelSender(channel, membershipManager, false);
+        channel.block();
+        sender.start(1, 1);
+        sender.sendToGroup(new TestStateCommand(0));
+        Thread.sleep(200);
+        sender.sendToGroup(new TestStateCommand(1));
+        // the queue is full, the third command waits for space
+        final List<Future<Void>> results = Collections.synchronizedList(new ArrayList<Future<Void>>());
+        Thread caller = new Thread() {
+            public void run() {
+                try {
+                    results.add(sender.sendToGroupAsync(new TestStateCommand(2)));
+                } catch (ClusteringFault e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        caller.start();
+        Thread stopper = new Thread() {
+            public void run() {
+                sender.stop();
+            }
+        };
+        stopper.start();
+        Thread.sleep(200);
+        channel.unblock();
+        stopper.join(5000);
+        caller.join(5000);
+        assertEquals(1, results.size());
+        results.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals(3, channel.getCommands().size());
+    }
+
+    protected void tearDown() throws Exception {
+        if (sender != null) {
+            sender.stop();
+        }
+    }
+
+    private void assertIds(ClusteringCommand command, int... ids) {
+        List<StateClusteringCommand> commands =
+                ((StateClusteringCommandCollection) command).getCommands();
+        assertEquals(ids.length, commands.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], ((TestStateCommand) commands.get(i)).id);
+        }
+    }
+
+    private static class RecordingChannel extends GroupChannel {
+
+        private final List<ClusteringCommand> commands =
+                Collections.synchronizedList(new ArrayList<ClusteringCommand>());
+        private boolean blocked;
+
+        public UniqueId send(Member[] destination, Serializable msg, int options)
+                throws ChannelException {
+            synchronized (this) {
+                while (blocked) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new ChannelException(e);
+                    }
+                }
+            }
+            try {
+                ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(((ByteMessage) msg).getMessage()));
+                commands.add((ClusteringCommand) in.readObject());
+            } catch (Exception e) {
+                throw new ChannelException(e);
+            }
+            return null;
+        }
+
+        synchronized void block() {
+            blocked = true;
+        }
+
+        synchronized void unblock() {
+            blocked = false;
+            notifyAll();
+        }
+
+        List<ClusteringCommand> getCommands() {
+            return new ArrayList<ClusteringCommand>(commands);
+        }
+    }
+
+    private static class TestStateCommand extends StateClusteringCommand {
+
+        private final int id;
+
+        TestStateCommand(int id) {
+            this.id = id;
+        }
+
+        public void execute(ConfigurationContext configContext) throws ClusteringFault {
+        }
+    }
+
+    private static class TestCommand extends ClusteringCommand {
+
+        public void execute(ConfigurationContext configContext) throws ClusteringFault {
+        }
+    }
+
+    private static class NotSerializableCommand extends StateClusteringCommand {
+
+        private final Object value = new Object();
+
+        public void execute(ConfigurationContext configContext) throws ClusteringFault {
+        }
+    }
+}
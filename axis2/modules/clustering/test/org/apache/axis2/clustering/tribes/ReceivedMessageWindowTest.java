@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.clustering.tribes;
+
+import junit.framework.TestCase;
+
+public class ReceivedMessageWindowTest extends TestCase {
+
+    public void testDuplicatesWithinTheWindow() {
+        ReceivedMessageWindow<String> window = new ReceivedMessageWindow<String>(1000, 5);
+        assertTrue(window.add("a", 0));
+        assertTrue(window.add("b", 10));
+        assertFalse(window.add("a", 20));
+        // still known in an older generation
+        assertFalse(window.add("a", 999));
+        assertFalse(window.add("b", 1005));
+        assertEquals(3, window.getDuplicateCount());
+        assertEquals(2, window.size());
+    }
+
+    public void testExpiredGenerationsAreDropped() {
+        ReceivedMessageWindow<String> window = new ReceivedMessageWindow<String>(1000, 5);
+        assertTrue(window.add("a", 0));
+        assertTrue(window.add("b", 500));
+        // the generation of "a" is out of the window once its slot is reused
+        assertTrue(window.add("c", 1200));
+        assertTrue(window.add("a", 1210));
+        assertFalse(window.add("b", 1220));
+        assertEquals(3, window.size());
+    }
+
+    public void testConcurrentAdds() throws Exception {
+        final ReceivedMessageWindow<Integer> window = new ReceivedMessageWindow<Integer>(60000, 5);
+        final int[] accepted = new int[4];
+        Thread[] threads = new Thread[accepted.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        if (window.add(i, System.currentTimeMillis())) {
+                            accepted[index]++;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total += accepted[t];
+        }
+        assertEquals(10000, total);
+        assertEquals(30000, window.getDuplicateCount());
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import junit.framework.TestCase;
+import org.I0Itec.zkclient.serialize.SerializableSerializer;
+import org.apache.axis2.clustering.TestDO;
+import org.apache.axis2.clustering.state.PropertySerializer;
+import org.apache.axis2.clustering.state.StateClusteringCommand;
+import org.apache.axis2.clustering.state.StateClusteringCommandFactory;
+import org.apache.axis2.clustering.state.commands.DeleteServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.DeleteServiceStateCommand;
+import org.apache.axis2.clustering.state.commands.StateClusteringCommandCollection;
+import org.apache.axis2.clustering.state.commands.UpdateConfigurationStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateServiceGroupStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateServiceStateCommand;
+import org.apache.axis2.clustering.state.commands.UpdateStateCommand;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ConfigurationContextFactory;
+import org.apache.axis2.context.PropertyDifference;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ZkBinarySerializerTest extends TestCase {
+
+    private static final Log log = LogFactory.getLog(ZkBinarySerializerTest.class);
+
+    private final ZkBinarySerializer serializer = new ZkBinarySerializer();
+
+    public void testUpdateServiceStateCommand() {
+        UpdateServiceStateCommand command = new UpdateServiceStateCommand();
+        command.setServiceGroupName("sg");
+        command.setServiceGroupContextId("sgCtx");
+        command.setServiceName("service");
+        addProperties(command);
+
+        UpdateServiceStateCommand copy = (UpdateServiceStateCommand) copy(command);
+        assertEquals("sg", copy.getServiceGroupName());
+        assertEquals("sgCtx", copy.getServiceGroupContextId());
+        assertEquals("service", copy.getServiceName());
+        assertProperties(copy);
+    }
+
+    public void testUpdateServiceGroupStateCommand() {
+        UpdateServiceGroupStateCommand command = new UpdateServiceGroupStateCommand();
+        command.setServiceGroupName("sg");
+        command.setServiceGroupContextId(null);
+        addProperties(command);
+
+        UpdateServiceGroupStateCommand copy = (UpdateServiceGroupStateCommand) copy(command);
+        assertEquals("sg", copy.getServiceGroupName());
+        assertNull(copy.getServiceGroupContextId());
+        assertProperties(copy);
+    }
+
+    public void testUpdateConfigurationStateCommand() {
+        UpdateConfigurationStateCommand command = new UpdateConfigurationStateCommand();
+        addProperties(command);
+        assertProperties((UpdateStateCommand) copy(command));
+    }
+
+    public void testDeleteCommands() {
+        DeleteServiceGroupStateCommand deleteGroup = new DeleteServiceGroupStateCommand();
+        deleteGroup.setServiceGroupContextId("sgCtx");
+        assertEquals("sgCtx",
+                ((DeleteServiceGroupStateCommand) copy(deleteGroup)).getServiceGroupContextId());
+
+        DeleteServiceStateCommand deleteService = new DeleteServiceStateCommand();
+        deleteService.setServiceGroupName("sg");
+        deleteService.setServiceGroupContextId("sgCtx");
+        deleteService.setServiceName("service");
+        DeleteServiceStateCommand copy = (DeleteServiceStateCommand) copy(deleteService);
+        assertEquals("sg", copy.getServiceGroupName());
+        assertEquals("sgCtx", copy.getServiceGroupContextId());
+        assertEquals("service", copy.getServiceName());
+    }
+
+    public void testCommandCollection() {
+        List<StateClusteringCommand> commands = new ArrayList<StateClusteringCommand>();
+        UpdateConfigurationStateCommand update = new UpdateConfigurationStateCommand();
+        addProperties(update);
+        commands.add(update);
+        DeleteServiceGroupStateCommand delete = new DeleteServiceGroupStateCommand();
+        delete.setServiceGroupContextId("sgCtx");
+        commands.add(delete);
+
+        StateClusteringCommandCollection copy =
+                (StateClusteringCommandCollection) copy(new StateClusteringCommandCollection(commands));
+        assertEquals(2, copy.getCommands().size());
+        assertProperties((UpdateStateCommand) copy.getCommands().get(0));
+        assertEquals("sgCtx",
+                ((DeleteServiceGroupStateCommand) copy.getCommands().get(1)).getServiceGroupContextId());
+    }
+
+    public void testZkMember() {
+        ZkMember member = createMember();
+        ZkMember copy = (ZkMember) copy(member);
+        assertEquals(member, copy);
+        assertTrue(Arrays.equals(member.getZkHost(), copy.getZkHost()));
+        assertEquals(member.getZkHostName(), copy.getZkHostName());
+        assertEquals(member.getPort(), copy.getPort());
+        assertTrue(Arrays.equals(member.getDomain(), copy.getDomain()));
+        assertTrue(Arrays.equals(member.getPayLoad(), copy.getPayLoad()));
+    }
+
+    public void testReadsJavaSerializedData() {
+        ZkMember member = createMember();
+        byte[] data = new SerializableSerializer().serialize(member);
+        assertEquals(member, serializer.deserialize(data));
+    }
+
+    public void testReusesSerializedPropertyValues() {
+        UpdateConfigurationStateCommand command = new UpdateConfigurationStateCommand();
+        // the bytes kept on the command are written instead of the value
+        command.addProperty(new PropertyDifference("object", new TestDO("name", "value"), false),
+                            PropertySerializer.serialize(new TestDO("cached", "value")));
+        UpdateStateCommand copy = (UpdateStateCommand) copy(command);
+        assertEquals("cached", ((TestDO) value(copy.getProperties(), "object")).getName());
+
+        // a property added again drops the bytes of the previous value
+        command.addProperty(new PropertyDifference("object", new TestDO("name", "value"), false));
+        assertNull(command.getSerializedValue("object"));
+        copy = (UpdateStateCommand) copy(command);
+        assertEquals("name", ((TestDO) value(copy.getProperties(), "object")).getName());
+    }
+
+    public void testCommandFactorySerializesValuesOnce() throws Exception {
+        ConfigurationContext configCtx = ConfigurationContextFactory.createEmptyConfigurationContext();
+        configCtx.setProperty("string", "value");
+        configCtx.setProperty("object", new TestDO("name", "value"));
+        configCtx.setProperty("notSerializable", new Object());
+        configCtx.setProperty("failing", new FailingValue());
+
+        UpdateStateCommand command = (UpdateStateCommand) StateClusteringCommandFactory
+                .getUpdateCommand(configCtx, new HashMap(), true);
+        assertNull(command.getSerializedValue("string"));
+        assertNotNull(command.getSerializedValue("object"));
+        assertNull(command.getProperties().get("notSerializable"));
+        assertNull(command.getProperties().get("failing"));
+
+        UpdateStateCommand copy = (UpdateStateCommand) copy(command);
+        assertEquals("value", value(copy.getProperties(), "string"));
+        assertEquals("name", ((TestDO) value(copy.getProperties(), "object")).getName());
+    }
+
+    public void testCompression() {
+        UpdateConfigurationStateCommand command = new UpdateConfigurationStateCommand();
+        StringBuffer value = new StringBuffer();
+        for (int i = 0; i < 1000; i++) {
+            value.append("replicated value ");
+        }
+        command.addProperty(new PropertyDifference("key", value.toString(), false));
+
+        byte[] plain = new ZkBinarySerializer(-1).serialize(command);
+        byte[] deflated = new ZkBinarySerializer(1024).serialize(command);
+        assertTrue(deflated.length < plain.length);
+
+        UpdateStateCommand copy = (UpdateStateCommand) serializer.deserialize(deflated);
+        assertEquals(value.toString(),
+                ((PropertyDifference) copy.getProperties().get("key")).getValue());
+    }
+
+    /**
+     * Compares the size and the serialization time of the binary encoding against Java
+     * serialization for a typical service context update
+     */
+    public void testSizeAndThroughputAgainstJavaSerialization() {
+        UpdateServiceStateCommand command = new UpdateServiceStateCommand();
+        command.setServiceGroupName("StockQuoteServiceGroup");
+        command.setServiceGroupContextId(UUID.randomUUID().toString());
+        command.setServiceName("StockQuoteService");
+        for (int i = 0; i < 10; i++) {
+            command.addProperty(new PropertyDifference("property" + i, "value" + i, false));
+        }
+        command.addProperty(new PropertyDifference("count", 42, false));
+
+        SerializableSerializer javaSerializer = new SerializableSerializer();
+        byte[] javaBytes = javaSerializer.serialize(command);
+        byte[] binaryBytes = serializer.serialize(command);
+        assertTrue(binaryBytes.length < javaBytes.length);
+
+        int iterations = 10000;
+        long javaTime = time(javaSerializer, command, iterations);
+        long binaryTime = time(serializer, command, iterations);
+        log.info("Java serialization: " + javaBytes.length + " bytes, " +
+                 javaTime / iterations + " ns per round trip");
+        log.info("Binary serialization: " + binaryBytes.length + " bytes, " +
+                 binaryTime / iterations + " ns per round trip");
+    }
+
+    private long time(org.I0Itec.zkclient.serialize.ZkSerializer zkSerializer, Object data,
+                      int iterations) {
+        // warm up before measuring
+        for (int i = 0; i < iterations; i++) {
+            zkSerializer.deserialize(zkSerializer.serialize(data));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            zkSerializer.deserialize(zkSerializer.serialize(data));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Object copy(Object data) {
+        return serializer.deserialize(serializer.serialize(data));
+    }
+
+    private void addProperties(UpdateStateCommand command) {
+        command.addProperty(new PropertyDifference("string", "value", false));
+        command.addProperty(new PropertyDifference("int", 10, false));
+        command.addProperty(new PropertyDifference("long", 10L, false));
+        command.addProperty(new PropertyDifference("boolean", Boolean.TRUE, false));
+        command.addProperty(new PropertyDifference("double", 1.5d, false));
+        command.addProperty(new PropertyDifference("char", 'c', false));
+        command.addProperty(new PropertyDifference("bytes", new byte[]{1, 2, 3}, false));
+        command.addProperty(new PropertyDifference("object", new TestDO("name", "value"), false));
+        command.addProperty(new PropertyDifference("removed", null, true));
+    }
+
+    private void assertProperties(UpdateStateCommand command) {
+        Map properties = command.getProperties();
+        assertEquals(9, properties.size());
+        assertEquals("value", value(properties, "string"));
+        assertEquals(10, value(properties, "int"));
+        assertEquals(10L, value(properties, "long"));
+        assertEquals(Boolean.TRUE, value(properties, "boolean"));
+        assertEquals(1.5d, value(properties, "double"));
+        assertEquals('c', value(properties, "char"));
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, (byte[]) value(properties, "bytes")));
+        assertEquals("name", ((TestDO) value(properties, "object")).getName());
+        assertTrue(((PropertyDifference) properties.get("removed")).isRemoved());
+        assertNull(value(properties, "removed"));
+    }
+
+    private Object value(Map properties, String key) {
+        return ((PropertyDifference) properties.get(key)).getValue();
+    }
+
+    private ZkMember createMember() {
+        ZkMember member = new ZkMemberImpl();
+        member.setZkNodeId(UUID.randomUUID());
+        member.setZkHost(new byte[]{(byte) 192, (byte) 168, 1, 10});
+        member.setZkHostName("192.168.1.10");
+        member.setPort(4000);
+        member.setDomain("wso2.carbon.domain".getBytes());
+        member.setPayLoad("httpPort=8080".getBytes());
+        return member;
+    }
+
+    /**
+     * A value whose custom serialization fails with a runtime exception
+     */
+    private static class FailingValue implements Serializable {
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            throw new IllegalStateException("not replicable");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.IDefaultNameSpace;
+import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.ZkServer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.util.UIDGenerator;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringConstants;
+import org.apache.axis2.clustering.state.commands.UpdateServiceGroupStateCommand;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ConfigurationContextFactory;
+import org.apache.axis2.context.ServiceGroupContext;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.AxisServiceGroup;
+import org.apache.axis2.description.Parameter;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the state commands of service group contexts are routed to the command shards and
+ * applied by the other members, whatever the number of shards
+ */
+public class ZooKeeperCommandShardingTest extends TestCase {
+
+	private static final String SERVICE_NAME = "ShardedService";
+	private static final int CONTEXTS = 40;
+	private static final int UPDATES = 800;
+
+	private ZkServer zks;
+	private Parameter serverString;
+	private ClusteringAgent clusterManager1;
+	private ClusteringAgent clusterManager2;
+
+	protected void setUp() throws Exception {
+		zks = new ZkServer("/tmp/zookeepershardingtest/data", "/tmp/zookeepershardingtest/log",
+				new IDefaultNameSpace() {
+					public void createDefaultNameSpace(ZkClient zkClient) {
+					}
+				}, 4599);
+		zks.start();
+
+		OMElement serversElement = AXIOMUtil.stringToOM(
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString = new Parameter("zookeeperServers",
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString.setParameterElement(serversElement);
+	}
+
+	private ConfigurationContext createConfigurationContext() throws Exception {
+		ConfigurationContext configCtx = ConfigurationContextFactory.createDefaultConfigurationContext();
+		configCtx.getAxisConfiguration().addService(new AxisService(SERVICE_NAME));
+		return configCtx;
+	}
+
+	private ClusteringAgent createClusterManager(ConfigurationContext configCtx,
+			Parameter domainParam, int shards) throws AxisFault {
+		ClusteringAgent clusteringAgent = new ZooKeeperClusteringAgent();
+		configCtx.getAxisConfiguration().setClusteringAgent(clusteringAgent);
+		clusteringAgent.setNodeManager(new ZooKeeperNodeManager());
+		clusteringAgent.setStateManager(new ZooKeeperStateManager());
+		clusteringAgent.setConfigurationContext(configCtx);
+		clusteringAgent.addParameter(domainParam);
+		clusteringAgent.addParameter(serverString);
+		clusteringAgent.addParameter(new Parameter(ZooKeeperConstants.COMMAND_SHARDS,
+				String.valueOf(shards)));
+		return clusteringAgent;
+	}
+
+	/**
+	 * Starts two members of a new domain, sends the updates from the first member and waits
+	 * until the second member applied all of them
+	 */
+	private void replicate(int shards, int updates) throws Exception {
+		Parameter domainParam = new Parameter(ClusteringConstants.Parameters.DOMAIN,
+				"axis2.domain." + UIDGenerator.generateUID());
+		ConfigurationContext configurationContext1 = createConfigurationContext();
+		clusterManager1 = createClusterManager(configurationContext1, domainParam, shards);
+		clusterManager1.init();
+		ConfigurationContext configurationContext2 = createConfigurationContext();
+		clusterManager2 = createClusterManager(configurationContext2, domainParam, shards);
+		clusterManager2.init();
+		// let the members answer the state request of the second member first
+		Thread.sleep(1000);
+
+		AxisServiceGroup serviceGroup =
+				configurationContext1.getAxisConfiguration().getServiceGroup(SERVICE_NAME);
+		ServiceGroupContext[] contexts = new ServiceGroupContext[CONTEXTS];
+		for (int i = 0; i < CONTEXTS; i++) {
+			contexts[i] = configurationContext1.createServiceGroupContext(serviceGroup);
+			contexts[i].setId("sg" + i);
+		}
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < updates; i++) {
+			ServiceGroupContext context = contexts[i % CONTEXTS];
+			context.setProperty("key", "value" + i);
+			clusterManager1.getStateManager().updateContext(context);
+		}
+		while (!isApplied(configurationContext2, updates)) {
+			if (System.currentTimeMillis() - start > 60000) {
+				fail("the updates were not applied with " + shards + " shards");
+			}
+			Thread.sleep(10);
+		}
+
+		clusterManager1.shutdown();
+		clusterManager2.shutdown();
+		clusterManager1 = null;
+		clusterManager2 = null;
+	}
+
+	private boolean isApplied(ConfigurationContext configurationContext, int updates) {
+		for (int i = updates - CONTEXTS; i < updates; i++) {
+			ServiceGroupContext context = configurationContext.getServiceGroupContext("sg" + (i % CONTEXTS));
+			if (context == null || !("value" + i).equals(context.getProperty("key"))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void testCommandsAreRoutedToShards() throws Exception {
+		String domain = "axis2.domain." + UIDGenerator.generateUID();
+		Parameter domainParam = new Parameter(ClusteringConstants.Parameters.DOMAIN, domain);
+		ConfigurationContext configurationContext1 = createConfigurationContext();
+		clusterManager1 = createClusterManager(configurationContext1, domainParam, 4);
+		clusterManager1.init();
+		ConfigurationContext configurationContext2 = createConfigurationContext();
+		clusterManager2 = createClusterManager(configurationContext2, domainParam, 4);
+		clusterManager2.init();
+		// let the members answer the state request of the second member first
+		Thread.sleep(1000);
+
+		AxisServiceGroup serviceGroup =
+				configurationContext1.getAxisConfiguration().getServiceGroup(SERVICE_NAME);
+		for (int i = 0; i < CONTEXTS; i++) {
+			ServiceGroupContext context = configurationContext1.createServiceGroupContext(serviceGroup);
+			context.setId("sg" + i);
+			context.setProperty("key", "value" + i);
+			clusterManager1.getStateManager().updateContext(context);
+		}
+		// configuration context updates are not bound to a shard
+		configurationContext1.setProperty("config", "value");
+		clusterManager1.getStateManager().updateContext(configurationContext1);
+
+		Thread.sleep(3000);
+		for (int i = 0; i < 4; i++) {
+			String shardPath = "/" + ZooKeeperUtils.getShardName(domain, i)
+					+ ZooKeeperConstants.COMMANDS_BASE_NAME;
+			assertFalse("shard " + i + " is not used",
+					ZooKeeperUtils.getZookeeper().getChildren(shardPath).isEmpty());
+		}
+		String commandPath = "/" + domain + ZooKeeperConstants.COMMANDS_BASE_NAME;
+		for (String command : ZooKeeperUtils.getZookeeper().getChildren(commandPath)) {
+			Object data = ZooKeeperUtils.getZookeeper().readData(commandPath + "/" + command);
+			assertFalse(data instanceof UpdateServiceGroupStateCommand);
+		}
+
+		assertTrue(isApplied(configurationContext2, CONTEXTS));
+		assertEquals("value", configurationContext2.getProperty("config"));
+	}
+
+	public void testUpdatesAreAppliedWithAnyShardCount() throws Exception {
+		int[] shardCounts = {0, 1, 2, 4, 8};
+		for (int shards : shardCounts) {
+			replicate(shards, UPDATES);
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		if (clusterManager1 != null) {
+			clusterManager1.shutdown();
+		}
+		if (clusterManager2 != null) {
+			clusterManager2.shutdown();
+		}
+		ZooKeeperUtils.getZookeeper().close();
+		Thread.sleep(500);
+		zks.shutdown();
+	}
+}
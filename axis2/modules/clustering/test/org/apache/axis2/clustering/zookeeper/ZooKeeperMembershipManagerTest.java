@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.clustering.zookeeper;
+
+import junit.framework.TestCase;
+import org.apache.axis2.clustering.Member;
+
+import java.util.List;
+import java.util.UUID;
+
+public class ZooKeeperMembershipManagerTest extends TestCase {
+
+    private static final byte[] DOMAIN = "axis2.domain".getBytes();
+
+    private ZkMember createMember(int port, String payload) {
+        ZkMember member = new ZkMemberImpl();
+        member.setZkNodeId(UUID.randomUUID());
+        member.setZkHost(new byte[]{(byte) 192, (byte) 168, 1, 10});
+        member.setPort(port);
+        member.setDomain(DOMAIN);
+        member.setPayLoad(payload.getBytes());
+        return member;
+    }
+
+    public void testMembersAreDecodedOnce() {
+        ZooKeeperMembershipManager manager = new ZooKeeperMembershipManager();
+        manager.setDomain(DOMAIN);
+
+        ZkMember member1 = createMember(4000, "httpPort=8080\nhttpsPort=8443\n");
+        ZkMember member2 = createMember(4001, "httpPort=8081\n");
+        assertTrue(manager.addMember(member1));
+        assertTrue(manager.addMember(member2));
+        assertFalse(manager.addMember(member1));
+        assertEquals(2, manager.getAliveMemberCount());
+
+        List<Member> members = manager.getAxis2Members();
+        assertEquals(2, members.size());
+        Member axis2Member = members.get(0).getPort() == 4000 ? members.get(0) : members.get(1);
+        assertEquals("192.168.1.10", axis2Member.getHostName());
+        assertEquals(8080, axis2Member.getHttpPort());
+        assertEquals(8443, axis2Member.getHttpsPort());
+        // the decoded members are cached
+        assertSame(members, manager.getAxis2Members());
+
+        assertSame(member2, manager.getMember(member2.getZkNodeID()));
+        assertTrue(manager.memberRemoved(member2));
+        assertFalse(manager.memberRemoved(member2));
+        assertNull(manager.getMember(member2.getZkNodeID()));
+        assertEquals(1, manager.getAliveMemberCount());
+        assertEquals(1, manager.getMembers().size());
+    }
+
+    public void testMembersOfOtherDomainsAreIgnored() {
+        ZooKeeperMembershipManager manager = new ZooKeeperMembershipManager();
+        manager.setDomain("other.domain".getBytes());
+        assertFalse(manager.addMember(createMember(4000, "")));
+        assertEquals(0, manager.getAliveMemberCount());
+    }
+}
@@ -0,0 +1,217 @@
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.IDefaultNameSpace;
+import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.ZkServer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.util.UIDGenerator;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringConstants;
+import org.apache.axis2.clustering.state.StateManager;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ConfigurationContextFactory;
+import org.apache.axis2.description.Parameter;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.pokura.zkclient.async.ZkAsyncConnection;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that a member joining late restores the state from a snapshot, that the command log
+ * is compacted once a snapshot is stored and that the cursor of a member survives the expiry of
+ * its session
+ */
+public class ZooKeeperSnapshotTest extends TestCase {
+
+	private static final int SNAPSHOT_INTERVAL = 5;
+	private static final int UPDATES = 12;
+
+	private ZkServer zks;
+	private Parameter domainParam;
+	private Parameter serverString;
+	private ClusteringAgent clusterManager1;
+	private ClusteringAgent clusterManager2;
+
+	protected void setUp() throws Exception {
+		zks = new ZkServer("/tmp/zookeepersnapshottest/data", "/tmp/zookeepersnapshottest/log",
+				new IDefaultNameSpace() {
+					public void createDefaultNameSpace(ZkClient zkClient) {
+					}
+				}, 4599);
+		zks.start();
+
+		domainParam = new Parameter(ClusteringConstants.Parameters.DOMAIN,
+				"axis2.domain." + UIDGenerator.generateUID());
+		OMElement serversElement = AXIOMUtil.stringToOM(
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString = new Parameter("zookeeperServers",
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString.setParameterElement(serversElement);
+	}
+
+	private ClusteringAgent createClusterManager(ConfigurationContext configCtx,
+			StateManager stateManager) throws AxisFault {
+		ClusteringAgent clusteringAgent = new ZooKeeperClusteringAgent();
+		configCtx.getAxisConfiguration().setClusteringAgent(clusteringAgent);
+		clusteringAgent.setNodeManager(new ZooKeeperNodeManager());
+		clusteringAgent.setStateManager(stateManager);
+		clusteringAgent.setConfigurationContext(configCtx);
+		clusteringAgent.addParameter(domainParam);
+		clusteringAgent.addParameter(serverString);
+		clusteringAgent.addParameter(new Parameter(ZooKeeperConstants.SNAPSHOT_INTERVAL,
+				String.valueOf(SNAPSHOT_INTERVAL)));
+		return clusteringAgent;
+	}
+
+	public void testNewMemberRestoresFromSnapshot() throws Exception {
+		String domain = (String) domainParam.getValue();
+
+		ConfigurationContext configurationContext1 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		StateManager ctxMan1 = new ZooKeeperStateManager();
+		clusterManager1 = createClusterManager(configurationContext1, ctxMan1);
+		clusterManager1.init();
+
+		for (int i = 0; i < UPDATES; i++) {
+			configurationContext1.setProperty("key" + i, "value" + i);
+			ctxMan1.updateContext(configurationContext1);
+		}
+		final String snapshotsPath = "/" + domain + ZooKeeperConstants.SNAPSHOTS_BASE_NAME;
+		final String commandsPath = "/" + domain + ZooKeeperConstants.COMMANDS_BASE_NAME;
+		// the older snapshot is replaced, and the commands covered by the snapshot and applied by
+		// every member are deleted
+		waitFor(new Condition() {
+			public boolean isMet() {
+				return ZooKeeperUtils.getZookeeper().getChildren(snapshotsPath).size() == 1
+						&& ZooKeeperUtils.getZookeeper().getChildren(commandsPath).size() < UPDATES;
+			}
+		});
+
+		// the second member restores the snapshot while it is initialized
+		ConfigurationContext configurationContext2 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		clusterManager2 = createClusterManager(configurationContext2, new ZooKeeperStateManager());
+		clusterManager2.init();
+		assertEquals("value0", configurationContext2.getProperty("key0"));
+
+		// and applies the commands after the snapshot
+		final ConfigurationContext restored = configurationContext2;
+		waitFor(new Condition() {
+			public boolean isMet() {
+				return restored.getProperty("key" + (UPDATES - 1)) != null;
+			}
+		});
+		for (int i = 0; i < UPDATES; i++) {
+			assertEquals("value" + i, configurationContext2.getProperty("key" + i));
+		}
+	}
+
+	public void testCursorIsCreatedAgainAfterSessionExpiry() throws Exception {
+		String domain = (String) domainParam.getValue();
+
+		ConfigurationContext configurationContext1 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		StateManager ctxMan1 = new ZooKeeperStateManager();
+		clusterManager1 = createClusterManager(configurationContext1, ctxMan1);
+		clusterManager1.init();
+
+		configurationContext1.setProperty("key0", "value0");
+		ctxMan1.updateContext(configurationContext1);
+		final String cursorsPath = "/" + domain + ZooKeeperConstants.CURSORS_BASE_NAME;
+		final String commandsPath = "/" + domain + ZooKeeperConstants.COMMANDS_BASE_NAME;
+		waitFor(new Condition() {
+			public boolean isMet() {
+				return getLastCommand(commandsPath).equals(readCursor(cursorsPath));
+			}
+		});
+
+		// closing a second client of the session expires it, together with the cursor
+		final ZkAsyncConnection connection = (ZkAsyncConnection) ZooKeeperUtils.getAsyncConnection();
+		final long sessionId = connection.getSessionId();
+		final CountDownLatch connected = new CountDownLatch(1);
+		ZooKeeper sameSession = new ZooKeeper("localhost:4599", 5000, new Watcher() {
+			public void process(WatchedEvent event) {
+				if (event.getState() == Event.KeeperState.SyncConnected) {
+					connected.countDown();
+				}
+			}
+		}, sessionId, connection.getSessionPasswd());
+		// the session is only closed if the client got connected before
+		assertTrue(connected.await(10, TimeUnit.SECONDS));
+		sameSession.close();
+		waitFor(new Condition() {
+			public boolean isMet() {
+				return ZooKeeperUtils.getZookeeper().getChildren(cursorsPath).isEmpty()
+						&& connection.getSessionId() != sessionId;
+			}
+		});
+		assertTrue(connection.waitUntilConnected(10, TimeUnit.SECONDS));
+
+		// the next applied command creates the cursor again on the new session
+		configurationContext1.setProperty("key1", "value1");
+		ctxMan1.updateContext(configurationContext1);
+		waitFor(new Condition() {
+			public boolean isMet() {
+				return getLastCommand(commandsPath).equals(readCursor(cursorsPath));
+			}
+		});
+		assertEquals(1, ZooKeeperUtils.getZookeeper().getChildren(cursorsPath).size());
+	}
+
+	private static String getLastCommand(String commandsPath) {
+		List<String> commands = ZooKeeperUtils.getZookeeper().getChildren(commandsPath);
+		return commands.isEmpty() ? "" : Collections.max(commands);
+	}
+
+	/**
+	 * @return the command recorded in the only cursor, null if there is none
+	 */
+	private static String readCursor(String cursorsPath) {
+		List<String> cursors = ZooKeeperUtils.getZookeeper().getChildren(cursorsPath);
+		if (cursors.size() != 1) {
+			return null;
+		}
+		try {
+			byte[] data = ZooKeeperUtils.getAsyncConnection()
+					.readData(cursorsPath + "/" + cursors.get(0), false).get(5, TimeUnit.SECONDS);
+			return data == null ? null : new String(data, "UTF-8");
+		} catch (Exception e) {
+			// the cursor is gone, or the connection is not connected
+			return null;
+		}
+	}
+
+	private interface Condition {
+		boolean isMet();
+	}
+
+	private static void waitFor(Condition condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.isMet()) {
+			assertTrue("Timed out", System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		if (clusterManager1 != null) {
+			clusterManager1.shutdown();
+		}
+		if (clusterManager2 != null) {
+			clusterManager2.shutdown();
+		}
+		ZooKeeperUtils.getZookeeper().close();
+		Thread.sleep(500);
+		zks.shutdown();
+	}
+}
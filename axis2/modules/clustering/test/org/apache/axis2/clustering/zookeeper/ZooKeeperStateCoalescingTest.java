@@ -0,0 +1,133 @@
+package org.apache.axis2.clustering.zookeeper;
+
+import org.I0Itec.zkclient.IDefaultNameSpace;
+import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.ZkServer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.util.UIDGenerator;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringConstants;
+import org.apache.axis2.context.AbstractContext;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ConfigurationContextFactory;
+import org.apache.axis2.description.Parameter;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that repeated updates of a context are coalesced into one command when a state flush
+ * interval is configured
+ */
+public class ZooKeeperStateCoalescingTest extends TestCase {
+
+	private static final int UPDATES = 50;
+
+	private ZkServer zks;
+	private Parameter domainParam;
+	private Parameter serverString;
+	private ClusteringAgent clusterManager1;
+	private ClusteringAgent clusterManager2;
+
+	protected void setUp() throws Exception {
+		zks = new ZkServer("/tmp/zookeepercoalescingtest/data", "/tmp/zookeepercoalescingtest/log",
+				new IDefaultNameSpace() {
+					public void createDefaultNameSpace(ZkClient zkClient) {
+					}
+				}, 4599);
+		zks.start();
+
+		domainParam = new Parameter(ClusteringConstants.Parameters.DOMAIN,
+				"axis2.domain." + UIDGenerator.generateUID());
+		OMElement serversElement = AXIOMUtil.stringToOM(
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString = new Parameter("zookeeperServers",
+				"<parameter name='zookeeperServers'><zkServer serverString='localhost:4599'/></parameter>");
+		serverString.setParameterElement(serversElement);
+	}
+
+	private ClusteringAgent createClusterManager(ConfigurationContext configCtx,
+			ZooKeeperStateManager stateManager, long flushInterval) throws AxisFault {
+		ClusteringAgent clusteringAgent = new ZooKeeperClusteringAgent();
+		configCtx.getAxisConfiguration().setClusteringAgent(clusteringAgent);
+		clusteringAgent.setNodeManager(new ZooKeeperNodeManager());
+		clusteringAgent.setStateManager(stateManager);
+		clusteringAgent.setConfigurationContext(configCtx);
+		clusteringAgent.addParameter(domainParam);
+		clusteringAgent.addParameter(serverString);
+		clusteringAgent.addParameter(new Parameter(ZooKeeperConstants.STATE_FLUSH_INTERVAL,
+				String.valueOf(flushInterval)));
+		return clusteringAgent;
+	}
+
+	public void testUpdatesAreCoalesced() throws Exception {
+		ConfigurationContext configurationContext1 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		ZooKeeperStateManager ctxMan1 = new ZooKeeperStateManager();
+		clusterManager1 = createClusterManager(configurationContext1, ctxMan1, 60000);
+		clusterManager1.init();
+
+		ConfigurationContext configurationContext2 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		clusterManager2 = createClusterManager(configurationContext2, new ZooKeeperStateManager(), 60000);
+		clusterManager2.init();
+
+		configurationContext1.setProperty("removed", "value");
+		for (int i = 0; i < UPDATES; i++) {
+			configurationContext1.setProperty("hot", "value" + i);
+			ctxMan1.updateContext(configurationContext1);
+		}
+		configurationContext1.removeProperty("removed");
+		ctxMan1.updateContext(configurationContext1);
+
+		// nothing is sent before the message is done
+		assertEquals(0, ctxMan1.getSentUpdates());
+		assertEquals(UPDATES, ctxMan1.getCoalescedUpdates());
+
+		ctxMan1.updateContexts(new AbstractContext[]{configurationContext1});
+		assertEquals(1, ctxMan1.getSentUpdates());
+		assertTrue(configurationContext1.getPropertyDifferences().isEmpty());
+
+		Thread.sleep(2000);
+		assertEquals("value" + (UPDATES - 1), configurationContext2.getProperty("hot"));
+		assertNull(configurationContext2.getProperty("removed"));
+	}
+
+	public void testPendingUpdatesAreFlushedByTimer() throws Exception {
+		ConfigurationContext configurationContext1 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		ZooKeeperStateManager ctxMan1 = new ZooKeeperStateManager();
+		clusterManager1 = createClusterManager(configurationContext1, ctxMan1, 200);
+		clusterManager1.init();
+
+		ConfigurationContext configurationContext2 =
+				ConfigurationContextFactory.createDefaultConfigurationContext();
+		clusterManager2 = createClusterManager(configurationContext2, new ZooKeeperStateManager(), 200);
+		clusterManager2.init();
+
+		for (int i = 0; i < UPDATES; i++) {
+			configurationContext1.setProperty("key" + (i % 5), "value" + i);
+			ctxMan1.updateContext(configurationContext1);
+		}
+
+		Thread.sleep(2000);
+		assertEquals(1, ctxMan1.getSentUpdates());
+		for (int i = UPDATES - 5; i < UPDATES; i++) {
+			assertEquals("value" + i, configurationContext2.getProperty("key" + (i % 5)));
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		if (clusterManager1 != null) {
+			clusterManager1.shutdown();
+		}
+		if (clusterManager2 != null) {
+			clusterManager2.shutdown();
+		}
+		ZooKeeperUtils.getZookeeper().close();
+		Thread.sleep(500);
+		zks.shutdown();
+	}
+}
@@ -21,40 +21,71 @@ package org.apache.axis2.json;
 
 import org.apache.axiom.om.OMException;
 import org.apache.axiom.om.ds.AbstractPullOMDataSource;
-import org.codehaus.jettison.AbstractXMLInputFactory;
-import org.codehaus.jettison.json.JSONTokener;
 
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.Writer;
 
 /**
- * JSONDataSource keeps the JSON String inside and consumes it when needed. This is to be kept in
- * the OMSourcedElement and can be used either to expand the tree or get the JSON String
- * directly without expanding. This uses the "Mapped" JSON convention.
+ * JSONDataSource keeps the JSON message inside and consumes it when needed. This is to be kept in
+ * the OMSourcedElement and can be used either to expand the tree or get the JSON message
+ * directly without expanding.
+ * <p/>
+ * The message is not read into memory: the tree is built from a streaming reader and an
+ * unmodified message is copied as is by {@link #writeTo(OutputStream, String)}. The message is
+ * only kept as a String if it is asked for with {@link #getObject()}.
  */
 
 public abstract class AbstractJSONDataSource extends AbstractPullOMDataSource {
 
+    private InputStream jsonStream;
+    private String charset;
     private Reader jsonReader;
     private String jsonString;
     private boolean isRead = false;
+    private boolean isConsumed = false;
 
     public AbstractJSONDataSource(Reader jsonReader) {
         this.jsonReader = jsonReader;
     }
 
+    /**
+     * @param jsonStream the JSON message
+     * @param charset    the character encoding of the message
+     */
+    public AbstractJSONDataSource(InputStream jsonStream, String charset) {
+        this.jsonStream = jsonStream;
+        this.charset = charset;
+    }
+
     public final XMLStreamReader getReader() throws XMLStreamException {
-        return getXMLInputFactory().createXMLStreamReader(new JSONTokener(getJSONString()));
+        if (isRead) {
+            return createReader(new StringReader(jsonString));
+        }
+        try {
+            return createReader(consume());
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
     }
 
-    protected abstract AbstractXMLInputFactory getXMLInputFactory() throws XMLStreamException;
-    
+    /**
+     * Creates the reader mapping the JSON message to XML.
+     *
+     * @param reader the JSON message
+     */
+    protected abstract XMLStreamReader createReader(Reader reader) throws XMLStreamException;
+
     public boolean isDestructiveRead() {
-        // TODO: for the moment the data source in not destructive (because it reads the entire message into memory before processing it), but this will change...
-        return false;
+        // the message can only be read again if it has been kept as a String
+        return !isRead;
     }
 
     @Override
@@ -62,13 +93,60 @@ public abstract class AbstractJSONDataSource extends AbstractPullOMDataSource {
         return getJSONString();
     }
 
+    /**
+     * Writes the JSON message as received, the bytes of the message are copied if it is written
+     * with the character encoding it was received with.
+     *
+     * @param out     the stream to write to
+     * @param charset the character encoding to write the message with
+     * @return <code>false</code> if the message is not available anymore, because it has been
+     *         consumed to build the tree
+     * @throws IOException if the message cannot be read or written
+     */
+    public boolean writeTo(OutputStream out, String charset) throws IOException {
+        if (isRead) {
+            out.write(jsonString.getBytes(charset));
+            return true;
+        } else if (isConsumed) {
+            return false;
+        }
+        byte[] buffer = new byte[4096];
+        if (jsonStream != null && this.charset.equalsIgnoreCase(charset)) {
+            isConsumed = true;
+            int readLen;
+            while ((readLen = jsonStream.read(buffer)) != -1) {
+                out.write(buffer, 0, readLen);
+            }
+        } else {
+            Reader reader = consume();
+            Writer writer = new OutputStreamWriter(out, charset);
+            char[] chars = new char[4096];
+            int readLen;
+            while ((readLen = reader.read(chars)) != -1) {
+                writer.write(chars, 0, readLen);
+            }
+            writer.flush();
+        }
+        return true;
+    }
+
+    private Reader consume() throws IOException {
+        if (isConsumed) {
+            throw new IOException("The JSON message has already been consumed");
+        }
+        isConsumed = true;
+        return jsonReader != null ? jsonReader : new InputStreamReader(jsonStream, charset);
+    }
+
     //returns the json string by consuming the JSON input stream.
     private String getJSONString() {
         if (isRead) {
             return jsonString;
+        } else if (isConsumed) {
+            return null;
         } else {
             try {
-                BufferedReader br = new BufferedReader(jsonReader);
+                Reader br = consume();
                 StringBuilder sb = new StringBuilder(512);
                 char[] tempBuf = new char[512];
                 int readLen;
@@ -78,7 +156,7 @@ public abstract class AbstractJSONDataSource extends AbstractPullOMDataSource {
                 }
                 jsonString = sb.toString();
             } catch (IOException e) {
-                throw new OMException();
+                throw new OMException(e);
             }
             isRead = true;
             return jsonString;
@@ -97,7 +97,11 @@ public abstract class AbstractJSONMessageFormatter implements MessageFormatter {
 
         String jsonToWrite = getStringToWrite(element);
         if (jsonToWrite != null) {
-            return jsonToWrite.getBytes();
+            try {
+                return jsonToWrite.getBytes(format.getCharSetEncoding());
+            } catch (UnsupportedEncodingException e) {
+                throw AxisFault.makeFault(e);
+            }
             //otherwise serialize the OM by expanding the tree
         } else {
             try {
@@ -154,11 +158,29 @@ public abstract class AbstractJSONMessageFormatter implements MessageFormatter {
         }
     }
 
+    /**
+     * Get the data source holding the original JSON message of the given element if the element
+     * has not been modified.
+     *
+     * @param element
+     *            the element
+     * @return the data source, or <code>null</code> if the message is not available
+     */
+    private AbstractJSONDataSource getDataSourceToWrite(OMElement element) {
+        if (element instanceof OMSourcedElement && !((OMSourcedElement)element).isExpanded()) {
+            OMDataSource dataSource = ((OMSourcedElement)element).getDataSource();
+            if (dataSource != null && dataSource.getClass() == dataSourceClass) {
+                return (AbstractJSONDataSource)dataSource;
+            }
+        }
+        return null;
+    }
+
     /**
      * Writes the JSON message to the output stream with the correct convention. If the payload is
-     * an OMSourcedElement and it contains a JSONDataSource with a correctly formatted JSON
-     * String, gets it directly from the DataSource and writes to the output stream. If not, the OM
-     * tree is expanded and it is serialized into the output stream.              *
+     * an OMSourcedElement which has not been expanded and it contains a JSONDataSource with the
+     * correct convention, the original message is copied from the DataSource to the output
+     * stream. If not, the element is serialized into the output stream.
      *
      * @param msgCtxt  Message context which contains the soap envelope to be written
      * @param format   format of the message, this is ignored
@@ -180,10 +202,8 @@ public abstract class AbstractJSONMessageFormatter implements MessageFormatter {
                 element2.setText(fault.toString());
                 element = element2;
             }
-            String jsonToWrite = getStringToWrite(element);
-            if (jsonToWrite != null) {
-                out.write(jsonToWrite.getBytes());
-            } else {
+            AbstractJSONDataSource dataSource = getDataSourceToWrite(element);
+            if (dataSource == null || !dataSource.writeTo(out, format.getCharSetEncoding())) {
                 XMLStreamWriter jsonWriter = getJSONWriter(out, format, msgCtxt);
                 // Jettison v1.2+ relies on writeStartDocument being called (AXIS2-5044)
                 jsonWriter.writeStartDocument();
@@ -60,51 +60,76 @@ public abstract class AbstractJSONOMBuilder implements Builder {
         //sets DoingREST to true because, security scenarios needs to handle in REST way
         messageContext.setDoingREST(true);
 
-        Reader reader;
-        
         //if the input stream is null, then check whether the HTTP method is GET, if so get the
         // JSON String which is received as a parameter, and make it an input stream
 
         if (inputStream == null) {
-            EndpointReference endpointReference = messageContext.getTo();
-            if (endpointReference == null) {
-                throw new AxisFault("Cannot create DocumentElement without destination EPR");
-            }
-
-            String requestURL;
-            try {
-                requestURL = URIEncoderDecoder.decode(endpointReference.getAddress());
-            } catch (UnsupportedEncodingException e) {
-                throw AxisFault.makeFault(e);
-            }
-
-            String jsonString;
-            int index;
-            //As the message is received through GET, check for "=" sign and consider the second
-            //half as the incoming JSON message
-            if ((index = requestURL.indexOf("=")) > 0) {
-                jsonString = requestURL.substring(index + 1);
-                reader = new StringReader(jsonString);
-            } else {
-                throw new AxisFault("No JSON message received through HTTP GET or POST");
-            }
+            return factory.createOMElement(
+                    getDataSource(getQueryReader(messageContext), messageContext));
         } else {
-            // Not sure where this is specified, but SOAPBuilder also determines the charset
-            // encoding like that
-            String charSetEncoding = (String)messageContext.getProperty(
-                    Constants.Configuration.CHARACTER_SET_ENCODING);
-            if (charSetEncoding == null) {
-                charSetEncoding = MessageContext.DEFAULT_CHAR_SET_ENCODING;
-            }
-            try {
-                reader = new InputStreamReader(inputStream, charSetEncoding);
-            } catch (UnsupportedEncodingException ex) {
-                throw AxisFault.makeFault(ex);
-            }
+            return factory.createOMElement(getDataSource(inputStream,
+                    getCharSetEncoding(messageContext), messageContext));
+        }
+    }
+
+    /**
+     * Gives the JSON message received through HTTP GET, as the value of the query parameter.
+     */
+    static Reader getQueryReader(MessageContext messageContext) throws AxisFault {
+        EndpointReference endpointReference = messageContext.getTo();
+        if (endpointReference == null) {
+            throw new AxisFault("Cannot create DocumentElement without destination EPR");
         }
 
-        return factory.createOMElement(getDataSource(reader, messageContext));
+        String requestURL;
+        try {
+            requestURL = URIEncoderDecoder.decode(endpointReference.getAddress());
+        } catch (UnsupportedEncodingException e) {
+            throw AxisFault.makeFault(e);
+        }
+
+        int index;
+        //As the message is received through GET, check for "=" sign and consider the second
+        //half as the incoming JSON message
+        if ((index = requestURL.indexOf("=")) > 0) {
+            return new StringReader(requestURL.substring(index + 1));
+        } else {
+            throw new AxisFault("No JSON message received through HTTP GET or POST");
+        }
+    }
+
+    /**
+     * Gives the character encoding of the JSON message received through HTTP POST.
+     */
+    static String getCharSetEncoding(MessageContext messageContext) {
+        // Not sure where this is specified, but SOAPBuilder also determines the charset
+        // encoding like that
+        String charSetEncoding = (String)messageContext.getProperty(
+                Constants.Configuration.CHARACTER_SET_ENCODING);
+        if (charSetEncoding == null) {
+            charSetEncoding = MessageContext.DEFAULT_CHAR_SET_ENCODING;
+        }
+        return charSetEncoding;
     }
 
     protected abstract AbstractJSONDataSource getDataSource(Reader jsonReader, MessageContext messageContext);
+
+    /**
+     * Gives the data source for a JSON message received as a stream. The message is read from the
+     * stream as it is processed, so that it does not need to be kept in memory.
+     *
+     * @param jsonStream - incoming message as an input stream
+     * @param charset - character encoding of the message
+     * @param messageContext - inflow message context
+     * @return the data source reading the given stream
+     * @throws AxisFault if the character encoding is not supported
+     */
+    protected AbstractJSONDataSource getDataSource(InputStream jsonStream, String charset,
+                                                   MessageContext messageContext) throws AxisFault {
+        try {
+            return getDataSource(new InputStreamReader(jsonStream, charset), messageContext);
+        } catch (UnsupportedEncodingException ex) {
+            throw AxisFault.makeFault(ex);
+        }
+    }
 }
@@ -0,0 +1,680 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the JSON {@link XMLStreamReader}s. The JSON text is read incrementally: an object
+ * is only looked ahead until its attributes are known, i.e. up to its first member holding an
+ * object or an array, so the memory used is bounded by the size of the simple members of an
+ * object instead of the size of the message.
+ * <p/>
+ * The mapping is the one of the Jettison conventions: the single member of the top level object
+ * is the document element, members starting with "@" are attributes, "$" is the text of an
+ * element, arrays are repeated elements and other members are child elements. As the
+ * attributes have to be known before the children are reported, an attribute after a member
+ * holding an object or an array is not buffered: reading it fails with an
+ * {@link XMLStreamException} naming the attribute and its element, as the members up to it have
+ * already been reported. The subclasses map the member names to qualified names.
+ */
+public abstract class AbstractJSONXMLStreamReader implements XMLStreamReader {
+
+    private static final String ATTRIBUTE_PREFIX = "@";
+    private static final String TEXT = "$";
+
+    private static final class Attribute {
+        private final QName name;
+        private final String value;
+
+        Attribute(QName name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static final class Event {
+        private final int type;
+        private final QName name;
+        private final List<Attribute> attributes;
+        private final List<String[]> namespaces;
+        private final String text;
+
+        Event(int type, QName name, List<Attribute> attributes, List<String[]> namespaces,
+              String text) {
+            this.type = type;
+            this.name = name;
+            this.attributes = attributes;
+            this.namespaces = namespaces;
+            this.text = text;
+        }
+    }
+
+    /** an object or array the tokenizer is in, the name is the one of the element */
+    private static final class Frame {
+        private final boolean array;
+        private final QName name;
+        private final String key;
+
+        Frame(boolean array, QName name, String key) {
+            this.array = array;
+            this.name = name;
+            this.key = key;
+        }
+    }
+
+    private final JSONStreamTokenizer tokenizer;
+    private final LinkedList<Event> events = new LinkedList<Event>();
+    private final LinkedList<Frame> frames = new LinkedList<Frame>();
+    /** namespace scopes while the events are produced */
+    private final LinkedList<Map<String, String>> producerScopes =
+            new LinkedList<Map<String, String>>();
+    /** namespace scopes of the current event */
+    private final LinkedList<Map<String, String>> scopes = new LinkedList<Map<String, String>>();
+    private boolean started;
+    private boolean ended;
+    private boolean popScope;
+    private Event current = new Event(START_DOCUMENT, null, null, null, null);
+
+    private final NamespaceContext namespaceContext = new NamespaceContext() {
+        public String getNamespaceURI(String prefix) {
+            return AbstractJSONXMLStreamReader.this.getNamespaceURI(prefix);
+        }
+
+        public String getPrefix(String namespaceURI) {
+            for (Map<String, String> scope : scopes) {
+                for (Map.Entry<String, String> entry : scope.entrySet()) {
+                    if (entry.getValue().equals(namespaceURI)
+                            && namespaceURI.equals(getNamespaceURI(entry.getKey()))) {
+                        return entry.getKey();
+                    }
+                }
+            }
+            return null;
+        }
+
+        public Iterator getPrefixes(String namespaceURI) {
+            String prefix = getPrefix(namespaceURI);
+            return prefix == null ? Collections.emptyList().iterator()
+                    : Collections.singletonList(prefix).iterator();
+        }
+    };
+
+    protected AbstractJSONXMLStreamReader(Reader reader) {
+        tokenizer = new JSONStreamTokenizer(reader);
+    }
+
+    /**
+     * Maps the name of a member to the name of an element.
+     *
+     * @param key the member name
+     */
+    protected abstract QName getElementName(String key) throws XMLStreamException;
+
+    /**
+     * Maps the name of an attribute member to the name of an attribute.
+     *
+     * @param key the member name without the "@"
+     */
+    protected abstract QName getAttributeName(String key) throws XMLStreamException;
+
+    /**
+     * Tells if the given attribute member holds namespace declarations, as an object mapping
+     * prefixes to namespaces, "$" being the default namespace.
+     */
+    protected boolean isNamespaceDeclaration(String key) {
+        return false;
+    }
+
+    /**
+     * Returns the namespace bound to the given prefix at the element currently being read from
+     * the JSON text, for use by {@link #getElementName(String)} and
+     * {@link #getAttributeName(String)}.
+     */
+    protected final String lookupNamespaceURI(String prefix) {
+        for (Map<String, String> scope : producerScopes) {
+            String namespaceURI = scope.get(prefix);
+            if (namespaceURI != null) {
+                return namespaceURI;
+            }
+        }
+        return null;
+    }
+
+    public int next() throws XMLStreamException {
+        if (current.type == END_DOCUMENT) {
+            throw new XMLStreamException("End of the JSON message reached");
+        }
+        if (popScope) {
+            scopes.removeFirst();
+            popScope = false;
+        }
+        while (events.isEmpty()) {
+            produce();
+        }
+        current = events.removeFirst();
+        if (current.type == START_ELEMENT) {
+            scopes.addFirst(toScope(current.namespaces));
+        } else if (current.type == END_ELEMENT) {
+            popScope = true;
+        }
+        return current.type;
+    }
+
+    private static Map<String, String> toScope(List<String[]> namespaces) {
+        if (namespaces.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> scope = new HashMap<String, String>();
+        for (String[] namespace : namespaces) {
+            scope.put(namespace[0], namespace[1]);
+        }
+        return scope;
+    }
+
+    /**
+     * Reads the JSON text up to the next event.
+     */
+    private void produce() throws XMLStreamException {
+        if (!started) {
+            started = true;
+            if (tokenizer.next() != JSONStreamTokenizer.BEGIN_OBJECT) {
+                throw new XMLStreamException("A JSON message has to be an object");
+            }
+            int token = tokenizer.next();
+            if (token != JSONStreamTokenizer.NAME) {
+                throw new XMLStreamException("No document element in the JSON message");
+            }
+            String key = tokenizer.getValue();
+            value(key, tokenizer.next());
+            return;
+        }
+        if (frames.isEmpty()) {
+            if (ended) {
+                throw new XMLStreamException("End of the JSON message reached");
+            }
+            int token = tokenizer.next();
+            if (token != JSONStreamTokenizer.END_OBJECT) {
+                throw new XMLStreamException("A JSON message has a single document element");
+            }
+            ended = true;
+            events.add(new Event(END_DOCUMENT, null, null, null, null));
+            return;
+        }
+        Frame frame = frames.getFirst();
+        int token = tokenizer.next();
+        if (frame.array) {
+            if (token == JSONStreamTokenizer.END_ARRAY) {
+                frames.removeFirst();
+            } else {
+                value(frame.key, token);
+            }
+        } else if (token == JSONStreamTokenizer.END_OBJECT) {
+            frames.removeFirst();
+            endElement(frame.name);
+        } else if (token == JSONStreamTokenizer.NAME) {
+            String key = tokenizer.getValue();
+            if (key.startsWith(ATTRIBUTE_PREFIX)) {
+                throw new XMLStreamException("The attribute " + key + " of " + frame.name
+                        + " follows a member holding an object or an array; the attributes of a"
+                        + " streamed JSON object have to precede such members");
+            }
+            token = tokenizer.next();
+            if (TEXT.equals(key)) {
+                events.add(new Event(CHARACTERS, null, null, null, text(token)));
+            } else {
+                value(key, token);
+            }
+        } else {
+            throw new XMLStreamException("Unexpected token in JSON object " + frame.name);
+        }
+    }
+
+    /**
+     * Handles the value of a member, the token being the first token of the value.
+     */
+    private void value(String key, int token) throws XMLStreamException {
+        switch (token) {
+            case JSONStreamTokenizer.BEGIN_OBJECT:
+                startObject(key);
+                break;
+            case JSONStreamTokenizer.BEGIN_ARRAY:
+                frames.addFirst(new Frame(true, null, key));
+                break;
+            case JSONStreamTokenizer.VALUE:
+            case JSONStreamTokenizer.NULL:
+                QName name = startElement(key, Collections.<Attribute>emptyList(),
+                        Collections.<String[]>emptyList(), false);
+                if (token == JSONStreamTokenizer.VALUE) {
+                    events.add(new Event(CHARACTERS, null, null, null, tokenizer.getValue()));
+                }
+                endElement(name);
+                break;
+            default:
+                throw new XMLStreamException("Unexpected end of the JSON message");
+        }
+    }
+
+    private String text(int token) throws XMLStreamException {
+        if (token == JSONStreamTokenizer.VALUE) {
+            return tokenizer.getValue();
+        } else if (token == JSONStreamTokenizer.NULL) {
+            return "";
+        } else {
+            throw new XMLStreamException("The value of an attribute or a text has to be simple");
+        }
+    }
+
+    /**
+     * Reads an object up to its first member holding an object or an array, to find the
+     * attributes of the element, and reports the element and its simple members.
+     */
+    private void startObject(String key) throws XMLStreamException {
+        List<String[]> attributes = new ArrayList<String[]>();
+        List<String[]> namespaces = new ArrayList<String[]>();
+        // the simple members before the first complex one, as key/text pairs
+        List<String[]> members = new ArrayList<String[]>();
+        String complexKey = null;
+        int complexToken = JSONStreamTokenizer.END_OBJECT;
+        while (true) {
+            int token = tokenizer.next();
+            if (token == JSONStreamTokenizer.END_OBJECT) {
+                break;
+            } else if (token != JSONStreamTokenizer.NAME) {
+                throw new XMLStreamException("Unexpected token in JSON object " + key);
+            }
+            String member = tokenizer.getValue();
+            token = tokenizer.next();
+            if (member.startsWith(ATTRIBUTE_PREFIX)) {
+                String attributeKey = member.substring(ATTRIBUTE_PREFIX.length());
+                if (isNamespaceDeclaration(member)) {
+                    readNamespaces(token, namespaces);
+                } else {
+                    attributes.add(new String[] { attributeKey, text(token) });
+                }
+            } else if (token == JSONStreamTokenizer.BEGIN_OBJECT
+                    || token == JSONStreamTokenizer.BEGIN_ARRAY) {
+                complexKey = member;
+                complexToken = token;
+                break;
+            } else if (TEXT.equals(member)) {
+                members.add(new String[] { null, text(token) });
+            } else {
+                members.add(new String[] { member,
+                        token == JSONStreamTokenizer.NULL ? null : text(token) });
+            }
+        }
+
+        producerScopes.addFirst(toScope(namespaces));
+        List<Attribute> resolved = new ArrayList<Attribute>(attributes.size());
+        for (String[] attribute : attributes) {
+            resolved.add(new Attribute(getAttributeName(attribute[0]), attribute[1]));
+        }
+        QName name = startElement(key, resolved, namespaces, true);
+        for (String[] member : members) {
+            if (member[0] == null) {
+                events.add(new Event(CHARACTERS, null, null, null, member[1]));
+            } else {
+                QName childName = startElement(member[0], Collections.<Attribute>emptyList(),
+                        Collections.<String[]>emptyList(), false);
+                if (member[1] != null) {
+                    events.add(new Event(CHARACTERS, null, null, null, member[1]));
+                }
+                endElement(childName);
+            }
+        }
+        if (complexKey == null) {
+            endElement(name);
+        } else {
+            frames.addFirst(new Frame(false, name, key));
+            value(complexKey, complexToken);
+        }
+    }
+
+    private void readNamespaces(int token, List<String[]> namespaces) throws XMLStreamException {
+        if (token != JSONStreamTokenizer.BEGIN_OBJECT) {
+            throw new XMLStreamException("Namespace declarations have to be an object");
+        }
+        while ((token = tokenizer.next()) == JSONStreamTokenizer.NAME) {
+            String prefix = tokenizer.getValue();
+            String namespaceURI = text(tokenizer.next());
+            namespaces.add(new String[] { TEXT.equals(prefix) ? "" : prefix, namespaceURI });
+        }
+        if (token != JSONStreamTokenizer.END_OBJECT) {
+            throw new XMLStreamException("Namespace declarations have to be an object");
+        }
+    }
+
+    /**
+     * Adds the start element event, declaring the namespace of the element if it is not in scope.
+     *
+     * @param scoped tells if the scope of the element has already been opened, with the given
+     *               namespace declarations
+     */
+    private QName startElement(String key, List<Attribute> attributes, List<String[]> namespaces,
+                               boolean scoped) throws XMLStreamException {
+        if (!scoped) {
+            producerScopes.addFirst(Collections.<String, String>emptyMap());
+        }
+        QName name = getElementName(key);
+        String namespaceURI = lookupNamespaceURI(name.getPrefix());
+        if (!name.getNamespaceURI().equals(namespaceURI == null ? "" : namespaceURI)) {
+            namespaces = new ArrayList<String[]>(namespaces);
+            namespaces.add(new String[] { name.getPrefix(), name.getNamespaceURI() });
+            Map<String, String> scope = new HashMap<String, String>(producerScopes.removeFirst());
+            scope.put(name.getPrefix(), name.getNamespaceURI());
+            producerScopes.addFirst(scope);
+        }
+        events.add(new Event(START_ELEMENT, name, attributes, namespaces, null));
+        return name;
+    }
+
+    private void endElement(QName name) {
+        producerScopes.removeFirst();
+        events.add(new Event(END_ELEMENT, name, null, Collections.<String[]>emptyList(), null));
+    }
+
+    public boolean hasNext() throws XMLStreamException {
+        return current.type != END_DOCUMENT;
+    }
+
+    public void close() throws XMLStreamException {
+        try {
+            tokenizer.close();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    public int getEventType() {
+        return current.type;
+    }
+
+    public QName getName() {
+        checkElement();
+        return current.name;
+    }
+
+    public String getLocalName() {
+        return getName().getLocalPart();
+    }
+
+    public String getNamespaceURI() {
+        if (current.type != START_ELEMENT && current.type != END_ELEMENT) {
+            return null;
+        }
+        return current.name.getNamespaceURI();
+    }
+
+    public String getPrefix() {
+        if (current.type != START_ELEMENT && current.type != END_ELEMENT) {
+            return null;
+        }
+        return current.name.getPrefix();
+    }
+
+    public boolean hasName() {
+        return current.type == START_ELEMENT || current.type == END_ELEMENT;
+    }
+
+    private void checkElement() {
+        if (!hasName()) {
+            throw new IllegalStateException("Not at an element");
+        }
+    }
+
+    private void checkStartElement() {
+        if (current.type != START_ELEMENT) {
+            throw new IllegalStateException("Not at a start element");
+        }
+    }
+
+    public int getAttributeCount() {
+        checkStartElement();
+        return current.attributes.size();
+    }
+
+    public QName getAttributeName(int index) {
+        checkStartElement();
+        return current.attributes.get(index).name;
+    }
+
+    public String getAttributeLocalName(int index) {
+        return getAttributeName(index).getLocalPart();
+    }
+
+    public String getAttributeNamespace(int index) {
+        return getAttributeName(index).getNamespaceURI();
+    }
+
+    public String getAttributePrefix(int index) {
+        return getAttributeName(index).getPrefix();
+    }
+
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+
+    public String getAttributeValue(int index) {
+        checkStartElement();
+        return current.attributes.get(index).value;
+    }
+
+    public boolean isAttributeSpecified(int index) {
+        return true;
+    }
+
+    public String getAttributeValue(String namespaceURI, String localName) {
+        checkStartElement();
+        for (Attribute attribute : current.attributes) {
+            if (attribute.name.getLocalPart().equals(localName) && (namespaceURI == null
+                    || attribute.name.getNamespaceURI().equals(namespaceURI))) {
+                return attribute.value;
+            }
+        }
+        return null;
+    }
+
+    public int getNamespaceCount() {
+        checkElement();
+        return current.namespaces.size();
+    }
+
+    public String getNamespacePrefix(int index) {
+        checkElement();
+        String prefix = current.namespaces.get(index)[0];
+        return prefix.length() == 0 ? null : prefix;
+    }
+
+    public String getNamespaceURI(int index) {
+        checkElement();
+        return current.namespaces.get(index)[1];
+    }
+
+    public String getNamespaceURI(String prefix) {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        for (Map<String, String> scope : scopes) {
+            String namespaceURI = scope.get(prefix);
+            if (namespaceURI != null) {
+                return namespaceURI;
+            }
+        }
+        return prefix.length() == 0 ? "" : null;
+    }
+
+    public NamespaceContext getNamespaceContext() {
+        return namespaceContext;
+    }
+
+    public String getText() {
+        if (current.type != CHARACTERS) {
+            throw new IllegalStateException("Not at a text");
+        }
+        return current.text;
+    }
+
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) {
+        String text = getText();
+        int count = Math.min(length, text.length() - sourceStart);
+        text.getChars(sourceStart, sourceStart + count, target, targetStart);
+        return count;
+    }
+
+    public int getTextStart() {
+        return 0;
+    }
+
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    public boolean hasText() {
+        return current.type == CHARACTERS;
+    }
+
+    public boolean isStartElement() {
+        return current.type == START_ELEMENT;
+    }
+
+    public boolean isEndElement() {
+        return current.type == END_ELEMENT;
+    }
+
+    public boolean isCharacters() {
+        return current.type == CHARACTERS;
+    }
+
+    public boolean isWhiteSpace() {
+        return current.type == CHARACTERS && current.text.trim().length() == 0;
+    }
+
+    public String getElementText() throws XMLStreamException {
+        if (current.type != START_ELEMENT) {
+            throw new XMLStreamException("Not at a start element");
+        }
+        StringBuilder text = new StringBuilder();
+        int event;
+        while ((event = next()) != END_ELEMENT) {
+            if (event == CHARACTERS) {
+                text.append(current.text);
+            } else {
+                throw new XMLStreamException("Element " + current.name
+                        + " is not a text only element");
+            }
+        }
+        return text.toString();
+    }
+
+    public int nextTag() throws XMLStreamException {
+        int event = next();
+        while (event == CHARACTERS && isWhiteSpace()) {
+            event = next();
+        }
+        if (event != START_ELEMENT && event != END_ELEMENT) {
+            throw new XMLStreamException("Expected a start or end element");
+        }
+        return event;
+    }
+
+    public void require(int type, String namespaceURI, String localName)
+            throws XMLStreamException {
+        if (type != current.type
+                || namespaceURI != null && !namespaceURI.equals(getNamespaceURI())
+                || localName != null && !localName.equals(getLocalName())) {
+            throw new XMLStreamException("Required event " + type + " not found");
+        }
+    }
+
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    public String getEncoding() {
+        return null;
+    }
+
+    public String getVersion() {
+        return null;
+    }
+
+    public boolean isStandalone() {
+        return false;
+    }
+
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    public String getCharacterEncodingScheme() {
+        return null;
+    }
+
+    public String getPITarget() {
+        return null;
+    }
+
+    public String getPIData() {
+        return null;
+    }
+
+    public Location getLocation() {
+        return new Location() {
+            public int getLineNumber() {
+                return -1;
+            }
+
+            public int getColumnNumber() {
+                return -1;
+            }
+
+            public int getCharacterOffset() {
+                return -1;
+            }
+
+            public String getPublicId() {
+                return null;
+            }
+
+            public String getSystemId() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import java.io.Reader;
+
+/**
+ * Streaming {@link javax.xml.stream.XMLStreamReader} for the "Badgerfish" convention. Member
+ * names are prefixed names and the namespaces are declared by the "@xmlns" member, "$" being the
+ * default namespace.
+ */
+public class BadgerfishJSONXMLStreamReader extends AbstractJSONXMLStreamReader {
+
+    public BadgerfishJSONXMLStreamReader(Reader reader) {
+        super(reader);
+    }
+
+    @Override
+    protected boolean isNamespaceDeclaration(String key) {
+        return "@xmlns".equals(key);
+    }
+
+    @Override
+    protected QName getElementName(String key) throws XMLStreamException {
+        return createQName(key, true);
+    }
+
+    @Override
+    protected QName getAttributeName(String key) throws XMLStreamException {
+        return createQName(key, false);
+    }
+
+    private QName createQName(String key, boolean element) throws XMLStreamException {
+        int colon = key.indexOf(':');
+        if (colon == -1) {
+            String namespaceURI = element ? lookupNamespaceURI("") : null;
+            return new QName(namespaceURI == null ? "" : namespaceURI, key);
+        }
+        String prefix = key.substring(0, colon);
+        String namespaceURI = lookupNamespaceURI(prefix);
+        if (namespaceURI == null) {
+            throw new XMLStreamException("Undeclared namespace prefix " + prefix);
+        }
+        return new QName(namespaceURI, key.substring(colon + 1), prefix);
+    }
+}
@@ -19,9 +19,8 @@
 
 package org.apache.axis2.json;
 
-import org.codehaus.jettison.AbstractXMLInputFactory;
-import org.codehaus.jettison.badgerfish.BadgerFishXMLInputFactory;
-
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
 import java.io.Reader;
 
 /**
@@ -34,8 +33,12 @@ public class JSONBadgerfishDataSource extends AbstractJSONDataSource {
         super(jsonReader);
     }
 
+    public JSONBadgerfishDataSource(InputStream jsonStream, String charset) {
+        super(jsonStream, charset);
+    }
+
     @Override
-    protected AbstractXMLInputFactory getXMLInputFactory() {
-        return new BadgerFishXMLInputFactory();
+    protected XMLStreamReader createReader(Reader reader) {
+        return new BadgerfishJSONXMLStreamReader(reader);
     }
 }
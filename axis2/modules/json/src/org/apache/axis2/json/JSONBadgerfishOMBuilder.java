@@ -19,6 +19,7 @@
 
 package org.apache.axis2.json;
 
+import java.io.InputStream;
 import java.io.Reader;
 
 import org.apache.axis2.context.MessageContext;
@@ -33,4 +34,10 @@ public class JSONBadgerfishOMBuilder extends AbstractJSONOMBuilder {
     protected AbstractJSONDataSource getDataSource(Reader jsonReader, MessageContext messageContext) {
         return new JSONBadgerfishDataSource(jsonReader);
     }
+
+    @Override
+    protected AbstractJSONDataSource getDataSource(InputStream jsonStream, String charset,
+                                                   MessageContext messageContext) {
+        return new JSONBadgerfishDataSource(jsonStream, charset);
+    }
 }
@@ -21,12 +21,12 @@ package org.apache.axis2.json;
 
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.description.AxisService;
-import org.codehaus.jettison.AbstractXMLInputFactory;
-import org.codehaus.jettison.mapped.MappedXMLInputFactory;
 
+import java.io.InputStream;
 import java.io.Reader;
 
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * JSON data source implementation for the "Mapped" convention.
@@ -40,14 +40,19 @@ public class JSONDataSource extends AbstractJSONDataSource {
         this.messageContext = messageContext;
     }
 
+    public JSONDataSource(InputStream jsonStream, String charset, MessageContext messageContext) {
+        super(jsonStream, charset);
+        this.messageContext = messageContext;
+    }
+
     @Override
-    protected AbstractXMLInputFactory getXMLInputFactory() throws XMLStreamException {
+    protected XMLStreamReader createReader(Reader reader) throws XMLStreamException {
         AxisService service = messageContext.getAxisService();
         if (service == null) {
             throw new XMLStreamException("AxisService not yet set; unable to create namespace map");
         }
 
-        //input factory for "Mapped" convention
-        return new MappedXMLInputFactory(JSONUtil.getNS2JNSMap(service));
+        //reader for "Mapped" convention
+        return new MappedJSONXMLStreamReader(reader, JSONUtil.getNS2JNSMap(service));
     }
 }
@@ -20,7 +20,6 @@
 package org.apache.axis2.json;
 
 import org.apache.axis2.context.MessageContext;
-import org.codehaus.jettison.mapped.MappedXMLOutputFactory;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -46,7 +45,7 @@ public class JSONMessageFormatter extends AbstractJSONMessageFormatter {
     //returns the "Mapped" JSON writer
     @Override
     protected XMLStreamWriter getJSONWriter(Writer writer, MessageContext messageContext) throws XMLStreamException {
-        return new MappedXMLOutputFactory(JSONUtil.getNS2JNSMap(
-                messageContext.getAxisService())).createXMLStreamWriter(writer);
+        return new MappedJSONXMLStreamWriter(writer,
+                JSONUtil.getNS2JNSMap(messageContext.getAxisService()));
     }
 }
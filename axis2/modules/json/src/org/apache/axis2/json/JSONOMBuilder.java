@@ -19,6 +19,7 @@
 
 package org.apache.axis2.json;
 
+import java.io.InputStream;
 import java.io.Reader;
 
 import org.apache.axis2.context.MessageContext;
@@ -30,4 +31,10 @@ public class JSONOMBuilder extends AbstractJSONOMBuilder {
     protected AbstractJSONDataSource getDataSource(Reader jsonReader, MessageContext messageContext) {
         return new JSONDataSource(jsonReader, messageContext);
     }
+
+    @Override
+    protected AbstractJSONDataSource getDataSource(InputStream jsonStream, String charset,
+                                                   MessageContext messageContext) {
+        return new JSONDataSource(jsonStream, charset, messageContext);
+    }
 }
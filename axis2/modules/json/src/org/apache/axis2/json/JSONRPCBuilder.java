@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.builder.Builder;
+import org.apache.axis2.context.MessageContext;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Message builder for JSON services bound to their Java methods without going through XML, to be
+ * used with {@link JSONRPCMessageReceiver} and {@link JSONRPCMessageFormatter}.
+ * <p/>
+ * The request is not read here: it is kept in the message context as a {@link JSONRPCRequest},
+ * under {@link #JSON_RPC_REQUEST}. The body of the message only holds an empty element named
+ * after the request, so that the operation is dispatched as usual, by the request URI or by the
+ * name of the request.
+ */
+public class JSONRPCBuilder implements Builder {
+
+    /**
+     * Name of the message context property holding the {@link JSONRPCRequest}
+     */
+    public static final String JSON_RPC_REQUEST = "JSON_RPC_REQUEST";
+
+    public OMElement processDocument(InputStream inputStream, String contentType,
+                                     MessageContext messageContext) throws AxisFault {
+        //sets DoingREST to true because, security scenarios needs to handle in REST way
+        messageContext.setDoingREST(true);
+
+        Reader reader;
+        if (inputStream == null) {
+            reader = AbstractJSONOMBuilder.getQueryReader(messageContext);
+        } else {
+            try {
+                reader = new InputStreamReader(inputStream,
+                        AbstractJSONOMBuilder.getCharSetEncoding(messageContext));
+            } catch (UnsupportedEncodingException ex) {
+                throw AxisFault.makeFault(ex);
+            }
+        }
+
+        JSONRPCRequest request = new JSONRPCRequest(reader);
+        messageContext.setProperty(JSON_RPC_REQUEST, request);
+        return OMAbstractFactory.getOMFactory().createOMElement(request.getName(), null);
+    }
+}
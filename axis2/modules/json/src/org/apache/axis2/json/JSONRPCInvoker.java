@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.Parameter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Invokes the Java method of an operation with the parameters of a {@link JSONRPCRequest}. The
+ * method lookup, its parameter types and names, and the bindings of the types involved are
+ * worked out once per operation and implementation class, see
+ * {@link #getInvoker(AxisOperation, Class)}.
+ */
+final class JSONRPCInvoker {
+
+    /**
+     * Name of the operation parameter holding the invokers of the operation
+     */
+    private static final String INVOKERS = "jsonRPCInvokers";
+
+    private final Method method;
+    private final Type[] parameterTypes;
+    private final String[] parameterNames;
+    private final JSONTypeBinder binder = new JSONTypeBinder();
+
+    JSONRPCInvoker(Method method, AxisService service) {
+        this.method = method;
+        parameterTypes = method.getGenericParameterTypes();
+        Parameter namesParameter = service == null ? null : service.getParameter(method.getName());
+        parameterNames = namesParameter == null || !(namesParameter.getValue() instanceof String[])
+                ? null : (String[]) namesParameter.getValue();
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // the access checks are done on every invocation then
+        }
+    }
+
+    /**
+     * Returns the invoker of the given operation for the given implementation class, the public
+     * method named after the operation.
+     *
+     * @throws AxisFault if the class has no such method
+     */
+    static JSONRPCInvoker getInvoker(AxisOperation op, Class<?> implClass) throws AxisFault {
+        ConcurrentMap<Class<?>, JSONRPCInvoker> invokers = getInvokers(op);
+        JSONRPCInvoker invoker = invokers.get(implClass);
+        if (invoker == null) {
+            String methodName = op.getName().getLocalPart();
+            Method method = null;
+            for (Method candidate : implClass.getMethods()) {
+                if (!candidate.isBridge() && candidate.getName().equals(methodName)) {
+                    method = candidate;
+                    break;
+                }
+            }
+            if (method == null) {
+                throw new AxisFault("No such method '" + methodName +
+                        "' in class " + implClass.getName());
+            }
+            // a racing thread builds the same invoker, keep the first one
+            JSONRPCInvoker existing = invokers.putIfAbsent(implClass,
+                    new JSONRPCInvoker(method, op.getAxisService()));
+            invoker = existing == null ? invokers.get(implClass) : existing;
+        }
+        return invoker;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Class<?>, JSONRPCInvoker> getInvokers(AxisOperation op)
+            throws AxisFault {
+        Object invokers = op.getParameterValue(INVOKERS);
+        if (invokers == null) {
+            synchronized (op) {
+                invokers = op.getParameterValue(INVOKERS);
+                if (invokers == null) {
+                    invokers = new ConcurrentHashMap<Class<?>, JSONRPCInvoker>();
+                    op.addParameter(INVOKERS, invokers);
+                }
+            }
+        }
+        return (ConcurrentMap<Class<?>, JSONRPCInvoker>) invokers;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    JSONTypeBinder getBinder() {
+        return binder;
+    }
+
+    /**
+     * Binds the parameters of the request and invokes the method.
+     *
+     * @param implObject the service implementation
+     * @param request    the request
+     * @return the result of the method
+     */
+    Object invoke(Object implObject, JSONRPCRequest request) throws AxisFault,
+            IllegalAccessException, InvocationTargetException {
+        return method.invoke(implObject,
+                request.readParameters(parameterTypes, parameterNames, binder));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.OMDataSource;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.om.OMSourcedElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Message formatter writing the responses of {@link JSONRPCMessageReceiver} as JSON directly
+ * from the returned value. Other messages, such as faults, are written in the "Mapped"
+ * convention.
+ */
+public class JSONRPCMessageFormatter extends JSONMessageFormatter {
+
+    @Override
+    public byte[] getBytes(MessageContext msgCtxt, OMOutputFormat format) throws AxisFault {
+        JSONRPCResponseDataSource response = getResponse(msgCtxt);
+        if (response == null) {
+            return super.getBytes(msgCtxt, format);
+        }
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        write(response, format, bytesOut);
+        return bytesOut.toByteArray();
+    }
+
+    @Override
+    public void writeTo(MessageContext msgCtxt, OMOutputFormat format,
+                        OutputStream out, boolean preserve) throws AxisFault {
+        JSONRPCResponseDataSource response = getResponse(msgCtxt);
+        if (response == null) {
+            super.writeTo(msgCtxt, format, out, preserve);
+        } else {
+            write(response, format, out);
+        }
+    }
+
+    private static void write(JSONRPCResponseDataSource response, OMOutputFormat format,
+                              OutputStream out) throws AxisFault {
+        try {
+            Writer writer = new OutputStreamWriter(out, format.getCharSetEncoding());
+            response.writeTo(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw AxisFault.makeFault(e);
+        }
+    }
+
+    /**
+     * Returns the response of the message receiver, if the payload is one and it has not been
+     * modified.
+     */
+    private static JSONRPCResponseDataSource getResponse(MessageContext msgCtxt) {
+        OMElement element = msgCtxt.getEnvelope().getBody().getFirstElement();
+        if (element instanceof OMSourcedElement && !((OMSourcedElement)element).isExpanded()) {
+            OMDataSource dataSource = ((OMSourcedElement)element).getDataSource();
+            if (dataSource instanceof JSONRPCResponseDataSource) {
+                return (JSONRPCResponseDataSource)dataSource;
+            }
+        }
+        return null;
+    }
+}
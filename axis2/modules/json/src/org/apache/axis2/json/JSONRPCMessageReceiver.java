@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.description.AxisMessage;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.receivers.AbstractInOutMessageReceiver;
+import org.apache.axis2.wsdl.WSDLConstants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.xml.namespace.QName;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Message receiver binding JSON requests directly to the parameters of the service method and
+ * its return value to the JSON response, without the XML form of the messages used by the RPC
+ * message receiver. The request has to be built by {@link JSONRPCBuilder} and the response is
+ * written by {@link JSONRPCMessageFormatter}; the messages have the same form as the ones of the
+ * RPC message receiver in the "Mapped" convention, for instance
+ * <code>{"sayHello":{"myName":"Joe"}}</code> and
+ * <code>{"sayHelloResponse":{"return":"Hello Joe!"}}</code>.
+ * <p/>
+ * The method of the operation and the bindings of its types are cached per operation.
+ */
+public class JSONRPCMessageReceiver extends AbstractInOutMessageReceiver {
+    private static Log log = LogFactory.getLog(JSONRPCMessageReceiver.class);
+
+    public void invokeBusinessLogic(MessageContext inMessage, MessageContext outMessage)
+            throws AxisFault {
+        JSONRPCRequest request =
+                (JSONRPCRequest)inMessage.getProperty(JSONRPCBuilder.JSON_RPC_REQUEST);
+        if (request == null) {
+            throw new AxisFault("The request has not been built by "
+                    + JSONRPCBuilder.class.getName());
+        }
+        Method method = null;
+        try {
+            // get the implementation class for the Web Service
+            Object obj = getTheImplementationObject(inMessage);
+
+            AxisOperation op = inMessage.getOperationContext().getAxisOperation();
+            JSONRPCInvoker invoker = JSONRPCInvoker.getInvoker(op, obj.getClass());
+            method = invoker.getMethod();
+            Object resObject = invoker.invoke(obj, request);
+
+            AxisService service = inMessage.getAxisService();
+            AxisMessage outAxisMessage = op.getMessage(WSDLConstants.MESSAGE_LABEL_OUT_VALUE);
+            QName responseName;
+            if (outAxisMessage != null && outAxisMessage.getElementQName() != null) {
+                responseName = outAxisMessage.getElementQName();
+            } else {
+                responseName = new QName(service.getTargetNamespace(),
+                        method.getName() + "Response");
+            }
+
+            SOAPFactory fac = getSOAPFactory(inMessage);
+            OMNamespace ns = fac.createOMNamespace(responseName.getNamespaceURI(),
+                    service.getSchemaTargetNamespacePrefix());
+            SOAPEnvelope envelope = fac.getDefaultEnvelope();
+            envelope.getBody().addChild(fac.createOMElement(
+                    new JSONRPCResponseDataSource(responseName, resObject,
+                            method.getReturnType() != void.class, invoker.getBinder()),
+                    responseName.getLocalPart(), ns));
+            outMessage.setEnvelope(envelope);
+        } catch (InvocationTargetException e) {
+            String msg = null;
+            Throwable cause = e.getCause();
+            if (cause != null) {
+                msg = cause.getMessage();
+            }
+            if (msg == null) {
+                msg = "Exception occurred while trying to invoke service method " +
+                        (method != null ? method.getName() : "null");
+            }
+            if (cause instanceof AxisFault) {
+                log.debug(msg, cause);
+                throw (AxisFault)cause;
+            }
+            log.error(msg, e);
+            throw new AxisFault(msg, cause);
+        } catch (AxisFault e) {
+            throw e;
+        } catch (Exception e) {
+            String msg = "Exception occurred while trying to invoke service method " +
+                    (method != null ? method.getName() : "null");
+            log.error(msg, e);
+            throw AxisFault.makeFault(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axis2.AxisFault;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+
+/**
+ * A JSON request read by {@link JSONRPCBuilder}. The request is an object with a single member
+ * named after the operation, holding the parameters either as an object, by name, or as an array,
+ * by position; a single parameter can also be given as is. For instance
+ * <code>{"sayHello":{"myName":"Joe"}}</code> or <code>{"sayHello":["Joe"]}</code>.
+ * <p/>
+ * The request is kept unread in the message context, under
+ * {@link JSONRPCBuilder#JSON_RPC_REQUEST}, until {@link JSONRPCMessageReceiver} binds it to the
+ * parameters of the service method.
+ */
+public class JSONRPCRequest {
+
+    private final JSONStreamTokenizer tokenizer;
+    private String name;
+
+    JSONRPCRequest(Reader reader) {
+        tokenizer = new JSONStreamTokenizer(reader);
+    }
+
+    /**
+     * Returns the name of the request, the local part of the name of its single member.
+     */
+    public String getName() throws AxisFault {
+        if (name == null) {
+            try {
+                if (tokenizer.next() != JSONStreamTokenizer.BEGIN_OBJECT
+                        || tokenizer.next() != JSONStreamTokenizer.NAME) {
+                    throw new AxisFault("A JSON request has to be an object with a single member");
+                }
+            } catch (XMLStreamException e) {
+                throw AxisFault.makeFault(e);
+            }
+            name = tokenizer.getValue();
+            // drop the JSON namespace of the "Mapped" convention
+            name = name.substring(name.lastIndexOf('.') + 1);
+        }
+        return name;
+    }
+
+    /**
+     * Reads the parameters of the request. Parameters given by name are matched against the
+     * given names, the other ones are taken in order.
+     *
+     * @param types  the types of the parameters
+     * @param names  the names of the parameters, null if not known
+     * @param binder the binder of the operation
+     */
+    Object[] readParameters(Type[] types, String[] names, JSONTypeBinder binder)
+            throws AxisFault {
+        getName();
+        Object[] parameters = new Object[types.length];
+        boolean[] read = new boolean[types.length];
+        try {
+            int token = tokenizer.next();
+            if (token == JSONStreamTokenizer.BEGIN_OBJECT) {
+                int next = 0;
+                while ((token = tokenizer.next()) == JSONStreamTokenizer.NAME) {
+                    int index = indexOf(names, tokenizer.getValue());
+                    if (index == -1) {
+                        while (next < types.length && read[next]) {
+                            next++;
+                        }
+                        index = next;
+                    }
+                    token = tokenizer.next();
+                    if (index < types.length) {
+                        parameters[index] = binder.read(tokenizer, token, types[index]);
+                        read[index] = true;
+                    } else {
+                        JSONTypeBinder.skip(tokenizer, token);
+                    }
+                }
+                if (token != JSONStreamTokenizer.END_OBJECT) {
+                    throw new AxisFault("Unexpected token in the parameters of " + name);
+                }
+            } else if (token == JSONStreamTokenizer.BEGIN_ARRAY) {
+                int index = 0;
+                while ((token = tokenizer.next()) != JSONStreamTokenizer.END_ARRAY) {
+                    if (index == types.length) {
+                        throw new AxisFault("Too many parameters for " + name);
+                    }
+                    parameters[index] = binder.read(tokenizer, token, types[index]);
+                    read[index++] = true;
+                }
+            } else if (types.length == 1) {
+                parameters[0] = binder.read(tokenizer, token, types[0]);
+                read[0] = true;
+            } else {
+                JSONTypeBinder.skip(tokenizer, token);
+            }
+            if (tokenizer.next() != JSONStreamTokenizer.END_OBJECT) {
+                throw new AxisFault("A JSON request has to be an object with a single member");
+            }
+        } catch (XMLStreamException e) {
+            throw AxisFault.makeFault(e);
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (!read[i]) {
+                parameters[i] = JSONTypeBinder.getDefaultValue(JSONTypeBinder.getRawType(types[i]));
+            }
+        }
+        return parameters;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (name.equals(names[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
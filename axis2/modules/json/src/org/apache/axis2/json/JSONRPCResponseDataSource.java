@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.ds.AbstractPullOMDataSource;
+import org.apache.axis2.AxisFault;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+
+/**
+ * The response of {@link JSONRPCMessageReceiver}, the value returned by the service method.
+ * {@link JSONRPCMessageFormatter} writes it as JSON directly, for instance
+ * <code>{"sayHelloResponse":{"return":"Hello Joe!"}}</code> as the "Mapped" convention gives for
+ * the response of the RPC message receiver; the XML form is only built if the response is
+ * handled as XML.
+ */
+class JSONRPCResponseDataSource extends AbstractPullOMDataSource {
+
+    private static final String RETURN_WRAPPER = "return";
+
+    private final QName name;
+    private final Object value;
+    private final boolean hasValue;
+    private final JSONTypeBinder binder;
+
+    /**
+     * @param name     the name of the response element
+     * @param value    the value returned by the service method
+     * @param hasValue false if the method does not return a value
+     * @param binder   the binder of the operation
+     */
+    JSONRPCResponseDataSource(QName name, Object value, boolean hasValue, JSONTypeBinder binder) {
+        this.name = name;
+        this.value = value;
+        this.hasValue = hasValue;
+        this.binder = binder;
+    }
+
+    /**
+     * Writes the response as JSON.
+     */
+    void writeTo(Writer out) throws IOException, AxisFault {
+        out.write('{');
+        MappedJSONXMLStreamWriter.writeString(out, name.getLocalPart());
+        out.write(':');
+        if (hasValue) {
+            out.write('{');
+            MappedJSONXMLStreamWriter.writeString(out, RETURN_WRAPPER);
+            out.write(':');
+            binder.write(out, value);
+            out.write('}');
+        } else {
+            out.write("\"\"");
+        }
+        out.write('}');
+    }
+
+    public XMLStreamReader getReader() throws XMLStreamException {
+        StringWriter out = new StringWriter();
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        // the members are in the namespace of the response element
+        return new MappedJSONXMLStreamReader(new StringReader(out.toString()),
+                Collections.singletonMap(name.getNamespaceURI(), ""));
+    }
+
+    public boolean isDestructiveRead() {
+        return false;
+    }
+}
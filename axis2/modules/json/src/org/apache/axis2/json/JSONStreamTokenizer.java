@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a JSON text into tokens while reading it from a {@link Reader} through a fixed size
+ * buffer, so that the memory used does not depend on the size of the message. Only the structure
+ * is checked as far as it is needed to tell names from values; commas and colons are consumed
+ * silently.
+ */
+final class JSONStreamTokenizer {
+
+    static final int END = 0;
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    /** a member name, {@link #getValue()} gives the name */
+    static final int NAME = 5;
+    /** a string, number or boolean value, {@link #getValue()} gives its text */
+    static final int VALUE = 6;
+    static final int NULL = 7;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder value = new StringBuilder();
+
+    JSONStreamTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the next token, one of the constants of this class.
+     */
+    int next() throws XMLStreamException {
+        int c = skipSeparators();
+        switch (c) {
+            case -1:
+                return END;
+            case '{':
+                return BEGIN_OBJECT;
+            case '}':
+                return END_OBJECT;
+            case '[':
+                return BEGIN_ARRAY;
+            case ']':
+                return END_ARRAY;
+            case '"':
+            case '\'':
+                readString((char) c);
+                // a string followed by a colon is the name of a member
+                c = skipWhitespace();
+                if (c == ':') {
+                    position++;
+                    return NAME;
+                }
+                return VALUE;
+            default:
+                position--;
+                readLiteral();
+                if ("null".equals(value.toString())) {
+                    return NULL;
+                }
+                return VALUE;
+        }
+    }
+
+    /**
+     * Returns the text of the last {@link #NAME} or {@link #VALUE} token.
+     */
+    String getValue() {
+        return value.toString();
+    }
+
+    void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws XMLStreamException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws XMLStreamException {
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, 0, BUFFER_SIZE);
+            } while (read == 0);
+            if (read == -1) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it, or -1 at the end.
+     */
+    private int skipWhitespace() throws XMLStreamException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private int skipSeparators() throws XMLStreamException {
+        while (true) {
+            int c = read();
+            if (c != ',' && c != ':' && (c == -1 || !Character.isWhitespace((char) c))) {
+                return c;
+            }
+        }
+    }
+
+    private void readString(char quote) throws XMLStreamException {
+        value.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new XMLStreamException("Unterminated string in JSON message");
+            } else if (c == quote) {
+                return;
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit == -1) {
+                                throw new XMLStreamException(
+                                        "Illegal unicode escape in JSON message");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    case -1:
+                        throw new XMLStreamException("Unterminated string in JSON message");
+                    default:
+                        value.append((char) c);
+                }
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private void readLiteral() throws XMLStreamException {
+        value.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) {
+                break;
+            }
+            char c = buffer[position];
+            if (c == ',' || c == ':' || c == '}' || c == ']' || c == '{' || c == '['
+                    || c == '"' || Character.isWhitespace(c)) {
+                break;
+            }
+            value.append(c);
+            position++;
+        }
+        if (value.length() == 0) {
+            throw new XMLStreamException("Unexpected character '" + (char) read()
+                    + "' in JSON message");
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.util.Base64;
+import org.apache.axis2.AxisFault;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLStreamException;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Binds JSON values to Java objects and Java objects to JSON, without going through XML.
+ * <p/>
+ * Strings, numbers and booleans are bound to the simple Java types, enums and the classes having
+ * a constructor taking a String; arrays to Java arrays and collections; objects to maps and
+ * beans, by their properties. As in the "Mapped" convention a single value is accepted where an
+ * array is expected. The properties of a bean class are looked up once per binder.
+ * <p/>
+ * As with the RPC message receivers, dates and calendars are written as xsd:dateTime strings and
+ * byte arrays as base64 strings; URIs, URLs and UUIDs as their string form.
+ */
+final class JSONTypeBinder {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static volatile DatatypeFactory datatypeFactory;
+
+    private final ConcurrentMap<Class<?>, Map<String, PropertyDescriptor>> properties =
+            new ConcurrentHashMap<Class<?>, Map<String, PropertyDescriptor>>();
+
+    /**
+     * Reads a value of the given type.
+     *
+     * @param tokenizer the JSON message
+     * @param token     the first token of the value
+     * @param type      the type to bind the value to
+     */
+    Object read(JSONStreamTokenizer tokenizer, int token, Type type)
+            throws XMLStreamException, AxisFault {
+        Class<?> rawType = getRawType(type);
+        switch (token) {
+            case JSONStreamTokenizer.NULL:
+                return getDefaultValue(rawType);
+            case JSONStreamTokenizer.BEGIN_ARRAY:
+                List<Object> items = new ArrayList<Object>();
+                Type itemType = getItemType(type, rawType);
+                while ((token = tokenizer.next()) != JSONStreamTokenizer.END_ARRAY) {
+                    items.add(read(tokenizer, token, itemType));
+                }
+                return toCollection(items, rawType);
+            case JSONStreamTokenizer.VALUE:
+            case JSONStreamTokenizer.BEGIN_OBJECT:
+                if (token == JSONStreamTokenizer.VALUE && rawType == byte[].class) {
+                    return Base64.decode(tokenizer.getValue());
+                } else if (rawType.isArray() || Collection.class.isAssignableFrom(rawType)) {
+                    // a single item
+                    List<Object> item = new ArrayList<Object>(1);
+                    item.add(read(tokenizer, token, getItemType(type, rawType)));
+                    return toCollection(item, rawType);
+                } else if (token == JSONStreamTokenizer.VALUE) {
+                    return toSimple(tokenizer.getValue(), rawType);
+                } else if (Map.class.isAssignableFrom(rawType) || rawType == Object.class) {
+                    return readMap(tokenizer, type, rawType);
+                } else {
+                    return readBean(tokenizer, rawType);
+                }
+            default:
+                throw new XMLStreamException("Unexpected token in the JSON message");
+        }
+    }
+
+    /**
+     * Skips a value.
+     *
+     * @param token the first token of the value
+     */
+    static void skip(JSONStreamTokenizer tokenizer, int token) throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            switch (token) {
+                case JSONStreamTokenizer.BEGIN_OBJECT:
+                case JSONStreamTokenizer.BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case JSONStreamTokenizer.END_OBJECT:
+                case JSONStreamTokenizer.END_ARRAY:
+                    depth--;
+                    break;
+                case JSONStreamTokenizer.END:
+                    throw new XMLStreamException("Unexpected end of the JSON message");
+            }
+            if (depth == 0) {
+                return;
+            }
+            token = tokenizer.next();
+        }
+    }
+
+    static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return getRawType(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(
+                    getRawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof TypeVariable) {
+            return getRawType(((TypeVariable<?>) type).getBounds()[0]);
+        } else if (type instanceof WildcardType) {
+            return getRawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    /**
+     * Returns the value of a missing or null value of the given type, null or the default value
+     * of a primitive type.
+     */
+    static Object getDefaultValue(Class<?> rawType) {
+        return rawType.isPrimitive() && rawType != void.class
+                ? Array.get(Array.newInstance(rawType, 1), 0) : null;
+    }
+
+    private static Type getItemType(Type type, Class<?> rawType) {
+        if (type instanceof GenericArrayType) {
+            return ((GenericArrayType) type).getGenericComponentType();
+        } else if (rawType.isArray()) {
+            return rawType.getComponentType();
+        }
+        return getTypeArgument(type, 0);
+    }
+
+    private static Type getTypeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    private static Object toCollection(List<Object> items, Class<?> rawType) throws AxisFault {
+        if (rawType.isArray()) {
+            Object array = Array.newInstance(rawType.getComponentType(), items.size());
+            for (int i = 0; i < items.size(); i++) {
+                Object item = items.get(i);
+                if (item != null || !rawType.getComponentType().isPrimitive()) {
+                    Array.set(array, i, item);
+                }
+            }
+            return array;
+        } else if (!Collection.class.isAssignableFrom(rawType)) {
+            return items;
+        }
+        Collection<Object> collection;
+        if (rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers())) {
+            if (SortedSet.class.isAssignableFrom(rawType)) {
+                collection = new TreeSet<Object>();
+            } else if (Set.class.isAssignableFrom(rawType)) {
+                collection = new LinkedHashSet<Object>();
+            } else if (Queue.class.isAssignableFrom(rawType)) {
+                collection = new LinkedList<Object>();
+            } else {
+                return items;
+            }
+        } else {
+            collection = newInstance(rawType);
+        }
+        collection.addAll(items);
+        return collection;
+    }
+
+    private Map<Object, Object> readMap(JSONStreamTokenizer tokenizer, Type type,
+                                        Class<?> rawType) throws XMLStreamException, AxisFault {
+        Map<Object, Object> map;
+        if (rawType.isInterface() || rawType == Object.class
+                || Modifier.isAbstract(rawType.getModifiers())) {
+            map = SortedMap.class.isAssignableFrom(rawType)
+                    ? new TreeMap<Object, Object>() : new LinkedHashMap<Object, Object>();
+        } else {
+            map = newInstance(rawType);
+        }
+        // the names of a JSON object are strings, they are converted like simple values
+        Class<?> keyType = getRawType(getTypeArgument(type, 0));
+        Type valueType = getTypeArgument(type, 1);
+        int token;
+        while ((token = tokenizer.next()) == JSONStreamTokenizer.NAME) {
+            Object key = toSimple(tokenizer.getValue(), keyType);
+            map.put(key, read(tokenizer, tokenizer.next(), valueType));
+        }
+        if (token != JSONStreamTokenizer.END_OBJECT) {
+            throw new XMLStreamException("Unexpected token in the JSON message");
+        }
+        return map;
+    }
+
+    private Object readBean(JSONStreamTokenizer tokenizer, Class<?> rawType)
+            throws XMLStreamException, AxisFault {
+        Object bean = newInstance(rawType);
+        Map<String, PropertyDescriptor> beanProperties = getProperties(rawType);
+        int token;
+        while ((token = tokenizer.next()) == JSONStreamTokenizer.NAME) {
+            PropertyDescriptor property = beanProperties.get(tokenizer.getValue());
+            token = tokenizer.next();
+            Method writeMethod = property == null ? null : property.getWriteMethod();
+            if (writeMethod == null) {
+                skip(tokenizer, token);
+            } else {
+                Object value = read(tokenizer, token, writeMethod.getGenericParameterTypes()[0]);
+                invoke(writeMethod, bean, value);
+            }
+        }
+        if (token != JSONStreamTokenizer.END_OBJECT) {
+            throw new XMLStreamException("Unexpected token in the JSON message");
+        }
+        return bean;
+    }
+
+    private static Object toSimple(String text, Class<?> rawType) throws AxisFault {
+        if (rawType == String.class || rawType == Object.class || rawType == CharSequence.class) {
+            return text;
+        } else if (text.length() == 0) {
+            // an empty element in the "Mapped" convention
+            return getDefaultValue(rawType);
+        }
+        try {
+            if (rawType == boolean.class || rawType == Boolean.class) {
+                return Boolean.valueOf(text.trim());
+            } else if (rawType == int.class || rawType == Integer.class) {
+                return Integer.valueOf(text.trim());
+            } else if (rawType == long.class || rawType == Long.class) {
+                return Long.valueOf(text.trim());
+            } else if (rawType == double.class || rawType == Double.class) {
+                return Double.valueOf(text.trim());
+            } else if (rawType == float.class || rawType == Float.class) {
+                return Float.valueOf(text.trim());
+            } else if (rawType == short.class || rawType == Short.class) {
+                return Short.valueOf(text.trim());
+            } else if (rawType == byte.class || rawType == Byte.class) {
+                return Byte.valueOf(text.trim());
+            } else if (rawType == char.class || rawType == Character.class) {
+                return Character.valueOf(text.charAt(0));
+            } else if (rawType == BigDecimal.class) {
+                return new BigDecimal(text.trim());
+            } else if (rawType == BigInteger.class) {
+                return new BigInteger(text.trim());
+            } else if (Date.class.isAssignableFrom(rawType)
+                    || Calendar.class.isAssignableFrom(rawType)) {
+                return toDate(text.trim(), rawType);
+            } else if (rawType == UUID.class) {
+                return UUID.fromString(text.trim());
+            } else if (rawType.isEnum()) {
+                return toEnum(text, rawType);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new AxisFault("Cannot bind the JSON value '" + text + "' to "
+                    + rawType.getName(), e);
+        }
+        try {
+            Constructor<?> constructor = rawType.getConstructor(String.class);
+            return constructor.newInstance(text);
+        } catch (NoSuchMethodException e) {
+            throw new AxisFault("Cannot bind the JSON value '" + text + "' to "
+                    + rawType.getName());
+        } catch (InvocationTargetException e) {
+            throw new AxisFault("Cannot bind the JSON value '" + text + "' to "
+                    + rawType.getName(), e.getCause());
+        } catch (Exception e) {
+            throw AxisFault.makeFault(e);
+        }
+    }
+
+    /**
+     * Reads an xsd:dateTime, or an xsd:date, into a calendar or a date.
+     */
+    private static Object toDate(String text, Class<?> rawType) throws AxisFault {
+        GregorianCalendar calendar =
+                getDatatypeFactory().newXMLGregorianCalendar(text).toGregorianCalendar();
+        if (rawType.isInstance(calendar)) {
+            return calendar;
+        } else if (rawType == Date.class) {
+            return calendar.getTime();
+        }
+        // java.sql.Date, Time and Timestamp
+        try {
+            return rawType.getConstructor(long.class).newInstance(calendar.getTimeInMillis());
+        } catch (Exception e) {
+            throw new AxisFault("Cannot bind the JSON value '" + text + "' to "
+                    + rawType.getName(), e);
+        }
+    }
+
+    /**
+     * Writes a date in UTC, or a calendar in its own time zone, as an xsd:dateTime.
+     */
+    private static String toDateTime(Object value) throws AxisFault {
+        GregorianCalendar calendar;
+        if (value instanceof GregorianCalendar) {
+            calendar = (GregorianCalendar) value;
+        } else if (value instanceof Calendar) {
+            calendar = new GregorianCalendar(((Calendar) value).getTimeZone());
+            calendar.setTimeInMillis(((Calendar) value).getTimeInMillis());
+        } else {
+            calendar = new GregorianCalendar(UTC);
+            calendar.setTime((Date) value);
+        }
+        return getDatatypeFactory().newXMLGregorianCalendar(calendar).toXMLFormat();
+    }
+
+    private static DatatypeFactory getDatatypeFactory() throws AxisFault {
+        DatatypeFactory factory = datatypeFactory;
+        if (factory == null) {
+            try {
+                // a racing thread creates an equivalent factory
+                factory = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw AxisFault.makeFault(e);
+            }
+            datatypeFactory = factory;
+        }
+        return factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toEnum(String text, Class<?> rawType) {
+        return Enum.valueOf((Class) rawType, text);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newInstance(Class<?> rawType) throws AxisFault {
+        try {
+            return (T) rawType.newInstance();
+        } catch (Exception e) {
+            throw new AxisFault("Cannot create an instance of " + rawType.getName(), e);
+        }
+    }
+
+    private static Object invoke(Method method, Object bean, Object... args) throws AxisFault {
+        try {
+            return method.invoke(bean, args);
+        } catch (InvocationTargetException e) {
+            throw AxisFault.makeFault(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw AxisFault.makeFault(e);
+        }
+    }
+
+    /**
+     * Returns the properties of the given bean class, by name.
+     */
+    private Map<String, PropertyDescriptor> getProperties(Class<?> beanClass) throws AxisFault {
+        Map<String, PropertyDescriptor> beanProperties = properties.get(beanClass);
+        if (beanProperties == null) {
+            beanProperties = new LinkedHashMap<String, PropertyDescriptor>();
+            try {
+                for (PropertyDescriptor property :
+                        Introspector.getBeanInfo(beanClass, Object.class).getPropertyDescriptors()) {
+                    beanProperties.put(property.getName(), property);
+                }
+            } catch (IntrospectionException e) {
+                throw AxisFault.makeFault(e);
+            }
+            // a racing thread computes the same properties
+            properties.put(beanClass, beanProperties);
+        }
+        return beanProperties;
+    }
+
+    /**
+     * Writes a value as JSON.
+     */
+    void write(Writer out, Object value) throws IOException, AxisFault {
+        if (value == null) {
+            out.write("null");
+        } else if (value instanceof String || value instanceof Character) {
+            MappedJSONXMLStreamWriter.writeString(out, value.toString());
+        } else if (value instanceof Enum) {
+            MappedJSONXMLStreamWriter.writeString(out, ((Enum<?>) value).name());
+        } else if (value instanceof Date || value instanceof Calendar) {
+            MappedJSONXMLStreamWriter.writeString(out, toDateTime(value));
+        } else if (value instanceof byte[]) {
+            MappedJSONXMLStreamWriter.writeString(out, Base64.encode((byte[]) value));
+        } else if (value instanceof URI || value instanceof URL || value instanceof UUID) {
+            MappedJSONXMLStreamWriter.writeString(out, value.toString());
+        } else if (value instanceof Boolean || value instanceof Number) {
+            if (value instanceof Double && (((Double) value).isNaN()
+                    || ((Double) value).isInfinite())
+                    || value instanceof Float && (((Float) value).isNaN()
+                    || ((Float) value).isInfinite())) {
+                MappedJSONXMLStreamWriter.writeString(out, value.toString());
+            } else {
+                out.write(value.toString());
+            }
+        } else if (value.getClass().isArray()) {
+            out.write('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                write(out, Array.get(value, i));
+            }
+            out.write(']');
+        } else if (value instanceof Collection) {
+            out.write('[');
+            for (Iterator<?> it = ((Collection<?>) value).iterator(); it.hasNext(); ) {
+                write(out, it.next());
+                if (it.hasNext()) {
+                    out.write(',');
+                }
+            }
+            out.write(']');
+        } else if (value instanceof Map) {
+            out.write('{');
+            for (Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+                 it.hasNext(); ) {
+                Map.Entry<?, ?> entry = it.next();
+                MappedJSONXMLStreamWriter.writeString(out, String.valueOf(entry.getKey()));
+                out.write(':');
+                write(out, entry.getValue());
+                if (it.hasNext()) {
+                    out.write(',');
+                }
+            }
+            out.write('}');
+        } else {
+            writeBean(out, value);
+        }
+    }
+
+    private void writeBean(Writer out, Object bean) throws IOException, AxisFault {
+        Map<String, PropertyDescriptor> beanProperties = getProperties(bean.getClass());
+        boolean first = true;
+        for (PropertyDescriptor property : beanProperties.values()) {
+            Method readMethod = property.getReadMethod();
+            if (readMethod == null) {
+                continue;
+            }
+            out.write(first ? '{' : ',');
+            first = false;
+            MappedJSONXMLStreamWriter.writeString(out, property.getName());
+            out.write(':');
+            write(out, invoke(readMethod, bean));
+        }
+        if (first) {
+            // no readable properties, written as a string which the String constructor reads
+            MappedJSONXMLStreamWriter.writeString(out, bean.toString());
+        } else {
+            out.write('}');
+        }
+    }
+}
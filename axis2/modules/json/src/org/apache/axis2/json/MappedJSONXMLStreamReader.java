@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import javax.xml.namespace.QName;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming {@link javax.xml.stream.XMLStreamReader} for the "Mapped" convention. A member name
+ * is a local name, optionally preceded by a JSON namespace and a dot; the JSON namespaces are
+ * mapped back to XML namespaces with the same map as the one given to the Jettison mapped input
+ * factory.
+ */
+public class MappedJSONXMLStreamReader extends AbstractJSONXMLStreamReader {
+
+    private final Map<String, String> jns2ns = new HashMap<String, String>();
+
+    /**
+     * @param reader the JSON message
+     * @param ns2jns maps the XML namespaces to JSON namespaces, see
+     *               {@link JSONUtil#getNS2JNSMap(org.apache.axis2.description.AxisService)}
+     */
+    public MappedJSONXMLStreamReader(Reader reader, Map<String, String> ns2jns) {
+        super(reader);
+        for (Map.Entry<String, String> entry : ns2jns.entrySet()) {
+            jns2ns.put(entry.getValue(), entry.getKey());
+        }
+    }
+
+    @Override
+    protected QName getElementName(String key) {
+        return createQName(key);
+    }
+
+    @Override
+    protected QName getAttributeName(String key) {
+        // an attribute without prefix is not in the default namespace
+        return key.indexOf('.') == -1 ? new QName(key) : createQName(key);
+    }
+
+    private QName createQName(String key) {
+        int dot = key.lastIndexOf('.');
+        String namespaceURI = jns2ns.get(dot == -1 ? "" : key.substring(0, dot));
+        if (namespaceURI == null) {
+            return new QName(key);
+        }
+        return new QName(namespaceURI, key.substring(dot + 1));
+    }
+}
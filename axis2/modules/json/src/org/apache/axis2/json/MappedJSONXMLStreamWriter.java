@@ -0,0 +1,511 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link XMLStreamWriter} producing "Mapped" JSON, the output is the one of the Jettison mapped
+ * writer. Instead of building the whole message as a JSON object before writing it, the members
+ * are written as soon as they are known. Repeated elements are written as an array, so the first
+ * child of an element is kept until its next sibling shows whether it starts an array; the
+ * following elements of an array are written straight away.
+ * <p/>
+ * Elements in a namespace which is not in the namespace map are rejected with an
+ * {@link IllegalStateException}, as done by Jettison.
+ */
+public class MappedJSONXMLStreamWriter implements XMLStreamWriter {
+
+    private static final class Frame {
+        private final Writer out;
+        /** tells if the value of the element is kept until its next sibling is known */
+        private final boolean pending;
+        private final Map<String, String> namespaces = new HashMap<String, String>();
+        private List<String[]> attributes;
+        private StringBuilder text;
+        /** tells if the "{" of the element has been written */
+        private boolean object;
+        private int members;
+        /** the first child, written once it is known if it starts an array */
+        private String pendingKey;
+        private String pendingValue;
+        /** the key of the array being written */
+        private String arrayKey;
+
+        Frame(Writer out, boolean pending) {
+            this.out = out;
+            this.pending = pending;
+        }
+    }
+
+    private final Writer writer;
+    private final Map<String, String> ns2jns;
+    private final LinkedList<Frame> frames = new LinkedList<Frame>();
+    private boolean rootWritten;
+    private boolean empty;
+    private NamespaceContext namespaceContext;
+
+    /**
+     * @param writer the writer the JSON message is written to
+     * @param ns2jns maps the XML namespaces to JSON namespaces, see
+     *               {@link JSONUtil#getNS2JNSMap(org.apache.axis2.description.AxisService)}
+     */
+    public MappedJSONXMLStreamWriter(Writer writer, Map<String, String> ns2jns) {
+        this.writer = writer;
+        this.ns2jns = ns2jns;
+    }
+
+    private String getKey(String namespaceURI, String localName) {
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            return localName;
+        }
+        String jns = ns2jns.get(namespaceURI);
+        if (jns == null) {
+            throw new IllegalStateException("Invalid XML namespace: " + namespaceURI);
+        }
+        return jns.length() == 0 ? localName : jns + "." + localName;
+    }
+
+    public void writeStartElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        try {
+            closeEmpty();
+            String key = getKey(namespaceURI, localName);
+            if (frames.isEmpty()) {
+                if (rootWritten) {
+                    throw new XMLStreamException("A JSON message has a single document element");
+                }
+                writer.write('{');
+                writeString(writer, key);
+                writer.write(':');
+                frames.addFirst(new Frame(writer, false));
+                return;
+            }
+            Frame parent = frames.getFirst();
+            openObject(parent);
+            if (key.equals(parent.arrayKey)) {
+                parent.out.write(',');
+                frames.addFirst(new Frame(parent.out, false));
+                return;
+            }
+            closeArray(parent);
+            if (key.equals(parent.pendingKey)) {
+                writeKey(parent, key);
+                parent.out.write('[');
+                parent.out.write(parent.pendingValue);
+                parent.out.write(',');
+                parent.arrayKey = key;
+                parent.pendingKey = null;
+                parent.pendingValue = null;
+                frames.addFirst(new Frame(parent.out, false));
+            } else {
+                writePending(parent);
+                parent.pendingKey = key;
+                frames.addFirst(new Frame(new StringWriter(), true));
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    public void writeStartElement(String namespaceURI, String localName)
+            throws XMLStreamException {
+        writeStartElement(null, localName, namespaceURI);
+    }
+
+    public void writeStartElement(String localName) throws XMLStreamException {
+        writeStartElement(null, localName, getNamespaceURI(""));
+    }
+
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        writeStartElement(prefix, localName, namespaceURI);
+        empty = true;
+    }
+
+    public void writeEmptyElement(String namespaceURI, String localName)
+            throws XMLStreamException {
+        writeEmptyElement(null, localName, namespaceURI);
+    }
+
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeEmptyElement(null, localName, getNamespaceURI(""));
+    }
+
+    public void writeEndElement() throws XMLStreamException {
+        closeEmpty();
+        endElement();
+    }
+
+    private void closeEmpty() throws XMLStreamException {
+        if (empty) {
+            empty = false;
+            endElement();
+        }
+    }
+
+    private void endElement() throws XMLStreamException {
+        if (frames.isEmpty()) {
+            throw new XMLStreamException("No element to end");
+        }
+        Frame frame = frames.removeFirst();
+        try {
+            if (frame.object || frame.attributes != null) {
+                openObject(frame);
+                writePending(frame);
+                closeArray(frame);
+                writeText(frame);
+                frame.out.write('}');
+            } else {
+                writeValue(frame.out, frame.text == null ? "" : frame.text.toString());
+            }
+            if (frames.isEmpty()) {
+                writer.write('}');
+                rootWritten = true;
+            } else if (frame.pending) {
+                frames.getFirst().pendingValue = frame.out.toString();
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /**
+     * Writes the "{" of the element with its attributes and text, if not already done.
+     */
+    private void openObject(Frame frame) throws IOException {
+        if (frame.object) {
+            return;
+        }
+        frame.object = true;
+        frame.out.write('{');
+        if (frame.attributes != null) {
+            for (String[] attribute : frame.attributes) {
+                writeKey(frame, attribute[0]);
+                writeValue(frame.out, attribute[1]);
+            }
+        }
+        writeText(frame);
+    }
+
+    private void writeText(Frame frame) throws IOException {
+        if (frame.text != null) {
+            String text = frame.text.toString();
+            frame.text = null;
+            if (text.trim().length() > 0) {
+                writeKey(frame, "$");
+                writeValue(frame.out, text);
+            }
+        }
+    }
+
+    private void writePending(Frame frame) throws IOException {
+        if (frame.pendingKey != null) {
+            writeKey(frame, frame.pendingKey);
+            frame.out.write(frame.pendingValue);
+            frame.pendingKey = null;
+            frame.pendingValue = null;
+        }
+    }
+
+    private void closeArray(Frame frame) throws IOException {
+        if (frame.arrayKey != null) {
+            frame.out.write(']');
+            frame.arrayKey = null;
+        }
+    }
+
+    private static void writeKey(Frame frame, String key) throws IOException {
+        if (frame.members++ > 0) {
+            frame.out.write(',');
+        }
+        writeString(frame.out, key);
+        frame.out.write(':');
+    }
+
+    /**
+     * Writes a text as a number or a boolean if it reads as one, as a string otherwise.
+     */
+    private static void writeValue(Writer out, String text) throws IOException {
+        if (isPrimitive(text)) {
+            out.write(text);
+        } else {
+            writeString(out, text);
+        }
+    }
+
+    private static boolean isPrimitive(String text) {
+        if (text.length() == 0) {
+            return false;
+        }
+        Object primitive = null;
+        try {
+            primitive = Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            // not an integer
+        }
+        if (primitive == null) {
+            try {
+                Double value = Double.valueOf(text);
+                if (!value.isInfinite() && !value.isNaN()) {
+                    primitive = value;
+                }
+            } catch (NumberFormatException e) {
+                // not a number
+            }
+        }
+        if (primitive == null && ("true".equals(text) || "false".equals(text))) {
+            primitive = Boolean.valueOf(text);
+        }
+        return primitive != null && primitive.toString().equals(text);
+    }
+
+    /**
+     * Writes a JSON string, escaped the way {@link org.codehaus.jettison.json.JSONObject#quote}
+     * does.
+     */
+    static void writeString(Writer out, String string) throws IOException {
+        out.write('"');
+        char previous = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '\\':
+                case '"':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                case '/':
+                    if (previous == '<') {
+                        out.write('\\');
+                    }
+                    out.write(c);
+                    break;
+                case '\b':
+                    out.write("\\b");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\f':
+                    out.write("\\f");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                default:
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                            || (c >= '\u2000' && c < '\u2100')) {
+                        String hex = Integer.toHexString(c);
+                        out.write("\\u0000", 0, 6 - hex.length());
+                        out.write(hex);
+                    } else {
+                        out.write(c);
+                    }
+            }
+            previous = c;
+        }
+        out.write('"');
+    }
+
+    public void writeAttribute(String prefix, String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        if (frames.isEmpty()) {
+            throw new XMLStreamException("No element to write the attribute to");
+        }
+        Frame frame = frames.getFirst();
+        if (frame.object) {
+            throw new XMLStreamException("Attribute " + localName
+                    + " written after the content of its element");
+        }
+        if (frame.attributes == null) {
+            frame.attributes = new ArrayList<String[]>();
+        }
+        frame.attributes.add(new String[] { "@" + getKey(namespaceURI, localName), value });
+    }
+
+    public void writeAttribute(String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        writeAttribute(null, namespaceURI, localName, value);
+    }
+
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        writeAttribute(null, null, localName, value);
+    }
+
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        // namespace declarations are not part of the mapped convention
+        setPrefix(prefix == null ? "" : prefix, namespaceURI);
+    }
+
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        setPrefix("", namespaceURI);
+    }
+
+    public void writeCharacters(String text) throws XMLStreamException {
+        closeEmpty();
+        if (frames.isEmpty()) {
+            return;
+        }
+        Frame frame = frames.getFirst();
+        if (frame.text == null) {
+            frame.text = new StringBuilder(text);
+        } else {
+            frame.text.append(text);
+        }
+    }
+
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    public void writeCData(String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    public void writeComment(String data) throws XMLStreamException {
+        closeEmpty();
+    }
+
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        closeEmpty();
+    }
+
+    public void writeProcessingInstruction(String target, String data)
+            throws XMLStreamException {
+        closeEmpty();
+    }
+
+    public void writeDTD(String dtd) throws XMLStreamException {
+    }
+
+    public void writeEntityRef(String name) throws XMLStreamException {
+        closeEmpty();
+    }
+
+    public void writeStartDocument() throws XMLStreamException {
+    }
+
+    public void writeStartDocument(String version) throws XMLStreamException {
+    }
+
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+    }
+
+    public void writeEndDocument() throws XMLStreamException {
+        closeEmpty();
+        while (!frames.isEmpty()) {
+            endElement();
+        }
+        flush();
+    }
+
+    public void flush() throws XMLStreamException {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    public String getPrefix(String uri) throws XMLStreamException {
+        for (Frame frame : frames) {
+            for (Map.Entry<String, String> entry : frame.namespaces.entrySet()) {
+                if (entry.getValue().equals(uri)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return namespaceContext == null ? null : namespaceContext.getPrefix(uri);
+    }
+
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        if (!frames.isEmpty()) {
+            frames.getFirst().namespaces.put(prefix, uri);
+        }
+    }
+
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        setPrefix("", uri);
+    }
+
+    private String getNamespaceURI(String prefix) {
+        for (Frame frame : frames) {
+            String namespaceURI = frame.namespaces.get(prefix);
+            if (namespaceURI != null) {
+                return namespaceURI;
+            }
+        }
+        return namespaceContext == null ? "" : namespaceContext.getNamespaceURI(prefix);
+    }
+
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        namespaceContext = context;
+    }
+
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+            public String getNamespaceURI(String prefix) {
+                if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                    return XMLConstants.XML_NS_URI;
+                }
+                return MappedJSONXMLStreamWriter.this.getNamespaceURI(prefix);
+            }
+
+            public String getPrefix(String namespaceURI) {
+                try {
+                    return MappedJSONXMLStreamWriter.this.getPrefix(namespaceURI);
+                } catch (XMLStreamException e) {
+                    return null;
+                }
+            }
+
+            public Iterator getPrefixes(String namespaceURI) {
+                String prefix = getPrefix(namespaceURI);
+                return prefix == null ? Collections.emptyList().iterator()
+                        : Collections.singletonList(prefix).iterator();
+            }
+        };
+    }
+
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Unsupported property " + name);
+    }
+}
@@ -30,6 +30,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -68,6 +69,33 @@ public class JSONDataSourceTest extends XMLTestCase {
                 outStream.toString("utf-8"));
     }
 
+    public void testMappedStreamSerialize() throws Exception {
+        String jsonString = getMappedJSONString();
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        XMLStreamWriter writer = StAXUtils.createXMLStreamWriter(outStream);
+        JSONDataSource source = getMappedStreamDataSource(jsonString, "UTF-16");
+        assertTrue(source.isDestructiveRead());
+        source.serialize(writer);
+        writer.flush();
+        assertXMLEqual("<mapping><inner><first>test string one</first></inner><inner>test string two</inner><name>foo</name></mapping>",
+                outStream.toString("utf-8"));
+    }
+
+    public void testPassThrough() throws Exception {
+        String jsonString = getMappedJSONString();
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        JSONDataSource source = getMappedStreamDataSource(jsonString, "UTF-8");
+        assertTrue(source.writeTo(outStream, "utf-8"));
+        assertEquals(jsonString, outStream.toString("utf-8"));
+        // the message is not kept once written
+        assertFalse(source.writeTo(new ByteArrayOutputStream(), "utf-8"));
+
+        outStream.reset();
+        source = getMappedStreamDataSource(jsonString, "UTF-8");
+        assertTrue(source.writeTo(outStream, "UTF-16"));
+        assertEquals(jsonString, outStream.toString("UTF-16"));
+    }
+
     public void testBadgerfishSerialize1() throws Exception {
         String jsonString = getBadgerfishJSONString();
         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
@@ -114,6 +142,14 @@ public class JSONDataSourceTest extends XMLTestCase {
         return new JSONDataSource(new StringReader(jsonString), messageContext);
     }
 
+    private JSONDataSource getMappedStreamDataSource(String jsonString, String charset)
+            throws IOException {
+        MessageContext messageContext = new MessageContext();
+        messageContext.setAxisService(new AxisService());
+        return new JSONDataSource(new ByteArrayInputStream(jsonString.getBytes(charset)), charset,
+                messageContext);
+    }
+
     private String getMappedJSONString() {
         return "{\"mapping\":{\"inner\":[{\"first\":\"test string one\"},\"test string two\"],\"name\":\"foo\"}}";
     }
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.util.StreamWrapper;
+
+import junit.framework.TestCase;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+public class JSONRPCInvokerTest extends TestCase {
+
+    private static final String NS = "http://test.json";
+
+    public static class Point {
+        private int x;
+        private int y;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
+
+    public static class Event {
+        private Calendar calendar;
+        private byte[] data;
+        private Date date;
+        private URI uri;
+        private URL url;
+
+        public Calendar getCalendar() {
+            return calendar;
+        }
+
+        public void setCalendar(Calendar calendar) {
+            this.calendar = calendar;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public void setData(byte[] data) {
+            this.data = data;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public void setDate(Date date) {
+            this.date = date;
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        public void setUri(URI uri) {
+            this.uri = uri;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public void setUrl(URL url) {
+            this.url = url;
+        }
+    }
+
+    public static class Calculator {
+        public int subtract(int a, int b) {
+            return a - b;
+        }
+
+        public Point move(Point point, List<Integer> offset) {
+            point.setX(point.getX() + offset.get(0));
+            point.setY(point.getY() + offset.get(1));
+            return point;
+        }
+
+        public long sum(int[] values) {
+            long sum = 0;
+            for (int value : values) {
+                sum += value;
+            }
+            return sum;
+        }
+
+        public int weigh(Map<Integer, Integer> counts) {
+            int weight = 0;
+            for (Map.Entry<Integer, Integer> count : counts.entrySet()) {
+                weight += count.getKey() * count.getValue();
+            }
+            return weight;
+        }
+
+        public Event echo(Event event) {
+            return event;
+        }
+    }
+
+    public static class OtherCalculator {
+        public int subtract(int a, int b) {
+            return b - a;
+        }
+    }
+
+    private AxisService service;
+
+    protected void setUp() throws Exception {
+        service = new AxisService("Calculator");
+        service.setTargetNamespace(NS);
+        service.addParameter("subtract", new String[] { "a", "b" });
+        service.addParameter("move", new String[] { "point", "offset" });
+        for (String name : new String[] { "subtract", "move", "sum", "weigh", "echo" }) {
+            service.addOperation(new InOutAxisOperation(new QName(name)));
+        }
+    }
+
+    private Object invoke(Class<?> implClass, String json) throws Exception {
+        JSONRPCRequest request = new JSONRPCRequest(new StringReader(json));
+        AxisOperation op = service.getOperation(new QName(request.getName()));
+        return JSONRPCInvoker.getInvoker(op, implClass).invoke(implClass.newInstance(), request);
+    }
+
+    public void testInvokerCachedPerClass() throws Exception {
+        AxisOperation op = service.getOperation(new QName("subtract"));
+        JSONRPCInvoker invoker = JSONRPCInvoker.getInvoker(op, Calculator.class);
+        assertSame(invoker, JSONRPCInvoker.getInvoker(op, Calculator.class));
+        assertNotSame(invoker, JSONRPCInvoker.getInvoker(op, OtherCalculator.class));
+        assertEquals(-6, invoke(OtherCalculator.class, "{\"subtract\":{\"a\":10,\"b\":4}}"));
+    }
+
+    public void testParameters() throws Exception {
+        // by name, by position and in order if the names are not known
+        assertEquals(6, invoke(Calculator.class, "{\"subtract\":{\"b\":4,\"a\":10}}"));
+        assertEquals(6, invoke(Calculator.class, "{\"subtract\":[10,4]}"));
+        assertEquals(6, invoke(Calculator.class, "{\"subtract\":{\"x\":\"10\",\"y\":4}}"));
+        // a single item where an array is expected, as in the "Mapped" convention
+        assertEquals(5L, invoke(Calculator.class, "{\"sum\":{\"values\":5}}"));
+        assertEquals(6L, invoke(Calculator.class, "{\"sum\":{\"values\":[1,2,3]}}"));
+        assertEquals(0L, invoke(Calculator.class, "{\"sum\":{\"values\":[]}}"));
+    }
+
+    public void testBeans() throws Exception {
+        Point point = (Point)invoke(Calculator.class,
+                "{\"move\":{\"point\":{\"x\":1,\"unknown\":{\"a\":[1]},\"y\":2},\"offset\":[3,4]}}");
+        assertEquals(4, point.getX());
+        assertEquals(6, point.getY());
+    }
+
+    public void testMapKeys() throws Exception {
+        assertEquals(23, invoke(Calculator.class, "{\"weigh\":{\"counts\":{\"2\":4,\"5\":3}}}"));
+    }
+
+    public void testSimpleValueTypes() throws Exception {
+        Event event = new Event();
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT+02:00"));
+        calendar.setTimeInMillis(1500);
+        event.setCalendar(calendar);
+        event.setData(new byte[] { 1, 2, 3 });
+        event.setDate(new Date(0));
+        event.setUri(new URI("urn:test:1"));
+        event.setUrl(new URL("http://localhost/test"));
+
+        StringWriter json = new StringWriter();
+        new JSONTypeBinder().write(json, event);
+        assertEquals("{\"calendar\":\"1970-01-01T02:00:01.500+02:00\",\"data\":\"AQID\","
+                + "\"date\":\"1970-01-01T00:00:00.000Z\",\"uri\":\"urn:test:1\","
+                + "\"url\":\"http://localhost/test\"}", json.toString());
+
+        Event echoed = (Event)invoke(Calculator.class, "{\"echo\":{\"event\":" + json + "}}");
+        assertEquals(1500, echoed.getCalendar().getTimeInMillis());
+        assertEquals(calendar.getTimeZone().getRawOffset(),
+                echoed.getCalendar().getTimeZone().getRawOffset());
+        assertTrue(Arrays.equals(event.getData(), echoed.getData()));
+        assertEquals(event.getDate(), echoed.getDate());
+        assertEquals(event.getUri(), echoed.getUri());
+        assertEquals(event.getUrl(), echoed.getUrl());
+
+        // without the fraction of the seconds
+        echoed = (Event)invoke(Calculator.class,
+                "{\"echo\":{\"event\":{\"date\":\"1970-01-01T00:00:01Z\"}}}");
+        assertEquals(new Date(1000), echoed.getDate());
+    }
+
+    public void testMalformedRequest() throws Exception {
+        try {
+            invoke(Calculator.class, "{\"subtract\":[10,4,5]}");
+            fail("Expected AxisFault");
+        } catch (AxisFault e) {
+            // expected
+        }
+    }
+
+    public void testBuilder() throws Exception {
+        MessageContext msgCtx = new MessageContext();
+        OMElement element = new JSONRPCBuilder().processDocument(
+                new ByteArrayInputStream("{\"subtract\":[10,4]}".getBytes("UTF-8")),
+                "application/json", msgCtx);
+        assertEquals("subtract", element.getLocalName());
+        JSONRPCRequest request = (JSONRPCRequest)msgCtx.getProperty(
+                JSONRPCBuilder.JSON_RPC_REQUEST);
+        AxisOperation op = service.getOperation(new QName("subtract"));
+        assertEquals(6, JSONRPCInvoker.getInvoker(op, Calculator.class).invoke(new Calculator(),
+                request));
+    }
+
+    public void testResponse() throws Exception {
+        Point point = new Point();
+        point.setX(4);
+        point.setY(6);
+        QName name = new QName(NS, "moveResponse");
+        JSONRPCResponseDataSource response =
+                new JSONRPCResponseDataSource(name, point, true, new JSONTypeBinder());
+
+        SOAPFactory factory = OMAbstractFactory.getSOAP11Factory();
+        SOAPEnvelope envelope = factory.getDefaultEnvelope();
+        envelope.getBody().addChild(factory.createOMElement(response, name.getLocalPart(),
+                factory.createOMNamespace(NS, "ns")));
+        MessageContext msgCtx = new MessageContext();
+        msgCtx.setEnvelope(envelope);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OMOutputFormat format = new OMOutputFormat();
+        format.setCharSetEncoding("UTF-8");
+        new JSONRPCMessageFormatter().writeTo(msgCtx, format, out, false);
+        assertEquals("{\"moveResponse\":{\"return\":{\"x\":4,\"y\":6}}}", out.toString("UTF-8"));
+
+        // the XML form
+        OMElement element = new StAXOMBuilder(new StreamWrapper(response.getReader()))
+                .getDocumentElement();
+        assertEquals(name, element.getQName());
+        assertEquals("6", element.getFirstElement().getFirstChildWithName(new QName(NS, "y"))
+                .getText());
+    }
+}
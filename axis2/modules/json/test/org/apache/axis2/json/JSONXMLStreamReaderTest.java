@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import junit.framework.TestCase;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JSONXMLStreamReaderTest extends TestCase {
+
+    private static String toString(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder xml = new StringBuilder();
+        assertEquals(XMLStreamConstants.START_DOCUMENT, reader.getEventType());
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    xml.append('<').append(reader.getName());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        xml.append(' ').append(reader.getAttributeName(i)).append("='")
+                                .append(reader.getAttributeValue(i)).append('\'');
+                    }
+                    xml.append('>');
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    xml.append("</").append(reader.getName()).append('>');
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                    xml.append(reader.getText());
+                    break;
+            }
+        }
+        return xml.toString();
+    }
+
+    public void testMapped() throws Exception {
+        Map<String, String> ns2jns = new HashMap<String, String>();
+        ns2jns.put("http://example.org", "");
+        ns2jns.put("http://other.org", "o");
+        XMLStreamReader reader = new MappedJSONXMLStreamReader(new StringReader(
+                "{\"root\":{\"@id\":7,\"inner\":[{\"first\":\"one\"},\"two\", null],"
+                        + "\"o.name\":\"foo \\\"bar\\\"\",\"flag\":true,\"$\":\"text\"}}"), ns2jns);
+        assertEquals("<{http://example.org}root id='7'>"
+                + "<{http://example.org}inner><{http://example.org}first>one"
+                + "</{http://example.org}first></{http://example.org}inner>"
+                + "<{http://example.org}inner>two</{http://example.org}inner>"
+                + "<{http://example.org}inner></{http://example.org}inner>"
+                + "<{http://other.org}name>foo \"bar\"</{http://other.org}name>"
+                + "<{http://example.org}flag>true</{http://example.org}flag>"
+                + "text</{http://example.org}root>", toString(reader));
+    }
+
+    public void testBadgerfish() throws Exception {
+        XMLStreamReader reader = new BadgerfishJSONXMLStreamReader(new StringReader(
+                "{\"p\":{\"@xmlns\":{\"aa\":\"http://other.ns\",\"$\":\"http://def.ns\"},"
+                        + "\"aa:sam\":{\"$\":\"555\",\"@att\":\"lets\"}}}"));
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.next());
+        assertEquals(new QName("http://def.ns", "p"), reader.getName());
+        assertEquals(2, reader.getNamespaceCount());
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.next());
+        assertEquals(new QName("http://other.ns", "sam"), reader.getName());
+        assertEquals("aa", reader.getPrefix());
+        assertEquals("lets", reader.getAttributeValue(null, "att"));
+        assertEquals("555", reader.getElementText());
+    }
+
+    public void testAttributeAfterChildElement() throws Exception {
+        assertAttributeRejected(new MappedJSONXMLStreamReader(new StringReader(
+                "{\"root\":{\"child\":{\"a\":1},\"@late\":2}}"), new HashMap<String, String>()));
+        assertAttributeRejected(new MappedJSONXMLStreamReader(new StringReader(
+                "{\"root\":{\"child\":[1,2],\"@late\":2}}"), new HashMap<String, String>()));
+        assertAttributeRejected(new BadgerfishJSONXMLStreamReader(new StringReader(
+                "{\"root\":{\"child\":{\"$\":\"a\"},\"@late\":\"2\"}}")));
+    }
+
+    private static void assertAttributeRejected(XMLStreamReader reader) {
+        try {
+            toString(reader);
+            fail("Expected XMLStreamException");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("The attribute @late of root "));
+        }
+    }
+}
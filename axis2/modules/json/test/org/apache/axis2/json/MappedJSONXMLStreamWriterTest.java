@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.json;
+
+import junit.framework.TestCase;
+
+import javax.xml.stream.XMLStreamWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MappedJSONXMLStreamWriterTest extends TestCase {
+
+    private StringWriter out;
+
+    private XMLStreamWriter createWriter(Map<String, String> ns2jns) {
+        out = new StringWriter();
+        return new MappedJSONXMLStreamWriter(out, ns2jns);
+    }
+
+    private XMLStreamWriter createWriter() {
+        Map<String, String> ns2jns = new HashMap<String, String>();
+        ns2jns.put("", "");
+        return createWriter(ns2jns);
+    }
+
+    public void testArrays() throws Exception {
+        XMLStreamWriter writer = createWriter();
+        writer.writeStartDocument();
+        writer.writeStartElement("root");
+        for (int i = 1; i <= 3; i++) {
+            writer.writeStartElement("item");
+            writer.writeCharacters(String.valueOf(i));
+            writer.writeEndElement();
+        }
+        writer.writeStartElement("name");
+        writer.writeCharacters("foo");
+        writer.writeEndElement();
+        writer.writeEmptyElement("empty");
+        writer.writeStartElement("single");
+        writer.writeStartElement("value");
+        writer.writeCharacters("true");
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        assertEquals("{\"root\":{\"item\":[1,2,3],\"name\":\"foo\",\"empty\":\"\","
+                + "\"single\":{\"value\":true}}}", out.toString());
+    }
+
+    public void testArrayOfObjects() throws Exception {
+        XMLStreamWriter writer = createWriter();
+        writer.writeStartElement("r");
+        for (String value : new String[] { "a", "b", "c" }) {
+            writer.writeStartElement("i");
+            writer.writeStartElement("v");
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        assertEquals("{\"r\":{\"i\":[{\"v\":\"a\"},{\"v\":\"b\"},{\"v\":\"c\"}]}}", out.toString());
+    }
+
+    public void testAttributesAndText() throws Exception {
+        XMLStreamWriter writer = createWriter();
+        writer.writeStartElement("a");
+        writer.writeAttribute("x", "1");
+        writer.writeCharacters("say \"hi\"\n");
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        assertEquals("{\"a\":{\"@x\":1,\"$\":\"say \\\"hi\\\"\\n\"}}", out.toString());
+    }
+
+    public void testNamespaces() throws Exception {
+        Map<String, String> ns2jns = new HashMap<String, String>();
+        ns2jns.put("http://example.org", "");
+        ns2jns.put("http://other.org", "o");
+        XMLStreamWriter writer = createWriter(ns2jns);
+        writer.writeStartElement("p", "root", "http://example.org");
+        writer.writeNamespace("p", "http://example.org");
+        writer.writeStartElement("q", "child", "http://other.org");
+        writer.writeCharacters("1.5");
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        assertEquals("{\"root\":{\"o.child\":1.5}}", out.toString());
+
+        writer = createWriter(ns2jns);
+        try {
+            writer.writeStartElement("p", "root", "http://unmapped.org");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -355,6 +355,17 @@ public class Constants extends org.apache.axis2.namespace.Constants {
 
         public static final String CONFIG_CONTEXT_TIMEOUT_INTERVAL = "ConfigContextTimeoutInterval";
 
+        // Maximum number of SOAP sessions kept, the least recently used ones are evicted
+        public static final String CONFIG_CONTEXT_MAX_SESSIONS = "ConfigContextMaxSessions";
+
+        // Parameters of the thread pool of the ConfigurationContext
+        public static final String THREAD_POOL_CORE_SIZE = "threadPoolCoreSize";
+        public static final String THREAD_POOL_MAX_SIZE = "threadPoolMaxSize";
+        public static final String THREAD_POOL_QUEUE_SIZE = "threadPoolQueueSize";
+        public static final String THREAD_POOL_KEEP_ALIVE = "threadPoolKeepAlive";
+        public static final String THREAD_POOL_CORE_THREAD_TIMEOUT = "threadPoolCoreThreadTimeout";
+        public static final String THREAD_POOL_REJECTION_POLICY = "threadPoolRejectionPolicy";
+
         public static final String TRANSPORT_IN_URL = "TransportInURL";
 
         public static final String URL_PARAMETER_LIST = "URLParameterList";
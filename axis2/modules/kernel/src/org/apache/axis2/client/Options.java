@@ -28,6 +28,7 @@ import org.apache.axis2.addressing.AddressingConstants;
 import org.apache.axis2.addressing.EndpointReference;
 import org.apache.axis2.addressing.RelatesTo;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.PropertyCache;
 import org.apache.axis2.context.externalize.ExternalizeConstants;
 import org.apache.axis2.context.externalize.SafeObjectInputStream;
 import org.apache.axis2.context.externalize.SafeObjectOutputStream;
@@ -129,6 +130,9 @@ public class Options implements Externalizable, SafeSerializable {
      */
     private Map<String, Object> properties;
 
+    private final transient PropertyCache.Generation propertyGeneration =
+            new PropertyCache.Generation();
+
     // ==========================================================================
     //                  Parameters that can be set via Options
     // ==========================================================================
@@ -566,6 +570,16 @@ public class Options implements Externalizable, SafeSerializable {
         return parent;
     }
 
+    /**
+     * Get the generation of the properties of this instance, which lets the property caches of
+     * the message contexts notice changes.
+     *
+     * @return generation
+     */
+    public PropertyCache.Generation getPropertyGeneration() {
+        return propertyGeneration;
+    }
+
     /**
      * Set parent instance providing default property values.
      *
@@ -577,6 +591,7 @@ public class Options implements Externalizable, SafeSerializable {
         }
 
         this.parent = parent;
+        PropertyCache.parentChanged();
     }
 
     /**
@@ -691,6 +706,7 @@ public class Options implements Externalizable, SafeSerializable {
             }
         }
         this.properties = properties;
+        propertyGeneration.increment();
     }
 
     /**
@@ -883,6 +899,7 @@ public class Options implements Externalizable, SafeSerializable {
             this.properties = new HashMap<String, Object>();
         }
         properties.put(propertyKey, property);
+        propertyGeneration.increment();
         if (DEBUG_ENABLED) {
             debugPropertySet(propertyKey, property);
         }
@@ -1239,6 +1256,7 @@ public class Options implements Externalizable, SafeSerializable {
 
         // HashMap properties
         properties = in.readHashMap();
+        propertyGeneration.increment();
 
         //---------------------------------------------------------
         // "nested"
@@ -57,6 +57,8 @@ public abstract class AbstractContext {
     protected transient AbstractContext parent;
     protected transient Map<String, Object> properties;
     private transient Map<String, Object> propertyDifferences;
+    private final transient PropertyCache.Generation propertyGeneration =
+            new PropertyCache.Generation();
 
     protected AbstractContext(AbstractContext parent) {
         this.parent = parent;
@@ -197,6 +199,7 @@ public abstract class AbstractContext {
             } catch (ConcurrentModificationException cme) {
             }
         }
+        propertiesChanged();
         if(!isClusteringCheckDone) {
             isClusteringCheckDone = true;
             isClusteringOn = needPropertyDifferences();
@@ -209,6 +212,33 @@ public abstract class AbstractContext {
         }
     }
 
+    /**
+     * Called after the properties of this context changed. Lets the {@link PropertyCache}s of
+     * the message contexts drop the values they found in this context.
+     */
+    protected void propertiesChanged() {
+        propertyGeneration.increment();
+    }
+
+    /**
+     * @return the generation of the properties of this context
+     */
+    PropertyCache.Generation getPropertyGeneration() {
+        return propertyGeneration;
+    }
+
+    /**
+     * @return true if reading a property of this context records a property difference for
+     *         the clustering state manager
+     */
+    boolean isClusteringOn() {
+        if(!isClusteringCheckDone) {
+            isClusteringCheckDone = true;
+            isClusteringOn = needPropertyDifferences();
+        }
+        return isClusteringOn;
+    }
+
     private void addPropertyDifference(String key, Object value,  boolean isRemoved) {
         // Narrowed the synchronization so that we only wait
         // if a property difference is added.
@@ -260,6 +290,7 @@ public abstract class AbstractContext {
             } catch (ConcurrentModificationException cme) {
             }
         }
+        propertiesChanged();
     }
 
     /**
@@ -283,6 +314,7 @@ public abstract class AbstractContext {
                     }
                 }
             }
+            propertiesChanged();
             if(!isClusteringCheckDone) {
                 isClusteringCheckDone = true;
                 isClusteringOn = needPropertyDifferences();
@@ -309,6 +341,7 @@ public abstract class AbstractContext {
                 } catch (ConcurrentModificationException cme) {
                 }
             }
+            propertiesChanged();
         }
     }
 
@@ -341,6 +374,7 @@ public abstract class AbstractContext {
      */
     public void setParent(AbstractContext context) {
         parent = context;
+        PropertyCache.parentChanged();
     }
 
     /**
@@ -354,6 +388,7 @@ public abstract class AbstractContext {
     public void setProperties(Map<String, Object> properties) {
         if (properties == null) {
             this.properties = null;
+            propertiesChanged();
         } else {
             Boolean copyProperties = ((Boolean) properties.get(COPY_PROPERTIES));
 
@@ -381,6 +416,7 @@ public abstract class AbstractContext {
                     } catch (ConcurrentModificationException cme) {
                     }
                 }
+                propertiesChanged();
             }
         }
     }
@@ -409,6 +445,7 @@ public abstract class AbstractContext {
                     debugPropertySet((String) key, value);
                 }
             }
+            propertiesChanged();
         }
     }
 
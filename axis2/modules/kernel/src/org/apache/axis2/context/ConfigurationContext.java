@@ -47,7 +47,6 @@ import java.io.File;
 import java.net.URL;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -71,7 +70,7 @@ public class ConfigurationContext extends AbstractContext {
     private static final OnDemandLogger log = new OnDemandLogger(ConfigurationContext.class);
     /** Map containing <code>MessageID</code> to <code>OperationContext</code> mapping. */
     private final ConcurrentHashMap<String, OperationContext> operationContextMap = new ConcurrentHashMap<String, OperationContext>();
-    private final Hashtable<String, ServiceGroupContext> serviceGroupContextMap = new Hashtable<String, ServiceGroupContext>();
+    private final ServiceGroupContextStore serviceGroupContextMap = new ServiceGroupContextStore();
     private Hashtable<String, ServiceGroupContext> applicationSessionServiceGroupContexts = new Hashtable<String, ServiceGroupContext>();
     private AxisConfiguration axisConfiguration;
     private ThreadFactory threadPool;
@@ -109,6 +108,14 @@ public class ConfigurationContext extends AbstractContext {
                 serviceGroupContextTimeoutInterval = Integer.parseInt((String)value);
             }
         }
+        parameter = axisConfiguration
+                .getParameter(Constants.Configuration.CONFIG_CONTEXT_MAX_SESSIONS);
+        if (parameter != null) {
+            Object value = parameter.getValue();
+            if (value != null && value instanceof String) {
+                serviceGroupContextMap.setMaxSize(Integer.parseInt(((String)value).trim()));
+            }
+        }
     }
 
     /**
@@ -360,9 +367,14 @@ public class ConfigurationContext extends AbstractContext {
     public void addServiceGroupContextIntoSoapSessionTable(
             ServiceGroupContext serviceGroupContext) {
         String id = serviceGroupContext.getId();
-        serviceGroupContextMap.put(id, serviceGroupContext);
         serviceGroupContext.touch();
         serviceGroupContext.setParent(this);
+        List<ServiceGroupContext> evicted = serviceGroupContextMap.put(id, serviceGroupContext,
+                getServiceGroupContextTimeoutInterval());
+        for (ServiceGroupContext evictedContext : evicted) {
+            cleanupServiceContexts(evictedContext);
+            contextRemoved(evictedContext);
+        }
         // this is the best time to clean up the SGCtxts since are not being used anymore
         cleanupServiceGroupContexts();
     }
@@ -574,18 +586,19 @@ public class ConfigurationContext extends AbstractContext {
      * @return Returns hashmap of ServiceGroupContexts.
      */
     public String[] getServiceGroupContextIDs() {
-        String[] ids = new String[serviceGroupContextMap.size() +
-                                  applicationSessionServiceGroupContexts.size()];
-        int index = 0;
-        for (Object o : serviceGroupContextMap.keySet()) {
-            ids[index] = (String)o;
-            index++;
-        }
-        for (Object o : applicationSessionServiceGroupContexts.keySet()) {
-            ids[index] = (String)o;
-            index++;
-        }
-        return ids;
+        List<String> ids = new ArrayList<String>(serviceGroupContextMap.getIds());
+        ids.addAll(applicationSessionServiceGroupContexts.keySet());
+        return ids.toArray(new String[ids.size()]);
+    }
+
+    /**
+     * Returns the store of the ServiceGroupContexts of the SOAP sessions, which knows the number
+     * of live sessions and of the sessions which timed out or were evicted.
+     *
+     * @return the SOAP session store
+     */
+    public ServiceGroupContextStore getSoapSessionStore() {
+        return serviceGroupContextMap;
     }
 
 
@@ -596,7 +609,8 @@ public class ConfigurationContext extends AbstractContext {
      */
     public ThreadFactory getThreadPool() {
         if (threadPool == null) {
-            threadPool = new ThreadPool();
+            threadPool = axisConfiguration == null ?
+                    new ThreadPool() : new ThreadPool(axisConfiguration);
         }
 
         return threadPool;
@@ -634,8 +648,7 @@ public class ConfigurationContext extends AbstractContext {
         if (serviceGroupContextMap == null) {
             return;
         }
-        ServiceGroupContext serviceGroupContext =serviceGroupContextMap.get(serviceGroupContextId);
-        serviceGroupContextMap.remove(serviceGroupContextId);
+        ServiceGroupContext serviceGroupContext =serviceGroupContextMap.remove(serviceGroupContextId);
         cleanupServiceContexts(serviceGroupContext);
     }
 
@@ -643,20 +656,13 @@ public class ConfigurationContext extends AbstractContext {
         if (serviceGroupContextMap == null) {
             return;
         }
-        long currentTime = new Date().getTime();
-
-        synchronized (serviceGroupContextMap) {
-            for (Iterator<String> sgCtxtMapKeyIter = serviceGroupContextMap.keySet().iterator();
-                 sgCtxtMapKeyIter.hasNext();) {
-                String sgCtxtId = sgCtxtMapKeyIter.next();
-                ServiceGroupContext serviceGroupContext =serviceGroupContextMap.get(sgCtxtId);
-                if ((currentTime - serviceGroupContext.getLastTouchedTime()) >
-                    getServiceGroupContextTimeoutInterval()) {
-                    sgCtxtMapKeyIter.remove();
-                    cleanupServiceContexts(serviceGroupContext);
-                    contextRemoved(serviceGroupContext);
-                }
-            }
+        long currentTime = System.currentTimeMillis();
+
+        // only the contexts which may have timed out since the last call are looked at
+        for (ServiceGroupContext serviceGroupContext : serviceGroupContextMap.expire(
+                currentTime, getServiceGroupContextTimeoutInterval())) {
+            cleanupServiceContexts(serviceGroupContext);
+            contextRemoved(serviceGroupContext);
         }
     }
 
@@ -704,7 +710,7 @@ public class ConfigurationContext extends AbstractContext {
             applicationSessionServiceGroupContexts.clear();
         }
         if ((serviceGroupContextMap != null) && (serviceGroupContextMap.size() > 0)) {
-            for (Object o : serviceGroupContextMap.values()) {
+            for (Object o : serviceGroupContextMap.getContexts()) {
                 ServiceGroupContext serviceGroupContext =
                         (ServiceGroupContext)o;
                 cleanupServiceContexts(serviceGroupContext);
@@ -938,7 +944,8 @@ public class ConfigurationContext extends AbstractContext {
         }
 
         ArrayList<String> toBeRemovedList = new ArrayList<String>();
-        Iterator<ServiceGroupContext> serviceGroupContexts = serviceGroupContextMap.values().iterator();
+        Iterator<ServiceGroupContext> serviceGroupContexts =
+                serviceGroupContextMap.getContexts().iterator();
         while (serviceGroupContexts.hasNext()) {
             ServiceGroupContext serviceGroupContext =serviceGroupContexts.next();
             if (serviceGroupContext.getDescription().equals(serviceGroup)) {
@@ -297,6 +297,17 @@ public class MessageContext extends AbstractContext
      */
     private ArrayList<Handler> executionChain;
 
+    /**
+     * true while the execution chain is shared with other messages and has to be copied before
+     * it may be changed
+     */
+    private transient boolean executionChainShared;
+
+    /**
+     * The properties found in the options and the context hierarchy, see {@link #getProperty}
+     */
+    private transient PropertyCache propertyCache;
+
     /**
      * @serial The chain of executed Handlers/Phases from processing
      */
@@ -644,9 +655,28 @@ public class MessageContext extends AbstractContext
         if (DEBUG_ENABLED) {
             checkActivateWarning("getExecutionChain");
         }
+        if (executionChainShared) {
+            // the caller may change the chain, so this message gets its own copy
+            executionChain = new ArrayList<Handler>(executionChain);
+            executionChainShared = false;
+        }
         return executionChain;
     }
 
+    /**
+     * Returns the Handler of the execution chain at the current handler index without copying a
+     * shared chain.
+     *
+     * @return the current Handler, or null if the index is past the end of the chain
+     */
+    public Handler getCurrentHandler() {
+        if (executionChain == null || currentHandlerIndex < 0
+                || currentHandlerIndex >= executionChain.size()) {
+            return null;
+        }
+        return executionChain.get(currentHandlerIndex);
+    }
+
     /**
      * Add a Phase to the collection of executed phases for the path.
      * Phases will be inserted in a LIFO data structure.
@@ -941,7 +971,73 @@ public class MessageContext extends AbstractContext
         }
 
         // search in my own options
-        Object obj = super.getProperty(name);
+        Object obj = properties == null ? null : properties.get(name);
+        if (obj != null) {
+            // let the superclass record the read for the clustering state manager
+            return isClusteringOn() ? super.getProperty(name) : obj;
+        }
+
+        // everything else is remembered by the property cache, unless reading a property has to
+        // be tracked for the clustering state manager
+        if (configurationContext != null && configurationContext.isClusteringOn()) {
+            return resolveProperty(name);
+        }
+        if (propertyCache == null) {
+            propertyCache = new PropertyCache();
+        }
+        if (propertyCache.beginVisit()) {
+            visitPropertySources(propertyCache);
+        }
+        obj = propertyCache.get(name);
+        if (obj == PropertyCache.NOT_CACHED) {
+            obj = resolveProperty(name);
+            propertyCache.put(name, obj);
+        }
+        return obj;
+    }
+
+    /**
+     * The properties of a MessageContext are never cached, so changing them does not affect the
+     * property caches.
+     */
+    protected void propertiesChanged() {
+    }
+
+    /**
+     * Hands the generations of the contexts and Options {@link #resolveProperty(String)} looks
+     * in to the property cache, in the same order.
+     */
+    private void visitPropertySources(PropertyCache cache) {
+        for (AbstractContext context = parent; context != null; context = context.getParent()) {
+            cache.visit(context.getPropertyGeneration());
+        }
+        for (Options opts = options; opts != null; opts = opts.getParent()) {
+            cache.visit(opts.getPropertyGeneration());
+        }
+        AbstractContext context = operationContext;
+        if (context == null) {
+            context = serviceContext;
+        }
+        if (context == null) {
+            context = serviceGroupContext;
+        }
+        if (context == null) {
+            context = configurationContext;
+        }
+        if (!isAncestor(context)) {
+            for (; context != null; context = context.getParent()) {
+                cache.visit(context.getPropertyGeneration());
+            }
+        }
+        cache.endVisit();
+    }
+
+    /**
+     * Looks for a property which is not set on this MessageContext itself, in the same order as
+     * {@link #getProperty(String)}
+     */
+    private Object resolveProperty(String name) {
+        Object obj = parent == null ? null : parent.getProperty(name);
         if (obj != null) {
             return obj;
         }
@@ -955,7 +1051,7 @@ public class MessageContext extends AbstractContext
         // nearest level is present and ask that to find the property.
         //
         // If the context is already an ancestor, it was checked during
-        // the super.getProperty call.  In such cases, the second check
+        // the parent.getProperty call.  In such cases, the second check
         // is not performed.
         if (operationContext != null) {
             if (!isAncestor(operationContext)) {
@@ -1287,6 +1383,7 @@ public class MessageContext extends AbstractContext
      */
     public void setConfigurationContext(ConfigurationContext context) {
         configurationContext = context;
+        propertyCache = null;
     }
 
     public void setCurrentHandlerIndex(int currentHandlerIndex) {
@@ -1354,10 +1451,24 @@ public class MessageContext extends AbstractContext
      */
     public void setExecutionChain(ArrayList<Handler> executionChain) {
         this.executionChain = executionChain;
+        executionChainShared = false;
         currentHandlerIndex = -1;
         currentPhaseIndex = 0;
     }
 
+    /**
+     * Set an execution chain which is shared with other messages, such as the chains kept by an
+     * {@link org.apache.axis2.engine.ExecutionChainCache}. The chain is not modified by this
+     * MessageContext, it is copied the first time {@link #getExecutionChain()} is called.
+     * Resets the current handler/phase indexes like {@link #setExecutionChain(ArrayList)}.
+     *
+     * @param executionChain a chain which must not be modified by anyone
+     */
+    public void setSharedExecutionChain(ArrayList<Handler> executionChain) {
+        setExecutionChain(executionChain);
+        executionChainShared = true;
+    }
+
     /**
      * @param reference
      */
@@ -1393,6 +1504,7 @@ public class MessageContext extends AbstractContext
         // allow setting the fields to null
         // useful when extracting the messge context from the object graph
         operationContext = context;
+        propertyCache = null;
 
         this.setParent(operationContext);
 
@@ -1465,6 +1577,7 @@ public class MessageContext extends AbstractContext
         // the object graph
 
         serviceContext = context;
+        propertyCache = null;
 
         if (serviceContext != null) {
             if ((operationContext != null)
@@ -1505,6 +1618,7 @@ public class MessageContext extends AbstractContext
         // the object graph
 
         this.serviceGroupContext = serviceGroupContext;
+        propertyCache = null;
 
         if (this.serviceGroupContext != null) {
             this.axisServiceGroup = serviceGroupContext.getDescription();
@@ -3671,6 +3785,8 @@ public class MessageContext extends AbstractContext
             currentPhaseIndex = metaPhaseIndex;
 
             executionChain = restoreHandlerList(metaExecutionChain);
+            executionChainShared = false;
+            propertyCache = null;
 
             try {
                 deserializeSelfManagedData();
@@ -3899,6 +4015,8 @@ public class MessageContext extends AbstractContext
             currentPhaseIndex = metaPhaseIndex;
 
             executionChain = restoreHandlerList(metaExecutionChain);
+            executionChainShared = false;
+            propertyCache = null;
 
             try {
                 deserializeSelfManagedData();
@@ -4161,7 +4279,11 @@ public class MessageContext extends AbstractContext
         // ArrayList executionChain
         //     handler and phase related data
         //---------------------------------------------------------
-        copy.setExecutionChain(executionChain);
+        if (executionChainShared) {
+            copy.setSharedExecutionChain(executionChain);
+        } else {
+            copy.setExecutionChain(executionChain);
+        }
 
         // the setting of the execution chain is actually a reset
         // so copy the indices after putting in the execution chain
@@ -4277,6 +4399,7 @@ public class MessageContext extends AbstractContext
 
     public void setOptionsExplicit(Options op) {
         this.options = op;
+        propertyCache = null;
     }
 
 
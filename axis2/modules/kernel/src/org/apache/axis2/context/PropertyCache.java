@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.context;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Remembers the values, and the absence of values, a MessageContext found for property names in
+ * its Options and in its context hierarchy. The properties of the MessageContext itself are not
+ * cached, they are always looked up first.
+ * <p/>
+ * Every context and Options has its own {@link Generation}, which is moved on by every change of
+ * its properties. A cache remembers the generations it found along the hierarchy of its message
+ * context when it was filled, and drops its values when one of them moved on or when the
+ * hierarchy itself changed, so a change only affects the message contexts below the context or
+ * Options which changed. The hierarchy is only walked after some context or Options changed its
+ * properties or its parent since the last walk, as counted by a single counter; as long as
+ * nothing changed a lookup costs one read of that counter. Properties changed through the
+ * deprecated
+ * {@link AbstractContext#getProperties()} map, or through a map after it was handed to
+ * {@link org.apache.axis2.client.Options#setProperties(Map)}, are not noticed.
+ */
+public final class PropertyCache {
+
+    /**
+     * Returned by {@link #get(String)} for names which are not cached
+     */
+    static final Object NOT_CACHED = new Object();
+
+    private static final Object NO_VALUE = new Object();
+
+    private static final int MAX_SIZE = 256;
+
+    // moved on by every change of the properties or of the parent of any context or Options
+    private static final AtomicInteger changes = new AtomicInteger();
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+
+    // the generations of the hierarchy the values were found in, in lookup order
+    private Generation[] sources = new Generation[8];
+    private int[] generations = new int[8];
+    private int size;
+
+    // state of the walk of the hierarchy, see visit(Generation)
+    private int position;
+    private boolean changed;
+
+    // the value of the change counter at the start of the last walk
+    private int walkedAt;
+    private boolean walked;
+
+    /**
+     * The generation of the properties of a context or of an Options
+     */
+    public static final class Generation {
+        private static final AtomicIntegerFieldUpdater<Generation> updater =
+                AtomicIntegerFieldUpdater.newUpdater(Generation.class, "value");
+
+        private volatile int value;
+
+        /**
+         * Called whenever the properties which may be cached change
+         */
+        public void increment() {
+            updater.incrementAndGet(this);
+            changes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Called whenever the parent of a context or of an Options changes
+     */
+    public static void parentChanged() {
+        changes.incrementAndGet();
+    }
+
+    /**
+     * @return true if the hierarchy has to be walked with {@link #visit(Generation)} and
+     *         {@link #endVisit()}, false if nothing changed since the last walk
+     */
+    boolean beginVisit() {
+        int current = changes.get();
+        if (walked && current == walkedAt) {
+            return false;
+        }
+        walkedAt = current;
+        walked = true;
+        return true;
+    }
+
+    /**
+     * Called for each context and Options of the hierarchy, in lookup order, before the values
+     * are looked up, see {@link #beginVisit()} and {@link #endVisit()}. The generations are read before resolving, so that
+     * a change while resolving is noticed.
+     */
+    void visit(Generation source) {
+        int current = source.value;
+        if (!changed && position < size && sources[position] == source
+                && generations[position] == current) {
+            position++;
+            return;
+        }
+        changed = true;
+        if (position == sources.length) {
+            Generation[] newSources = new Generation[position * 2];
+            System.arraycopy(sources, 0, newSources, 0, position);
+            sources = newSources;
+            int[] newGenerations = new int[position * 2];
+            System.arraycopy(generations, 0, newGenerations, 0, position);
+            generations = newGenerations;
+        }
+        sources[position] = source;
+        generations[position] = current;
+        position++;
+    }
+
+    /**
+     * Ends the walk of the hierarchy, the values are dropped if it changed
+     */
+    void endVisit() {
+        if (changed || position != size) {
+            values.clear();
+            for (int i = position; i < size; i++) {
+                sources[i] = null;
+            }
+            size = position;
+        }
+        position = 0;
+        changed = false;
+    }
+
+    /**
+     * @return the cached value, null if the property is known to be absent, or
+     *         {@link #NOT_CACHED}
+     */
+    Object get(String name) {
+        Object value = values.get(name);
+        if (value == null) {
+            return NOT_CACHED;
+        }
+        return value == NO_VALUE ? null : value;
+    }
+
+    void put(String name, Object value) {
+        if (values.size() >= MAX_SIZE) {
+            values.clear();
+        }
+        values.put(name, value == null ? NO_VALUE : value);
+    }
+
+    void clear() {
+        values.clear();
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.context;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the ServiceGroupContexts of the SOAP sessions of a ConfigurationContext.
+ * <p/>
+ * The contexts are kept in a concurrent map. To find the contexts which timed out without
+ * looking at all of them, every context is also put in a slot of a hashed timer wheel, the slot
+ * of the tick at which it times out if it is not touched again. {@link #expire(long, long)}
+ * only looks at the slots of the ticks passed since the previous call. A context which was
+ * touched since it was put in its slot is moved to the slot of its new time out, so touching a
+ * context costs nothing but setting its last touched time.
+ * <p/>
+ * If a maximum size is set, adding a context beyond it evicts the context which times out
+ * first, which is the least recently touched one as far as the wheel knows.
+ */
+public class ServiceGroupContextStore {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final long TICK = 100;
+
+    private final ConcurrentHashMap<String, Entry> contexts = new ConcurrentHashMap<String, Entry>();
+    private final List<ConcurrentLinkedQueue<Entry>> wheel;
+
+    // only one thread at a time turns the wheel
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    // the next tick to look at
+    private volatile long currentTick;
+    private volatile int maxSize;
+
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public ServiceGroupContextStore() {
+        wheel = new ArrayList<ConcurrentLinkedQueue<Entry>>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ConcurrentLinkedQueue<Entry>());
+        }
+        currentTick = System.currentTimeMillis() / TICK;
+    }
+
+    /**
+     * @param maxSize the maximum number of contexts kept, 0 for no limit
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of contexts in the store
+     */
+    public int size() {
+        return contexts.size();
+    }
+
+    /**
+     * @return the number of contexts removed since they were not touched within the time out
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * @return the number of contexts removed to stay within the maximum size
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public ServiceGroupContext get(String id) {
+        Entry entry = contexts.get(id);
+        return entry == null ? null : entry.context;
+    }
+
+    /**
+     * Adds a context, replacing the one with the same ID.
+     *
+     * @param timeout the time out in milliseconds
+     * @return the contexts evicted to stay within the maximum size, to be cleaned up by the
+     *         caller
+     */
+    public List<ServiceGroupContext> put(String id, ServiceGroupContext context, long timeout) {
+        Entry entry = new Entry(id, context);
+        contexts.put(id, entry);
+        schedule(entry, context.getLastTouchedTime() + timeout);
+        int max = maxSize;
+        if (max <= 0 || contexts.size() <= max) {
+            return Collections.emptyList();
+        }
+        return evict(max, timeout);
+    }
+
+    public ServiceGroupContext remove(String id) {
+        // the entry stays in its slot until the wheel gets there
+        Entry entry = contexts.remove(id);
+        return entry == null ? null : entry.context;
+    }
+
+    public Set<String> getIds() {
+        return contexts.keySet();
+    }
+
+    /**
+     * @return a view of the contexts
+     */
+    public Collection<ServiceGroupContext> getContexts() {
+        final Collection<Entry> entries = contexts.values();
+        return new AbstractCollection<ServiceGroupContext>() {
+            public Iterator<ServiceGroupContext> iterator() {
+                final Iterator<Entry> it = entries.iterator();
+                return new Iterator<ServiceGroupContext>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public ServiceGroupContext next() {
+                        return it.next().context;
+                    }
+
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    public void clear() {
+        contexts.clear();
+        for (ConcurrentLinkedQueue<Entry> slot : wheel) {
+            slot.clear();
+        }
+    }
+
+    /**
+     * Removes the contexts which were not touched within the time out. Does nothing if another
+     * thread is already at it.
+     *
+     * @param now     the current time in milliseconds
+     * @param timeout the time out in milliseconds
+     * @return the removed contexts, to be cleaned up by the caller
+     */
+    public List<ServiceGroupContext> expire(long now, long timeout) {
+        if (!wheelLock.tryLock()) {
+            return Collections.emptyList();
+        }
+        try {
+            List<ServiceGroupContext> expired = null;
+            long nowTick = now / TICK;
+            if (nowTick - currentTick >= WHEEL_SIZE) {
+                // every slot is looked at once, each for the last tick it stands for
+                currentTick = nowTick - WHEEL_SIZE + 1;
+            }
+            List<Entry> reschedule = new ArrayList<Entry>();
+            for (long tick = currentTick; tick <= nowTick; tick++) {
+                ConcurrentLinkedQueue<Entry> slot = wheel.get(slotOf(tick));
+                for (Entry entry = slot.poll(); entry != null; entry = slot.poll()) {
+                    if (contexts.get(entry.id) != entry) {
+                        // removed or replaced
+                        continue;
+                    }
+                    long deadline = entry.context.getLastTouchedTime() + timeout;
+                    if (entry.tick > tick || deadline > now) {
+                        reschedule.add(entry);
+                    } else if (contexts.remove(entry.id, entry)) {
+                        expiredCount.incrementAndGet();
+                        if (expired == null) {
+                            expired = new ArrayList<ServiceGroupContext>();
+                        }
+                        expired.add(entry.context);
+                    }
+                }
+            }
+            currentTick = nowTick + 1;
+            for (Entry entry : reschedule) {
+                schedule(entry, Math.max(entry.tick * TICK,
+                                         entry.context.getLastTouchedTime() + timeout));
+            }
+            return expired == null ? Collections.<ServiceGroupContext>emptyList() : expired;
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private List<ServiceGroupContext> evict(int max, long timeout) {
+        List<ServiceGroupContext> evicted = new ArrayList<ServiceGroupContext>();
+        wheelLock.lock();
+        try {
+            long tick = currentTick;
+            // look at the slots in the order the contexts time out, a full turn at most
+            for (int i = 0; i < WHEEL_SIZE && contexts.size() > max; i++, tick++) {
+                ConcurrentLinkedQueue<Entry> slot = wheel.get(slotOf(tick));
+                while (contexts.size() > max) {
+                    Entry oldest = null;
+                    for (Entry entry : slot) {
+                        if (contexts.get(entry.id) == entry && (oldest == null ||
+                                entry.context.getLastTouchedTime() <
+                                oldest.context.getLastTouchedTime())) {
+                            oldest = entry;
+                        }
+                    }
+                    if (oldest == null) {
+                        break;
+                    }
+                    slot.remove(oldest);
+                    if (contexts.remove(oldest.id, oldest)) {
+                        evictedCount.incrementAndGet();
+                        evicted.add(oldest.context);
+                    }
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        return evicted;
+    }
+
+    private void schedule(Entry entry, long deadline) {
+        // never put an entry in a slot the wheel may be looking at right now
+        long tick = Math.max((deadline + TICK - 1) / TICK, currentTick + 1);
+        entry.tick = tick;
+        wheel.get(slotOf(tick)).add(entry);
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick % WHEEL_SIZE);
+    }
+
+    private static class Entry {
+        private final String id;
+        private final ServiceGroupContext context;
+        // the tick of the slot the entry is in
+        private volatile long tick;
+
+        Entry(String id, ServiceGroupContext context) {
+            this.id = id;
+            this.context = context;
+        }
+    }
+}
@@ -19,7 +19,6 @@
 
 package org.apache.axis2.deployment;
 
-import org.apache.axiom.attachments.utils.IOUtils;
 import org.apache.axis2.classloader.BeanInfoCache;
 import org.apache.axis2.classloader.BeanInfoCachingClassLoader;
 
@@ -33,10 +32,7 @@ import java.net.URLStreamHandler;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 public class DeploymentClassLoader extends URLClassLoader implements BeanInfoCachingClassLoader {
     // List of URL's
@@ -45,6 +41,9 @@ public class DeploymentClassLoader extends URLClassLoader implements BeanInfoCac
     // List of jar files inside the jars in the original url
     private List embedded_jars;
 
+    // Index of the entries of the embedded jars, built on first use
+    private EmbeddedJarIndex embeddedJarIndex;
+
     private boolean isChildFirstClassLoading;
 
     private final BeanInfoCache beanInfoCache = new BeanInfoCache();
@@ -111,25 +110,14 @@ public class DeploymentClassLoader extends URLClassLoader implements BeanInfoCac
     public URL findResource(String resource) {
         URL url = super.findResource(resource);
         if (url == null) {
-            for (int i = 0; embedded_jars != null && i < embedded_jars.size(); i++) {
-                String libjar_name = (String) embedded_jars.get(i);
-                try {
-                    InputStream in = getJarAsStream(libjar_name);
-                    ZipInputStream zin = new ZipInputStream(in);
-                    ZipEntry entry;
-                    String entryName;
-                    while ((entry = zin.getNextEntry()) != null) {
-                        entryName = entry.getName();
-                        if (entryName != null &&
-                                entryName.endsWith(resource)) {
-                            byte[] raw = IOUtils.getStreamAsByteArray(zin);
-                            return new URL("jar", "", -1, urls[0] + "!/" + libjar_name + "!/" + entryName,
-                                    new ByteUrlStreamHandler(raw));
-                        }
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+            try {
+                EmbeddedJarIndex index = getEmbeddedJarIndex();
+                EmbeddedJarIndex.Entry entry = index == null ? null : index.getEntry(resource);
+                if (entry != null) {
+                    url = index.getURL(entry);
                 }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
         }
         return url;
@@ -149,83 +137,42 @@ public class DeploymentClassLoader extends URLClassLoader implements BeanInfoCac
         while (e.hasMoreElements()) {
             resources.add(e.nextElement());
         }
-        for (int i = 0; embedded_jars != null && i < embedded_jars.size(); i++) {
-            String libjar_name = (String) embedded_jars.get(i);
-            try {
-            InputStream in = getJarAsStream(libjar_name);
-            ZipInputStream zin = new ZipInputStream(in);
-            ZipEntry entry;
-            String entryName;
-                while ((entry = zin.getNextEntry()) != null) {
-                    entryName = entry.getName();
-                    if (entryName != null &&
-                            entryName.endsWith(resource)) {
-                        byte[] raw = IOUtils.getStreamAsByteArray(zin);
-                        resources.add(new URL("jar", "", -1, urls[0] + "!/" + libjar_name + "!/" + entryName,
-                                new ByteUrlStreamHandler(raw)));
-                    }
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
+        EmbeddedJarIndex index = getEmbeddedJarIndex();
+        if (index != null) {
+            for (EmbeddedJarIndex.Entry entry = index.getEntry(resource); entry != null;
+                 entry = entry.getNext()) {
+                resources.add(index.getURL(entry));
             }
         }
         return Collections.enumeration(resources);
     }
 
     /**
-     * Access the jars file (/lib) one by one , then for each one create a <code>ZipInputStream</code>
-     * and check to see whether there is any entry eith given name. if it is found then
-     * return the byte array for that
+     * Looks up the given entry in the jars of the /lib directory, in order, and returns its
+     * content.
      *
      * @param resource <code>String</code>  Name of the file to be found
-     * @return byte[]
+     * @return byte[], or null if no jar has the entry
      * @throws java.io.IOException <code>Exception</code>
      */
-    private byte[] getBytes(String resource) throws Exception {
-        for (int i = 0; embedded_jars != null && i < embedded_jars.size(); i++) {
-            String libjar_name = (String) embedded_jars.get(i);
-            InputStream in = getJarAsStream(libjar_name);
-            byte[] bytes = getBytes(in, resource);
-            if(bytes != null) {
-                return bytes;
-            }
-        }
-        return null;
+    private byte[] getBytes(String resource) throws IOException {
+        EmbeddedJarIndex index = getEmbeddedJarIndex();
+        EmbeddedJarIndex.Entry entry = index == null ? null : index.getEntry(resource);
+        return entry == null ? null : index.getBytes(entry);
     }
 
     /**
-     * Get a specific entry's content as a byte array
-     * 
-     * @param in
-     * @param resource
-     * @return
-     * @throws Exception
-     */
-    private byte[] getBytes(InputStream in, String resource) throws Exception {
-        ZipInputStream zin = new ZipInputStream(in);
-        ZipEntry entry;
-        String entryName;
-        while ((entry = zin.getNextEntry()) != null) {
-            entryName = entry.getName();
-            if (entryName != null &&
-                    entryName.endsWith(resource)) {
-                byte[] raw = IOUtils.getStreamAsByteArray(zin);
-                zin.close();
-                return raw;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Get the specified embedded jar from the main jar 
+     * Returns the index of the jars of the /lib directory, which is built on the first lookup
+     * which is not answered by the URL search path.
      *
-     * @param libjar_name
-     * @return
-     * @throws Exception
+     * @return the index, or null if there are no embedded jars
+     * @throws IOException if the jars could not be read
      */
-    private InputStream getJarAsStream(String libjar_name) throws Exception {
-        return new ByteArrayInputStream(getBytes(urls[0].openStream(), libjar_name));
+    private synchronized EmbeddedJarIndex getEmbeddedJarIndex() throws IOException {
+        if (embeddedJarIndex == null && embedded_jars != null && !embedded_jars.isEmpty()) {
+            embeddedJarIndex = new EmbeddedJarIndex(urls[0], embedded_jars);
+        }
+        return embeddedJarIndex;
     }
 
     public static class ByteUrlStreamHandler extends URLStreamHandler {
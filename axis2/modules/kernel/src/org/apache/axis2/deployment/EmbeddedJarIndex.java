@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.deployment;
+
+import org.apache.axiom.attachments.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Index of the entries of the jars embedded in an archive, used by {@link DeploymentClassLoader}
+ * to find classes and resources in the jars of the lib directory without extracting them.
+ * <p/>
+ * The archive is read once to get the embedded jars and their central directories; the index
+ * maps the name of each entry to its jar and to the offset of the entry in the jar, so a lookup
+ * is a hash lookup and only the entries found are inflated. The content of the jars is softly
+ * referenced and read again from the archive if it has been reclaimed.
+ */
+final class EmbeddedJarIndex {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+
+    private final URL archive;
+
+    /** the entries by name, the entries with the same name are chained in the order of the jars */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * @param archive  the archive
+     * @param jarNames the names of the embedded jars, in lookup order
+     */
+    EmbeddedJarIndex(URL archive, List jarNames) throws IOException {
+        this.archive = archive;
+        Map<String, byte[]> contents = new HashMap<String, byte[]>();
+        for (Object jarName : jarNames) {
+            contents.put((String) jarName, null);
+        }
+        ZipInputStream zin = new ZipInputStream(archive.openStream());
+        try {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                String entryName = entry.getName();
+                if (contents.containsKey(entryName) && contents.get(entryName) == null) {
+                    contents.put(entryName, IOUtils.getStreamAsByteArray(zin));
+                }
+            }
+        } finally {
+            zin.close();
+        }
+        // the first jar ends up at the head of the chains
+        for (int i = jarNames.size() - 1; i >= 0; i--) {
+            String jarName = (String) jarNames.get(i);
+            byte[] content = contents.get(jarName);
+            if (content != null) {
+                index(new Jar(jarName, content), content);
+            }
+        }
+    }
+
+    /**
+     * Returns the entry with the given name in the first jar having one, the next ones are
+     * chained to it, see {@link Entry#getNext()}.
+     */
+    Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    private void add(Entry entry) {
+        entry.next = entries.get(entry.name);
+        entries.put(entry.name, entry);
+    }
+
+    private void index(Jar jar, byte[] content) throws IOException {
+        try {
+            indexCentralDirectory(jar, content);
+        } catch (ZipException e) {
+            // a jar which can only be read sequentially, such as a ZIP64 one
+            ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(content));
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                add(new Entry(jar, entry.getName(), -1, 0, 0, 0));
+            }
+        }
+    }
+
+    private void indexCentralDirectory(Jar jar, byte[] content) throws IOException {
+        int end = content.length - END_SIZE;
+        int min = Math.max(0, end - 0xFFFF);
+        while (end >= min && readInt(content, end) != END_SIGNATURE) {
+            end--;
+        }
+        if (end < min) {
+            throw new ZipException("No central directory in " + jar.name);
+        }
+        int count = readShort(content, end + 10);
+        long offset = readInt(content, end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 jar " + jar.name);
+        }
+        int position = (int) offset;
+        Entry[] jarEntries = new Entry[count];
+        for (int i = 0; i < count; i++) {
+            if (position + 46 > content.length
+                    || readInt(content, position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory in " + jar.name);
+            }
+            int method = readShort(content, position + 10);
+            int compressedSize = readInt(content, position + 20);
+            int size = readInt(content, position + 24);
+            int nameLength = readShort(content, position + 28);
+            int extraLength = readShort(content, position + 30);
+            int commentLength = readShort(content, position + 32);
+            int localOffset = readInt(content, position + 42);
+            if (compressedSize < 0 || size < 0 || localOffset < 0) {
+                throw new ZipException("ZIP64 jar " + jar.name);
+            }
+            String name = new String(content, position + 46, nameLength, "UTF-8");
+            jarEntries[i] = new Entry(jar, name, localOffset, method, compressedSize, size);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        // the first entry of a name in the jar wins, as with a sequential read
+        for (int i = count - 1; i >= 0; i--) {
+            Entry next = entries.get(jarEntries[i].name);
+            if (next != null && next.jar == jar) {
+                entries.put(jarEntries[i].name, next.next);
+            }
+            add(jarEntries[i]);
+        }
+    }
+
+    private static int readShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return readShort(b, off) | (readShort(b, off + 2) << 16);
+    }
+
+    /**
+     * Returns the content of the given entry.
+     */
+    byte[] getBytes(Entry entry) throws IOException {
+        byte[] content = entry.jar.getContent();
+        if (entry.offset == -1) {
+            return scan(content, entry.name);
+        }
+        int position = entry.offset;
+        if (position + 30 > content.length
+                || readInt(content, position) != LOCAL_HEADER_SIGNATURE) {
+            return scan(content, entry.name);
+        }
+        position += 30 + readShort(content, position + 26) + readShort(content, position + 28);
+        byte[] bytes = new byte[entry.size];
+        if (entry.method == ZipEntry.STORED) {
+            System.arraycopy(content, position, bytes, 0, entry.size);
+            return bytes;
+        } else if (entry.method != ZipEntry.DEFLATED) {
+            return scan(content, entry.name);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(content, position, entry.compressedSize);
+            int length = 0;
+            boolean padded = false;
+            while (length < bytes.length) {
+                int count = inflater.inflate(bytes, length, bytes.length - length);
+                if (count == 0) {
+                    if (!inflater.needsInput() || padded) {
+                        throw new ZipException("Invalid entry " + entry.name + " in "
+                                + entry.jar.name);
+                    }
+                    // the inflater may need an extra byte in nowrap mode
+                    inflater.setInput(new byte[1]);
+                    padded = true;
+                }
+                length += count;
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid entry " + entry.name + " in " + entry.jar.name);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the URL of the given entry, its content is read when it is first opened.
+     */
+    URL getURL(Entry entry) throws IOException {
+        synchronized (entry) {
+            if (entry.url == null) {
+                entry.url = new URL("jar", "", -1,
+                        archive + "!/" + entry.jar.name + "!/" + entry.name,
+                        new EntryUrlStreamHandler(entry));
+            }
+            return entry.url;
+        }
+    }
+
+    /**
+     * Reads an entry sequentially, for the entries which are not indexed by offset.
+     */
+    private static byte[] scan(byte[] content, String name) throws IOException {
+        ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(content));
+        ZipEntry entry;
+        while ((entry = zin.getNextEntry()) != null) {
+            if (name.equals(entry.getName())) {
+                return IOUtils.getStreamAsByteArray(zin);
+            }
+        }
+        throw new ZipException("No entry " + name);
+    }
+
+    private final class Jar {
+        private final String name;
+        private SoftReference<byte[]> content;
+
+        Jar(String name, byte[] content) {
+            this.name = name;
+            this.content = new SoftReference<byte[]>(content);
+        }
+
+        synchronized byte[] getContent() throws IOException {
+            byte[] bytes = content.get();
+            if (bytes == null) {
+                ZipInputStream zin = new ZipInputStream(archive.openStream());
+                try {
+                    ZipEntry entry;
+                    while ((entry = zin.getNextEntry()) != null) {
+                        if (name.equals(entry.getName())) {
+                            bytes = IOUtils.getStreamAsByteArray(zin);
+                            break;
+                        }
+                    }
+                } finally {
+                    zin.close();
+                }
+                if (bytes == null) {
+                    throw new ZipException("No entry " + name + " in " + archive);
+                }
+                content = new SoftReference<byte[]>(bytes);
+            }
+            return bytes;
+        }
+    }
+
+    static final class Entry {
+        private final Jar jar;
+        private final String name;
+        /** offset of the local header in the jar, -1 if not known */
+        private final int offset;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private Entry next;
+        private URL url;
+        private byte[] bytes;
+
+        Entry(Jar jar, String name, int offset, int method, int compressedSize, int size) {
+            this.jar = jar;
+            this.name = name;
+            this.offset = offset;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+
+        /**
+         * Returns the entry with the same name in the next jar having one.
+         */
+        Entry getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * Opens the entry, its content is kept once read.
+     */
+    private final class EntryUrlStreamHandler extends URLStreamHandler {
+        private final Entry entry;
+
+        EntryUrlStreamHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        protected URLConnection openConnection(URL u) throws IOException {
+            byte[] bytes;
+            synchronized (entry) {
+                if (entry.bytes == null) {
+                    entry.bytes = getBytes(entry);
+                }
+                bytes = entry.bytes;
+            }
+            return new DeploymentClassLoader.ByteURLConnection(u, bytes);
+        }
+    }
+}
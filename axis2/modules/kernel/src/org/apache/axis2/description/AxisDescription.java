@@ -28,6 +28,7 @@ import org.apache.axis2.AxisFault;
 import org.apache.axis2.Constants;
 import org.apache.axis2.engine.AxisConfiguration;
 import org.apache.axis2.engine.AxisEvent;
+import org.apache.axis2.engine.ExecutionChainCache;
 import org.apache.axis2.i18n.Messages;
 import org.apache.axis2.modules.Module;
 import org.apache.axis2.util.JavaUtils;
@@ -476,6 +477,7 @@ public abstract class AxisDescription implements ParameterInclude, DescriptionCo
 
         // If we have anything specific to do, let that happen
         onEngage(axisModule, source);
+        ExecutionChainCache.invalidateAll();
 
         engagedModules.put(axisModule.getArchiveName(), axisModule);
     }
@@ -515,6 +517,7 @@ public abstract class AxisDescription implements ParameterInclude, DescriptionCo
         // module.getVersion());
         if (isEngaged(module)) {
             onDisengage(module);
+            ExecutionChainCache.invalidateAll();
             engagedModules.remove(module.getArchiveName());
             /**
              * if a Disengaged module belogs to an AxisService or an Operation
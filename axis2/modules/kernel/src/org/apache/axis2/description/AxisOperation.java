@@ -37,6 +37,7 @@ import org.apache.axis2.context.OperationContext;
 import org.apache.axis2.context.ServiceContext;
 import org.apache.axis2.engine.AxisConfiguration;
 import org.apache.axis2.engine.AxisError;
+import org.apache.axis2.engine.ExecutionChainCache;
 import org.apache.axis2.engine.MessageReceiver;
 import org.apache.axis2.i18n.Messages;
 import org.apache.axis2.phaseresolver.PhaseResolver;
@@ -79,6 +80,7 @@ public abstract class AxisOperation extends AxisDescription
 
     private String soapAction;
 
+    private final ExecutionChainCache executionChainCache = new ExecutionChainCache();
 
     /** Default constructor */
     public AxisOperation() {
@@ -562,6 +564,13 @@ public abstract class AxisOperation extends AxisDescription
         return (AxisService)getParent();
     }
 
+    /**
+     * @return the execution chains the AxisEngine built for the flows of this operation
+     */
+    public ExecutionChainCache getExecutionChainCache() {
+        return executionChainCache;
+    }
+
     public String getSoapAction() {
         if(log.isDebugEnabled()) {
             log.debug("AxisOperation::getSoapAction " + soapAction);
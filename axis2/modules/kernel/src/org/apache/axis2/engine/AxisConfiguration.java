@@ -150,6 +150,8 @@ public class AxisConfiguration extends AxisDescription {
 
     private List<Phase> outFaultPhases;
 
+    private final ExecutionChainCache executionChainCache = new ExecutionChainCache();
+
     private List<Phase> outPhases;
 
     protected PhasesInfo phasesinfo;
@@ -956,6 +958,13 @@ public class AxisConfiguration extends AxisDescription {
         return outFaultPhases;
     }
 
+    /**
+     * @return the execution chains the AxisEngine built from the global phases
+     */
+    public ExecutionChainCache getExecutionChainCache() {
+        return executionChainCache;
+    }
+
     public PhasesInfo getPhasesInfo() {
         return phasesinfo;
     }
@@ -146,12 +146,12 @@ public class AxisEngine {
             preCalculatedPhases = confContext.getAxisConfiguration().getInFlowPhases();
             msgContext.setFLOW(MessageContext.IN_FLOW);
         }
-        // Set the initial execution chain in the MessageContext to a *copy* of what
-        // we got above.  This allows individual message processing to change the chain without
+        // The chain is shared with other messages, the MessageContext copies it before it is
+        // changed. This allows individual message processing to change the chain without
         // affecting later messages.
-        ArrayList<Handler> executionChain = new ArrayList<Handler>();
-        executionChain.addAll(preCalculatedPhases);
-        msgContext.setExecutionChain(executionChain);
+        ArrayList<Handler> executionChain = confContext.getAxisConfiguration()
+                .getExecutionChainCache().getChain(msgContext.getFLOW(), preCalculatedPhases, null);
+        msgContext.setSharedExecutionChain(executionChain);
         try {
             InvocationResponse pi = invoke(msgContext, NOT_RESUMING_EXECUTION);
 
@@ -234,9 +234,8 @@ public class AxisEngine {
 
         InvocationResponse pi = InvocationResponse.CONTINUE;
 
-        while (msgContext.getCurrentHandlerIndex() < msgContext.getExecutionChain().size()) {
-            Handler currentHandler = (Handler) msgContext.getExecutionChain().
-                    get(msgContext.getCurrentHandlerIndex());
+        Handler currentHandler;
+        while ((currentHandler = msgContext.getCurrentHandler()) != null) {
 
             try {
                 if (!resuming) {
@@ -404,12 +403,14 @@ public class AxisEngine {
         }
         // find and invoke the Phases
         OperationContext operationContext = msgContext.getOperationContext();
-        ArrayList executionChain = operationContext.getAxisOperation().getPhasesOutFlow();
+        AxisOperation axisOperation = operationContext.getAxisOperation();
         //rather than having two steps added both oparation and global chain together
-        ArrayList outPhases = new ArrayList();
-        outPhases.addAll(executionChain);
-        outPhases.addAll(msgContext.getConfigurationContext().getAxisConfiguration().getOutFlowPhases());
-        msgContext.setExecutionChain(outPhases);
+        @SuppressWarnings("unchecked")
+        List<Phase> operationPhases = axisOperation.getPhasesOutFlow();
+        ArrayList<Handler> outPhases = axisOperation.getExecutionChainCache().getChain(
+                MessageContext.OUT_FLOW, operationPhases,
+                msgContext.getConfigurationContext().getAxisConfiguration().getOutFlowPhases());
+        msgContext.setSharedExecutionChain(outPhases);
         msgContext.setFLOW(MessageContext.OUT_FLOW);
         try {
             InvocationResponse pi = invoke(msgContext, NOT_RESUMING_EXECUTION);
@@ -465,13 +466,11 @@ public class AxisEngine {
         // find and execute the Fault Out Flow Handlers
         if (opContext != null) {
             AxisOperation axisOperation = opContext.getAxisOperation();
-            ArrayList faultExecutionChain = axisOperation.getPhasesOutFaultFlow();
-
-            //adding both operation specific and global out fault flows.
-
-            ArrayList outFaultPhases = new ArrayList();
-            outFaultPhases.addAll((ArrayList) faultExecutionChain.clone());
-            msgContext.setExecutionChain((ArrayList) outFaultPhases.clone());
+            @SuppressWarnings("unchecked")
+            List<Phase> operationPhases = axisOperation.getPhasesOutFaultFlow();
+            ArrayList<Handler> outFaultPhases = axisOperation.getExecutionChainCache().getChain(
+                    MessageContext.OUT_FAULT_FLOW, operationPhases, null);
+            msgContext.setSharedExecutionChain(outFaultPhases);
             msgContext.setFLOW(MessageContext.OUT_FAULT_FLOW);
             try {
                 InvocationResponse pi = invoke(msgContext, NOT_RESUMING_EXECUTION);
@@ -497,9 +496,10 @@ public class AxisEngine {
             }
         }
 
-        ArrayList<Handler> executionChain = new ArrayList<Handler>(msgContext.getConfigurationContext()
-                .getAxisConfiguration().getOutFaultFlowPhases());
-        msgContext.setExecutionChain(executionChain);
+        AxisConfiguration axisConfig = msgContext.getConfigurationContext().getAxisConfiguration();
+        ArrayList<Handler> executionChain = axisConfig.getExecutionChainCache().getChain(
+                MessageContext.OUT_FAULT_FLOW, axisConfig.getOutFaultFlowPhases(), null);
+        msgContext.setSharedExecutionChain(executionChain);
         msgContext.setFLOW(MessageContext.OUT_FAULT_FLOW);
         InvocationResponse pi = invoke(msgContext, NOT_RESUMING_EXECUTION);
 
@@ -560,9 +560,10 @@ public class AxisEngine {
             }
         }
 
-        ArrayList<Handler> executionChain = new ArrayList<Handler>(msgContext.getConfigurationContext()
-                .getAxisConfiguration().getOutFaultFlowPhases());
-        msgContext.setExecutionChain(executionChain);
+        AxisConfiguration axisConfig = msgContext.getConfigurationContext().getAxisConfiguration();
+        ArrayList<Handler> executionChain = axisConfig.getExecutionChainCache().getChain(
+                MessageContext.OUT_FAULT_FLOW, axisConfig.getOutFaultFlowPhases(), null);
+        msgContext.setSharedExecutionChain(executionChain);
         msgContext.setFLOW(MessageContext.OUT_FAULT_FLOW);
         InvocationResponse pi = invoke(msgContext, NOT_RESUMING_EXECUTION);
 
@@ -43,7 +43,6 @@ import org.apache.axis2.transport.http.HTTPConstants;
 import org.apache.axis2.util.JavaUtils;
 
 import javax.xml.namespace.QName;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -180,8 +179,11 @@ public class DispatchPhase extends Phase {
         }
         
 
-        ArrayList operationChain = msgContext.getAxisOperation().getRemainingPhasesInFlow();
-        msgContext.setExecutionChain((ArrayList) operationChain.clone());
+        AxisOperation axisOperation = msgContext.getAxisOperation();
+        @SuppressWarnings("unchecked")
+        List<Phase> remainingPhases = axisOperation.getRemainingPhasesInFlow();
+        msgContext.setSharedExecutionChain(axisOperation.getExecutionChainCache().getChain(
+                MessageContext.IN_FLOW, remainingPhases, null));
     }
 
     private void loadContexts(AxisService service, MessageContext msgContext) throws AxisFault {
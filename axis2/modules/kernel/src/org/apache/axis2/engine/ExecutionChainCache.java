@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the execution chains built for the flows of an AxisOperation or of the AxisConfiguration,
+ * so that the AxisEngine does not copy the phase lists for every message. A chain is the
+ * concatenation of up to two phase lists and is rebuilt when one of these lists is replaced or
+ * changes its size, and when a module is engaged or disengaged anywhere.
+ * <p/>
+ * The chains are shared between messages and must never be modified, they are handed to the
+ * MessageContext through {@link org.apache.axis2.context.MessageContext#setSharedExecutionChain},
+ * which copies a chain before anyone gets to change it.
+ */
+public class ExecutionChainCache {
+
+    private static final AtomicInteger version = new AtomicInteger();
+
+    // indexed by the flow constants of MessageContext
+    private final AtomicReferenceArray<Chain> chains = new AtomicReferenceArray<Chain>(5);
+
+    /**
+     * Drops the chains of every cache, called when the handlers of the phases are rearranged.
+     */
+    public static void invalidateAll() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @param flow   one of the flow constants of MessageContext
+     * @param first  the phases to run first
+     * @param second the phases to run after the first ones, may be null
+     * @return the chain of the given phases
+     */
+    public ArrayList<Handler> getChain(int flow, List<Phase> first, List<Phase> second) {
+        Chain chain = chains.get(flow);
+        int currentVersion = version.get();
+        if (chain == null || !chain.isValid(currentVersion, first, second)) {
+            chain = new Chain(currentVersion, first, second);
+            chains.set(flow, chain);
+        }
+        return chain.handlers;
+    }
+
+    private static class Chain {
+        private final int version;
+        private final List<Phase> first;
+        private final int firstSize;
+        private final List<Phase> second;
+        private final int secondSize;
+        private final ArrayList<Handler> handlers;
+
+        Chain(int version, List<Phase> first, List<Phase> second) {
+            this.version = version;
+            this.first = first;
+            this.second = second;
+            handlers = new ArrayList<Handler>();
+            if (first != null) {
+                handlers.addAll(first);
+            }
+            if (second != null) {
+                handlers.addAll(second);
+            }
+            firstSize = first == null ? 0 : first.size();
+            secondSize = second == null ? 0 : second.size();
+        }
+
+        boolean isValid(int currentVersion, List<Phase> first, List<Phase> second) {
+            return version == currentVersion &&
+                   this.first == first && this.second == second &&
+                   firstSize == (first == null ? 0 : first.size()) &&
+                   secondSize == (second == null ? 0 : second.size());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis2.util.threadpool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in a fixed set of buckets. The buckets are bounded by the values of
+ * {@link #getBucketBounds()} in milliseconds, the last bucket holds everything above the largest
+ * bound.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS =
+            {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * @param nanos the latency to record, in nanoseconds
+     */
+    public void record(long nanos) {
+        long millis = nanos / 1000000;
+        int bucket = 0;
+        while (bucket < BOUNDS.length && millis >= BOUNDS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return the upper bounds (exclusive) of all the buckets but the last, in milliseconds
+     */
+    public long[] getBucketBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * @return the number of latencies recorded in each bucket
+     */
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < counts.length(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(i < BOUNDS.length ? "<" + BOUNDS[i] + "ms" : ">=" + BOUNDS[i - 1] + "ms");
+            buffer.append(": ").append(counts.get(i));
+        }
+        return buffer.toString();
+    }
+}
@@ -21,35 +21,63 @@
 package org.apache.axis2.util.threadpool;
 
 import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.description.ParameterInclude;
 import org.apache.axis2.i18n.Messages;
 import org.apache.axis2.java.security.AccessController;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.lang.reflect.Method;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This the thread pool for axis2. This class will be used a singleton
  * across axis2 engine. <code>ThreadPool</code> is accepts <code>AxisWorkers</code> which has
  * run method on them and execute this method, using one of the threads
  * in the thread pool.
+ * <p/>
+ * The pool starts new threads up to the maximum pool size before it queues any task, and queues
+ * at most <code>queueSize</code> tasks. A task which finds both the threads and the queue in use
+ * is run by the calling thread with the "callerRuns" rejection policy, and fails with a
+ * RejectedExecutionException with the "abort" policy. The sizes and the policy can be set with
+ * the threadPool* parameters of axis2.xml.
  */
 public class ThreadPool implements ThreadFactory {
     private static final Log log = LogFactory.getLog(ThreadPool.class);
     protected static long SLEEP_INTERVAL = 1000;
-    private static boolean shutDown;
+    // time safeShutDown waits for the workers which are already handed over
+    protected static long SHUTDOWN_TIMEOUT = 30000;
+    private volatile boolean shutDown;
     protected ThreadPoolExecutor executor;
 
+    public static final String REJECTION_POLICY_CALLER_RUNS = "callerRuns";
+    public static final String REJECTION_POLICY_ABORT = "abort";
+
     //integers that define the pool size, with the default values set.
     private int corePoolSize = 5;
     //max pool size is set to 100 to control the maximum number of threads created
     private int maxPoolSize = 100;
+    private int queueSize = 1000;
+    private long keepAliveSeconds = 10;
+    private boolean coreThreadTimeOut;
+    private String rejectionPolicy = REJECTION_POLICY_CALLER_RUNS;
+
+    // tasks handed to the pool which have not finished yet
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
 
     public ThreadPool() {
         setExecutor(createDefaultExecutor("Axis2 Task", Thread.NORM_PRIORITY, true));
@@ -61,6 +89,54 @@ public class ThreadPool implements ThreadFactory {
         setExecutor(createDefaultExecutor("Axis2 Task", Thread.NORM_PRIORITY, true));
     }
 
+    /**
+     * Creates a thread pool configured by the threadPool* parameters of the given parameter
+     * include, usually the AxisConfiguration. Parameters which are not set keep their defaults.
+     */
+    public ThreadPool(ParameterInclude parameters) {
+        corePoolSize = getIntParameter(parameters,
+                Constants.Configuration.THREAD_POOL_CORE_SIZE, corePoolSize);
+        maxPoolSize = Math.max(corePoolSize, getIntParameter(parameters,
+                Constants.Configuration.THREAD_POOL_MAX_SIZE, maxPoolSize));
+        queueSize = getIntParameter(parameters,
+                Constants.Configuration.THREAD_POOL_QUEUE_SIZE, queueSize);
+        keepAliveSeconds = getIntParameter(parameters,
+                Constants.Configuration.THREAD_POOL_KEEP_ALIVE, (int) keepAliveSeconds);
+        Parameter param = parameters.getParameter(
+                Constants.Configuration.THREAD_POOL_CORE_THREAD_TIMEOUT);
+        if (param != null && param.getValue() != null) {
+            coreThreadTimeOut = Boolean.valueOf(param.getValue().toString().trim()).booleanValue();
+        }
+        param = parameters.getParameter(Constants.Configuration.THREAD_POOL_REJECTION_POLICY);
+        if (param != null && param.getValue() != null) {
+            setRejectionPolicy(param.getValue().toString().trim());
+        }
+        setExecutor(createDefaultExecutor("Axis2 Task", Thread.NORM_PRIORITY, true));
+        if (log.isDebugEnabled()) {
+            log.debug("Created thread pool with core size " + corePoolSize + ", max size " +
+                    maxPoolSize + ", queue size " + queueSize + " and rejection policy " +
+                    rejectionPolicy);
+        }
+    }
+
+    private static int getIntParameter(ParameterInclude parameters, String name,
+                                       int defaultValue) {
+        Parameter param = parameters.getParameter(name);
+        if (param == null || param.getValue() == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(param.getValue().toString().trim());
+    }
+
+    private void setRejectionPolicy(String rejectionPolicy) {
+        if (!REJECTION_POLICY_CALLER_RUNS.equals(rejectionPolicy) &&
+                !REJECTION_POLICY_ABORT.equals(rejectionPolicy)) {
+            throw new IllegalArgumentException("Unknown thread pool rejection policy " +
+                    rejectionPolicy);
+        }
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
     public Executor getExecutor() {
         return executor;
     }
@@ -76,6 +152,49 @@ public class ThreadPool implements ThreadFactory {
         executor.execute(worker);
     }
 
+    /**
+     * @return the number of threads running a task
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of threads in the pool
+     */
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks the threads of the pool have completed
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return the number of tasks which found both the threads and the queue in use
+     */
+    public long getRejectedCount() {
+        return rejectedTasks.get();
+    }
+
+    /**
+     * @return the time from handing a task to the pool until it finished, for the tasks of the
+     *         default executor
+     */
+    public LatencyHistogram getTaskLatency() {
+        return taskLatency;
+    }
+
     /**
      * A forceful shutdown mechanism for thread pool.
      */
@@ -89,7 +208,7 @@ public class ThreadPool implements ThreadFactory {
     /**
      * This is the recommended shutdown method for the thread pool
      * This will wait till all the workers that are already handed over to the
-     * thread pool get executed.
+     * thread pool get executed, for at most SHUTDOWN_TIMEOUT milliseconds.
      *
      * @throws org.apache.axis2.AxisFault
      */
@@ -99,6 +218,22 @@ public class ThreadPool implements ThreadFactory {
         }
 
         executor.shutdown();
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        try {
+            while (!executor.awaitTermination(SLEEP_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.warn("Gave up waiting for " + executor.getActiveCount() +
+                            " thread workers to finish");
+                    return;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Waiting for " + executor.getActiveCount() + " thread workers");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AxisFault.makeFault(e);
+        }
     }
 
     protected ThreadPoolExecutor createDefaultExecutor(final String name,
@@ -106,19 +241,132 @@ public class ThreadPool implements ThreadFactory {
                                                        final boolean daemon) {
         ThreadPoolExecutor rc;
         if (maxPoolSize == Integer.MAX_VALUE) {
-            rc = new ThreadPoolExecutor(corePoolSize, maxPoolSize, 10,
-                    TimeUnit.SECONDS, new SynchronousQueue(),
+            rc = new TimedExecutor(corePoolSize, maxPoolSize, keepAliveSeconds,
+                    new SynchronousQueue<Runnable>(),
                     new DefaultThreadFactory(name, daemon, priority));
         } else {
-            rc = new ThreadPoolExecutor(corePoolSize, maxPoolSize, 10,
-                    TimeUnit.SECONDS, new LinkedBlockingQueue(),
+            GrowingQueue queue = new GrowingQueue(queueSize);
+            rc = new TimedExecutor(corePoolSize, maxPoolSize, keepAliveSeconds, queue,
                     new DefaultThreadFactory(name, daemon, priority));
+            queue.executor = rc;
+        }
+        rc.setRejectedExecutionHandler(new RejectionHandler());
+        if (coreThreadTimeOut) {
+            allowCoreThreadTimeOut(rc);
         }
-// FIXME: This API is only in JDK 1.6 - Use reflection?        
-//        rc.allowCoreThreadTimeOut(true);
         return rc;
     }
 
+    /**
+     * ThreadPoolExecutor.allowCoreThreadTimeOut is only in JDK 1.6, so it is looked up by
+     * reflection
+     */
+    private static void allowCoreThreadTimeOut(ThreadPoolExecutor executor) {
+        try {
+            Method method = ThreadPoolExecutor.class.getMethod("allowCoreThreadTimeOut",
+                    new Class<?>[]{boolean.class});
+            method.invoke(executor, new Object[]{Boolean.TRUE});
+        } catch (Exception e) {
+            log.warn("Core threads of the thread pool can not time out on this JVM", e);
+        }
+    }
+
+    /**
+     * Wraps the tasks to keep the count of pending tasks and to measure their latency
+     */
+    private class TimedExecutor extends ThreadPoolExecutor {
+
+        TimedExecutor(int corePoolSize, int maxPoolSize, long keepAliveSeconds,
+                      java.util.concurrent.BlockingQueue<Runnable> queue,
+                      java.util.concurrent.ThreadFactory threadFactory) {
+            super(corePoolSize, maxPoolSize, keepAliveSeconds, TimeUnit.SECONDS, queue,
+                    threadFactory);
+        }
+
+        public void execute(Runnable command) {
+            pendingTasks.incrementAndGet();
+            try {
+                super.execute(new TimedTask(command));
+            } catch (RuntimeException e) {
+                pendingTasks.decrementAndGet();
+                throw e;
+            } catch (Error e) {
+                pendingTasks.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                pendingTasks.decrementAndGet();
+                taskLatency.record(System.nanoTime() - submitted);
+            }
+        }
+    }
+
+    /**
+     * A ThreadPoolExecutor only starts threads above the core pool size when its queue refuses a
+     * task. This queue refuses tasks while the pool can still grow and all of its threads are
+     * busy, so that the pool grows up to the maximum pool size before tasks are queued.
+     */
+    private class GrowingQueue extends LinkedBlockingQueue<Runnable> {
+        private static final long serialVersionUID = -4529875139843306271L;
+
+        private transient ThreadPoolExecutor executor;
+
+        GrowingQueue(int capacity) {
+            super(capacity);
+        }
+
+        public boolean offer(Runnable runnable) {
+            if (executor != null) {
+                int poolSize = executor.getPoolSize();
+                // pendingTasks includes the task being offered
+                if (poolSize < executor.getMaximumPoolSize() && pendingTasks.get() > poolSize) {
+                    return false;
+                }
+            }
+            return super.offer(runnable);
+        }
+
+        boolean force(Runnable runnable) {
+            return super.offer(runnable);
+        }
+    }
+
+    private class RejectionHandler implements RejectedExecutionHandler {
+
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(Messages.getMessage("threadpoolshutdown"));
+            }
+            // the pool did not start a thread after the queue refused the task, it is full now
+            if (executor.getQueue() instanceof GrowingQueue &&
+                    ((GrowingQueue) executor.getQueue()).force(runnable)) {
+                return;
+            }
+            rejectedTasks.incrementAndGet();
+            if (REJECTION_POLICY_CALLER_RUNS.equals(rejectionPolicy)) {
+                runnable.run();
+            } else {
+                throw new RejectedExecutionException("The thread pool is busy, " +
+                        executor.getActiveCount() + " threads are running and " +
+                        executor.getQueue().size() + " tasks are queued");
+            }
+        }
+    }
+
     private static class DefaultThreadFactory implements java.util.concurrent.ThreadFactory {
         private final String name;
         private final boolean daemon;
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.context;
+
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.engine.AxisConfiguration;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Measures the property lookups of a handler chain on a MessageContext: 16 handlers reading 3
+ * properties each, most of which are not set anywhere. The lookups are measured once with an
+ * unchanged context hierarchy, and once while the properties of an unrelated service context
+ * change after every chain. This is not a unit test, run it with
+ * <pre>
+ * java org.apache.axis2.context.MessageContextPropertyBenchmark [chains]
+ * </pre>
+ */
+public class MessageContextPropertyBenchmark {
+
+    private static final int HANDLERS = 16;
+    private static final int READS_PER_HANDLER = 3;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int chains = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        AxisOperation axisOperation = new InOutAxisOperation(new QName("Temp"));
+        AxisService axisService = new AxisService("Temp");
+        AxisConfiguration axisConfiguration = new AxisConfiguration();
+        axisService.addOperation(axisOperation);
+        axisConfiguration.addService(axisService);
+        ConfigurationContext configurationContext = new ConfigurationContext(axisConfiguration);
+        MessageContext msgctx = configurationContext.createMessageContext();
+        ServiceGroupContext serviceGroupContext = configurationContext.createServiceGroupContext(
+                axisService.getAxisServiceGroup());
+        ServiceContext serviceContext = serviceGroupContext.getServiceContext(axisService);
+        OperationContext opContext = axisOperation.findOperationContext(msgctx, serviceContext);
+        axisOperation.registerOperationContext(msgctx, opContext);
+        msgctx.setServiceContext(serviceContext);
+        ServiceContext unrelated = new ServiceContext(axisService, serviceGroupContext);
+
+        String[] names = new String[16];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "handler.property." + i;
+        }
+        configurationContext.setProperty(names[0], "config");
+        msgctx.getOptions().setProperty(names[1], "options");
+        opContext.setProperty(names[2], "operation");
+
+        // warm up
+        run(msgctx, names, chains / 2, null);
+        run(msgctx, names, chains / 2, unrelated);
+        for (int round = 0; round < ROUNDS; round++) {
+            report("unchanged hierarchy", run(msgctx, names, chains, null), chains);
+            report("unrelated changes  ", run(msgctx, names, chains, unrelated), chains);
+        }
+    }
+
+    /**
+     * @return the elapsed time in nanoseconds
+     */
+    private static long run(MessageContext msgctx, String[] names, int chains,
+                            AbstractContext changed) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int chain = 0; chain < chains; chain++) {
+            for (int handler = 0; handler < HANDLERS; handler++) {
+                for (int j = 0; j < READS_PER_HANDLER; j++) {
+                    if (msgctx.getProperty(names[(handler + j * 5) % names.length]) != null) {
+                        found++;
+                    }
+                }
+            }
+            if (changed != null) {
+                changed.setProperty("counter", chain);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found != chains * 9) {
+            throw new IllegalStateException(found + " properties found");
+        }
+        return elapsed;
+    }
+
+    private static void report(String name, long nanos, int chains) {
+        double lookups = (double) chains * HANDLERS * READS_PER_HANDLER;
+        System.out.println(name + " : " + Math.round(lookups * 1000 / nanos) + "M lookups/s");
+    }
+}
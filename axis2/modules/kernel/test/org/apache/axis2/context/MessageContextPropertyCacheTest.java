@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.context;
+
+import junit.framework.TestCase;
+import org.apache.axis2.client.Options;
+import org.apache.axis2.description.AxisOperation;
+import org.apache.axis2.description.AxisService;
+import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.engine.AxisConfiguration;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Checks that the properties a MessageContext caches follow the changes of its options and
+ * context hierarchy.
+ */
+public class MessageContextPropertyCacheTest extends TestCase {
+    private AxisOperation axisOperation;
+    private AxisService axisService;
+    private ConfigurationContext configurationContext;
+    private MessageContext msgctx;
+    private OperationContext opContext;
+
+    protected void setUp() throws Exception {
+        axisOperation = new InOutAxisOperation(new QName("Temp"));
+        axisService = new AxisService("Temp");
+        AxisConfiguration axisConfiguration = new AxisConfiguration();
+        axisService.addOperation(axisOperation);
+        axisConfiguration.addService(axisService);
+        configurationContext = new ConfigurationContext(axisConfiguration);
+        msgctx = configurationContext.createMessageContext();
+
+        ServiceGroupContext serviceGroupContext = configurationContext.createServiceGroupContext(
+                axisService.getAxisServiceGroup());
+        ServiceContext serviceContext = serviceGroupContext.getServiceContext(axisService);
+        opContext = axisOperation.findOperationContext(msgctx, serviceContext);
+        axisOperation.registerOperationContext(msgctx, opContext);
+        msgctx.setServiceContext(serviceContext);
+    }
+
+    public void testMissesFollowChanges() throws Exception {
+        assertNull(msgctx.getProperty("key"));
+        assertNull(msgctx.getProperty("key"));
+
+        configurationContext.setProperty("key", "config");
+        assertEquals("config", msgctx.getProperty("key"));
+
+        msgctx.getOptions().setProperty("key", "options");
+        assertEquals("config", msgctx.getProperty("key"));
+
+        opContext.setProperty("key", "operation");
+        assertEquals("operation", msgctx.getProperty("key"));
+        opContext.removeProperty("key");
+        assertEquals("config", msgctx.getProperty("key"));
+
+        msgctx.setProperty("key", "message");
+        assertEquals("message", msgctx.getProperty("key"));
+        msgctx.removeProperty("key");
+        assertEquals("config", msgctx.getProperty("key"));
+    }
+
+    public void testOptionsChanges() throws Exception {
+        assertNull(msgctx.getProperty("option"));
+        Options parent = new Options();
+        parent.setProperty("option", "parent");
+        msgctx.setOptions(parent);
+        assertEquals("parent", msgctx.getProperty("option"));
+
+        msgctx.getOptions().setProperty("option", "own");
+        assertEquals("own", msgctx.getProperty("option"));
+
+        Options replaced = new Options();
+        msgctx.setOptionsExplicit(replaced);
+        assertNull(msgctx.getProperty("option"));
+    }
+
+    public void testContextChanges() throws Exception {
+        opContext.setProperty("key", "operation");
+        assertEquals("operation", msgctx.getProperty("key"));
+
+        OperationContext other = new OperationContext(axisOperation,
+                (ServiceContext) opContext.getParent());
+        msgctx.setOperationContext(other);
+        assertNull(msgctx.getProperty("key"));
+    }
+
+    public void testAncestorChanges() throws Exception {
+        ServiceContext serviceContext = (ServiceContext) opContext.getParent();
+        serviceContext.setProperty("key", "service");
+        assertEquals("service", msgctx.getProperty("key"));
+
+        // a message of another operation does not affect the cache
+        MessageContext other = configurationContext.createMessageContext();
+        other.setOperationContext(new OperationContext(axisOperation, serviceContext));
+        assertEquals("service", msgctx.getProperty("key"));
+
+        ServiceContext otherService = new ServiceContext(axisService,
+                (ServiceGroupContext) serviceContext.getParent());
+        opContext.setParent(otherService);
+        assertNull(msgctx.getProperty("key"));
+        otherService.setProperty("key", "other");
+        assertEquals("other", msgctx.getProperty("key"));
+
+        Options parent = new Options();
+        msgctx.getOptions().setParent(parent);
+        opContext.setProperty("key", null);
+        parent.setProperty("option", "parent");
+        assertEquals("parent", msgctx.getProperty("option"));
+    }
+
+    /**
+     * A handler chain reads a few properties per handler, most of them are not set anywhere
+     */
+    public void testHandlerChainLookups() throws Exception {
+        String[] names = new String[16];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "handler.property." + i;
+        }
+        configurationContext.setProperty(names[0], "config");
+        msgctx.getOptions().setProperty(names[1], "options");
+        opContext.setProperty(names[2], "operation");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(9, readProperties(names));
+        }
+        opContext.removeProperty(names[2]);
+        assertEquals(6, readProperties(names));
+    }
+
+    private int readProperties(String[] names) {
+        int found = 0;
+        // 16 handlers reading 3 properties each
+        for (int handler = 0; handler < 16; handler++) {
+            for (int j = 0; j < 3; j++) {
+                if (msgctx.getProperty(names[(handler + j * 5) % names.length]) != null) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+}
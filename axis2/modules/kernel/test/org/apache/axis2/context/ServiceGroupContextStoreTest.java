@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.context;
+
+import junit.framework.TestCase;
+import org.apache.axis2.Constants;
+import org.apache.axis2.description.AxisServiceGroup;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.engine.AxisConfiguration;
+
+import java.util.List;
+
+/**
+ * Checks that the SOAP session store times out and evicts the contexts which were not touched
+ * and keeps the ones which were.
+ */
+public class ServiceGroupContextStoreTest extends TestCase {
+    private static final long TIMEOUT = 1000;
+
+    private ConfigurationContext configurationContext;
+    private AxisServiceGroup serviceGroup;
+    private ServiceGroupContextStore store;
+    private long start;
+
+    protected void setUp() throws Exception {
+        AxisConfiguration axisConfiguration = new AxisConfiguration();
+        configurationContext = new ConfigurationContext(axisConfiguration);
+        serviceGroup = new AxisServiceGroup(axisConfiguration);
+        store = new ServiceGroupContextStore();
+        start = System.currentTimeMillis();
+    }
+
+    private ServiceGroupContext createContext(String id, long lastTouchedTime) {
+        ServiceGroupContext context = new ServiceGroupContext(configurationContext, serviceGroup);
+        context.setId(id);
+        context.setLastTouchedTime(lastTouchedTime);
+        return context;
+    }
+
+    public void testExpiry() throws Exception {
+        ServiceGroupContext first = createContext("first", start);
+        ServiceGroupContext second = createContext("second", start);
+        store.put("first", first, TIMEOUT);
+        store.put("second", second, TIMEOUT);
+
+        assertTrue(store.expire(start + TIMEOUT / 2, TIMEOUT).isEmpty());
+        second.setLastTouchedTime(start + TIMEOUT / 2);
+
+        List<ServiceGroupContext> expired = store.expire(start + TIMEOUT + 200, TIMEOUT);
+        assertEquals(1, expired.size());
+        assertSame(first, expired.get(0));
+        assertNull(store.get("first"));
+        assertSame(second, store.get("second"));
+
+        expired = store.expire(start + TIMEOUT * 2, TIMEOUT);
+        assertEquals(1, expired.size());
+        assertSame(second, expired.get(0));
+        assertEquals(0, store.size());
+        assertEquals(2, store.getExpiredCount());
+    }
+
+    public void testRemovedAndReplacedContextsDoNotExpire() throws Exception {
+        store.put("removed", createContext("removed", start), TIMEOUT);
+        store.put("replaced", createContext("replaced", start), TIMEOUT);
+        ServiceGroupContext replacement = createContext("replaced", start + TIMEOUT);
+        store.put("replaced", replacement, TIMEOUT);
+        assertNotNull(store.remove("removed"));
+
+        assertTrue(store.expire(start + TIMEOUT + 200, TIMEOUT).isEmpty());
+        assertSame(replacement, store.get("replaced"));
+        assertEquals(1, store.size());
+        assertEquals(0, store.getExpiredCount());
+    }
+
+    public void testExpiryAfterALongPause() throws Exception {
+        store.put("first", createContext("first", start), TIMEOUT);
+        // far more than a turn of the wheel
+        assertEquals(1, store.expire(start + TIMEOUT * 1000, TIMEOUT).size());
+    }
+
+    public void testEviction() throws Exception {
+        store.setMaxSize(2);
+        ServiceGroupContext first = createContext("first", start);
+        assertTrue(store.put("first", first, TIMEOUT).isEmpty());
+        assertTrue(store.put("second", createContext("second", start + 10), TIMEOUT).isEmpty());
+        List<ServiceGroupContext> evicted =
+                store.put("third", createContext("third", start + 20), TIMEOUT);
+        assertEquals(1, evicted.size());
+        assertSame(first, evicted.get(0));
+        assertEquals(2, store.size());
+        assertEquals(1, store.getEvictedCount());
+    }
+
+    public void testConfigurationContextSessions() throws Exception {
+        AxisConfiguration axisConfiguration = new AxisConfiguration();
+        axisConfiguration.addParameter(
+                new Parameter(Constants.Configuration.CONFIG_CONTEXT_MAX_SESSIONS, "3"));
+        ConfigurationContext configCtx = new ConfigurationContext(axisConfiguration);
+        for (int i = 0; i < 5; i++) {
+            ServiceGroupContext context = configCtx.createServiceGroupContext(serviceGroup);
+            context.setId("session" + i);
+            configCtx.addServiceGroupContextIntoSoapSessionTable(context);
+        }
+        ServiceGroupContextStore sessions = configCtx.getSoapSessionStore();
+        assertEquals(3, sessions.size());
+        assertEquals(2, sessions.getEvictedCount());
+        assertEquals(3, configCtx.getServiceGroupContextIDs().length);
+
+        configCtx.removeServiceGroupContext(configCtx.getServiceGroupContextIDs()[0]);
+        assertEquals(2, sessions.size());
+        configCtx.cleanupContexts();
+        assertEquals(0, sessions.size());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.deployment;
+
+import junit.framework.TestCase;
+import org.apache.axiom.attachments.utils.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class DeploymentClassLoaderTest extends TestCase {
+
+    private File archive;
+    private byte[] classBytes;
+
+    protected void setUp() throws Exception {
+        InputStream in = ExcludeService.class.getResourceAsStream("ExcludeService.class");
+        classBytes = IOUtils.getStreamAsByteArray(in);
+        in.close();
+
+        byte[] first = createJar(new String[] { "META-INF/test.properties", "first",
+                "org/apache/axis2/deployment/ExcludeService.class", null }, ZipEntry.DEFLATED);
+        byte[] second = createJar(new String[] { "META-INF/test.properties", "second",
+                "stored.txt", "stored" }, ZipEntry.STORED);
+        archive = File.createTempFile("embedded", ".aar");
+        archive.deleteOnExit();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+        out.putNextEntry(new ZipEntry("META-INF/services.xml"));
+        out.write("<service/>".getBytes("UTF-8"));
+        out.putNextEntry(new ZipEntry("lib/first.jar"));
+        out.write(first);
+        out.putNextEntry(new ZipEntry("lib/second.jar"));
+        out.write(second);
+        out.close();
+    }
+
+    private byte[] createJar(String[] entries, int method) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        for (int i = 0; i < entries.length; i += 2) {
+            byte[] content = entries[i + 1] == null ? classBytes : entries[i + 1].getBytes("UTF-8");
+            ZipEntry entry = new ZipEntry(entries[i]);
+            entry.setMethod(method);
+            if (method == ZipEntry.STORED) {
+                CRC32 crc = new CRC32();
+                crc.update(content);
+                entry.setCrc(crc.getValue());
+                entry.setSize(content.length);
+            }
+            out.putNextEntry(entry);
+            out.write(content);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private DeploymentClassLoader createClassLoader() throws Exception {
+        return new DeploymentClassLoader(new URL[] { archive.toURI().toURL() },
+                Arrays.asList(new String[] { "lib/first.jar", "lib/second.jar" }),
+                getClass().getClassLoader(), true);
+    }
+
+    private static String read(URL url) throws Exception {
+        InputStream in = url.openStream();
+        try {
+            return new String(IOUtils.getStreamAsByteArray(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testFindResource() throws Exception {
+        DeploymentClassLoader loader = createClassLoader();
+        assertEquals("first", read(loader.findResource("META-INF/test.properties")));
+        assertEquals("stored", read(loader.findResource("stored.txt")));
+        assertNull(loader.findResource("missing.txt"));
+        // only complete entry names match
+        assertNull(loader.findResource("test.properties"));
+    }
+
+    public void testFindResources() throws Exception {
+        List resources = Collections.list(createClassLoader().findResources("META-INF/test.properties"));
+        List contents = new ArrayList();
+        for (int i = 0; i < resources.size(); i++) {
+            contents.add(read((URL) resources.get(i)));
+        }
+        assertEquals(Arrays.asList(new String[] { "first", "second" }), contents);
+        assertTrue(resources.get(1).toString().endsWith(
+                "!/lib/second.jar!/META-INF/test.properties"));
+    }
+
+    public void testLoadEmbeddedClass() throws Exception {
+        DeploymentClassLoader loader = createClassLoader();
+        Class clazz = loader.loadClass(ExcludeService.class.getName());
+        assertSame(loader, clazz.getClassLoader());
+        assertNotSame(ExcludeService.class, clazz);
+    }
+
+    public void testNoEmbeddedJars() throws Exception {
+        DeploymentClassLoader loader = new DeploymentClassLoader(
+                new URL[] { archive.toURI().toURL() }, null, getClass().getClassLoader(), false);
+        assertNull(loader.findResource("stored.txt"));
+        assertNotNull(loader.findResource("META-INF/services.xml"));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.engine;
+
+import junit.framework.TestCase;
+import org.apache.axis2.context.MessageContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExecutionChainCacheTest extends TestCase {
+
+    public void testChainIsReusedUntilThePhasesChange() {
+        ExecutionChainCache cache = new ExecutionChainCache();
+        List<Phase> first = new ArrayList<Phase>();
+        first.add(new Phase("a"));
+        List<Phase> second = new ArrayList<Phase>();
+        second.add(new Phase("b"));
+
+        ArrayList<Handler> chain = cache.getChain(MessageContext.OUT_FLOW, first, second);
+        assertEquals(2, chain.size());
+        assertSame(first.get(0), chain.get(0));
+        assertSame(second.get(0), chain.get(1));
+        assertSame(chain, cache.getChain(MessageContext.OUT_FLOW, first, second));
+        // every flow has its own chain
+        assertNotSame(chain, cache.getChain(MessageContext.IN_FLOW, first, null));
+
+        second.add(new Phase("c"));
+        ArrayList<Handler> rebuilt = cache.getChain(MessageContext.OUT_FLOW, first, second);
+        assertNotSame(chain, rebuilt);
+        assertEquals(3, rebuilt.size());
+
+        List<Phase> replaced = new ArrayList<Phase>(first);
+        assertNotSame(rebuilt, cache.getChain(MessageContext.OUT_FLOW, replaced, second));
+
+        chain = cache.getChain(MessageContext.OUT_FLOW, replaced, second);
+        ExecutionChainCache.invalidateAll();
+        assertNotSame(chain, cache.getChain(MessageContext.OUT_FLOW, replaced, second));
+    }
+
+    public void testSharedChainIsCopiedBeforeItIsChanged() {
+        ExecutionChainCache cache = new ExecutionChainCache();
+        List<Phase> phases = new ArrayList<Phase>();
+        phases.add(new Phase("a"));
+        phases.add(new Phase("b"));
+        ArrayList<Handler> chain = cache.getChain(MessageContext.IN_FLOW, phases, null);
+
+        MessageContext msgContext = new MessageContext();
+        msgContext.setSharedExecutionChain(chain);
+        msgContext.setCurrentHandlerIndex(1);
+        assertSame(phases.get(1), msgContext.getCurrentHandler());
+
+        msgContext.getExecutionChain().add(new Phase("c"));
+        assertEquals(3, msgContext.getExecutionChain().size());
+        assertEquals(2, chain.size());
+        assertSame(chain, cache.getChain(MessageContext.IN_FLOW, phases, null));
+
+        msgContext.setCurrentHandlerIndex(3);
+        assertNull(msgContext.getCurrentHandler());
+    }
+}
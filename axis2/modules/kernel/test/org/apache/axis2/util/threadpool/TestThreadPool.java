@@ -21,9 +21,15 @@ package org.apache.axis2.util.threadpool;
 
 import org.apache.axis2.AbstractTestCase;
 import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.engine.AxisConfiguration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class TestThreadPool extends AbstractTestCase {
     /**
@@ -64,4 +70,91 @@ public class TestThreadPool extends AbstractTestCase {
 
     }
 
+    class BlockingWorker implements Runnable {
+        private final CountDownLatch release;
+
+        BlockingWorker(CountDownLatch release) {
+            this.release = release;
+        }
+
+        public void run() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ThreadPool createPool(int core, int max, int queue, String policy) throws AxisFault {
+        AxisConfiguration axisConfig = new AxisConfiguration();
+        axisConfig.addParameter(new Parameter(Constants.Configuration.THREAD_POOL_CORE_SIZE,
+                String.valueOf(core)));
+        axisConfig.addParameter(new Parameter(Constants.Configuration.THREAD_POOL_MAX_SIZE,
+                String.valueOf(max)));
+        axisConfig.addParameter(new Parameter(Constants.Configuration.THREAD_POOL_QUEUE_SIZE,
+                String.valueOf(queue)));
+        axisConfig.addParameter(new Parameter(
+                Constants.Configuration.THREAD_POOL_REJECTION_POLICY, policy));
+        return new ThreadPool(axisConfig);
+    }
+
+    public void testPoolGrowsBeforeQueueing() throws Exception {
+        ThreadPool tPool = createPool(1, 4, 10, ThreadPool.REJECTION_POLICY_ABORT);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 6; i++) {
+            tPool.execute(new BlockingWorker(release));
+        }
+        assertEquals(4, tPool.getPoolSize());
+        assertEquals(2, tPool.getQueuedCount());
+        release.countDown();
+        tPool.forceShutDown();
+    }
+
+    public void testRejectionPolicies() throws Exception {
+        ThreadPool tPool = createPool(1, 1, 1, ThreadPool.REJECTION_POLICY_ABORT);
+        CountDownLatch release = new CountDownLatch(1);
+        tPool.execute(new BlockingWorker(release));
+        tPool.execute(new BlockingWorker(release));
+        try {
+            tPool.execute(new BlockingWorker(release));
+            fail("The pool and its queue are full");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, tPool.getRejectedCount());
+        release.countDown();
+        tPool.forceShutDown();
+
+        tPool = createPool(1, 1, 1, ThreadPool.REJECTION_POLICY_CALLER_RUNS);
+        release = new CountDownLatch(1);
+        tPool.execute(new BlockingWorker(release));
+        tPool.execute(new BlockingWorker(release));
+        TestWorker worker = new TestWorker();
+        tPool.execute(worker);
+        // run by this thread
+        assertTrue(worker.isWorkDone());
+        assertEquals(1, tPool.getRejectedCount());
+        release.countDown();
+        tPool.forceShutDown();
+    }
+
+    public void testMetrics() throws Exception {
+        ThreadPool tPool = createPool(2, 2, 10, ThreadPool.REJECTION_POLICY_ABORT);
+        for (int i = 0; i < 10; i++) {
+            tPool.execute(new TestWorker());
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tPool.getCompletedCount() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, tPool.getCompletedCount());
+        assertEquals(10, tPool.getTaskLatency().getCount());
+        assertEquals(0, tPool.getQueuedCount());
+        // a worker is still counted as active for a moment after its task completed
+        while (tPool.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, tPool.getActiveCount());
+        tPool.forceShutDown();
+    }
 }
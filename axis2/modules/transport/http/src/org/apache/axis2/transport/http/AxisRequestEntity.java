@@ -23,10 +23,10 @@ import org.apache.axiom.om.OMOutputFormat;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.transport.MessageFormatter;
+import org.apache.axis2.transport.http.util.ChunkedByteBuffer;
 import org.apache.axis2.util.JavaUtils;
 
 import javax.xml.stream.FactoryConfigurationError;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,6 +35,10 @@ import java.util.zip.GZIPOutputStream;
 /**
  * This Request Entity is used by the HTTPCommonsTransportSender. This wraps the
  * Axis2 message formatter object.
+ * <p/>
+ * Unless the request is chunked, the message is serialized once into pooled chunks, which give
+ * the content length and are written again if the request is retried. {@link #release()} gives
+ * the chunks back once the request was sent.
  */
 public abstract class AxisRequestEntity  {
 
@@ -44,7 +48,7 @@ public abstract class AxisRequestEntity  {
 
     private MessageContext messageContext;
 
-    private byte[] bytes;
+    private ChunkedByteBuffer buffer;
 
     private boolean isAllowedRetry;
 
@@ -84,10 +88,7 @@ public abstract class AxisRequestEntity  {
             if (chunked) {
                 messageFormatter.writeTo(messageContext, format, outStream, isAllowedRetry);
             } else {
-                if (bytes == null) {
-                    bytes = messageFormatter.getBytes(messageContext, format);
-                }
-                outStream.write(bytes);
+                getBuffer().writeTo(outStream);
             }
             if (outStream instanceof GZIPOutputStream) {
                 ((GZIPOutputStream) outStream).finish();
@@ -105,14 +106,11 @@ public abstract class AxisRequestEntity  {
         if (chunked) {
             return -1;
         }
-        if (bytes == null) {
-            try {
-                bytes = messageFormatter.getBytes(messageContext, format);
-            } catch (AxisFault e) {
-                return -1;
-            }
+        try {
+            return getBuffer().size();
+        } catch (AxisFault e) {
+            return -1;
         }
-        return bytes.length;
     }
 
     public String getContentTypeAsString() {
@@ -128,8 +126,32 @@ public abstract class AxisRequestEntity  {
     }
 
     public InputStream getRequestEntityContent() throws IOException {
-        return new ByteArrayInputStream(messageFormatter.getBytes(messageContext, format));
+        return getBuffer().getInputStream();
     }
-    
-    
+
+    /**
+     * Gives the chunks holding the serialized message back to the pool. Must only be called
+     * once the request was sent.
+     */
+    public void release() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    private ChunkedByteBuffer getBuffer() throws AxisFault {
+        if (buffer == null) {
+            ChunkedByteBuffer content = new ChunkedByteBuffer();
+            try {
+                messageFormatter.writeTo(messageContext, format, content, isAllowedRetry);
+            } catch (AxisFault e) {
+                content.release();
+                throw e;
+            }
+            buffer = content;
+        }
+        return buffer;
+    }
+
 }
@@ -192,8 +192,9 @@ public class HTTPSenderImpl extends HTTPSender {
         MessageFormatter messageFormatter = populateCommonProperties(msgContext, url, postMethod,
                 httpClient, soapActionString);
 
-        postMethod.setRequestEntity(new AxisRequestEntityImpl(messageFormatter, msgContext, format,
-                soapActionString, chunked, isAllowedRetry));
+        AxisRequestEntityImpl requestEntity = new AxisRequestEntityImpl(messageFormatter,
+                msgContext, format, soapActionString, chunked, isAllowedRetry);
+        postMethod.setRequestEntity(requestEntity);
 
         if (!httpVersion.equals(HTTPConstants.HEADER_PROTOCOL_10) && chunked) {
             postMethod.setContentChunked(true);
@@ -215,6 +216,7 @@ public class HTTPSenderImpl extends HTTPSender {
             log.info("Unable to sendViaPost to url[" + url + "]", e);
             throw AxisFault.makeFault(e);
         } finally {
+            requestEntity.release();
             cleanup(msgContext, postMethod);
         }
     }
@@ -250,8 +252,9 @@ public class HTTPSenderImpl extends HTTPSender {
         MessageFormatter messageFormatter = populateCommonProperties(msgContext, url, putMethod,
                 httpClient, soapActionString);
 
-        putMethod.setRequestEntity(new AxisRequestEntityImpl(messageFormatter, msgContext, format,
-                soapActionString, chunked, isAllowedRetry));
+        AxisRequestEntityImpl requestEntity = new AxisRequestEntityImpl(messageFormatter,
+                msgContext, format, soapActionString, chunked, isAllowedRetry);
+        putMethod.setRequestEntity(requestEntity);
 
         if (!httpVersion.equals(HTTPConstants.HEADER_PROTOCOL_10) && chunked) {
             putMethod.setContentChunked(true);
@@ -272,6 +275,7 @@ public class HTTPSenderImpl extends HTTPSender {
             log.info("Unable to sendViaPut to url[" + url + "]", e);
             throw AxisFault.makeFault(e);
         } finally {
+            requestEntity.release();
             cleanup(msgContext, putMethod);
         }
     }
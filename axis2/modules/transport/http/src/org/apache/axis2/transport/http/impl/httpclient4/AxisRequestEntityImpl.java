@@ -75,7 +75,7 @@ public class AxisRequestEntityImpl extends AxisRequestEntity implements HttpEnti
     }
 
     public void consumeContent() {
-        // TODO: Handle this correctly
+        release();
     }
 
 }
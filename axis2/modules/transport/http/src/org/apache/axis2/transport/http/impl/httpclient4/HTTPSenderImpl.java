@@ -241,6 +241,7 @@ public class HTTPSenderImpl extends HTTPSender {
             log.info("Unable to sendViaPost to url[" + url + "]", e);
             throw AxisFault.makeFault(e);
         } finally {
+            requestEntity.release();
             cleanup(msgContext, response);
         }
     }
@@ -296,6 +297,7 @@ public class HTTPSenderImpl extends HTTPSender {
             log.info("Unable to sendViaPut to url[" + url + "]", e);
             throw AxisFault.makeFault(e);
         } finally {
+            requestEntity.release();
             cleanup(msgContext, response);
         }
     }
@@ -33,6 +33,7 @@ import org.apache.http.ProtocolVersion;
 import org.apache.http.entity.ContentLengthStrategy;
 import org.apache.http.impl.DefaultHttpRequestFactory;
 import org.apache.http.impl.entity.StrictContentLengthStrategy;
+import org.apache.http.impl.io.AbstractSessionInputBuffer;
 import org.apache.http.impl.io.ChunkedInputStream;
 import org.apache.http.impl.io.ChunkedOutputStream;
 import org.apache.http.impl.io.ContentLengthInputStream;
@@ -50,9 +51,11 @@ import org.apache.http.io.SessionOutputBuffer;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
@@ -74,6 +77,18 @@ public class AxisHttpConnectionImpl implements AxisHttpConnection {
     
     public AxisHttpConnectionImpl(final Socket socket, final HttpParams params) 
             throws IOException {
+        this(socket, null, params);
+    }
+
+    /**
+     * Creates a connection on a socket some bytes were already read from, e.g. to find out
+     * whether a request is complete before a thread is given to it.
+     *
+     * @param received the bytes already read from the socket, read again before the socket, may
+     *                 be null
+     */
+    public AxisHttpConnectionImpl(final Socket socket, final byte[] received,
+            final HttpParams params) throws IOException {
         super();
         if (socket == null) {
             throw new IllegalArgumentException("Socket may not be null"); 
@@ -92,7 +107,11 @@ public class AxisHttpConnectionImpl implements AxisHttpConnection {
         int buffersize = HttpConnectionParams.getSocketBufferSize(params);
         this.socket = socket;
         this.outbuffer = new SocketOutputBuffer(socket, buffersize, params); 
-        this.inbuffer = new SocketInputBuffer(socket, buffersize, params); 
+        if (received == null) {
+            this.inbuffer = new SocketInputBuffer(socket, buffersize, params);
+        } else {
+            this.inbuffer = new ReceivedInputBuffer(socket, received, buffersize, params);
+        }
         this.contentLenStrategy = new StrictContentLengthStrategy();
         this.requestParser = new HttpRequestParser(
                 this.inbuffer, null, new DefaultHttpRequestFactory(), params);
@@ -117,6 +136,15 @@ public class AxisHttpConnectionImpl implements AxisHttpConnection {
         return !this.socket.isClosed();
     }
 
+    /**
+     * @return true if bytes received from the socket are waiting to be read, this is only known
+     *         for connections created with the bytes already received
+     */
+    boolean hasBufferedInput() {
+        return this.inbuffer instanceof ReceivedInputBuffer
+                && ((ReceivedInputBuffer) this.inbuffer).hasBufferedInput();
+    }
+
     public boolean isStale() {
         try {
             this.inbuffer.isDataAvailable(1);
@@ -281,4 +309,42 @@ public class AxisHttpConnectionImpl implements AxisHttpConnection {
         return buffer.toString();
     }
 
+
+    /**
+     * Input buffer reading the bytes already received before the socket.
+     */
+    private static class ReceivedInputBuffer extends AbstractSessionInputBuffer {
+
+        private final Socket socket;
+        private final ByteArrayInputStream received;
+
+        ReceivedInputBuffer(final Socket socket, final byte[] received, int buffersize,
+                final HttpParams params) throws IOException {
+            super();
+            this.socket = socket;
+            this.received = new ByteArrayInputStream(received);
+            init(new SequenceInputStream(this.received, socket.getInputStream()), buffersize,
+                    params);
+        }
+
+        boolean hasBufferedInput() {
+            return hasBufferedData() || this.received.available() > 0;
+        }
+
+        public boolean isDataAvailable(int timeout) throws IOException {
+            boolean result = hasBufferedInput();
+            if (!result) {
+                int oldtimeout = this.socket.getSoTimeout();
+                try {
+                    this.socket.setSoTimeout(timeout);
+                    fillBuffer();
+                    result = hasBufferedData();
+                } finally {
+                    this.socket.setSoTimeout(oldtimeout);
+                }
+            }
+            return result;
+        }
+    }
+
 }
@@ -32,7 +32,7 @@ import org.apache.http.HttpVersion;
 import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.protocol.BasicHttpContext;
 
-public class DefaultConnectionListener implements IOProcessor {
+public class DefaultConnectionListener implements ConnectionListener {
 
     private static Log LOG = LogFactory.getLog(DefaultConnectionListener.class);
 
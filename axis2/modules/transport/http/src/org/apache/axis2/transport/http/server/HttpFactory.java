@@ -100,6 +100,16 @@ public class HttpFactory {
      */
     public static final String PARAMETER_THREAD_KEEP_ALIVE_TIME_UNIT = "threadKeepAliveTimeUnit";
 
+    /**
+     * Name of axis2.xml connectionListener parameter for SimpleHTTPServer configuration
+     */
+    public static final String PARAMETER_CONNECTION_LISTENER = "connectionListener";
+
+    /**
+     * Value of the connectionListener parameter selecting the {@link NIOConnectionListener}
+     */
+    public static final String CONNECTION_LISTENER_NIO = "nio";
+
     private ConfigurationContext configurationContext;
     private TransportInDescription httpConfiguration;
     private int port;
@@ -112,6 +122,8 @@ public class HttpFactory {
     private long threadKeepAliveTime;
     private TimeUnit threadKeepAliveTimeUnit;
 
+    private String connectionListener;
+
     private WorkerFactory requestWorkerFactory = null;
 
     /**
@@ -130,6 +142,7 @@ public class HttpFactory {
         threadKeepAliveTime = getLongParam(PARAMETER_THREAD_KEEP_ALIVE_TIME, 180L);
         threadKeepAliveTimeUnit =
                 getTimeUnitParam(PARAMETER_THREAD_KEEP_ALIVE_TIME_UNIT, TimeUnit.SECONDS);
+        connectionListener = getStringParam(PARAMETER_CONNECTION_LISTENER, null);
     }
 
     /**
@@ -230,12 +243,20 @@ public class HttpFactory {
     }
 
     /**
-     * Create the listener for request connections
+     * Create the listener for request connections, a {@link NIOConnectionListener} if the
+     * connectionListener parameter is nio
      */
     public IOProcessor newRequestConnectionListener(
             int port,
             final HttpConnectionManager manager, 
             final HttpParams params) throws IOException {
+        if (CONNECTION_LISTENER_NIO.equals(connectionListener)) {
+            return new NIOConnectionListener(
+                    port,
+                    manager,
+                    new DefaultConnectionListenerFailureHandler(),
+                    params);
+        }
         return new DefaultConnectionListener(
                 port, 
                 manager, 
@@ -481,4 +502,19 @@ public class HttpFactory {
         this.threadKeepAliveTimeUnit = threadKeepAliveTimeUnit;
     }
 
+    /**
+     * Getter for connectionListener
+     * return the kind of listener for request connections, nio or null for the default one
+     */
+    public String getConnectionListener() {
+        return connectionListener;
+    }
+
+    /**
+     * Setter for connectionListener
+     */
+    public void setConnectionListener(String connectionListener) {
+        this.connectionListener = connectionListener;
+    }
+
 }
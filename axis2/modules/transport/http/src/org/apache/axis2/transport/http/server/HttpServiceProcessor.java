@@ -80,6 +80,10 @@ public class HttpServiceProcessor implements IOProcessor {
         try {
             while (! Thread.interrupted() && ! isDestroyed() && this.conn.isOpen()) {
                 this.httpservice.handleRequest(this.conn, context);
+                if (this.conn instanceof NIOHttpConnection) {
+                    // an idle connection goes back to the listener rather than hold this thread
+                    ((NIOHttpConnection) this.conn).release();
+                }
             }
         } catch (ConnectionClosedException ex) {
             LOG.debug("Client closed connection");
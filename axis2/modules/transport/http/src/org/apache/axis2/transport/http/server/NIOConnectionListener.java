@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http.server;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpException;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EncodingUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection listener multiplexing the connections on a selector. A connection is only handed to
+ * the connection manager once the head of a request was received, and it comes back to the
+ * listener when its requests are served, so idle keep-alive connections do not hold a request
+ * thread. Connections idle for longer than the socket timeout are closed. A request head larger
+ * than 64 KB is answered with a 431 status, then the rest of the request is discarded until the
+ * client closes the connection.
+ */
+public class NIOConnectionListener implements ConnectionListener {
+
+    private static Log LOG = LogFactory.getLog(NIOConnectionListener.class);
+
+    /** The largest request head accepted */
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+    private static final int INITIAL_HEAD_SIZE = 1024;
+    private static final long SELECT_TIMEOUT = 1000;
+    private static final byte[] HEAD_TOO_LARGE = EncodingUtils.getAsciiBytes(
+            "HTTP/1.1 431 Request Header Fields Too Large\r\n"
+            + "Content-Length: 0\r\nConnection: close\r\n\r\n");
+
+    private volatile boolean destroyed = false;
+
+    private final int port;
+    private final HttpConnectionManager connmanager;
+    private final ConnectionListenerFailureHandler failureHandler;
+    private final HttpParams params;
+    private final int idleTimeout;
+
+    /** Connections given back by the request threads, registered by the listener thread */
+    private final Queue<SocketChannel> released = new ConcurrentLinkedQueue<SocketChannel>();
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private volatile int idleCount;
+    private long lastIdleCheck;
+
+    private volatile Selector selector = null;
+    private ServerSocketChannel serverChannel = null;
+
+    public NIOConnectionListener(
+            int port,
+            final HttpConnectionManager connmanager,
+            final ConnectionListenerFailureHandler failureHandler,
+            final HttpParams params) throws IOException {
+        super();
+        if (connmanager == null) {
+            throw new IllegalArgumentException("Connection manager may not be null");
+        }
+        if (failureHandler == null) {
+            throw new IllegalArgumentException("Failure handler may not be null");
+        }
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        this.port = port;
+        this.connmanager = connmanager;
+        this.failureHandler = failureHandler;
+        this.params = params;
+        this.idleTimeout = HttpConnectionParams.getSoTimeout(params);
+    }
+
+    public void run() {
+        try {
+            while (!Thread.interrupted() && !this.destroyed) {
+                try {
+                    if (this.serverChannel == null) {
+                        open();
+                    }
+                    this.selector.select(SELECT_TIMEOUT);
+                    registerReleased();
+                    processSelectedKeys();
+                    closeIdleConnections();
+                } catch (Throwable ex) {
+                    if (Thread.interrupted() || this.destroyed) {
+                        break;
+                    }
+                    if (!this.failureHandler.failed(this, ex)) {
+                        break;
+                    }
+                    closeSelector();
+                }
+            }
+        } finally {
+            destroy();
+            closeSelector();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Listening on port " + this.port);
+        }
+        synchronized (this) {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.socket().setReuseAddress(true);
+            this.serverChannel.socket().bind(new InetSocketAddress(this.port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+            notifyAll();
+        }
+    }
+
+    private void processSelectedKeys() throws IOException {
+        List<PendingRequest> complete = null;
+        for (Iterator<SelectionKey> it = this.selector.selectedKeys().iterator(); it.hasNext();) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+            } else if (key.isReadable()) {
+                PendingRequest request = (PendingRequest) key.attachment();
+                if (request.read()) {
+                    key.cancel();
+                    if (complete == null) {
+                        complete = new ArrayList<PendingRequest>();
+                    }
+                    complete.add(request);
+                }
+            }
+        }
+        if (complete != null) {
+            // deregister the cancelled keys, a channel can only block once it is deregistered
+            this.selector.selectNow();
+            for (PendingRequest request : complete) {
+                dispatch(request);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.serverChannel.accept()) != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Incoming HTTP connection from " +
+                        channel.socket().getRemoteSocketAddress());
+            }
+            channel.configureBlocking(false);
+            channel.register(this.selector, SelectionKey.OP_READ, new PendingRequest(channel));
+        }
+    }
+
+    private void dispatch(final PendingRequest request) {
+        SocketChannel channel = request.channel;
+        AxisHttpConnection conn = null;
+        try {
+            channel.configureBlocking(true);
+            conn = new NIOHttpConnection(channel, request.getReceived(), this.params, this);
+            this.dispatchedCount.incrementAndGet();
+            try {
+                this.connmanager.process(conn);
+            } catch (RejectedExecutionException e) {
+                conn.sendResponse(new DefaultHttpResponseFactory().newHttpResponse(
+                        HttpVersion.HTTP_1_0, HttpStatus.SC_SERVICE_UNAVAILABLE, new BasicHttpContext(null)));
+                conn.close();
+            }
+        } catch (IOException ex) {
+            LOG.debug("I/O error dispatching HTTP connection", ex);
+            closeChannel(channel);
+        } catch (HttpException ex) {
+            LOG.debug("HTTP error rejecting HTTP connection", ex);
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * Takes back a connection whose requests were served, to wait for its next request.
+     */
+    void register(final SocketChannel channel) {
+        this.released.add(channel);
+        Selector selector = this.selector;
+        if (this.destroyed || selector == null) {
+            closeReleased();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    private void registerReleased() {
+        SocketChannel channel;
+        while ((channel = this.released.poll()) != null) {
+            try {
+                channel.register(this.selector, SelectionKey.OP_READ, new PendingRequest(channel));
+            } catch (ClosedChannelException ex) {
+                // closed while it was served
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastIdleCheck < SELECT_TIMEOUT) {
+            return;
+        }
+        this.lastIdleCheck = now;
+        int count = 0;
+        for (SelectionKey key : this.selector.keys()) {
+            Object attachment = key.attachment();
+            if (key.isValid() && attachment instanceof PendingRequest) {
+                PendingRequest request = (PendingRequest) attachment;
+                if (this.idleTimeout > 0 && now - request.lastActive > this.idleTimeout) {
+                    LOG.debug("Closing idle HTTP connection");
+                    closeChannel(request.channel);
+                } else {
+                    count++;
+                }
+            }
+        }
+        this.idleCount = count;
+    }
+
+    private void closeReleased() {
+        SocketChannel channel;
+        while ((channel = this.released.poll()) != null) {
+            closeChannel(channel);
+        }
+    }
+
+    private void closeSelector() {
+        Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+            if (selector == null) {
+                return;
+            }
+            this.selector = null;
+            try {
+                close();
+            } catch (IOException ex) {
+                LOG.debug("I/O error closing listener", ex);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeChannel(key.channel());
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            LOG.debug("I/O error closing selector", ex);
+        }
+        closeReleased();
+        this.idleCount = 0;
+    }
+
+    private static void closeChannel(final Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    public synchronized void awaitSocketOpen() throws InterruptedException {
+        while (this.serverChannel == null && !this.destroyed) {
+            wait();
+        }
+    }
+
+    public synchronized int getPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of connections waiting for a request, as of the last check
+     */
+    public int getIdleConnectionCount() {
+        return this.idleCount;
+    }
+
+    /**
+     * @return the number of times a connection with a complete request head was handed to the
+     *         connection manager
+     */
+    public long getDispatchedCount() {
+        return this.dispatchedCount.get();
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.serverChannel != null) {
+            this.serverChannel.close();
+            this.serverChannel = null;
+        }
+    }
+
+    public synchronized void destroy() {
+        this.destroyed = true;
+        try {
+            close();
+        } catch (IOException ex) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("I/O error closing listener", ex);
+            }
+        }
+        if (this.selector != null) {
+            this.selector.wakeup();
+        }
+    }
+
+    public synchronized boolean isDestroyed() {
+        return this.destroyed;
+    }
+
+    /**
+     * The bytes received on a connection until the head of its next request is complete.
+     */
+    private static class PendingRequest {
+
+        private final SocketChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_HEAD_SIZE);
+        // where the search for the end of the head goes on
+        private int scanned = 0;
+        // where the request line starts, -1 while only empty lines were received
+        private int start = -1;
+        private long lastActive = System.currentTimeMillis();
+        // the head was too large and has been answered, what follows is discarded
+        private boolean rejected = false;
+
+        PendingRequest(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what is available, closes the channel at its end. A too large head is answered
+         * and the output side of the connection shut down.
+         *
+         * @return true if the head of the request is complete
+         */
+        boolean read() {
+            try {
+                int n;
+                while ((n = this.channel.read(this.buffer)) > 0) {
+                    if (this.rejected) {
+                        this.buffer.clear();
+                        continue;
+                    }
+                    if (isHeadComplete()) {
+                        return true;
+                    }
+                    if (!this.buffer.hasRemaining()) {
+                        if (this.buffer.capacity() >= MAX_HEAD_SIZE) {
+                            LOG.debug("Rejecting HTTP connection sending a too large request head");
+                            reject();
+                            continue;
+                        }
+                        ByteBuffer larger = ByteBuffer.allocate(
+                                Math.min(this.buffer.capacity() * 2, MAX_HEAD_SIZE));
+                        this.buffer.flip();
+                        larger.put(this.buffer);
+                        this.buffer = larger;
+                    }
+                }
+                if (n < 0) {
+                    LOG.debug("Client closed connection");
+                    closeChannel(this.channel);
+                }
+            } catch (IOException ex) {
+                LOG.debug(ex.getMessage());
+                closeChannel(this.channel);
+            }
+            this.lastActive = System.currentTimeMillis();
+            return false;
+        }
+
+        /**
+         * Sends the response to a too large head. The connection is only closed once the client
+         * closes it or it is idle, closing it with unread data would reset it and the client
+         * might lose the response.
+         */
+        private void reject() throws IOException {
+            this.rejected = true;
+            this.buffer.clear();
+            // nothing else is being sent, the send buffer has room for these few bytes
+            this.channel.write(ByteBuffer.wrap(HEAD_TOO_LARGE));
+            this.channel.socket().shutdownOutput();
+        }
+
+        /**
+         * Looks for the empty line ending the head, the empty lines before the request line are
+         * skipped.
+         */
+        private boolean isHeadComplete() {
+            byte[] bytes = this.buffer.array();
+            int end = this.buffer.position();
+            for (; this.scanned < end; this.scanned++) {
+                byte b = bytes[this.scanned];
+                if (this.start < 0) {
+                    if (b != '\r' && b != '\n') {
+                        this.start = this.scanned;
+                    }
+                } else if (b == '\n') {
+                    if (this.scanned + 1 >= end) {
+                        return false;
+                    }
+                    if (bytes[this.scanned + 1] == '\n') {
+                        return true;
+                    }
+                    if (bytes[this.scanned + 1] == '\r') {
+                        if (this.scanned + 2 >= end) {
+                            return false;
+                        }
+                        if (bytes[this.scanned + 2] == '\n') {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the bytes received from the request line on, the request parser does not expect
+         *         empty lines before it
+         */
+        byte[] getReceived() {
+            byte[] received = new byte[this.buffer.position() - this.start];
+            System.arraycopy(this.buffer.array(), this.start, received, 0, received.length);
+            return received;
+        }
+    }
+
+}
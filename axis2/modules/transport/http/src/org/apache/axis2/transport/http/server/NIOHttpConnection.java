@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http.server;
+
+import org.apache.http.params.HttpParams;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A connection accepted by a {@link NIOConnectionListener}. It is only handed to a thread once a
+ * request head was received and is given back to the listener as soon as no more request is
+ * waiting to be read, so idle keep-alive connections do not hold a thread.
+ */
+class NIOHttpConnection extends AxisHttpConnectionImpl {
+
+    private final SocketChannel channel;
+    private final NIOConnectionListener listener;
+    private volatile boolean released = false;
+
+    NIOHttpConnection(final SocketChannel channel, final byte[] received,
+            final HttpParams params, final NIOConnectionListener listener) throws IOException {
+        super(channel.socket(), received, params);
+        this.channel = channel;
+        this.listener = listener;
+    }
+
+    /**
+     * Gives the connection back to the listener if it is still open and no further request has
+     * been received yet. The connection can not be used anymore once it was released.
+     *
+     * @return true if the connection was released
+     */
+    boolean release() {
+        if (this.released || !super.isOpen() || hasBufferedInput()) {
+            return false;
+        }
+        try {
+            this.channel.configureBlocking(false);
+        } catch (IOException ex) {
+            return false;
+        }
+        this.released = true;
+        this.listener.register(this.channel);
+        return true;
+    }
+
+    public boolean isOpen() {
+        return !this.released && super.isOpen();
+    }
+
+    public void close() throws IOException {
+        if (!this.released) {
+            super.close();
+        }
+    }
+
+    public void shutdown() throws IOException {
+        if (!this.released) {
+            super.shutdown();
+        }
+    }
+
+}
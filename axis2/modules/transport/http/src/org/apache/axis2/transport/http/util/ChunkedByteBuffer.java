@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output stream keeping what is written in a chain of fixed size chunks instead of one array
+ * which is copied every time it grows. The content can be written out or read any number of
+ * times, and the chunks go back to a pool shared by all the buffers once it is released.
+ * <p/>
+ * A buffer is meant to be used by one thread at a time.
+ */
+public class ChunkedByteBuffer extends OutputStream {
+
+    /**
+     * Size of the chunks
+     */
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Maximum number of chunks kept in the pool, 4MB
+     */
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooledCount = new AtomicInteger();
+
+    private List<byte[]> chunks = new ArrayList<byte[]>();
+    // bytes used in the last chunk
+    private int count = CHUNK_SIZE;
+    private long size;
+
+    public void write(int b) throws IOException {
+        checkNotReleased();
+        if (count == CHUNK_SIZE) {
+            addChunk();
+        }
+        chunks.get(chunks.size() - 1)[count++] = (byte) b;
+        size++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotReleased();
+        while (len > 0) {
+            if (count == CHUNK_SIZE) {
+                addChunk();
+            }
+            int n = Math.min(len, CHUNK_SIZE - count);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), count, n);
+            count += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    private void addChunk() {
+        byte[] chunk = pool.poll();
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        } else {
+            pooledCount.decrementAndGet();
+        }
+        chunks.add(chunk);
+        count = 0;
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes the content to the given stream, chunk by chunk.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        checkNotReleased();
+        int last = chunks.size() - 1;
+        for (int i = 0; i < last; i++) {
+            out.write(chunks.get(i), 0, CHUNK_SIZE);
+        }
+        if (last >= 0) {
+            out.write(chunks.get(last), 0, count);
+        }
+    }
+
+    /**
+     * @return a stream reading the content, which must not be used once the buffer was released
+     */
+    public InputStream getInputStream() {
+        checkNotReleased();
+        return new ChunkInputStream();
+    }
+
+    /**
+     * Gives the chunks back to the pool. The buffer can not be used anymore.
+     */
+    public void release() {
+        if (chunks == null) {
+            return;
+        }
+        for (byte[] chunk : chunks) {
+            if (pooledCount.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+                pool.add(chunk);
+            } else {
+                pooledCount.decrementAndGet();
+            }
+        }
+        chunks = null;
+    }
+
+    public boolean isReleased() {
+        return chunks == null;
+    }
+
+    private void checkNotReleased() {
+        if (chunks == null) {
+            throw new IllegalStateException("The buffer was released");
+        }
+    }
+
+    private class ChunkInputStream extends InputStream {
+
+        private long position;
+
+        public int read() throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            byte b = chunk()[(int) (position % CHUNK_SIZE)];
+            position++;
+            return b & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= size) {
+                return -1;
+            }
+            int offset = (int) (position % CHUNK_SIZE);
+            int n = (int) Math.min(Math.min(len, CHUNK_SIZE - offset), size - position);
+            System.arraycopy(chunk(), offset, b, off, n);
+            position += n;
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, size - position));
+            position += skipped;
+            return skipped;
+        }
+
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, size - position);
+        }
+
+        private byte[] chunk() {
+            checkNotReleased();
+            return chunks.get((int) (position / CHUNK_SIZE));
+        }
+    }
+}
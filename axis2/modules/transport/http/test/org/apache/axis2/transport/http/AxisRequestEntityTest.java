@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.engine.AxisConfiguration;
+import org.apache.axis2.transport.http.impl.httpclient3.AxisRequestEntityImpl;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Checks that a request entity which is not chunked serializes the message once and writes the
+ * same content for every attempt.
+ */
+public class AxisRequestEntityTest extends TestCase {
+
+    private static class CountingFormatter extends SOAPMessageFormatter {
+        private int writes;
+
+        public void writeTo(MessageContext msgCtxt, OMOutputFormat format, OutputStream out,
+                            boolean preserve) throws AxisFault {
+            writes++;
+            super.writeTo(msgCtxt, format, out, preserve);
+        }
+    }
+
+    private MessageContext createMessageContext() throws Exception {
+        SOAPFactory factory = OMAbstractFactory.getSOAP11Factory();
+        SOAPEnvelope envelope = factory.getDefaultEnvelope();
+        OMElement content = factory.createOMElement(new QName("message"));
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < 10000; i++) {
+            text.append("sample data ");
+        }
+        for (int i = 0; i < 5; i++) {
+            OMElement part = factory.createOMElement(new QName("part"));
+            part.setText(text.toString());
+            content.addChild(part);
+        }
+        envelope.getBody().addChild(content);
+
+        MessageContext msgContext =
+                new ConfigurationContext(new AxisConfiguration()).createMessageContext();
+        msgContext.setEnvelope(envelope);
+        return msgContext;
+    }
+
+    public void testContentIsSerializedOnce() throws Exception {
+        CountingFormatter formatter = new CountingFormatter();
+        AxisRequestEntityImpl entity = new AxisRequestEntityImpl(formatter,
+                createMessageContext(), new OMOutputFormat(), "urn:test", false, true);
+
+        long length = entity.getContentLength();
+        assertTrue(length > 600000);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        entity.writeRequest(first);
+        // a retry writes the same content again
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        entity.writeRequest(second);
+        assertEquals(length, first.size());
+        assertTrue(Arrays.equals(first.toByteArray(), second.toByteArray()));
+
+        InputStream in = entity.getRequestEntityContent();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] b = new byte[4096];
+        for (int n = in.read(b); n > 0; n = in.read(b)) {
+            content.write(b, 0, n);
+        }
+        assertTrue(Arrays.equals(first.toByteArray(), content.toByteArray()));
+        assertEquals(1, formatter.writes);
+
+        entity.release();
+    }
+
+    public void testChunkedContentIsNotBuffered() throws Exception {
+        CountingFormatter formatter = new CountingFormatter();
+        AxisRequestEntityImpl entity = new AxisRequestEntityImpl(formatter,
+                createMessageContext(), new OMOutputFormat(), "urn:test", true, true);
+        assertEquals(-1, entity.getContentLength());
+        entity.writeRequest(new ByteArrayOutputStream());
+        entity.writeRequest(new ByteArrayOutputStream());
+        assertEquals(2, formatter.writes);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http.server;
+
+import junit.framework.TestCase;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.description.Parameter;
+import org.apache.axis2.description.TransportInDescription;
+import org.apache.axis2.engine.AxisConfiguration;
+import org.apache.axis2.transport.http.SimpleHTTPServer;
+import org.apache.http.HttpException;
+import org.apache.http.HttpStatus;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the NIO connection listener serves keep-alive and pipelined requests, and compares
+ * how many idle keep-alive connections the blocking and the NIO listener put up with, and the
+ * latency of the requests made meanwhile with the one of the blocking listener without idle
+ * connections.
+ */
+public class NIOConnectionListenerTest extends TestCase {
+
+    private static final int THREADS = 8;
+    private static final int IDLE_CONNECTIONS = 200;
+    private static final int REQUESTS = 200;
+    private static final int TIMEOUT = 2000;
+    /** how much slower than the unloaded blocking listener the NIO listener may be, in ms */
+    private static final double LATENCY_MARGIN = 50;
+
+    private static final String REQUEST = "GET /test HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    private SimpleHttpServer server;
+
+    private SimpleHttpServer startServer(String connectionListener) throws Exception {
+        return startServer(connectionListener, 20000);
+    }
+
+    private SimpleHttpServer startServer(String connectionListener, int requestTimeout)
+            throws Exception {
+        AxisConfiguration axisConfiguration = new AxisConfiguration();
+        TransportInDescription transportIn = new TransportInDescription("http");
+        transportIn.setReceiver(new SimpleHTTPServer());
+        transportIn.addParameter(new Parameter(HttpFactory.PARAMETER_REQUEST_CORE_THREAD_POOL_SIZE,
+                String.valueOf(THREADS)));
+        transportIn.addParameter(new Parameter(HttpFactory.PARAMETER_REQUEST_MAX_THREAD_POOL_SIZE,
+                String.valueOf(THREADS)));
+        transportIn.addParameter(new Parameter(HttpFactory.PARAMETER_REQUEST_SOCKET_TIMEOUT,
+                String.valueOf(requestTimeout)));
+        if (connectionListener != null) {
+            transportIn.addParameter(new Parameter(HttpFactory.PARAMETER_CONNECTION_LISTENER,
+                    connectionListener));
+        }
+        axisConfiguration.addTransportIn(transportIn);
+        ConfigurationContext configurationContext = new ConfigurationContext(axisConfiguration);
+
+        server = new SimpleHttpServer(
+                new HttpFactory(configurationContext, 0, new OKWorkerFactory()), 0);
+        server.init();
+        server.start();
+        return server;
+    }
+
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.destroy();
+        }
+    }
+
+    public void testKeepAliveRequests() throws Exception {
+        startServer(HttpFactory.CONNECTION_LISTENER_NIO);
+        Socket socket = connect();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        for (int i = 0; i < 3; i++) {
+            out.write(REQUEST.getBytes("US-ASCII"));
+            out.flush();
+            assertEquals("OK", readResponse(in));
+            // let the connection go back to the listener between the requests
+            Thread.sleep(50);
+        }
+        socket.close();
+    }
+
+    public void testPipelinedRequests() throws Exception {
+        startServer(HttpFactory.CONNECTION_LISTENER_NIO);
+        Socket socket = connect();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        out.write((REQUEST + REQUEST + REQUEST).getBytes("US-ASCII"));
+        out.flush();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("OK", readResponse(in));
+        }
+        socket.close();
+    }
+
+    public void testHeadReceivedInParts() throws Exception {
+        startServer(HttpFactory.CONNECTION_LISTENER_NIO);
+        Socket socket = connect();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        out.write("\r\nGET /test HTTP/1.1\r\nHost: loc".getBytes("US-ASCII"));
+        out.flush();
+        Thread.sleep(100);
+        out.write("alhost\r\n\r".getBytes("US-ASCII"));
+        out.flush();
+        Thread.sleep(100);
+        out.write("\n".getBytes("US-ASCII"));
+        out.flush();
+        assertEquals("OK", readResponse(in));
+        socket.close();
+    }
+
+    public void testIdleConnectionsAreClosed() throws Exception {
+        startServer(HttpFactory.CONNECTION_LISTENER_NIO, 500);
+        Socket socket = connect();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        socket.getOutputStream().write(REQUEST.getBytes("US-ASCII"));
+        assertEquals("OK", readResponse(in));
+        socket.setSoTimeout(5000);
+        assertEquals(-1, in.read());
+        socket.close();
+    }
+
+    public void testTooLargeHead() throws Exception {
+        startServer(HttpFactory.CONNECTION_LISTENER_NIO);
+        Socket socket = connect();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        StringBuffer head = new StringBuffer("GET /test HTTP/1.1\r\nHost: localhost\r\n");
+        while (head.length() < 80 * 1024) {
+            head.append("X-Filler: ").append(head.length()).append("\r\n");
+        }
+        out.write(head.toString().getBytes("US-ASCII"));
+        out.flush();
+        String status = readLine(in);
+        assertTrue(status, status.startsWith("HTTP/1.1 431"));
+        while (readLine(in).length() > 0) {
+        }
+        assertEquals(-1, in.read());
+        socket.close();
+    }
+
+    public void testIdleConnectionCapacity() throws Exception {
+        Result baseline = runLoad(null, 0);
+        server.destroy();
+        Result blocking = runLoad(null, IDLE_CONNECTIONS);
+        server.destroy();
+        server = null;
+        Result nio = runLoad(HttpFactory.CONNECTION_LISTENER_NIO, IDLE_CONNECTIONS);
+
+        // the blocking listener ties up a request thread per idle connection
+        assertTrue(blocking.idleServed < nio.idleServed);
+        assertTrue(blocking.requestsServed < nio.requestsServed);
+        assertEquals(IDLE_CONNECTIONS, nio.idleServed);
+        assertEquals(REQUESTS, nio.requestsServed);
+
+        // the idle connections do not slow the NIO listener down noticeably
+        assertEquals(REQUESTS, baseline.requestsServed);
+        assertTrue("p99 latency " + nio.p99 + " ms, " + baseline.p99 + " ms without idle connections",
+                nio.p99 <= baseline.p99 * 2 + LATENCY_MARGIN);
+    }
+
+    /**
+     * Keeps the given number of keep-alive connections open after a first request each, then
+     * makes REQUESTS requests on new connections. A request which times out ends the run.
+     */
+    private Result runLoad(String connectionListener, int idleConnections) throws Exception {
+        startServer(connectionListener);
+        List<Socket> idle = new ArrayList<Socket>();
+        Result result = new Result();
+        try {
+            List<InputStream> ins = new ArrayList<InputStream>();
+            for (int i = 0; i < idleConnections; i++) {
+                Socket socket = connect();
+                idle.add(socket);
+                ins.add(new BufferedInputStream(socket.getInputStream()));
+                socket.getOutputStream().write(REQUEST.getBytes("US-ASCII"));
+                socket.getOutputStream().flush();
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            for (int i = 0; i < idleConnections; i++) {
+                idle.get(i).setSoTimeout((int) Math.max(1, deadline - System.currentTimeMillis()));
+                try {
+                    readResponse(ins.get(i));
+                    result.idleServed++;
+                } catch (SocketTimeoutException ex) {
+                    // still waiting for a request thread
+                }
+            }
+
+            long[] latencies = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                long start = System.nanoTime();
+                Socket socket = connect();
+                try {
+                    socket.getOutputStream().write(REQUEST.getBytes("US-ASCII"));
+                    readResponse(new BufferedInputStream(socket.getInputStream()));
+                } catch (SocketTimeoutException ex) {
+                    break;
+                } finally {
+                    socket.close();
+                }
+                latencies[result.requestsServed++] = System.nanoTime() - start;
+            }
+            if (result.requestsServed > 0) {
+                long[] served = new long[result.requestsServed];
+                System.arraycopy(latencies, 0, served, 0, served.length);
+                Arrays.sort(served);
+                result.p99 = served[(int) Math.ceil(served.length * 0.99) - 1] / 1000000.0;
+            }
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+        return result;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(TIMEOUT);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    /**
+     * Reads a response, its body is either chunked or has a content length.
+     *
+     * @return the body
+     */
+    private static String readResponse(InputStream in) throws IOException {
+        String status = readLine(in);
+        assertTrue(status, status.startsWith("HTTP/1.1 200"));
+        boolean chunked = false;
+        int length = -1;
+        for (String line = readLine(in); line.length() > 0; line = readLine(in)) {
+            String header = line.toLowerCase();
+            if (header.startsWith("transfer-encoding:") && header.endsWith("chunked")) {
+                chunked = true;
+            } else if (header.startsWith("content-length:")) {
+                length = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (chunked) {
+            for (int size = chunkSize(in); size > 0; size = chunkSize(in)) {
+                read(in, body, size);
+                readLine(in);
+            }
+            // trailers
+            while (readLine(in).length() > 0) {
+            }
+        } else {
+            read(in, body, length);
+        }
+        return body.toString("US-ASCII");
+    }
+
+    private static int chunkSize(InputStream in) throws IOException {
+        String line = readLine(in);
+        int extension = line.indexOf(';');
+        return Integer.parseInt(extension < 0 ? line : line.substring(0, extension), 16);
+    }
+
+    private static void read(InputStream in, OutputStream out, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            out.write(b);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuffer line = new StringBuffer();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static class Result {
+        int idleServed;
+        int requestsServed;
+        double p99 = Double.NaN;
+    }
+
+    private static class OKWorkerFactory implements WorkerFactory {
+        public Worker newWorker() {
+            return new Worker() {
+                public void service(AxisHttpRequest request, AxisHttpResponse response,
+                                    MessageContext msgContext)
+                        throws HttpException, IOException {
+                    response.setStatus(HttpStatus.SC_OK);
+                    response.setContentType("text/plain");
+                    response.getOutputStream().write("OK".getBytes("US-ASCII"));
+                }
+            };
+        }
+    }
+}
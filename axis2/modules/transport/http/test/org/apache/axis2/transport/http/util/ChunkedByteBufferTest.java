@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.axis2.transport.http.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class ChunkedByteBufferTest extends TestCase {
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    public void testContentAcrossChunks() throws Exception {
+        byte[] content = content(ChunkedByteBuffer.CHUNK_SIZE * 3 + 7);
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+        buffer.write(content[0]);
+        buffer.write(content, 1, ChunkedByteBuffer.CHUNK_SIZE);
+        buffer.write(content, ChunkedByteBuffer.CHUNK_SIZE + 1,
+                content.length - ChunkedByteBuffer.CHUNK_SIZE - 1);
+        assertEquals(content.length, buffer.size());
+
+        // can be written out more than once
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            buffer.writeTo(out);
+            assertTrue(Arrays.equals(content, out.toByteArray()));
+        }
+
+        InputStream in = buffer.getInputStream();
+        assertEquals(content.length, in.available());
+        assertEquals(content[0] & 0xff, in.read());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(content[0]);
+        byte[] b = new byte[5000];
+        for (int n = in.read(b); n > 0; n = in.read(b)) {
+            out.write(b, 0, n);
+        }
+        assertTrue(Arrays.equals(content, out.toByteArray()));
+        assertEquals(-1, in.read());
+    }
+
+    public void testEmptyBuffer() throws Exception {
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals(0, out.size());
+        assertEquals(-1, buffer.getInputStream().read());
+    }
+
+    public void testReleasedChunksAreReused() throws Exception {
+        byte[] content = content(ChunkedByteBuffer.CHUNK_SIZE * 2);
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+        buffer.write(content);
+        buffer.release();
+        assertTrue(buffer.isReleased());
+        try {
+            buffer.getInputStream();
+            fail("The buffer was released");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // a reused chunk does not leak its previous content
+        ChunkedByteBuffer next = new ChunkedByteBuffer();
+        next.write(new byte[] { 1, 2, 3 });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        next.writeTo(out);
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, out.toByteArray()));
+        next.release();
+    }
+}
@@ -0,0 +1,19 @@
+package org.pokura.zkclient;
+
+/**
+ * Receives the children which were added to or removed from a path since the previous event,
+ * see {@link ZkChildTracker}.
+ */
+public interface IZkChildDeltaListener {
+
+    /**
+     * Called when the children of the given path changed.
+     *
+     * @param parentPath
+     *            The parent path
+     * @param delta
+     *            The children added and removed since the previous event
+     * @throws Exception
+     */
+    public void handleChildDelta(String parentPath, ZkChildDelta delta) throws Exception;
+}
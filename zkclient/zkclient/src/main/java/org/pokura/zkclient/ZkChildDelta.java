@@ -0,0 +1,50 @@
+package org.pokura.zkclient;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Children added to and removed from a path between two child events, both in ascending order.
+ */
+public class ZkChildDelta {
+
+    private final List<String> _added;
+    private final List<String> _removed;
+    private final int _size;
+
+    public ZkChildDelta(List<String> added, List<String> removed, int size) {
+        _added = Collections.unmodifiableList(added);
+        _removed = Collections.unmodifiableList(removed);
+        _size = size;
+    }
+
+    /**
+     * @return the children which were not there at the previous event
+     */
+    public List<String> getAdded() {
+        return _added;
+    }
+
+    /**
+     * @return the children which are gone since the previous event
+     */
+    public List<String> getRemoved() {
+        return _removed;
+    }
+
+    /**
+     * @return the number of children after the change
+     */
+    public int getSize() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _added.isEmpty() && _removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added " + _added + ", removed " + _removed;
+    }
+}
@@ -0,0 +1,160 @@
+package org.pokura.zkclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.I0Itec.zkclient.IZkChildListener;
+
+/**
+ * Keeps the last seen children of each path it gets events for and turns the full child lists
+ * of ZooKeeper into added/removed deltas.
+ * <p>
+ * The children are kept sorted, ZooKeeper pads the sequence number of sequential nodes with
+ * zeros, so nodes with the same prefix are ordered by their sequence number. The work done for an
+ * event is linear in the size of the child list plus a logarithmic cost per added or removed
+ * child; the list handed in by ZooKeeper is never sorted as a whole.
+ */
+public class ZkChildTracker implements IZkChildListener {
+
+    private final IZkChildDeltaListener _listener;
+    private final Map<String, Children> _children = new HashMap<String, Children>();
+
+    /**
+     * Creates a tracker which is only updated explicitly, see {@link #update(String, List)}.
+     */
+    public ZkChildTracker() {
+        this(null);
+    }
+
+    /**
+     * Creates a tracker which can be subscribed for child changes and hands the non empty deltas
+     * to the given listener.
+     */
+    public ZkChildTracker(IZkChildDeltaListener listener) {
+        _listener = listener;
+    }
+
+    @Override
+    public void handleChildChange(String parentPath, List<String> currentChilds) throws Exception {
+        ZkChildDelta delta = update(parentPath, currentChilds);
+        if (_listener != null && !delta.isEmpty()) {
+            _listener.handleChildDelta(parentPath, delta);
+        }
+    }
+
+    /**
+     * Replaces the known children of the given path.
+     *
+     * @param parentPath
+     *            The parent path
+     * @param currentChilds
+     *            The current children, null if the parent path was deleted
+     * @return the children added and removed since the previous update
+     */
+    public synchronized ZkChildDelta update(String parentPath, List<String> currentChilds) {
+        if (currentChilds == null) {
+            currentChilds = Collections.emptyList();
+        }
+        Children children = _children.get(parentPath);
+        if (children == null) {
+            children = new Children();
+            _children.put(parentPath, children);
+        }
+
+        List<String> added = new ArrayList<String>();
+        for (String child : currentChilds) {
+            if (!children._names.contains(child)) {
+                added.add(child);
+            }
+        }
+
+        // nothing can be gone if the known children plus the new ones add up to the current list
+        List<String> removed = new ArrayList<String>();
+        if (children._names.size() + added.size() != currentChilds.size()) {
+            Set<String> current = new HashSet<String>(currentChilds);
+            for (String child : children._sorted) {
+                if (!current.contains(child)) {
+                    removed.add(child);
+                }
+            }
+        }
+
+        for (String child : removed) {
+            children._names.remove(child);
+            children._sorted.remove(child);
+        }
+        Collections.sort(added);
+        for (String child : added) {
+            children._names.add(child);
+            children._sorted.add(child);
+        }
+        return new ZkChildDelta(added, removed, children._names.size());
+    }
+
+    /**
+     * @return the known children of the given path in ascending order
+     */
+    public synchronized List<String> getChildren(String parentPath) {
+        Children children = _children.get(parentPath);
+        if (children == null) {
+            return new ArrayList<String>();
+        }
+        return new ArrayList<String>(children._sorted);
+    }
+
+    /**
+     * @param child
+     *            the child to start after, null for all the children
+     * @return the known children of the given path which sort after the given child, in ascending
+     *         order
+     */
+    public synchronized List<String> getChildrenAfter(String parentPath, String child) {
+        Children children = _children.get(parentPath);
+        if (children == null) {
+            return new ArrayList<String>();
+        }
+        if (child == null) {
+            return new ArrayList<String>(children._sorted);
+        }
+        return new ArrayList<String>(children._sorted.tailSet(child, false));
+    }
+
+    /**
+     * @return the known children of the given path which sort before or equal to the given
+     *         child, in ascending order
+     */
+    public synchronized List<String> getChildrenUpTo(String parentPath, String child) {
+        Children children = _children.get(parentPath);
+        if (children == null) {
+            return new ArrayList<String>();
+        }
+        return new ArrayList<String>(children._sorted.headSet(child, true));
+    }
+
+    /**
+     * @return the number of known children of the given path
+     */
+    public synchronized int size(String parentPath) {
+        Children children = _children.get(parentPath);
+        return children == null ? 0 : children._names.size();
+    }
+
+    /**
+     * Forgets the children of the given path, the next update reports all of them as added.
+     */
+    public synchronized void reset(String parentPath) {
+        _children.remove(parentPath);
+    }
+
+    private static class Children {
+        // the hash set answers the lookups of every event, the tree set keeps the order
+        private final Set<String> _names = new HashSet<String>();
+        private final TreeSet<String> _sorted = new TreeSet<String>();
+    }
+}
@@ -1,6 +1,7 @@
 package org.pokura.zkclient.async;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.CreateMode;
@@ -13,23 +14,55 @@ import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.ZooKeeper.States;
 import org.apache.zookeeper.data.Stat;
 
+/**
+ * Connection which only issues asynchronous ZooKeeper operations. Results are delivered either
+ * to the given callbacks or through the returned {@link ZkFuture}s. All the operations may block
+ * the caller while the configured number of requests is already outstanding.
+ */
 public interface IZkAsyncConnection {
-	   
-	    public void connect(Watcher watcher);
 
-	    void close() throws InterruptedException;
+    public void connect(Watcher watcher);
 
-	    public void create(String path, byte[] data, CreateMode mode,StringCallback cb,Object ctx) throws KeeperException, InterruptedException;
+    void close() throws InterruptedException;
 
-	    public void delete(String path,VoidCallback cb,Object ctx) throws InterruptedException, KeeperException;
+    /**
+     * Waits until the session is connected to the server.
+     *
+     * @return false if the session was not connected within the given time
+     */
+    public boolean waitUntilConnected(long time, TimeUnit timeUnit) throws InterruptedException;
 
-	    public void exists(String path, boolean watch,StatCallback cb,Object ctx) throws KeeperException, InterruptedException;
+    public States getZookeeperState();
 
-	    public void getChildren(String path, boolean watch,ChildrenCallback cb,Object ctx) throws KeeperException, InterruptedException;
+    public void create(String path, byte[] data, CreateMode mode, StringCallback cb, Object ctx) throws KeeperException, InterruptedException;
 
-	    public void readData(String path, Stat stat, boolean watch,DataCallback cb, Object ctx) throws KeeperException, InterruptedException;
+    public void delete(String path, VoidCallback cb, Object ctx) throws InterruptedException, KeeperException;
 
-	    public void writeData(String path, byte[] data, int expectedVersion,StatCallback cb, Object ctx) throws KeeperException, InterruptedException;
+    public void exists(String path, boolean watch, StatCallback cb, Object ctx) throws KeeperException, InterruptedException;
 
-	    public String getServers();
+    public void getChildren(String path, boolean watch, ChildrenCallback cb, Object ctx) throws KeeperException, InterruptedException;
+
+    public void readData(String path, Stat stat, boolean watch, DataCallback cb, Object ctx) throws KeeperException, InterruptedException;
+
+    public void writeData(String path, byte[] data, int expectedVersion, StatCallback cb, Object ctx) throws KeeperException, InterruptedException;
+
+    /**
+     * @return a future with the actual path of the created node
+     */
+    public ZkFuture<String> create(String path, byte[] data, CreateMode mode) throws InterruptedException;
+
+    public ZkFuture<Void> delete(String path, int expectedVersion) throws InterruptedException;
+
+    /**
+     * @return a future with the stat of the node, or null if the node does not exist
+     */
+    public ZkFuture<Stat> exists(String path, boolean watch) throws InterruptedException;
+
+    public ZkFuture<List<String>> getChildren(String path, boolean watch) throws InterruptedException;
+
+    public ZkFuture<byte[]> readData(String path, boolean watch) throws InterruptedException;
+
+    public ZkFuture<Stat> writeData(String path, byte[] data, int expectedVersion) throws InterruptedException;
+
+    public String getServers();
 }
@@ -1,10 +1,14 @@
 package org.pokura.zkclient.async;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import org.I0Itec.zkclient.ZkConnection;
+import org.I0Itec.zkclient.exception.ZkException;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
@@ -13,85 +17,499 @@ import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.ZooDefs.Ids;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.ZooKeeper.States;
 import org.apache.zookeeper.data.Stat;
 
-public class ZkAsyncConnection implements IZkAsyncConnection{
+/**
+ * {@link IZkAsyncConnection} on top of a single ZooKeeper session.
+ * <p>
+ * An expired session is replaced by a new one transparently, operations which were outstanding
+ * on the expired session fail with the error reported by ZooKeeper. Every event, including the
+ * session state changes, is passed on to the watcher given to {@link #connect(Watcher)}.
+ * <p>
+ * The number of outstanding operations is bounded, once the limit is reached the calling thread
+ * blocks until an earlier operation has completed. The slots are freed on the event thread of the
+ * session, which runs the callbacks, the future listeners without an executor and the watcher. An
+ * operation issued from there does not wait for a slot, it fails with a {@link ZkException} if
+ * none is free.
+ */
+public class ZkAsyncConnection implements IZkAsyncConnection {
 
-    private static final Logger LOG = Logger.getLogger(ZkConnection.class);
+    private static final Logger LOG = Logger.getLogger(ZkAsyncConnection.class);
 
     /** It is recommended to use quite large sessions timeouts for ZooKeeper. */
     private static final int DEFAULT_SESSION_TIMEOUT = 30000;
 
-    private ZooKeeper _zk = null;
+    private static final int DEFAULT_MAX_OUTSTANDING_REQUESTS = 1000;
+
+    private volatile ZooKeeper _zk = null;
     private Lock _zookeeperLock = new ReentrantLock();
+    private Condition _stateChanged = _zookeeperLock.newCondition();
+    private volatile Watcher _watcher;
+    private volatile KeeperState _currentState;
+    private boolean _closed;
 
     private final String _servers;
     private final int _sessionTimeOut;
+    private final int _maxOutstandingRequests;
+    private final Semaphore _outstandingRequests;
+    private final Watcher _sessionWatcher = new SessionWatcher();
+    // set on the event threads of the sessions, they must never wait for a slot
+    private final ThreadLocal<Boolean> _eventThread = new ThreadLocal<Boolean>();
 
     public ZkAsyncConnection(String zkServers) {
         this(zkServers, DEFAULT_SESSION_TIMEOUT);
     }
 
     public ZkAsyncConnection(String zkServers, int sessionTimeOut) {
+        this(zkServers, sessionTimeOut, DEFAULT_MAX_OUTSTANDING_REQUESTS);
+    }
+
+    public ZkAsyncConnection(String zkServers, int sessionTimeOut, int maxOutstandingRequests) {
         _servers = zkServers;
         _sessionTimeOut = sessionTimeOut;
+        _maxOutstandingRequests = maxOutstandingRequests;
+        _outstandingRequests = new Semaphore(maxOutstandingRequests);
+    }
+
+    @Override
+    public void connect(Watcher watcher) {
+        _zookeeperLock.lock();
+        try {
+            if (_zk != null) {
+                throw new IllegalStateException("zk client has already been started");
+            }
+            _watcher = watcher;
+            _closed = false;
+            _zk = createZooKeeper();
+        } finally {
+            _zookeeperLock.unlock();
+        }
+    }
+
+    private ZooKeeper createZooKeeper() {
+        try {
+            LOG.debug("Creating new ZookKeeper instance to connect to " + _servers + ".");
+            return new ZooKeeper(_servers, _sessionTimeOut, _sessionWatcher);
+        } catch (IOException e) {
+            throw new ZkException("Unable to connect to " + _servers, e);
+        }
+    }
+
+    /**
+     * Replaces an expired session with a new one, unless the connection has been closed.
+     */
+    private void reconnect() {
+        _zookeeperLock.lock();
+        try {
+            if (_closed || _zk == null) {
+                return;
+            }
+            LOG.info("ZooKeeper session expired, reconnecting to " + _servers);
+            ZooKeeper expired = _zk;
+            _zk = createZooKeeper();
+            try {
+                expired.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            _zookeeperLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        _zookeeperLock.lock();
+        try {
+            _closed = true;
+            if (_zk != null) {
+                LOG.debug("Closing ZooKeeper connected to " + _servers);
+                _zk.close();
+                _zk = null;
+            }
+            _stateChanged.signalAll();
+        } finally {
+            _zookeeperLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean waitUntilConnected(long time, TimeUnit timeUnit) throws InterruptedException {
+        long nanos = timeUnit.toNanos(time);
+        _zookeeperLock.lock();
+        try {
+            while (_currentState != KeeperState.SyncConnected) {
+                if (_closed || nanos <= 0) {
+                    return false;
+                }
+                nanos = _stateChanged.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            _zookeeperLock.unlock();
+        }
+    }
+
+    @Override
+    public States getZookeeperState() {
+        ZooKeeper zk = _zk;
+        return zk != null ? zk.getState() : null;
+    }
+
+    /**
+     * @return the id of the current session, 0 if the connection is closed
+     */
+    public long getSessionId() {
+        ZooKeeper zk = _zk;
+        return zk != null ? zk.getSessionId() : 0;
+    }
+
+    /**
+     * @return the password of the current session, null if the connection is closed
+     */
+    public byte[] getSessionPasswd() {
+        ZooKeeper zk = _zk;
+        return zk != null ? zk.getSessionPasswd() : null;
+    }
+
+    /**
+     * @return the number of operations which have been issued but not completed yet
+     */
+    public int getOutstandingRequests() {
+        return _maxOutstandingRequests - _outstandingRequests.availablePermits();
+    }
+
+    /**
+     * Reserves a slot for an outstanding operation, blocking while all the slots are in use. On
+     * the event thread only a free slot is taken, waiting there would never end.
+     */
+    private ZooKeeper acquire() throws InterruptedException {
+        if (_eventThread.get() == null) {
+            _outstandingRequests.acquire();
+        } else if (!_outstandingRequests.tryAcquire()) {
+            throw new ZkException("All " + _maxOutstandingRequests + " outstanding requests are in use, "
+                    + "an operation issued on the event thread cannot wait for one");
+        }
+        ZooKeeper zk = _zk;
+        if (zk == null) {
+            _outstandingRequests.release();
+            throw new IllegalStateException("zk client is not connected");
+        }
+        return zk;
+    }
+
+    /**
+     * Reserves a slot for an operation returning a future, an operation which cannot get one on
+     * the event thread fails its future.
+     *
+     * @return the session, null if the future has failed
+     */
+    private ZooKeeper acquire(ZkFuture<?> future) throws InterruptedException {
+        try {
+            return acquire();
+        } catch (ZkException e) {
+            future.fail(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void create(String path, byte[] data, CreateMode mode, StringCallback cb, Object ctx)
+            throws KeeperException, InterruptedException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.create(path, data, Ids.OPEN_ACL_UNSAFE, mode, new Completion<String>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String path, VoidCallback cb, Object ctx) throws InterruptedException, KeeperException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.delete(path, -1, new Completion<Void>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void exists(String path, boolean watch, StatCallback cb, Object ctx) throws KeeperException,
+            InterruptedException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.exists(path, watch, new Completion<Stat>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void getChildren(String path, boolean watch, ChildrenCallback cb, Object ctx)
+            throws KeeperException, InterruptedException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.getChildren(path, watch, new Completion<List<String>>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
     }
-    
-	@Override
-	public void connect(Watcher watcher) {
-		// TODO Auto-generated method stub
-		
-	}
-
-	@Override
-	public void close() throws InterruptedException {
-		// TODO Auto-generated method stub
-		
-	}
-
-	@Override
-	public void create(String path, byte[] data, CreateMode mode,StringCallback cb,Object ctx)
-			throws KeeperException, InterruptedException {
-		_zk.create(path, data, Ids.OPEN_ACL_UNSAFE, mode, cb, ctx);
-	}
-
-	@Override
-	public void delete(String path,VoidCallback cb,Object ctx) throws InterruptedException,
-			KeeperException {
-		_zk.delete(path, -1, cb, ctx);
-	}
-
-	@Override
-	public void exists(String path, boolean watch,StatCallback cb,Object ctx) throws KeeperException,
-			InterruptedException {
-		_zk.exists(path, watch, cb, ctx);
-	}
-
-	@Override
-	public void getChildren(String path, boolean watch,ChildrenCallback cb,Object ctx)
-			throws KeeperException, InterruptedException {
-		 _zk.getChildren(path, watch, cb, ctx);
-	}
-
-	@Override
-	public void readData(String path, Stat stat, boolean watch,DataCallback cb, Object ctx)
-			throws KeeperException, InterruptedException {
-			_zk.getData(path, watch, cb, ctx);
-	}
-
-	@Override
-	public void writeData(String path, byte[] data, int expectedVersion,StatCallback cb, Object ctx)
-			throws KeeperException, InterruptedException {
-			_zk.setData(path, data, expectedVersion, cb, ctx);
-	}
-
-	@Override
-	public String getServers() {
-		return _servers;
-	}
 
+    @Override
+    public void readData(String path, Stat stat, boolean watch, DataCallback cb, Object ctx)
+            throws KeeperException, InterruptedException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.getData(path, watch, new Completion<byte[]>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeData(String path, byte[] data, int expectedVersion, StatCallback cb, Object ctx)
+            throws KeeperException, InterruptedException {
+        ZooKeeper zk = acquire();
+        try {
+            zk.setData(path, data, expectedVersion, new Completion<Stat>(cb), ctx);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public ZkFuture<String> create(String path, byte[] data, CreateMode mode) throws InterruptedException {
+        Completion<String> completion = new Completion<String>(new ZkFuture<String>());
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.create(path, data, Ids.OPEN_ACL_UNSAFE, mode, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public ZkFuture<Void> delete(String path, int expectedVersion) throws InterruptedException {
+        Completion<Void> completion = new Completion<Void>(new ZkFuture<Void>());
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.delete(path, expectedVersion, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public ZkFuture<Stat> exists(String path, boolean watch) throws InterruptedException {
+        Completion<Stat> completion = new Completion<Stat>(new ZkFuture<Stat>());
+        completion._noNodeIsNull = true;
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.exists(path, watch, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public ZkFuture<List<String>> getChildren(String path, boolean watch) throws InterruptedException {
+        Completion<List<String>> completion = new Completion<List<String>>(new ZkFuture<List<String>>());
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.getChildren(path, watch, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public ZkFuture<byte[]> readData(String path, boolean watch) throws InterruptedException {
+        Completion<byte[]> completion = new Completion<byte[]>(new ZkFuture<byte[]>());
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.getData(path, watch, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public ZkFuture<Stat> writeData(String path, byte[] data, int expectedVersion) throws InterruptedException {
+        Completion<Stat> completion = new Completion<Stat>(new ZkFuture<Stat>());
+        ZooKeeper zk = acquire(completion._future);
+        if (zk == null) {
+            return completion._future;
+        }
+        try {
+            zk.setData(path, data, expectedVersion, completion, null);
+        } catch (RuntimeException e) {
+            _outstandingRequests.release();
+            throw e;
+        }
+        return completion._future;
+    }
+
+    @Override
+    public String getServers() {
+        return _servers;
+    }
+
+    /**
+     * Tracks the session state and passes all the events on to the watcher of the connection.
+     */
+    private class SessionWatcher implements Watcher {
+
+        @Override
+        public void process(WatchedEvent event) {
+            _eventThread.set(Boolean.TRUE);
+            if (event.getType() == EventType.None) {
+                _zookeeperLock.lock();
+                try {
+                    _currentState = event.getState();
+                    _stateChanged.signalAll();
+                } finally {
+                    _zookeeperLock.unlock();
+                }
+                if (event.getState() == KeeperState.Expired) {
+                    reconnect();
+                }
+            }
+            Watcher watcher = _watcher;
+            if (watcher != null) {
+                try {
+                    watcher.process(event);
+                } catch (RuntimeException e) {
+                    LOG.error("Error while processing " + event, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of an outstanding operation and hands the result either to the callback of
+     * the caller or to a future.
+     */
+    private class Completion<T> implements StringCallback, VoidCallback, StatCallback, ChildrenCallback,
+            DataCallback {
+
+        private final Object _callback;
+        private final ZkFuture<T> _future;
+        private boolean _noNodeIsNull;
+
+        Completion(Object callback) {
+            _callback = callback;
+            _future = null;
+        }
+
+        Completion(ZkFuture<T> future) {
+            _callback = null;
+            _future = future;
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx, String name) {
+            release();
+            if (_callback != null) {
+                ((StringCallback) _callback).processResult(rc, path, ctx, name);
+            } else {
+                complete(rc, path, name);
+            }
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx) {
+            release();
+            if (_callback != null) {
+                ((VoidCallback) _callback).processResult(rc, path, ctx);
+            } else {
+                complete(rc, path, null);
+            }
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx, Stat stat) {
+            release();
+            if (_callback != null) {
+                ((StatCallback) _callback).processResult(rc, path, ctx, stat);
+            } else {
+                complete(rc, path, stat);
+            }
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx, List<String> children) {
+            release();
+            if (_callback != null) {
+                ((ChildrenCallback) _callback).processResult(rc, path, ctx, children);
+            } else {
+                complete(rc, path, children);
+            }
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
+            release();
+            if (_callback != null) {
+                ((DataCallback) _callback).processResult(rc, path, ctx, data, stat);
+            } else {
+                complete(rc, path, data);
+            }
+        }
+
+        private void release() {
+            _eventThread.set(Boolean.TRUE);
+            _outstandingRequests.release();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(int rc, String path, Object result) {
+            KeeperException.Code code = KeeperException.Code.get(rc);
+            if (code == KeeperException.Code.OK) {
+                _future.complete((T) result);
+            } else if (code == KeeperException.Code.NONODE && _noNodeIsNull) {
+                _future.complete(null);
+            } else {
+                _future.fail(KeeperException.create(code, path));
+            }
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package org.pokura.zkclient.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Result of an asynchronous ZooKeeper operation issued through {@link IZkAsyncConnection}.
+ * Failures are reported as an {@link ExecutionException} whose cause is the
+ * {@link org.apache.zookeeper.KeeperException} of the operation. Operations cannot be cancelled
+ * once they have been sent to the server.
+ */
+public class ZkFuture<T> implements Future<T> {
+
+    private static final Logger LOG = Logger.getLogger(ZkFuture.class);
+
+    private final CountDownLatch _done = new CountDownLatch(1);
+    private final List<Runnable> _listeners = new ArrayList<Runnable>(1);
+    private boolean _completed;
+    private T _result;
+    private Throwable _failure;
+
+    /**
+     * Registers a listener which is run on the thread completing the future, or right away on
+     * the calling thread if the future has already completed.
+     */
+    public void addListener(ZkFutureListener<T> listener) {
+        addListener(listener, null);
+    }
+
+    /**
+     * Registers a listener which is run with the given executor once the future completes.
+     */
+    public void addListener(final ZkFutureListener<T> listener, final Executor executor) {
+        Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.operationComplete(ZkFuture.this);
+                } catch (RuntimeException e) {
+                    LOG.error("Listener of an asynchronous ZooKeeper operation failed", e);
+                }
+            }
+        };
+        if (executor != null) {
+            final Runnable direct = notification;
+            notification = new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(direct);
+                }
+            };
+        }
+        synchronized (this) {
+            if (!_completed) {
+                _listeners.add(notification);
+                return;
+            }
+        }
+        notification.run();
+    }
+
+    boolean complete(T result) {
+        return finish(result, null);
+    }
+
+    boolean fail(Throwable failure) {
+        return finish(null, failure);
+    }
+
+    private boolean finish(T result, Throwable failure) {
+        Runnable[] listeners;
+        synchronized (this) {
+            if (_completed) {
+                return false;
+            }
+            _completed = true;
+            _result = result;
+            _failure = failure;
+            listeners = _listeners.toArray(new Runnable[_listeners.size()]);
+            _listeners.clear();
+        }
+        _done.countDown();
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the operation completed without a failure
+     */
+    public synchronized boolean isSuccess() {
+        return _completed && _failure == null;
+    }
+
+    /**
+     * @return the failure of the operation, null if it has not failed (yet)
+     */
+    public synchronized Throwable getFailure() {
+        return _failure;
+    }
+
+    /**
+     * @return the result of the operation, null if it has not completed successfully (yet)
+     */
+    public synchronized T getNow() {
+        return _result;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return _completed;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        _done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!_done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private synchronized T result() throws ExecutionException {
+        if (_failure != null) {
+            throw new ExecutionException(_failure);
+        }
+        return _result;
+    }
+}
@@ -0,0 +1,16 @@
+package org.pokura.zkclient.async;
+
+/**
+ * Gets notified once a {@link ZkFuture} has completed, either with a result or with a failure.
+ */
+public interface ZkFutureListener<T> {
+
+    /**
+     * Called once the operation behind the future has completed. Unless an executor was given
+     * when the listener was added, this runs on the ZooKeeper event thread and must not block.
+     *
+     * @param future
+     *            the completed future
+     */
+    public void operationComplete(ZkFuture<T> future);
+}
@@ -0,0 +1,75 @@
+package org.pokura.zkclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ZkChildTrackerTest {
+
+    @Test
+    public void testDeltas() throws Exception {
+        ZkChildTracker tracker = new ZkChildTracker();
+
+        ZkChildDelta delta = tracker.update("/a", Arrays.asList("c0000000002", "c0000000000", "c0000000001"));
+        assertEquals(Arrays.asList("c0000000000", "c0000000001", "c0000000002"), delta.getAdded());
+        assertTrue(delta.getRemoved().isEmpty());
+
+        delta = tracker.update("/a", Arrays.asList("c0000000003", "c0000000001", "c0000000002", "c0000000000"));
+        assertEquals(Arrays.asList("c0000000003"), delta.getAdded());
+        assertTrue(delta.getRemoved().isEmpty());
+
+        delta = tracker.update("/a", Arrays.asList("c0000000004", "c0000000003", "c0000000002"));
+        assertEquals(Arrays.asList("c0000000004"), delta.getAdded());
+        assertEquals(Arrays.asList("c0000000000", "c0000000001"), delta.getRemoved());
+        assertEquals(3, delta.getSize());
+
+        assertTrue(tracker.update("/a", Arrays.asList("c0000000002", "c0000000003", "c0000000004")).isEmpty());
+
+        delta = tracker.update("/a", null);
+        assertEquals(Arrays.asList("c0000000002", "c0000000003", "c0000000004"), delta.getRemoved());
+        assertEquals(0, tracker.size("/a"));
+    }
+
+    @Test
+    public void testOrderedQueries() {
+        ZkChildTracker tracker = new ZkChildTracker();
+        tracker.update("/a", Arrays.asList("c0000000010", "c0000000009", "c0000000011", "c0000000008"));
+        tracker.update("/b", Arrays.asList("x"));
+
+        assertEquals(Arrays.asList("c0000000008", "c0000000009", "c0000000010", "c0000000011"), tracker.getChildren("/a"));
+        assertEquals(Arrays.asList("c0000000010", "c0000000011"), tracker.getChildrenAfter("/a", "c0000000009"));
+        // the child to start after does not have to be known anymore
+        assertEquals(Arrays.asList("c0000000008", "c0000000009", "c0000000010", "c0000000011"), tracker.getChildrenAfter("/a", "c0000000005"));
+        assertEquals(4, tracker.getChildrenAfter("/a", null).size());
+        assertEquals(Arrays.asList("c0000000008", "c0000000009"), tracker.getChildrenUpTo("/a", "c0000000009"));
+        assertEquals(Arrays.asList("x"), tracker.getChildren("/b"));
+
+        tracker.reset("/a");
+        assertEquals(0, tracker.size("/a"));
+        assertEquals(1, tracker.size("/b"));
+    }
+
+    @Test
+    public void testListenerGetsNonEmptyDeltas() throws Exception {
+        final List<ZkChildDelta> deltas = new ArrayList<ZkChildDelta>();
+        ZkChildTracker tracker = new ZkChildTracker(new IZkChildDeltaListener() {
+            @Override
+            public void handleChildDelta(String parentPath, ZkChildDelta delta) throws Exception {
+                deltas.add(delta);
+            }
+        });
+
+        tracker.handleChildChange("/a", Arrays.asList("m1", "m2"));
+        tracker.handleChildChange("/a", Arrays.asList("m2", "m1"));
+        tracker.handleChildChange("/a", Arrays.asList("m2", "m3"));
+
+        assertEquals(2, deltas.size());
+        assertEquals(Arrays.asList("m3"), deltas.get(1).getAdded());
+        assertEquals(Arrays.asList("m1"), deltas.get(1).getRemoved());
+    }
+}
@@ -0,0 +1,132 @@
+package org.pokura.zkclient.async;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.I0Itec.zkclient.exception.ZkException;
+import org.I0Itec.zkclient.testutil.ZkTestSystem;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ZkAsyncConnectionTest {
+
+    @Rule
+    public ZkTestSystem _zk = ZkTestSystem.getInstance();
+
+    private ZkAsyncConnection _connection;
+
+    @Before
+    public void setUp() throws Exception {
+        _connection = new ZkAsyncConnection(_zk.getZkServerAddress(), 30000, 4);
+        _connection.connect(null);
+        assertTrue(_connection.waitUntilConnected(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        _connection.close();
+    }
+
+    @Test(timeout = 15000)
+    public void testFutureOperations() throws Exception {
+        assertEquals("/a", _connection.create("/a", "1".getBytes(), CreateMode.PERSISTENT).get());
+        assertArrayEquals("1".getBytes(), _connection.readData("/a", false).get());
+
+        Stat stat = _connection.writeData("/a", "2".getBytes(), -1).get();
+        assertEquals(1, stat.getVersion());
+        assertArrayEquals("2".getBytes(), _connection.readData("/a", false).get());
+
+        _connection.create("/a/b", null, CreateMode.PERSISTENT).get();
+        assertEquals("[b]", _connection.getChildren("/a", false).get().toString());
+
+        _connection.delete("/a/b", -1).get();
+        assertNull(_connection.exists("/a/b", false).get());
+        assertNotNull(_connection.exists("/a", false).get());
+    }
+
+    @Test(timeout = 15000)
+    public void testFailure() throws Exception {
+        try {
+            _connection.readData("/missing", false).get();
+            fail("reading a missing node should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KeeperException.NoNodeException);
+        }
+    }
+
+    @Test(timeout = 15000)
+    public void testPipelinedRequestsAreBounded() throws Exception {
+        _connection.create("/q", null, CreateMode.PERSISTENT).get();
+        final List<String> created = new ArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            _connection.create("/q/c", null, CreateMode.PERSISTENT_SEQUENTIAL).addListener(new ZkFutureListener<String>() {
+                @Override
+                public void operationComplete(ZkFuture<String> future) {
+                    synchronized (created) {
+                        created.add(future.getNow());
+                    }
+                    done.countDown();
+                }
+            });
+            assertTrue(_connection.getOutstandingRequests() <= 4);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(100, _connection.getChildren("/q", false).get().size());
+        // requests of a session are completed in the order they were issued
+        for (int i = 1; i < created.size(); i++) {
+            assertTrue(created.get(i - 1).compareTo(created.get(i)) < 0);
+        }
+        assertEquals(0, _connection.getOutstandingRequests());
+    }
+
+    @Test(timeout = 15000)
+    public void testOperationChainedOnTheEventThreadDoesNotWaitForASlot() throws Exception {
+        final ZkAsyncConnection connection = new ZkAsyncConnection(_zk.getZkServerAddress(), 30000, 1);
+        connection.connect(null);
+        try {
+            assertTrue(connection.waitUntilConnected(10, TimeUnit.SECONDS));
+            final List<ZkFuture<Stat>> chained = new ArrayList<ZkFuture<Stat>>();
+            final CountDownLatch issued = new CountDownLatch(1);
+            connection.create("/chain", null, CreateMode.PERSISTENT).addListener(new ZkFutureListener<String>() {
+                @Override
+                public void operationComplete(ZkFuture<String> future) {
+                    try {
+                        // the first one takes the only slot, which is freed on this thread
+                        chained.add(connection.exists("/chain", false));
+                        chained.add(connection.exists("/chain", false));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    issued.countDown();
+                }
+            });
+            assertTrue(issued.await(10, TimeUnit.SECONDS));
+            assertNotNull(chained.get(0).get(10, TimeUnit.SECONDS));
+            try {
+                chained.get(1).get(10, TimeUnit.SECONDS);
+                fail("the second chained operation should fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ZkException);
+            }
+            assertEquals(0, connection.getOutstandingRequests());
+        } finally {
+            connection.close();
+        }
+    }
+}